@@ -0,0 +1,200 @@
+package com.example.drivesafe.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AppDatabase 的 migration：
+ * - 2~5 版沒有匯出 schema JSON，起點的 version 2 直接用當時 Room 產生的建表語句建立
+ * - 各步驟在同一個 DB 上依序執行，檢查資料；最後由 MigrationTestHelper 對照目前匯出的 schema 驗證
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String DB_NAME = "migration-test.db";
+
+    @Rule
+    public final MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    private Context context;
+    @Nullable private SupportSQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void migrate2To3_backfillsEffectiveAt() {
+        db = createVersion2();
+        long legacy = insertRecord(db, 1, 0, 1_000L, 0.4f);
+        long current = insertRecord(db, 1, 2_000L, null, 0.5f);
+        long missing = insertRecord(db, 1, 0, null, 0.6f);
+
+        AppDatabase.MIGRATION_2_3.migrate(db);
+
+        assertEquals(1_000L, longOf(db, "SELECT effectiveAt FROM fatigue_records WHERE id = ?", legacy));
+        assertEquals(2_000L, longOf(db, "SELECT effectiveAt FROM fatigue_records WHERE id = ?", current));
+        assertEquals(0L, longOf(db, "SELECT effectiveAt FROM fatigue_records WHERE id = ?", missing));
+        assertTrue(hasIndex(db, "index_fatigue_records_effectiveAt"));
+        assertTrue(hasIndex(db, "index_fatigue_records_userId_effectiveAt"));
+        assertTrue(hasIndex(db, "index_fatigue_records_synced_effectiveAt"));
+    }
+
+    @Test
+    public void migrate3To4_backfillsRollupsOnUtcBuckets() {
+        db = createVersion2();
+        long t = 1_700_000_123_456L;
+        insertRecord(db, 1, t, t, 2f);
+        insertRecord(db, 1, t + 1_000L, t + 1_000L, 4f);
+        migrateTo(db, 3);
+
+        AppDatabase.MIGRATION_3_4.migrate(db);
+
+        for (long res : FatigueRollup.RESOLUTIONS) {
+            String sql = "SELECT sampleCount FROM fatigue_rollups WHERE userId = 1 AND resolutionMs = ? AND bucketStart = ?";
+            assertEquals(2L, longOf(db, sql, res, FatigueRollup.bucketStart(t, res)));
+        }
+        assertEquals(3L, longOf(db, "SELECT COUNT(*) FROM fatigue_rollups"));
+        // 天桶以 UTC 午夜對齊，與裝置時區無關
+        assertEquals(1L, longOf(db, "SELECT COUNT(*) FROM fatigue_rollups WHERE resolutionMs = ? AND bucketStart = ?",
+                FatigueRollup.DAY, t - t % FatigueRollup.DAY));
+    }
+
+    @Test
+    public void migrate4To5_dedupesServerIdAndAddsSyncState() {
+        db = createVersion2();
+        long first = insertRecord(db, 1, 1_000L, 1_000L, 0.4f);
+        long duplicate = insertRecord(db, 1, 2_000L, 2_000L, 0.5f);
+        long other = insertRecord(db, 1, 3_000L, 3_000L, 0.6f);
+        insertRecord(db, 1, 4_000L, 4_000L, 0.7f);
+        db.execSQL("UPDATE fatigue_records SET serverId = 's1' WHERE id IN (?, ?)", new Object[]{ first, duplicate });
+        db.execSQL("UPDATE fatigue_records SET serverId = 's2' WHERE id = ?", new Object[]{ other });
+        migrateTo(db, 4);
+
+        AppDatabase.MIGRATION_4_5.migrate(db);
+
+        assertEquals(first, longOf(db, "SELECT id FROM fatigue_records WHERE serverId = 's1'"));
+        assertEquals(1L, longOf(db, "SELECT COUNT(*) FROM fatigue_records WHERE serverId = 's1'"));
+        // 沒有 serverId 的（還沒上傳）不受影響
+        assertEquals(3L, longOf(db, "SELECT COUNT(*) FROM fatigue_records"));
+        assertTrue(hasIndex(db, "index_fatigue_records_serverId"));
+        assertEquals(0L, longOf(db, "SELECT COUNT(*) FROM sync_state"));
+    }
+
+    @Test
+    public void migrate5To6_givesEveryRecordADistinctUuidClientId() {
+        db = createVersion2();
+        for (int i = 0; i < 50; i++) insertRecord(db, 1, 1_000L + i, 1_000L + i, 0.5f);
+        migrateTo(db, 5);
+
+        AppDatabase.MIGRATION_5_6.migrate(db);
+
+        assertEquals(0L, longOf(db, "SELECT COUNT(*) FROM fatigue_records WHERE clientId IS NULL"));
+        assertEquals(50L, longOf(db, "SELECT COUNT(DISTINCT clientId) FROM fatigue_records"));
+        // UUID v4 形式：8-4-4-4-12，第三段以 4 開頭，第四段以 8/9/a/b 開頭
+        assertEquals(50L, longOf(db, "SELECT COUNT(*) FROM fatigue_records WHERE length(clientId) = 36 "
+                + "AND clientId GLOB '????????-????-4???-[89ab]???-????????????'"));
+        assertTrue(hasIndex(db, "index_fatigue_records_clientId"));
+    }
+
+    @Test
+    public void migrateAll_matchesExportedSchema() throws Exception {
+        db = createVersion2();
+        insertRecord(db, 1, 1_000L, 1_000L, 0.4f);
+        db.close();
+        db = null;
+
+        SupportSQLiteDatabase migrated = helper.runMigrationsAndValidate(
+                DB_NAME, latestVersion(), true, AppDatabase.MIGRATIONS);
+        assertEquals(1L, longOf(migrated, "SELECT COUNT(*) FROM fatigue_records"));
+    }
+
+    // ---- helpers ----
+
+    /** version 2：fatigue_records（無索引）與 users，建表語句與當時 Room 產生的一致 */
+    private SupportSQLiteDatabase createVersion2() {
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration.builder(context)
+                .name(DB_NAME)
+                .callback(new SupportSQLiteOpenHelper.Callback(2) {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        db.execSQL("CREATE TABLE IF NOT EXISTS `fatigue_records` (" +
+                                "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `userId` INTEGER NOT NULL, " +
+                                "`serverId` TEXT, `detectedAt` INTEGER NOT NULL, `timestampMs` INTEGER, " +
+                                "`score` REAL NOT NULL, `synced` INTEGER NOT NULL)");
+                        db.execSQL("CREATE TABLE IF NOT EXISTS `users` (" +
+                                "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `email` TEXT, `name` TEXT, " +
+                                "`createdAt` INTEGER NOT NULL)");
+                    }
+
+                    @Override
+                    public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    }
+                })
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(config).getWritableDatabase();
+    }
+
+    /** 從 version 2 依序執行 migration 直到 version */
+    private static void migrateTo(SupportSQLiteDatabase db, int version) {
+        for (Migration m : AppDatabase.MIGRATIONS) {
+            if (m.endVersion <= version) m.migrate(db);
+        }
+    }
+
+    private static int latestVersion() {
+        return AppDatabase.MIGRATIONS[AppDatabase.MIGRATIONS.length - 1].endVersion;
+    }
+
+    static long insertRecord(SupportSQLiteDatabase db, long userId, long detectedAt,
+                             @Nullable Long timestampMs, float score) {
+        ContentValues cv = new ContentValues();
+        cv.put("userId", userId);
+        cv.put("detectedAt", detectedAt);
+        cv.put("timestampMs", timestampMs);
+        cv.put("score", score);
+        cv.put("synced", 0);
+        return db.insert("fatigue_records", SQLiteDatabase.CONFLICT_ABORT, cv);
+    }
+
+    static long longOf(SupportSQLiteDatabase db, String sql, Object... args) {
+        try (Cursor c = db.query(sql, args)) {
+            assertTrue(c.moveToFirst());
+            return c.getLong(0);
+        }
+    }
+
+    static boolean hasIndex(SupportSQLiteDatabase db, String name) {
+        return longOf(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = ?", name) == 1L;
+    }
+}
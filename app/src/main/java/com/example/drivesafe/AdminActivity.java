@@ -11,36 +11,38 @@ import android.widget.Toast;
 import android.widget.EditText;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.LiveData;
+import androidx.paging.PagingData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.drivesafe.admin.AdminRecordAdapter;
-import com.example.drivesafe.db.AppDatabase;
-import com.example.drivesafe.db.FatigueDao;
+import com.example.drivesafe.db.FatigueCsvExporter;
 import com.example.drivesafe.db.FatigueRecord;
+import com.example.drivesafe.db.FatigueRepository;
+import com.example.drivesafe.db.FatigueRollup;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class AdminActivity extends AppCompatActivity implements AdminRecordAdapter.Listener {
 
-    private AppDatabase db;
-    private FatigueDao dao;
-    private ExecutorService exec;
+    private FatigueRepository repo;
+    private FatigueCsvExporter exporter;
+    // 統計查詢：新的一次進來就取消上一次
+    @Nullable private ListenableFuture<FatigueRollup> pendingStats;
+    @Nullable private FatigueCsvExporter.Job exportJob;
 
     private MaterialToolbar toolbar;
     private RecyclerView rv;
@@ -48,7 +50,10 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
     private MaterialButton btnFilterAll, btnPickDate, btnDeleteAll;
 
     private AdminRecordAdapter adapter;
-    private LiveData<List<FatigueRecord>> live;
+    // 分頁資料：插入一筆只會重載目前可見附近的一頁，不再重查/重比對整張表
+    private LiveData<PagingData<FatigueRecord>> live;
+    // 目前篩選區間；null = 全部（統計用）
+    private Long rangeStart, rangeEnd;
 
     private final SimpleDateFormat dayFmt = new SimpleDateFormat("yyyy/MM/dd", Locale.getDefault());
 
@@ -57,9 +62,8 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_admin);
 
-        db  = AppDatabase.getInstance(getApplicationContext());
-        dao = db.fatigueDao();
-        exec = Executors.newSingleThreadExecutor();
+        repo = FatigueRepository.getInstance(this);
+        exporter = repo.exporter();
 
         toolbar        = findViewById(R.id.adminToolbar);
         rv             = findViewById(R.id.rvAdmin);
@@ -106,33 +110,36 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
     private void switchToAll() {
         if (live != null) live.removeObservers(this);
         tvSelectedDate.setText("目前：全部");
-        live = dao.observeAll();
-        live.observe(this, list -> {
-            adapter.submit(list);
-            updateStatsFrom(list);
+        rangeStart = null;
+        rangeEnd = null;
+        live = repo.paged(Long.MIN_VALUE, Long.MAX_VALUE);
+        live.observe(this, paging -> {
+            adapter.submitData(getLifecycle(), paging);
+            refreshStats();
         });
     }
 
     private void switchToRange(long start, long end, String label) {
         if (live != null) live.removeObservers(this);
         tvSelectedDate.setText("目前：" + label);
-        live = dao.observeBetween(start, end);
-        live.observe(this, list -> {
-            adapter.submit(list);
-            updateStatsFrom(list);
+        rangeStart = start;
+        rangeEnd = end;
+        live = repo.paged(start, end);
+        live.observe(this, paging -> {
+            adapter.submitData(getLifecycle(), paging);
+            refreshStats();
         });
     }
 
-    private void updateStatsFrom(List<FatigueRecord> list) {
-        int n = list == null ? 0 : list.size();
-        tvCount.setText(String.valueOf(n));
-        if (n == 0) {
-            tvAvg.setText("—");
-            return;
-        }
-        double sum = 0;
-        for (FatigueRecord r : list) sum += r.getScore();
-        tvAvg.setText(String.format(Locale.getDefault(), "%.2f", sum / n));
+    /** 筆數/平均從 rollup 讀（全部只讀每天一筆），不再逐筆加總列表 */
+    private void refreshStats() {
+        if (pendingStats != null) pendingStats.cancel(false);
+        pendingStats = repo.rollupSummary(rangeStart, rangeEnd);
+        repo.deliver(this, pendingStats, s -> {
+            int n = s.getSampleCount();
+            tvCount.setText(String.valueOf(n));
+            tvAvg.setText(n == 0 ? "—" : String.format(Locale.getDefault(), "%.2f", s.average()));
+        });
     }
 
     private void openDatePicker() {
@@ -179,8 +186,7 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
                     }
 
                     FatigueRecord record = new FatigueRecord(ts, score);
-                    exec.execute(() -> db.fatigueDao().insert(record));
-                    toast("已新增");
+                    repo.deliverWrite(this, repo.insert(record), id -> toast("已新增"));
                 })
                 .setNegativeButton("取消", null)
                 .show();
@@ -205,10 +211,11 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
                     try { ts = Long.parseLong(etTime.getText().toString().trim()); }
                     catch (Exception e) { toast("時間格式錯誤"); return; }
 
-                    r.setScore(score);
-                    r.setBothTimes(ts);
-                    exec.execute(() -> dao.update(r));
-                    toast("已更新");
+                    // 改複本：r 是 PagingDataAdapter 手上的物件，改了它新舊比對會相同而不重綁
+                    FatigueRecord edited = r.copy();
+                    edited.setScore(score);
+                    edited.setBothTimes(ts);
+                    repo.deliverWrite(this, repo.update(edited), n -> toast("已更新"));
                 })
                 .setNegativeButton("取消", null)
                 .show();
@@ -218,7 +225,7 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
     @Override public void onDelete(@NonNull FatigueRecord r) {
         new AlertDialog.Builder(this)
                 .setMessage("刪除這筆紀錄？")
-                .setPositiveButton("刪除", (d, w) -> exec.execute(() -> dao.delete(r)))
+                .setPositiveButton("刪除", (d, w) -> repo.deliverWrite(this, repo.delete(r), n -> toast("已刪除")))
                 .setNegativeButton("取消", null)
                 .show();
     }
@@ -226,16 +233,17 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
     private void confirmDeleteAll() {
         new AlertDialog.Builder(this)
                 .setMessage("確定要清空所有紀錄？")
-                .setPositiveButton("清空", (d, w) -> exec.execute(() -> dao.clearAll()))
+                .setPositiveButton("清空", (d, w) -> repo.deliverWrite(this, repo.deleteAll(), ignored -> toast("已清空")))
                 .setNegativeButton("取消", null)
                 .show();
     }
 
-    // ------- CSV 匯出 -------
+    // ------- CSV 匯出（目前篩選區間，背景串流寫檔；匯出中再按一次取消） -------
     private void exportCsv() {
-        List<FatigueRecord> list = adapter.current();
-        if (list.isEmpty()) { toast("沒有資料可匯出"); return; }
-
+        if (exportJob != null && !exportJob.isFinished()) {
+            exportJob.cancel();
+            return;
+        }
         String fileName = "fatigue_export_" +
                 new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) +
                 ".csv";
@@ -244,20 +252,30 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
         if (dir == null) { toast("找不到儲存位置"); return; }
         File out = new File(dir, fileName);
 
-        exec.execute(() -> {
-            try (PrintWriter pw = new PrintWriter(new FileWriter(out))) {
-                pw.println("id,timestamp,score,synced,serverId");
-                for (FatigueRecord r : list) {
-                    pw.printf(Locale.US, "%d,%d,%.2f,%d,%s%n",
-                            r.getId(),
-                            r.effectiveTime(),
-                            r.getScore(),
-                            r.isSynced() ? 1 : 0,
-                            r.getServerId() == null ? "" : r.getServerId());
-                }
-                runOnUiThread(() -> toast("已匯出：" + out.getAbsolutePath()));
-            } catch (Exception e) {
-                runOnUiThread(() -> toast("匯出失敗：" + e.getMessage()));
+        boolean all = rangeStart == null || rangeEnd == null;
+        long start = all ? Long.MIN_VALUE : rangeStart;
+        long end = all ? Long.MAX_VALUE : rangeEnd;
+        // 全部紀錄壓縮成 .csv.gz
+        exportJob = exporter.exportRange(this, out, start, end, all, new FatigueCsvExporter.Listener() {
+            @Override public void onProgress(long written, long total) {
+                if (total == 0) return;
+                toolbar.setSubtitle(String.format(Locale.getDefault(), "匯出中 %d / %d", written, total));
+            }
+            @Override public void onDone(@NonNull File file, long rows) {
+                toolbar.setSubtitle(null);
+                toast("已匯出：" + file.getAbsolutePath());
+            }
+            @Override public void onEmpty() {
+                toolbar.setSubtitle(null);
+                toast("沒有資料可匯出");
+            }
+            @Override public void onCancelled() {
+                toolbar.setSubtitle(null);
+                toast("已取消匯出");
+            }
+            @Override public void onError(@NonNull Exception e) {
+                toolbar.setSubtitle(null);
+                toast("匯出失敗：" + e.getMessage());
             }
         });
     }
@@ -270,9 +288,4 @@ public class AdminActivity extends AppCompatActivity implements AdminRecordAdapt
     private void toast(String s) {
         Toast.makeText(this, s, Toast.LENGTH_SHORT).show();
     }
-
-    @Override protected void onDestroy() {
-        super.onDestroy();
-        if (exec != null) exec.shutdown();
-    }
 }
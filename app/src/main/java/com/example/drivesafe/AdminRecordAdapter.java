@@ -8,18 +8,32 @@ import android.widget.TextView;
 import com.google.android.material.button.MaterialButton;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.drivesafe.db.FatigueRecord;
 import com.example.drivesafe.R;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
-public class AdminRecordAdapter extends RecyclerView.Adapter<AdminRecordAdapter.VH> {
+/** 管理列表：分頁資料（FatigueRecordPagingSource），以 DiffUtil 更新 */
+public class AdminRecordAdapter extends PagingDataAdapter<FatigueRecord, AdminRecordAdapter.VH> {
+
+    private static final DiffUtil.ItemCallback<FatigueRecord> DIFF = new DiffUtil.ItemCallback<FatigueRecord>() {
+        @Override public boolean areItemsTheSame(@NonNull FatigueRecord a, @NonNull FatigueRecord b) {
+            return a.getId() == b.getId();
+        }
+        @Override public boolean areContentsTheSame(@NonNull FatigueRecord a, @NonNull FatigueRecord b) {
+            return a.effectiveTime() == b.effectiveTime()
+                    && a.getScore() == b.getScore()
+                    && a.isSynced() == b.isSynced()
+                    && Objects.equals(a.getServerId(), b.getServerId());
+        }
+    };
 
     public interface Listener {
         void onEdit(FatigueRecord r);
@@ -27,24 +41,14 @@ public class AdminRecordAdapter extends RecyclerView.Adapter<AdminRecordAdapter.
         void onRowClick(FatigueRecord r);
     }
 
-    private final List<FatigueRecord> data = new ArrayList<>();
     private final Listener listener;
     private final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
 
     public AdminRecordAdapter(Listener l) {
+        super(DIFF);
         this.listener = l;
     }
 
-    public void submit(List<FatigueRecord> list) {
-        data.clear();
-        if (list != null) data.addAll(list);
-        notifyDataSetChanged();
-    }
-
-    public List<FatigueRecord> current() {
-        return new ArrayList<>(data);
-    }
-
     @NonNull
     @Override
     public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -55,7 +59,8 @@ public class AdminRecordAdapter extends RecyclerView.Adapter<AdminRecordAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int pos) {
-        FatigueRecord r = data.get(pos);
+        FatigueRecord r = getItem(pos);
+        if (r == null) return;
 
         long ts = r.effectiveTime();
         h.tvDate.setText(fmt.format(new Date(ts)));
@@ -76,11 +81,6 @@ public class AdminRecordAdapter extends RecyclerView.Adapter<AdminRecordAdapter.
         h.itemView.setOnClickListener(v -> listener.onRowClick(r));
     }
 
-    @Override
-    public int getItemCount() {
-        return data.size();
-    }
-
     static class VH extends RecyclerView.ViewHolder {
         TextView tvDate, tvMeta;
         MaterialButton btnEdit, btnDelete;
@@ -20,14 +20,16 @@ import androidx.annotation.ColorInt;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
+import androidx.work.WorkInfo;
 
 import com.example.drivesafe.db.FatigueRecord;
-import com.example.drivesafe.db.AppDatabase;
-import com.example.drivesafe.db.FatigueDao;
+import com.example.drivesafe.db.FatigueRepository;
+import com.example.drivesafe.db.FatigueRollup;
+import com.example.drivesafe.db.FatigueRollups;
 import com.example.drivesafe.net.ApiClient;
-import com.example.drivesafe.net.ApiService;
 import com.example.drivesafe.net.FatigueDto;
-import com.example.drivesafe.net.TokenStore;   // ★ 取出 token 用
+import com.example.drivesafe.net.TokenStore;
+import com.example.drivesafe.sync.FatigueSyncWorker;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
@@ -38,6 +40,9 @@ import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
@@ -55,9 +60,16 @@ public class ChartActivity extends AppCompatActivity {
     // 原本硬編 BASE_URL → 改用 BuildConfig.BASE_URL
     // private static final String BASE_URL = "http://10.0.2.2:8005/";
     private static final String FALLBACK_USER_ID  = "00000000-0000-0000-0000-000000000001";
+    // 一條線最多畫幾個桶：一天用分鐘桶（1440），一週以上自動改用小時/日桶
+    private static final int MAX_CHART_POINTS = 1440;
 
-    // Room
-    private AppDatabase db;
+    // 資料（Room 經由 repository；查詢跑在共用執行緒，畫面關閉自動取消）
+    private FatigueRepository repo;
+    // 換日期時取消上一個還沒回來的查詢，避免舊結果蓋掉新結果
+    @Nullable private ListenableFuture<ChartData> pendingQuery;
+    // 伺服器還沒有增量同步端點時：本機沒資料就走舊的 GET records 抓回寫入 Room 再重畫
+    private boolean syncUnsupported;
+    @Nullable private Call<List<FatigueDto>> pendingFetch;
 
     // UI
     private MaterialToolbar toolbar;
@@ -80,12 +92,15 @@ public class ChartActivity extends AppCompatActivity {
     // 目前使用者（從登入時存的 prefs 讀取）
     private String currentUserId;
 
+    // 目前畫的範圍（同步完成後重畫用）
+    private long curStartMs, curEndMs;
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_chart);
 
-        db = AppDatabase.getInstance(getApplicationContext());
+        repo = FatigueRepository.getInstance(this);
 
         // ★ 取得 userId：先從 Intent，其次從 SharedPreferences，最後用備援常數
         String intentUserId = getIntent().getStringExtra("user_id");
@@ -107,6 +122,28 @@ public class ChartActivity extends AppCompatActivity {
         // 預設今天
         Calendar today = Calendar.getInstance();
         setDataForDate(today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+
+        // 背景增量同步；有變動才重畫目前範圍（圖表只讀本機）
+        FatigueSyncWorker.observe(this).observe(this, this::onSyncInfos);
+        String userId = (currentUserId == null || currentUserId.trim().isEmpty())
+                ? FALLBACK_USER_ID : currentUserId;
+        FatigueSyncWorker.enqueue(getApplicationContext(), BuildConfig.BASE_URL, userId);
+    }
+
+    private void onSyncInfos(List<WorkInfo> infos) {
+        if (infos == null) return;
+        if (!syncUnsupported && FatigueSyncWorker.isUnsupported(infos)) {
+            syncUnsupported = true;
+            queryDbAndRender(curStartMs, curEndMs, curStartMs);
+            return;
+        }
+        for (WorkInfo info : infos) {
+            if (info.getState() == WorkInfo.State.SUCCEEDED
+                    && info.getOutputData().getInt(FatigueSyncWorker.KEY_CHANGED, 0) > 0) {
+                queryDbAndRender(curStartMs, curEndMs, curStartMs);
+                return;
+            }
+        }
     }
 
     private void bindViews() {
@@ -210,7 +247,7 @@ public class ChartActivity extends AppCompatActivity {
         ).show();
     }
 
-    /** 先查本機；若空就向後端抓，寫回本機後再畫 */
+    /** 只查本機；伺服器資料由 FatigueSyncWorker 同步進來 */
     private void setDataForDate(int year, int month /*0-11*/, int day) {
         Calendar start = Calendar.getInstance();
         start.set(year, month, day, 0, 0, 0);
@@ -226,8 +263,9 @@ public class ChartActivity extends AppCompatActivity {
 
         setXAxisForDay(startMs);
 
-        // 本機查詢 → 空則拉網路
-        queryDbAndRender(startMs, endMs, startMs, /*fallbackFetch*/true);
+        curStartMs = startMs;
+        curEndMs = endMs;
+        queryDbAndRender(startMs, endMs, startMs);
 
         // UI 顯示
         if (tvSelectedDate != null) {
@@ -242,107 +280,121 @@ public class ChartActivity extends AppCompatActivity {
         }
     }
 
+    /** 查詢結果：圖表點位 + 統計 */
+    private static final class ChartData {
+        final List<Entry> entries;
+        final FatigueRollup summary;
+
+        ChartData(List<Entry> entries, FatigueRollup summary) {
+            this.entries = entries;
+            this.summary = summary;
+        }
+    }
+
+    private void queryDbAndRender(long startMs, long endMs, long startOfDayMs) {
+        queryDbAndRender(startMs, endMs, startOfDayMs, syncUnsupported);
+    }
+
     private void queryDbAndRender(long startMs, long endMs, long startOfDayMs, boolean fallbackFetch) {
-        new Thread(() -> {
-            FatigueDao dao = db.fatigueDao();
-            List<FatigueRecord> records = dao.getByTimeRange(startMs, endMs);
-
-            final List<Entry> entries = toEntries(records, startOfDayMs);
-
-            runOnUiThread(() -> {
-                if (entries.isEmpty()) {
-                    if (fallbackFetch) {
-                        fetchFromServerAndCacheThenRender(startMs, endMs, startOfDayMs);
-                    } else {
-                        showEmpty(true);
-                        lineChart.clear();
-                        bindStatsEmpty();
-                    }
-                } else {
-                    showEmpty(false);
-                    LineDataSet ds = new LineDataSet(entries, "疲勞指數");
-                    styleDataSet(ds);
-                    LineData data = new LineData(ds);
-                    data.setDrawValues(false);
-                    lineChart.setData(data);
-                    lineChart.animateX(400);
-                    lineChart.invalidate();
-                    computeAndBindStats(entries);
-                }
-            });
-        }).start();
+        if (pendingQuery != null) pendingQuery.cancel(false);
+        if (pendingFetch != null) {
+            pendingFetch.cancel();
+            pendingFetch = null;
+        }
+        long resolutionMs = FatigueRollup.resolutionFor(endMs - startMs + 1, MAX_CHART_POINTS);
+        // 轉換直接在查詢執行緒上做（directExecutor），主執行緒只負責畫
+        pendingQuery = Futures.transform(
+                repo.rollupSeries(startMs, endMs, resolutionMs),
+                buckets -> new ChartData(toEntries(buckets, startOfDayMs), FatigueRollups.summarize(buckets)),
+                MoreExecutors.directExecutor());
+        repo.deliver(this, pendingQuery, result -> {
+            if (result.entries.isEmpty() && fallbackFetch) {
+                fetchFromServerAndCacheThenRender(startMs, endMs, startOfDayMs);
+            } else {
+                render(result);
+            }
+        });
     }
 
-    /** 往後端 GET → 寫回 Room → 再從本機重畫 */
+    /** 往後端 GET records → 寫回 Room（依 serverId 合併，不會重複）→ 再從本機重畫 */
     private void fetchFromServerAndCacheThenRender(long startMs, long endMs, long startOfDayMs) {
-        // ★ 1) 取得 ApiService（統一用 BuildConfig.BASE_URL）
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
-
-        // ★ 2) 組 Authorization 標頭（無 token 時傳 null 也可呼叫）
         String token = new TokenStore(getApplicationContext()).get();
         String authHeader = (token != null && !token.isEmpty()) ? ("Bearer " + token) : null;
-
-        // ★ 3) 使用現在的 getRecords 介面（bearerToken, userId, startMs, endMs）
-        final String userId = (currentUserId == null || currentUserId.trim().isEmpty())
+        String userId = (currentUserId == null || currentUserId.trim().isEmpty())
                 ? FALLBACK_USER_ID : currentUserId;
 
-        Call<List<FatigueDto>> call = api.getRecords(authHeader, userId, startMs, endMs);
-
+        Call<List<FatigueDto>> call = ApiClient.api(BuildConfig.BASE_URL).getRecords(authHeader, userId, startMs, endMs);
+        pendingFetch = call;
         Toast.makeText(this, "正在從伺服器抓取資料…", Toast.LENGTH_SHORT).show();
 
         call.enqueue(new Callback<List<FatigueDto>>() {
-            @Override public void onResponse(Call<List<FatigueDto>> call, Response<List<FatigueDto>> resp) {
+            @Override
+            public void onResponse(Call<List<FatigueDto>> c, Response<List<FatigueDto>> resp) {
+                if (c.isCanceled() || isDestroyed()) return;
                 if (!resp.isSuccessful() || resp.body() == null) {
                     onFail("伺服器回應失敗（" + resp.code() + "）");
                     return;
                 }
-                List<FatigueDto> list = resp.body();
-
-                new Thread(() -> {
-                    try {
-                        if (list != null && !list.isEmpty()) {
-                            List<FatigueRecord> toInsert = new ArrayList<>(list.size());
-                            for (FatigueDto d : list) {
-                                // 依你現有的 Entity API：以 timestamp_ms / score 建構，並寫入 server 狀態
-                                FatigueRecord r = new FatigueRecord(d.timestamp_ms, d.score);
-                                r.setServerId(d.id);
-                                r.setSynced(true);
-                                toInsert.add(r);
-                            }
-                            if (!toInsert.isEmpty()) {
-                                db.fatigueDao().insertAll(toInsert);
-                            }
-                        }
-                    } catch (Exception ignored) {}
-
-                    runOnUiThread(() -> queryDbAndRender(startMs, endMs, startOfDayMs, /*fallbackFetch*/false));
-                }).start();
+                List<FatigueRecord> records = new ArrayList<>();
+                for (FatigueDto d : resp.body()) {
+                    if (d == null || d.id == null) continue;
+                    FatigueRecord r = new FatigueRecord(d.timestamp_ms, d.score);
+                    r.setServerId(d.id);
+                    r.setClientId(d.client_id);
+                    r.setSynced(true);
+                    records.add(r);
+                }
+                if (records.isEmpty()) {
+                    showEmpty(true);
+                    lineChart.clear();
+                    bindStatsEmpty();
+                    return;
+                }
+                repo.deliverWrite(ChartActivity.this, repo.applyRemote(records),
+                        changed -> queryDbAndRender(startMs, endMs, startOfDayMs, false));
             }
 
-            @Override public void onFailure(Call<List<FatigueDto>> call, Throwable t) {
+            @Override
+            public void onFailure(Call<List<FatigueDto>> c, Throwable t) {
+                if (c.isCanceled() || isDestroyed()) return;
                 onFail("抓取失敗：" + t.getMessage());
             }
 
             private void onFail(String msg) {
-                runOnUiThread(() -> {
-                    showEmpty(true);
-                    lineChart.clear();
-                    bindStatsEmpty();
-                    Toast.makeText(ChartActivity.this, msg, Toast.LENGTH_SHORT).show();
-                });
+                showEmpty(true);
+                lineChart.clear();
+                bindStatsEmpty();
+                Toast.makeText(ChartActivity.this, msg, Toast.LENGTH_SHORT).show();
             }
         });
     }
 
-    /** 把資料轉成圖表點位：使用「有效時間」effectiveTime() */
-    private List<Entry> toEntries(List<FatigueRecord> records, long startOfDayMs) {
+    private void render(ChartData result) {
+        if (result.entries.isEmpty()) {
+            showEmpty(true);
+            lineChart.clear();
+            bindStatsEmpty();
+        } else {
+            showEmpty(false);
+            LineDataSet ds = new LineDataSet(result.entries, "疲勞指數");
+            styleDataSet(ds);
+            LineData data = new LineData(ds);
+            data.setDrawValues(false);
+            lineChart.setData(data);
+            lineChart.animateX(400);
+            lineChart.invalidate();
+            computeAndBindStats(result.summary);
+        }
+    }
+
+    /** 把時間桶轉成圖表點位：x = 桶起點距當天 00:00 的分鐘數，y = 桶內平均 */
+    private List<Entry> toEntries(List<FatigueRollup> buckets, long startOfDayMs) {
         List<Entry> entries = new ArrayList<>();
-        if (records == null) return entries;
-        for (FatigueRecord r : records) {
-            long ts = r.effectiveTime();
-            if (ts <= 0) continue;
-            float minutesFromStart = (ts - startOfDayMs) / 60_000f;
-            entries.add(new Entry(minutesFromStart, r.getScore()));
+        if (buckets == null) return entries;
+        for (FatigueRollup b : buckets) {
+            if (b.getSampleCount() == 0) continue;
+            float minutesFromStart = (b.getBucketStart() - startOfDayMs) / 60_000f;
+            entries.add(new Entry(minutesFromStart, b.average()));
         }
         return entries;
     }
@@ -380,18 +432,12 @@ public class ChartActivity extends AppCompatActivity {
         return gd;
     }
 
-    private void computeAndBindStats(List<Entry> entries) {
-        float sum = 0f, max = -Float.MAX_VALUE, min = Float.MAX_VALUE;
-        for (Entry e : entries) {
-            float v = e.getY();
-            sum += v;
-            if (v > max) max = v;
-            if (v < min) min = v;
-        }
-        float avg = entries.isEmpty() ? 0f : (sum / entries.size());
-        tvAvg.setText(entries.isEmpty() ? "—" : String.format(Locale.getDefault(), "%.1f", avg));
-        tvMax.setText(entries.isEmpty() ? "—" : String.format(Locale.getDefault(), "%.1f", max));
-        tvMin.setText(entries.isEmpty() ? "—" : String.format(Locale.getDefault(), "%.1f", min));
+    /** 統計直接用 rollup 合併結果（以原始紀錄為單位，不是以點位平均） */
+    private void computeAndBindStats(FatigueRollup summary) {
+        boolean empty = summary.getSampleCount() == 0;
+        tvAvg.setText(empty ? "—" : String.format(Locale.getDefault(), "%.1f", summary.average()));
+        tvMax.setText(empty ? "—" : String.format(Locale.getDefault(), "%.1f", summary.getScoreMax()));
+        tvMin.setText(empty ? "—" : String.format(Locale.getDefault(), "%.1f", summary.getScoreMin()));
     }
 
     private void bindStatsEmpty() {
@@ -1,13 +1,36 @@
 package com.example.drivesafe;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
 import androidx.appcompat.app.AppCompatDelegate;
 
+import com.example.drivesafe.db.FatigueRecordWriter;
+import com.example.drivesafe.net.ApiClient;
+import com.example.drivesafe.sync.UploadWorker;
+
 public class DriveSafeApp extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
         // 🔒 強制淺色模式
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
+        // 共用 HTTP 連線的磁碟快取（ETag / 304）
+        ApiClient.init(this);
+        // 疲勞紀錄寫入 DB 後排一個唯一的上傳工作；掛在 Application 上，不管是哪個畫面（或 FatigueLogger）寫的都會上傳，
+        // 也不會讓單例抓住 Activity
+        final Context app = getApplicationContext();
+        FatigueRecordWriter.getInstance(app).setAfterFlush(
+                () -> UploadWorker.enqueue(app, MainActivity.BASE_URL, MainActivity.USER_ID));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 進背景 / 記憶體吃緊：行程隨時可能被回收，先把疲勞紀錄緩衝寫進 DB（寫入執行緒上跑，不另開執行緒）
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            FatigueRecordWriter.getInstance(this).flushAsync();
+        }
     }
 }
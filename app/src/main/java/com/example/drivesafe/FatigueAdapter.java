@@ -8,6 +8,9 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.drivesafe.R;
@@ -15,15 +18,31 @@ import com.example.drivesafe.db.FatigueRecord;
 import com.google.android.material.chip.Chip;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 列表：疲勞記錄（新版：分數＋等級＋同步 Chip）
+ * 分頁版：資料由 FatigueRecordPagingSource 分頁送進來（雲端清單也先合併進 Room）；
+ * 更新一律以 DiffUtil 比對，只重繪有變的列
+ */
+public class FatigueAdapter extends PagingDataAdapter<FatigueRecord, FatigueAdapter.ViewHolder> {
+
+    /** 雲端清單沒有本機 id，改用 serverId + 時間判斷同一筆 */
+    private static final DiffUtil.ItemCallback<FatigueRecord> DIFF = new DiffUtil.ItemCallback<FatigueRecord>() {
+        @Override public boolean areItemsTheSame(@NonNull FatigueRecord a, @NonNull FatigueRecord b) {
+            if (a.getId() != 0 || b.getId() != 0) return a.getId() == b.getId();
+            return Objects.equals(a.getServerId(), b.getServerId()) && a.effectiveTime() == b.effectiveTime();
+        }
+        @Override public boolean areContentsTheSame(@NonNull FatigueRecord a, @NonNull FatigueRecord b) {
+            return a.effectiveTime() == b.effectiveTime()
+                    && a.getScore() == b.getScore()
+                    && a.isSynced() == b.isSynced()
+                    && Objects.equals(a.getServerId(), b.getServerId());
+        }
+    };
 
-/** 列表：疲勞記錄（新版：分數＋等級＋同步 Chip） */
-public class FatigueAdapter extends RecyclerView.Adapter<FatigueAdapter.ViewHolder> {
-
-    private final List<FatigueRecord> data = new ArrayList<>();
     private final SimpleDateFormat timeFmt =
             new SimpleDateFormat("yyyy/MM/dd HH:mm", Locale.getDefault());
 
@@ -37,45 +56,15 @@ public class FatigueAdapter extends RecyclerView.Adapter<FatigueAdapter.ViewHold
     private OnItemClickListener clickListener;
     private OnItemLongClickListener longClickListener;
 
-    public FatigueAdapter() { setHasStableIds(true); }
-
-    public FatigueAdapter(@NonNull List<FatigueRecord> initial) {
-        setHasStableIds(true);
-        setItems(initial);
-    }
+    // PagingDataAdapter 不支援 stable ids，改由 DIFF 判斷同一筆
+    public FatigueAdapter() { super(DIFF); }
 
     // ====== 資料操作 ======
-    public void setItems(@NonNull List<FatigueRecord> items) {
-        data.clear();
-        data.addAll(items);
-        notifyDataSetChanged();
-    }
-
-    public void addItems(@NonNull List<FatigueRecord> items) {
-        int start = data.size();
-        data.addAll(items);
-        notifyItemRangeInserted(start, items.size());
-    }
-
-    public void addItem(@NonNull FatigueRecord item) {
-        data.add(item);
-        notifyItemInserted(data.size() - 1);
-    }
-
-    public void clear() {
-        data.clear();
-        notifyDataSetChanged();
-    }
-
-    /** 讓外部可用 adapter.getItem(pos) */
-    public FatigueRecord getItem(int position) {
-        if (position < 0 || position >= data.size()) return null;
-        return data.get(position);
-    }
-
-    @Override public long getItemId(int position) {
-        FatigueRecord r = getItem(position);
-        return (r != null) ? r.getId() : RecyclerView.NO_ID;
+    /** 讓外部取已載入的那一筆（不會觸發分頁載入）；超出範圍回 null */
+    @Nullable
+    public FatigueRecord getRecord(int position) {
+        if (position < 0 || position >= getItemCount()) return null;
+        return peek(position);
     }
 
     public void setOnItemClickListener(OnItemClickListener l) { this.clickListener = l; }
@@ -160,8 +149,6 @@ public class FatigueAdapter extends RecyclerView.Adapter<FatigueAdapter.ViewHold
         });
     }
 
-    @Override public int getItemCount() { return data.size(); }
-
     // ====== ViewHolder ======
     static class ViewHolder extends RecyclerView.ViewHolder {
         final TextView tvScore;
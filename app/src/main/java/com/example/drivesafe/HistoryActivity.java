@@ -9,37 +9,38 @@ import android.widget.DatePicker;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.lifecycle.LiveData;
+import androidx.paging.CombinedLoadStates;
+import androidx.paging.LoadState;
+import androidx.paging.PagingData;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
 
-import com.example.drivesafe.db.AppDatabase;
-import com.example.drivesafe.db.FatigueDao;
+import com.example.drivesafe.db.FatigueCsvExporter;
 import com.example.drivesafe.db.FatigueRecord;
+import com.example.drivesafe.db.FatigueRepository;
 import com.example.drivesafe.net.ApiClient;
-import com.example.drivesafe.net.ApiService;
-import com.example.drivesafe.net.DrivingRecordDto; // 新雲端 schema DTO
-import com.example.drivesafe.net.FatigueDto;
-import com.example.drivesafe.net.MemberDto;
-import com.example.drivesafe.net.TokenStore;
+import com.example.drivesafe.net.DrivingRecordDto;
+import com.example.drivesafe.sync.FatigueSyncWorker;
 import com.example.drivesafe.ui.FatigueAdapter;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.TimeZone;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -47,17 +48,14 @@ import retrofit2.Response;
 
 public class HistoryActivity extends AppCompatActivity {
 
-    /** 切換：true = 直接讀雲端顯示（最快達成「DB 新增 App 可見」），false = 先匯入 Room 再顯示（原邏輯） */
-    private static final boolean USE_CLOUD_ONLY = true;
-
-    // 仍保留一個暫時的 fallback（若查不到 memberId 時使用）
-    private static final int TEMP_MEMBER_ID = 1;
-
     // 偏好 key：登入資訊
     private static final String PREF_NAME   = "login_prefs";
     private static final String KEY_USER_ID = "user_id";
     private static final String KEY_EMAIL   = "email"; // 回退用
 
+    // 舊的雲端清單（伺服器還沒有增量同步端點時使用）：後端 member_id 目前固定 3
+    private static final int CLOUD_MEMBER_ID = 3;
+
     private MaterialToolbar toolbar;
     private RecyclerView rv;
     private TextView tvEmpty, tvSelectedDate;
@@ -65,8 +63,16 @@ public class HistoryActivity extends AppCompatActivity {
     private CircularProgressIndicator progress;
 
     private FatigueAdapter adapter;
-    private AppDatabase db;
-    private ExecutorService io;
+    // 本機分頁資料（keyset）；伺服器資料由 FatigueSyncWorker 增量同步進 Room
+    @Nullable private LiveData<PagingData<FatigueRecord>> localPaged;
+    // loading = 分頁載入中、同步執行中或雲端清單讀取中（等網路/重試中的同步不算）
+    private boolean pageLoading, syncing, cloudLoading;
+    // 同步回報伺服器沒有 changes 端點 → 改成整包讀雲端清單並合併進 Room（applyRemote），端點上線前保留
+    private boolean cloudOnly;
+    @Nullable private Call<List<DrivingRecordDto>> cloudCall;
+    private FatigueRepository repo;
+    private FatigueCsvExporter exporter;
+    @Nullable private FatigueCsvExporter.Job exportJob;
 
     private final SimpleDateFormat dateFmt = new SimpleDateFormat("yyyy/MM/dd", Locale.getDefault());
 
@@ -74,17 +80,14 @@ public class HistoryActivity extends AppCompatActivity {
     private long lastStartMs = Long.MIN_VALUE;
     private long lastEndMs   = Long.MAX_VALUE;
 
-    // 動態取得後端成員 id（這版我們固定成 3）
-    private Integer memberId = null;
-
     @Override protected void onCreate(@Nullable Bundle savedInstanceState) {
         // 強制亮色
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_history);
 
-        db = AppDatabase.getInstance(getApplicationContext());
-        io = Executors.newSingleThreadExecutor();
+        repo = FatigueRepository.getInstance(this);
+        exporter = repo.exporter();
 
         toolbar = findViewById(R.id.historyToolbar);
         setSupportActionBar(toolbar);
@@ -95,6 +98,10 @@ public class HistoryActivity extends AppCompatActivity {
         rv.setLayoutManager(new LinearLayoutManager(this));
         adapter = new FatigueAdapter();
         rv.setAdapter(adapter);
+        adapter.addLoadStateListener(states -> {
+            onLoadStates(states);
+            return kotlin.Unit.INSTANCE;
+        });
 
         tvEmpty = findViewById(R.id.tvEmptyHint);
         tvSelectedDate = findViewById(R.id.tvSelectedDate);
@@ -105,38 +112,36 @@ public class HistoryActivity extends AppCompatActivity {
         btnAll.setOnClickListener(v -> loadAll());
         btnPickDate.setOnClickListener(v -> openDatePicker());
 
-        // 左滑刪除（仍只刪本機 Room；雲端刪除之後再補）
+        // 左滑刪除（只刪本機 Room；雲端刪除之後再補）
+        // 雲端清單模式下關閉：刪掉的紀錄下次整包讀回又會出現
         ItemTouchHelper helper = new ItemTouchHelper(
                 new ItemTouchHelper.SimpleCallback(0, ItemTouchHelper.LEFT) {
                     @Override public boolean onMove(RecyclerView r, RecyclerView.ViewHolder vH, RecyclerView.ViewHolder t) {
                         return false;
                     }
+                    @Override public int getSwipeDirs(@NonNull RecyclerView r, @NonNull RecyclerView.ViewHolder vH) {
+                        return cloudOnly ? 0 : super.getSwipeDirs(r, vH);
+                    }
                     @Override public void onSwiped(RecyclerView.ViewHolder vH, int dir) {
                         int pos = vH.getBindingAdapterPosition();
-                        FatigueRecord rec = adapter.getItem(pos);
+                        FatigueRecord rec = adapter.getRecord(pos);
                         if (rec == null) {
                             runOnUiThread(() -> adapter.notifyItemChanged(pos));
                             return;
                         }
-                        io.execute(() -> {
-                            db.fatigueDao().delete(rec);
-                            runOnUiThread(() -> {
-                                reloadAfterChange(); // 依目前範圍重載
-                                toast("已刪除（本機）");
-                            });
+                        repo.deliverWrite(HistoryActivity.this, repo.delete(rec), n -> {
+                            reloadAfterChange(); // 依目前範圍重載
+                            toast("已刪除（本機）");
                         });
                     }
                 });
         helper.attachToRecyclerView(rv);
 
-        // ✅ 固定使用 memberId = 3 來讀雲端資料
-        memberId = 3;
         loadAll();
 
-        if (!USE_CLOUD_ONLY) {
-            importCloudRecordsToRoom(memberId, this::reloadAfterChange);
-            testUploadOneRecord();
-        }
+        // 先顯示本機資料，同步在背景跑；寫進 Room 後分頁會自動重載
+        FatigueSyncWorker.observe(this).observe(this, this::onSyncInfos);
+        requestSync();
     }
 
     private boolean onMenuItemClick(MenuItem item) {
@@ -148,59 +153,15 @@ public class HistoryActivity extends AppCompatActivity {
             exportCsvCurrent();
             return true;
         } else if (id == R.id.action_sync) {
-            if (USE_CLOUD_ONLY) {
-                loadAll();
-            } else {
-                resyncDays(30);
-            }
+            if (cloudOnly) showRange(lastStartMs, lastEndMs);
+            else requestSync();
             return true;
         }
         return false;
     }
 
-    /* =====（暫時不用）解析 memberId：用登入 email 去 /members 對應 ===== */
-    private void resolveMemberIdAndThenLoad() {
-        SharedPreferences sp = getSharedPreferences(PREF_NAME, MODE_PRIVATE);
-        String email = sp.getString(KEY_EMAIL, null);
-
-        if (email == null || email.trim().isEmpty()) {
-            loadAll();
-            return;
-        }
-
-        showLoading(true);
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
-        api.getMembers().enqueue(new Callback<List<MemberDto>>() {
-            @Override public void onResponse(Call<List<MemberDto>> call, Response<List<MemberDto>> resp) {
-                showLoading(false);
-                if (!resp.isSuccessful() || resp.body() == null) {
-                    toast("取得成員失敗，code=" + resp.code());
-                    loadAll();
-                    return;
-                }
-                Integer found = null;
-                String want = email.trim().toLowerCase(Locale.ROOT);
-                for (MemberDto m : resp.body()) {
-                    if (m == null || m.email == null) continue;
-                    if (want.equals(m.email.trim().toLowerCase(Locale.ROOT))) {
-                        found = m.id;
-                        break;
-                    }
-                }
-                memberId = found;
-                loadAll();
-            }
-
-            @Override public void onFailure(Call<List<MemberDto>> call, Throwable t) {
-                showLoading(false);
-                toast("取得成員錯誤：" + t.getMessage());
-                loadAll();
-            }
-        });
-    }
-
-    /* ===== 取得目前 userId（舊 schema 用；沒有就回退 email，再沒有才用測試 ID） ===== */
-    private @Nullable String currentUserId() {
+    /* ===== 取得目前 userId（同步用；沒有就回退 email，再沒有才用測試 ID） ===== */
+    private @NonNull String currentUserId() {
         SharedPreferences sp = getSharedPreferences(PREF_NAME, MODE_PRIVATE);
         String uid = sp.getString(KEY_USER_ID, null);
         if (uid == null || uid.isEmpty()) {
@@ -212,58 +173,25 @@ public class HistoryActivity extends AppCompatActivity {
         return uid;
     }
 
-    /* ===== 新增：雲端直讀並顯示（不落地 Room） ===== */
-    private void cloudFetchAllThenShow(@Nullable Long rangeStart, @Nullable Long rangeEnd) {
-        showLoading(true);
-
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
-        final int mid = (memberId == null ? TEMP_MEMBER_ID : memberId);
-        api.getDrivingRecords(mid).enqueue(new Callback<List<DrivingRecordDto>>() {
-            @Override
-            public void onResponse(Call<List<DrivingRecordDto>> call, Response<List<DrivingRecordDto>> resp) {
-                if (!resp.isSuccessful() || resp.body() == null) {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        toast("雲端讀取失敗，code=" + resp.code());
-                        if (!USE_CLOUD_ONLY) reloadAfterChange();
-                    });
-                    return;
-                }
-                List<DrivingRecordDto> remote = resp.body();
-                List<FatigueRecord> viewList = new ArrayList<>();
-                if (remote != null) {
-                    for (DrivingRecordDto d : remote) {
-                        long when = parseIsoMillis(d.start_time);
-                        if (when <= 0) continue;
-                        if (rangeStart != null && rangeEnd != null) {
-                            if (when < rangeStart || when > rangeEnd) continue;
-                        }
-                        FatigueRecord r = new FatigueRecord();
-                        r.setDetectedAt(when);
-                        r.setTimestampMs(when);
-                        r.setScore(mapFatigueLevelToScore(d.fatigue_level));
-                        r.setServerId(d.id == null ? null : String.valueOf(d.id));
-                        r.setSynced(true);
-                        viewList.add(r);
-                    }
-                }
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    adapter.setItems(viewList);
-                    checkEmptyState();
-                    if (viewList.isEmpty()) toast("目前範圍無資料（雲端）");
-                });
-            }
+    /* ===== 增量同步（伺服器 → Room） ===== */
+    private void requestSync() {
+        FatigueSyncWorker.enqueue(getApplicationContext(), BuildConfig.BASE_URL, currentUserId());
+    }
 
-            @Override
-            public void onFailure(Call<List<DrivingRecordDto>> call, Throwable t) {
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    toast("連線錯誤：" + t.getMessage());
-                    if (!USE_CLOUD_ONLY) reloadAfterChange();
-                });
+    /** 失敗時 WorkManager 會自行重試，這裡只反映是否正在跑；伺服器沒有端點時改讀雲端清單 */
+    private void onSyncInfos(List<WorkInfo> infos) {
+        boolean running = false;
+        if (infos != null) {
+            for (WorkInfo info : infos) {
+                if (info.getState() == WorkInfo.State.RUNNING) running = true;
             }
-        });
+        }
+        syncing = running;
+        updateLoading();
+        if (!cloudOnly && FatigueSyncWorker.isUnsupported(infos)) {
+            cloudOnly = true;
+            showRange(lastStartMs, lastEndMs);
+        }
     }
 
     /* ===== 載入資料 ===== */
@@ -272,23 +200,7 @@ public class HistoryActivity extends AppCompatActivity {
         lastEndMs   = Long.MAX_VALUE;
         tvSelectedDate.setText("目前：全部");
 
-        if (USE_CLOUD_ONLY) {
-            cloudFetchAllThenShow(null, null);
-            return;
-        }
-
-        showLoading(true);
-        io.execute(() -> {
-            List<FatigueRecord> list = db.fatigueDao().getAllDesc();
-            runOnUiThread(() -> {
-                adapter.setItems(list);
-                checkEmptyState();
-                showLoading(false);
-                if (list.isEmpty()) {
-                    resyncDays(30);
-                }
-            });
-        });
+        showRange(Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     private void openDatePicker() {
@@ -319,177 +231,97 @@ public class HistoryActivity extends AppCompatActivity {
 
         tvSelectedDate.setText("目前：" + dateFmt.format(start.getTime()));
 
-        if (USE_CLOUD_ONLY) {
-            cloudFetchAllThenShow(startMs, endMs);
-            return;
-        }
-
-        showLoading(true);
-        io.execute(() -> {
-            FatigueDao dao = db.fatigueDao();
-            List<FatigueRecord> list = dao.getByTimeRange(startMs, endMs);
-            runOnUiThread(() -> {
-                adapter.setItems(list);
-                checkEmptyState();
-                showLoading(false);
-                if (list.isEmpty()) {
-                    fetchFromServerAndCache(startMs, endMs, this::reloadRangeAfterSync);
-                }
-            });
-        });
+        showRange(startMs, endMs);
     }
 
-    /* ===== 舊 schema：FatigueDto（保留）===== */
-
-    private void resyncDays(int days) {
-        Calendar end = Calendar.getInstance();
-        Calendar start = (Calendar) end.clone();
-        start.set(Calendar.HOUR_OF_DAY, 0);
-        start.set(Calendar.MINUTE, 0);
-        start.set(Calendar.SECOND, 0);
-        start.set(Calendar.MILLISECOND, 0);
-        start.add(Calendar.DAY_OF_YEAR, -days);
-
-        long startMs = start.getTimeInMillis();
-        long endMs   = end.getTimeInMillis();
-
-        fetchFromServerAndCache(startMs, endMs, this::reloadAfterChange);
+    private void showRange(long startMs, long endMs) {
+        if (cloudOnly) cloudFetchThenShow(startMs, endMs);
+        else showLocalPaged(startMs, endMs);
     }
 
-    private void fetchFromServerAndCache(long startMs, long endMs, Runnable onDone) {
-        showLoading(true);
-
-        String uid = currentUserId();
-
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
-
-        String token = new TokenStore(getApplicationContext()).get();
-        String authHeader = (token != null && !token.isEmpty()) ? "Bearer " + token : null;
-
-        Call<List<FatigueDto>> call = api.getRecords(authHeader, uid, startMs, endMs);
-
-        call.enqueue(new Callback<List<FatigueDto>>() {
-            @Override public void onResponse(Call<List<FatigueDto>> c, Response<List<FatigueDto>> resp) {
-                if (!resp.isSuccessful() || resp.body() == null) {
-                    onSyncFail("伺服器回應失敗（" + resp.code() + "）");
-                    return;
-                }
-                List<FatigueDto> list = resp.body();
-                io.execute(() -> {
-                    try {
-                        if (list != null && !list.isEmpty()) {
-                            List<FatigueRecord> toInsert = new ArrayList<>(list.size());
-                            for (FatigueDto d : list) {
-                                FatigueRecord r = new FatigueRecord();
-                                long t = d.timestamp_ms;
-                                r.setDetectedAt(t);
-                                r.setTimestampMs(t);
-                                r.setScore(d.score);
-                                r.setServerId(d.id);
-                                r.setSynced(true);
-                                toInsert.add(r);
-                            }
-                            if (!toInsert.isEmpty()) {
-                                db.fatigueDao().insertAll(toInsert);
-                            }
-                        }
-                    } catch (Exception ignore) {}
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        if (onDone != null) onDone.run();
-                        if (list == null || list.isEmpty()) {
-                            toast("沒有可同步的資料");
-                        } else {
-                            toast("同步完成");
-                        }
-                    });
-                });
-            }
-
-            @Override public void onFailure(Call<List<FatigueDto>> c, Throwable t) {
-                onSyncFail("同步失敗：" + t.getMessage());
-            }
+    /** 本機分頁：Room 資料變動時 PagingSource 會自動失效重載，不必手動重查 */
+    private void showLocalPaged(long startMs, long endMs) {
+        stopLocalPaging();
+        stopCloudFetch();
+        pageLoading = true;
+        updateLoading();
+        localPaged = repo.paged(startMs, endMs);
+        localPaged.observe(this, data -> adapter.submitData(getLifecycle(), data));
+    }
 
-            private void onSyncFail(String msg) {
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    toast(msg);
-                    checkEmptyState();
-                });
-            }
-        });
+    private void stopLocalPaging() {
+        if (localPaged != null) {
+            localPaged.removeObservers(this);
+            localPaged = null;
+        }
     }
 
-    /* ===== 新 schema：把雲端資料匯入 Room（目前用不到） ===== */
-    private void importCloudRecordsToRoom(int memberId, @Nullable Runnable onDone) {
-        showLoading(true);
+    /* ===== 雲端清單（舊路徑：GET driving_records?member_id=，整包讀回合併進 Room 後照樣用本機分頁顯示） ===== */
+    private void cloudFetchThenShow(long startMs, long endMs) {
+        stopLocalPaging();
+        stopCloudFetch();
+        cloudLoading = true;
+        updateLoading();
 
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
-        api.getDrivingRecords(memberId).enqueue(new Callback<List<DrivingRecordDto>>() {
+        Call<List<DrivingRecordDto>> call = ApiClient.api(BuildConfig.BASE_URL).getDrivingRecords(CLOUD_MEMBER_ID);
+        cloudCall = call;
+        call.enqueue(new Callback<List<DrivingRecordDto>>() {
             @Override
-            public void onResponse(Call<List<DrivingRecordDto>> call,
-                                   Response<List<DrivingRecordDto>> resp) {
+            public void onResponse(Call<List<DrivingRecordDto>> c, Response<List<DrivingRecordDto>> resp) {
+                if (c.isCanceled() || isDestroyed()) return;
+                cloudCall = null;
                 if (!resp.isSuccessful() || resp.body() == null) {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        toast("雲端同步失敗，code=" + resp.code());
-                    });
+                    toast("雲端讀取失敗，code=" + resp.code());
+                    showLocalPaged(startMs, endMs);
                     return;
                 }
-                List<DrivingRecordDto> list = resp.body();
-                io.execute(() -> {
-                    try {
-                        if (list != null && !list.isEmpty()) {
-                            List<FatigueRecord> toInsert = new ArrayList<>(list.size());
-                            for (DrivingRecordDto d : list) {
-                                long when = parseIsoMillis(d.start_time);
-                                if (when <= 0) continue;
-
-                                FatigueRecord r = new FatigueRecord();
-                                r.setDetectedAt(when);
-                                r.setTimestampMs(when);
-                                r.setScore(mapFatigueLevelToScore(d.fatigue_level));
-                                r.setServerId(d.id == null ? null : String.valueOf(d.id));
-                                r.setSynced(true);
-                                toInsert.add(r);
-                            }
-                            if (!toInsert.isEmpty()) {
-                                db.fatigueDao().insertAll(toInsert);
-                            }
-                        }
-                    } catch (Exception ignored) {}
-
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        toast("雲端同步完成（匯入 " + (list == null ? 0 : list.size()) + " 筆）");
-                        if (onDone != null) onDone.run();
-                    });
+                // 沒有 id 的列無法以 serverId 合併，每次讀回都會變成新的一筆，略過
+                List<FatigueRecord> records = new ArrayList<>();
+                for (DrivingRecordDto d : resp.body()) {
+                    if (d == null || d.id == null) continue;
+                    long when = parseIsoMillis(d.start_time);
+                    if (when <= 0) continue;
+                    FatigueRecord r = new FatigueRecord(when, mapFatigueLevelToScore(d.fatigue_level));
+                    r.setServerId(String.valueOf(d.id));
+                    r.setSynced(true);
+                    records.add(r);
+                }
+                // 寫進 Room 後再顯示範圍內的資料（空狀態由分頁載入完成時判斷）
+                repo.deliverWrite(HistoryActivity.this, repo.applyRemote(records), changed -> {
+                    // 寫入期間已切到別的範圍就交給那一次
+                    if (startMs == lastStartMs && endMs == lastEndMs) showLocalPaged(startMs, endMs);
                 });
             }
 
             @Override
-            public void onFailure(Call<List<DrivingRecordDto>> call, Throwable t) {
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    toast("連線錯誤：" + t.getMessage());
-                });
+            public void onFailure(Call<List<DrivingRecordDto>> c, Throwable t) {
+                if (c.isCanceled() || isDestroyed()) return;
+                cloudCall = null;
+                toast("連線錯誤：" + t.getMessage());
+                showLocalPaged(startMs, endMs);
             }
         });
     }
 
+    private void stopCloudFetch() {
+        if (cloudCall != null) {
+            cloudCall.cancel();
+            cloudCall = null;
+        }
+        cloudLoading = false;
+    }
+
     /** 解析 ISO8601；支援 Z 或 +08:00，回傳毫秒 */
-    private long parseIsoMillis(String iso) {
+    private static long parseIsoMillis(@Nullable String iso) {
         if (iso == null || iso.isEmpty()) return 0L;
+        SimpleDateFormat f = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX", Locale.US);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
         try {
-            java.text.SimpleDateFormat f = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX", java.util.Locale.US);
-            f.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
             return f.parse(iso).getTime();
         } catch (Exception e) {
             try {
-                String s = iso.split("\\.")[0] + "Z";
-                java.text.SimpleDateFormat f2 = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX", java.util.Locale.US);
-                f2.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
-                return f2.parse(s).getTime();
+                // 帶小數秒：去掉小數部分當 UTC
+                return f.parse(iso.split("\\.")[0] + "Z").getTime();
             } catch (Exception ignore) {
                 return 0L;
             }
@@ -497,13 +329,12 @@ public class HistoryActivity extends AppCompatActivity {
     }
 
     /** 把 fatigue_level 字串轉成分數；數字字串直接轉，否則用等級對應 */
-    private float mapFatigueLevelToScore(String level) {
+    private static float mapFatigueLevelToScore(@Nullable String level) {
         if (level == null) return 0f;
         try {
             return Float.parseFloat(level.trim());
         } catch (Exception ignore) { }
-        String v = level.trim().toUpperCase(java.util.Locale.ROOT);
-        switch (v) {
+        switch (level.trim().toUpperCase(Locale.ROOT)) {
             case "HIGH":   return 8.0f;
             case "MEDIUM": return 5.0f;
             case "LOW":    return 2.0f;
@@ -511,93 +342,22 @@ public class HistoryActivity extends AppCompatActivity {
         }
     }
 
-    // === 單筆上傳測試：把一筆資料 POST 到雲端（新 schema） ===
-    private void testUploadOneRecord() {
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
-
-        DrivingRecordDto dto = new DrivingRecordDto();
-        dto.member_id = (memberId == null ? TEMP_MEMBER_ID : memberId);
-        long now = System.currentTimeMillis();
-        dto.start_time = isoFromMillis(now);
-        dto.end_time   = isoFromMillis(now + 15 * 60_000L);
-        dto.location_start = "App";
-        dto.location_end   = "App";
-        dto.fatigue_level  = "6.5";
-        dto.fatigue_detected = true;
-
-        api.postDrivingRecord(dto).enqueue(new Callback<DrivingRecordDto>() {
-            @Override
-            public void onResponse(Call<DrivingRecordDto> call, Response<DrivingRecordDto> resp) {
-                if (!resp.isSuccessful() || resp.body() == null) {
-                    toast("上傳失敗，code=" + resp.code());
-                    return;
-                }
-                toast("上傳成功，id=" + resp.body().id);
-
-                io.execute(() -> {
-                    long when = parseIsoMillis(dto.start_time);
-                    FatigueRecord r = new FatigueRecord();
-                    r.setDetectedAt(when);
-                    r.setTimestampMs(when);
-                    r.setScore(mapFatigueLevelToScore(dto.fatigue_level));
-                    r.setServerId(resp.body().id == null ? null : String.valueOf(resp.body().id));
-                    r.setSynced(true);
-                    db.fatigueDao().insert(r);
-                    runOnUiThread(HistoryActivity.this::reloadAfterChange);
-                });
-            }
-
-            @Override
-            public void onFailure(Call<DrivingRecordDto> call, Throwable t) {
-                toast("連線錯誤：" + t.getMessage());
-            }
-        });
-    }
-
-    /** 把毫秒轉成 ISO8601（UTC，尾端 Z） */
-    private String isoFromMillis(long ms) {
-        java.text.SimpleDateFormat f = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", java.util.Locale.US);
-        f.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
-        return f.format(new java.util.Date(ms));
+    /** 載入完成（NotLoading）才更新空狀態；同步還在跑時 loading 繼續顯示 */
+    private void onLoadStates(CombinedLoadStates states) {
+        LoadState refresh = states.getRefresh();
+        pageLoading = refresh instanceof LoadState.Loading;
+        updateLoading();
+        if (pageLoading) return;
+        checkEmptyState();
+        if (refresh instanceof LoadState.Error) {
+            toast("讀取失敗：" + ((LoadState.Error) refresh).getError().getMessage());
+        }
     }
 
     /* ===== 重載邏輯：依目前範圍刷新 ===== */
     private void reloadAfterChange() {
-        if (USE_CLOUD_ONLY) {
-            if (lastStartMs == Long.MIN_VALUE && lastEndMs == Long.MAX_VALUE) {
-                cloudFetchAllThenShow(null, null);
-            } else {
-                cloudFetchAllThenShow(lastStartMs, lastEndMs);
-            }
-            return;
-        }
-
-        if (lastStartMs == Long.MIN_VALUE && lastEndMs == Long.MAX_VALUE) {
-            io.execute(() -> {
-                List<FatigueRecord> list = db.fatigueDao().getAllDesc();
-                runOnUiThread(() -> {
-                    adapter.setItems(list);
-                    checkEmptyState();
-                });
-            });
-        } else {
-            reloadRangeAfterSync();
-        }
-    }
-
-    private void reloadRangeAfterSync() {
-        if (USE_CLOUD_ONLY) {
-            cloudFetchAllThenShow(lastStartMs, lastEndMs);
-            return;
-        }
-        final long s = lastStartMs, e = lastEndMs;
-        io.execute(() -> {
-            List<FatigueRecord> list = db.fatigueDao().getByTimeRange(s, e);
-            runOnUiThread(() -> {
-                adapter.setItems(list);
-                checkEmptyState();
-            });
-        });
+        // 寫入 Room 後分頁會自動重載；這裡只補一次明確的 refresh
+        adapter.refresh();
     }
 
     /* ===== 空狀態 / Loading ===== */
@@ -608,6 +368,10 @@ public class HistoryActivity extends AppCompatActivity {
         rv.setVisibility(empty ? View.INVISIBLE : View.VISIBLE);
     }
 
+    private void updateLoading() {
+        showLoading(pageLoading || syncing || cloudLoading);
+    }
+
     private void showLoading(boolean show) {
         if (progress != null) {
             progress.setVisibility(show ? View.VISIBLE : View.GONE);
@@ -621,68 +385,63 @@ public class HistoryActivity extends AppCompatActivity {
                 .setMessage("確定要刪除所有疲勞紀錄嗎？此動作無法復原。")
                 .setPositiveButton("刪除", (d, w) -> {
                     showLoading(true);
-                    io.execute(() -> {
-                        db.fatigueDao().deleteAll();
-                        runOnUiThread(() -> {
-                            adapter.setItems(java.util.Collections.emptyList());
-                            checkEmptyState();
-                            showLoading(false);
-                            toast("已清空");
-                        });
+                    // 同步游標一併歸零，下次同步會重新下載伺服器資料
+                    repo.deliverWrite(this, repo.deleteAll(), ignored -> {
+                        // 本機分頁會因資料表清空自動重載
+                        updateLoading();
+                        toast("已清空");
                     });
                 })
                 .setNegativeButton("取消", null)
                 .show();
     }
 
-    /* ===== 匯出 CSV（依目前列表） ===== */
+    /* ===== 匯出 CSV（目前範圍；背景串流寫檔，不經過列表） ===== */
     private void exportCsvCurrent() {
-        try {
-            File dir = getExternalFilesDir(null);
-            if (dir == null) {
-                toast("路徑取得失敗");
-                return;
+        // 匯出中再按一次 = 取消
+        if (exportJob != null && !exportJob.isFinished()) {
+            exportJob.cancel();
+            return;
+        }
+        File dir = getExternalFilesDir(null);
+        if (dir == null) {
+            toast("路徑取得失敗");
+            return;
+        }
+        File file = new File(dir, "DriveSafe_" + System.currentTimeMillis() + ".csv");
+        // 全部紀錄可能很大，壓縮成 .csv.gz
+        boolean all = lastStartMs == Long.MIN_VALUE && lastEndMs == Long.MAX_VALUE;
+
+        FatigueCsvExporter.Listener listener = new FatigueCsvExporter.Listener() {
+            @Override public void onProgress(long written, long total) {
+                toolbar.setSubtitle(total > 0
+                        ? String.format(Locale.getDefault(), "匯出中 %d%%（再按一次取消）", written * 100 / total)
+                        : "匯出中…（再按一次取消）");
             }
-            String name = "DriveSafe_" + System.currentTimeMillis() + ".csv";
-            File file = new File(dir, name);
-
-            StringBuilder sb = new StringBuilder();
-            sb.append("id,timestamp_ms,time_local,score,synced,server_id\n");
-            SimpleDateFormat full = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.getDefault());
-
-            for (int i = 0; i < adapter.getItemCount(); i++) {
-                FatigueRecord r = adapter.getItem(i);
-                if (r == null) continue;
-                long effective = r.effectiveTime();
-                Long legacyTs = r.getTimestampMs();
-                String localTime = (effective > 0) ? full.format(new java.util.Date(effective)) : "";
-
-                sb.append(r.getId()).append(',')
-                        .append(legacyTs == null ? "" : legacyTs).append(',')
-                        .append('"').append(localTime).append('"').append(',')
-                        .append(r.getScore()).append(',')
-                        .append(r.isSynced() ? 1 : 0).append(',')
-                        .append(r.getServerId() == null ? "" : r.getServerId())
-                        .append('\n');
+            @Override public void onDone(@NonNull File out, long rows) {
+                toolbar.setSubtitle(null);
+                toast("已匯出 " + rows + " 筆：" + out.getAbsolutePath());
             }
-
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                fos.write(sb.toString().getBytes());
+            @Override public void onEmpty() {
+                toolbar.setSubtitle(null);
+                toast("沒有資料可匯出");
             }
-            toast("已匯出：" + file.getAbsolutePath());
-        } catch (Exception e) {
-            e.printStackTrace();
-            toast("匯出失敗：" + e.getMessage());
-        }
+            @Override public void onCancelled() {
+                toolbar.setSubtitle(null);
+                toast("已取消匯出");
+            }
+            @Override public void onError(@NonNull Exception e) {
+                toolbar.setSubtitle(null);
+                toast("匯出失敗：" + e.getMessage());
+            }
+        };
+
+        // 雲端清單模式也已合併進 Room，一律從 DB 串流
+        exportJob = exporter.exportRange(this, file, lastStartMs, lastEndMs, all, listener);
     }
 
     /* ===== 小工具 ===== */
     private void toast(String s) {
         Toast.makeText(HistoryActivity.this, s, Toast.LENGTH_SHORT).show();
     }
-
-    @Override protected void onDestroy() {
-        super.onDestroy();
-        if (io != null) io.shutdown();
-    }
 }
@@ -96,7 +96,7 @@ public class LoginActivity extends AppCompatActivity {
 
     /** 依序嘗試：/members/login（JSON）→ /login（JSON）→ /token（form） */
     private void tryLoginMembers(String user, String pass) {
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
+        ApiService api = ApiClient.api(BuildConfig.BASE_URL);
 
         LoginReq req = new LoginReq();
         req.email = user;     // 若後端用 username，將 LoginReq 改成 username 欄位並填入 user
@@ -119,7 +119,7 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void tryLoginJson(String user, String pass) {
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
+        ApiService api = ApiClient.api(BuildConfig.BASE_URL);
 
         LoginReq req = new LoginReq();
         req.email = user;
@@ -142,7 +142,7 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void tryLoginForm(String user, String pass) {
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
+        ApiService api = ApiClient.api(BuildConfig.BASE_URL);
 
         api.loginForm(user, pass).enqueue(new retrofit2.Callback<LoginResp>() {
             @Override public void onResponse(retrofit2.Call<LoginResp> call,
@@ -191,7 +191,7 @@ public class LoginActivity extends AppCompatActivity {
         new TokenStore(getApplicationContext()).save(token);
 
         // 2) 查 /members 取得 member_id 並保存；不管成功與否最後都進主頁
-        ApiService api = ApiClient.get(BuildConfig.BASE_URL).create(ApiService.class);
+        ApiService api = ApiClient.api(BuildConfig.BASE_URL);
         api.getMembers().enqueue(new retrofit2.Callback<java.util.List<MemberDto>>() {
             @Override
             public void onResponse(retrofit2.Call<java.util.List<MemberDto>> call,
@@ -21,8 +21,7 @@ import androidx.core.content.ContextCompat;
 import com.example.drivesafe.db.FatigueRecord;
 
 
-import com.example.drivesafe.db.AppDatabase;
-import com.example.drivesafe.sync.UploadWorker;
+import com.example.drivesafe.db.FatigueRecordWriter;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.common.InputImage;
@@ -40,9 +39,9 @@ public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_CAMERA_PERMISSION = 100;
 
-    // 後端（模擬器連本機）
-    private static final String BASE_URL = "http://10.0.2.2:8005/";
-    private static final String USER_ID  = "00000000-0000-0000-0000-000000000001";
+    // 後端（模擬器連本機）；DriveSafeApp 的寫入後上傳也用這組
+    static final String BASE_URL = "http://10.0.2.2:8005/";
+    static final String USER_ID  = "00000000-0000-0000-0000-000000000001";
 
     // —— 疲勞紀錄策略（可依需求調整）——
     private static final float FATIGUE_THRESHOLD = 5f;      // 幾分以上算「要記錄」
@@ -57,9 +56,8 @@ public class MainActivity extends AppCompatActivity {
     private BottomNavigationView bottomNav;
 
     private ExecutorService cameraExecutor;
-    private ExecutorService dbExecutor;
     private FaceDetector faceDetector;
-    private AppDatabase db;
+    private FatigueRecordWriter recordWriter;
 
     // 這三個只是示意（你之後可以換成真正的特徵/模型）
     private int   blinkCount = 0;
@@ -119,9 +117,8 @@ public class MainActivity extends AppCompatActivity {
         faceDetector   = FaceDetection.getClient(options);
         cameraExecutor = Executors.newSingleThreadExecutor();
 
-        // Room
-        db          = AppDatabase.getInstance(getApplicationContext());
-        dbExecutor  = Executors.newSingleThreadExecutor();
+        // Room：經由寫入緩衝批次寫入；寫入後的上傳在 DriveSafeApp 註冊
+        recordWriter = FatigueRecordWriter.getInstance(getApplicationContext());
 
         Log.i(TAG, "Main ready. BASE_URL=" + BASE_URL + " USER_ID=" + USER_ID);
     }
@@ -261,29 +258,25 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    /** 真正寫入 Room + 呼叫 WorkManager 上傳（背景） */
+    /** 放進寫入緩衝；達批次大小或時間門檻時批次寫入 Room 並排程上傳 */
     private void saveToDbAndEnqueueUpload(float score, long ts) {
-        dbExecutor.execute(() -> {
-            try {
-                long rowId = db.fatigueDao().insert(new FatigueRecord(ts, score));
-                lastSavedMs = ts;
-                Log.i(TAG, "[SAVE] local insert ok. rowId=" + rowId);
-
-                UploadWorker.enqueue(getApplicationContext(), BASE_URL, USER_ID);
-                Log.i(TAG, "[UPLOAD] enqueued");
-            } catch (Exception e) {
-                Log.e(TAG, "[SAVE] failed: " + e.getMessage(), e);
-            }
-        });
+        recordWriter.add(new FatigueRecord(ts, score));
+        lastSavedMs = ts;
     }
 
     /* ================= 收尾/權限 ================= */
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // 進背景前把緩衝排進寫入執行緒，不在主執行緒上等 DB
+        if (recordWriter != null) recordWriter.flushAsync();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (cameraExecutor != null) cameraExecutor.shutdown();
-        if (dbExecutor != null) dbExecutor.shutdown();
         if (faceDetector != null) faceDetector.close();
     }
 
@@ -2,19 +2,27 @@ package com.example.drivesafe.db;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 /**
  * Room Database
  * - version = 2（因為新增了 users 表）
- * - fallbackToDestructiveMigration()：結構變動直接重建 DB，避免 migration 當掉
+ * - version = 3：fatigue_records 加上 effectiveAt 與索引，用 MIGRATION_2_3 保留既有紀錄
+ * - version = 4：新增 fatigue_rollups（分/時/日彙總，桶以 UTC 對齊），MIGRATION_3_4 由既有紀錄回填
+ * - version = 5：新增 sync_state（增量同步游標），serverId 改為唯一索引
+ * - version = 6：fatigue_records 加上 clientId（上傳冪等鍵），既有紀錄補產生 UUID
+ * - 只有 version 1（沒有 migration）才直接重建 DB
+ * - schema 匯出到 app/schemas（androidTest 的 MigrationTest 用來驗證 migration）
  */
 @Database(
-        entities = { FatigueRecord.class, User.class }, // 加入 User
-        version = 2,
-        exportSchema = false
+        entities = { FatigueRecord.class, User.class, FatigueRollup.class, SyncState.class }, // 加入 User
+        version = 6,
+        exportSchema = true
 )
 public abstract class AppDatabase extends RoomDatabase {
 
@@ -22,6 +30,81 @@ public abstract class AppDatabase extends RoomDatabase {
 
     public abstract FatigueDao fatigueDao();
     public abstract UserDao userDao(); // 新增 UserDao
+    public abstract SyncStateDao syncStateDao();
+
+    /**
+     * 2 → 3：新增 effectiveAt（= 原本查詢裡的 CASE 運算式）並回填，再建索引
+     * 索引名稱需與 Room 依 @Index 產生的一致（index_表名_欄位），否則開 DB 時 schema 驗證失敗
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `fatigue_records` ADD COLUMN `effectiveAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `fatigue_records` SET `effectiveAt` = " +
+                    "CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_fatigue_records_effectiveAt` " +
+                    "ON `fatigue_records` (`effectiveAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_fatigue_records_userId_effectiveAt` " +
+                    "ON `fatigue_records` (`userId`, `effectiveAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_fatigue_records_synced_effectiveAt` " +
+                    "ON `fatigue_records` (`synced`, `effectiveAt`)");
+        }
+    };
+
+    /**
+     * 3 → 4：建立 fatigue_rollups（欄位需與 FatigueRollup 的 Room schema 一致），再由既有紀錄回填
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `fatigue_rollups` (" +
+                    "`userId` INTEGER NOT NULL, `resolutionMs` INTEGER NOT NULL, `bucketStart` INTEGER NOT NULL, " +
+                    "`sampleCount` INTEGER NOT NULL, `scoreSum` REAL NOT NULL, `scoreMin` REAL NOT NULL, " +
+                    "`scoreMax` REAL NOT NULL, `scoreP95` REAL NOT NULL, `sketch` BLOB NOT NULL, " +
+                    "PRIMARY KEY(`userId`, `resolutionMs`, `bucketStart`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_fatigue_rollups_resolutionMs_bucketStart` " +
+                    "ON `fatigue_rollups` (`resolutionMs`, `bucketStart`)");
+            FatigueRollups.backfill(db);
+        }
+    };
+
+    /**
+     * 4 → 5：建立 sync_state；serverId 改唯一索引
+     * 舊版重複下載可能留下同一 serverId 的多筆，先只留最早那筆，刪過紀錄所以 rollup 整個重建
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (" +
+                    "`scope` TEXT NOT NULL, `cursor` TEXT, `lastSyncAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`scope`))");
+            db.execSQL("DELETE FROM `fatigue_records` WHERE `serverId` IS NOT NULL AND `id` NOT IN (" +
+                    "SELECT MIN(`id`) FROM `fatigue_records` WHERE `serverId` IS NOT NULL GROUP BY `serverId`)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_fatigue_records_serverId` " +
+                    "ON `fatigue_records` (`serverId`)");
+            db.execSQL("DELETE FROM `fatigue_rollups`");
+            FatigueRollups.backfill(db);
+        }
+    };
+
+    /**
+     * 5 → 6：新增 clientId 並為既有紀錄產生 UUID v4（SQLite 沒有內建 uuid，用 randomblob 組）
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `fatigue_records` ADD COLUMN `clientId` TEXT");
+            db.execSQL("UPDATE `fatigue_records` SET `clientId` = " +
+                    "lower(hex(randomblob(4))) || '-' || lower(hex(randomblob(2))) || '-4' || " +
+                    "substr(lower(hex(randomblob(2))), 2) || '-' || " +
+                    "substr('89ab', 1 + (abs(random()) % 4), 1) || substr(lower(hex(randomblob(2))), 2) || '-' || " +
+                    "lower(hex(randomblob(6)))");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_fatigue_records_clientId` " +
+                    "ON `fatigue_records` (`clientId`)");
+        }
+    };
+
+    static final Migration[] MIGRATIONS = { MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6 };
 
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
@@ -32,7 +115,8 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class,
                                     "drivesafe.db"
                             )
-                            .fallbackToDestructiveMigration() // schema 變動時直接重建
+                            .addMigrations(MIGRATIONS)
+                            .fallbackToDestructiveMigrationFrom(1) // 太舊的版本沒有 migration，直接重建
                             .build();
                 }
             }
@@ -0,0 +1,231 @@
+package com.example.drivesafe.db;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 疲勞紀錄 CSV 匯出（串流）：
+ * - 用 keyset 分批查詢（每批 CHUNK 筆，依 effectiveAt、id 由舊到新），記憶體用量固定
+ * - 先寫 .part 暫存檔，完成才改名；取消或失敗會刪掉暫存檔
+ * - 可選 gzip（檔名加 .gz）；進度、完成、錯誤都回到主執行緒
+ * - 沒有任何一筆時不留檔案（連標頭都不留），改呼叫 onEmpty
+ * - 跟著 LifecycleOwner：DESTROYED 時自動取消，之後的回呼都不會送出
+ *
+ * 呼叫端提供背景 Executor（不要用主執行緒）；export 方法要在主執行緒呼叫。
+ */
+public final class FatigueCsvExporter {
+
+    private static final int CHUNK = 500;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 200L;
+    static final String HEADER = "id,timestamp_ms,time_local,score,synced,server_id";
+
+    /** 回呼都在主執行緒 */
+    public interface Listener {
+        /** total < 0 表示總數未知 */
+        void onProgress(long written, long total);
+        void onDone(@NonNull File file, long rows);
+        /** 範圍內沒有紀錄，不產生檔案 */
+        void onEmpty();
+        void onCancelled();
+        void onError(@NonNull Exception e);
+    }
+
+    /** 執行中的匯出；cancel() 後會在下一筆前停止 */
+    public static final class Job {
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        public void cancel() { cancelled.set(true); }
+        public boolean isCancelled() { return cancelled.get(); }
+        public boolean isFinished() { return finished.get(); }
+    }
+
+    /** 依序提供下一批紀錄；回傳空清單表示結束 */
+    private interface ChunkSource {
+        @NonNull List<FatigueRecord> next(@Nullable FatigueRecord last);
+    }
+
+    private final AppDatabase db;
+    private final Executor io;
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    public FatigueCsvExporter(@NonNull AppDatabase db, @NonNull Executor io) {
+        this.db = db;
+        this.io = io;
+    }
+
+    /** 匯出本機 effectiveAt 落在 [start, end] 的紀錄；全部用 Long.MIN_VALUE / Long.MAX_VALUE */
+    @NonNull
+    public Job exportRange(@NonNull LifecycleOwner owner, @NonNull File out, long start, long end, boolean gzip,
+                           @NonNull Listener listener) {
+        FatigueDao dao = db.fatigueDao();
+        return run(owner, out, gzip, listener,
+                () -> dao.countBetween(start, end),
+                last -> last == null
+                        ? dao.pageNewerThan(start, end, Long.MIN_VALUE, Long.MIN_VALUE, CHUNK)
+                        : dao.pageNewerThan(start, end, last.getEffectiveAt(), last.getId(), CHUNK));
+    }
+
+    private interface Counter {
+        long count();
+    }
+
+    private Job run(LifecycleOwner owner, File out, boolean gzip, Listener listener, Counter counter,
+                    ChunkSource source) {
+        final Job job = new Job();
+        final File target = gzip ? new File(out.getPath() + ".gz") : out;
+        final File part = new File(target.getPath() + ".part");
+        final Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            job.cancel();
+            job.finished.set(true);
+            return job;
+        }
+        final LifecycleEventObserver canceller = (src, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) job.cancel();
+        };
+        lifecycle.addObserver(canceller);
+        // 回呼只在畫面還在時送出；最後一個回呼之後移除 observer
+        final Gate gate = new Gate(lifecycle, canceller);
+
+        io.execute(() -> {
+            long written = 0;
+            try {
+                long total = counter.count();
+                gate.post(() -> listener.onProgress(0, total));
+                SimpleDateFormat localFmt = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.getDefault());
+                StringBuilder line = new StringBuilder(96);
+                long lastProgressMs = System.currentTimeMillis();
+
+                try (Writer w = openWriter(part, gzip)) {
+                    w.write(HEADER);
+                    w.write('\n');
+                    FatigueRecord last = null;
+                    List<FatigueRecord> chunk;
+                    while (!job.isCancelled() && !(chunk = source.next(last)).isEmpty()) {
+                        for (FatigueRecord r : chunk) {
+                            if (job.isCancelled()) break;
+                            line.setLength(0);
+                            appendRow(line, r, localFmt);
+                            w.append(line);
+                            written++;
+                        }
+                        last = chunk.get(chunk.size() - 1);
+                        long now = System.currentTimeMillis();
+                        if (now - lastProgressMs >= PROGRESS_INTERVAL_MS) {
+                            lastProgressMs = now;
+                            final long n = written;
+                            gate.post(() -> listener.onProgress(n, total));
+                        }
+                    }
+                }
+
+                if (job.isCancelled()) {
+                    //noinspection ResultOfMethodCallIgnored
+                    part.delete();
+                    gate.finish(listener::onCancelled);
+                    return;
+                }
+                if (written == 0) {
+                    //noinspection ResultOfMethodCallIgnored
+                    part.delete();
+                    gate.finish(listener::onEmpty);
+                    return;
+                }
+                if (target.exists() && !target.delete()) throw new IOException("無法覆寫 " + target);
+                if (!part.renameTo(target)) throw new IOException("無法建立 " + target);
+                final long rows = written;
+                gate.finish(() -> listener.onDone(target, rows));
+            } catch (Exception e) {
+                //noinspection ResultOfMethodCallIgnored
+                part.delete();
+                gate.finish(() -> listener.onError(e));
+            } finally {
+                job.finished.set(true);
+            }
+        });
+        return job;
+    }
+
+    private static Writer openWriter(File file, boolean gzip) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            if (gzip) os = new GZIPOutputStream(os, BUFFER_BYTES);
+            return new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER_BYTES);
+        } catch (IOException e) {
+            os.close();
+            throw e;
+        }
+    }
+
+    /** timestamp_ms 用有效時間（effectiveTime），與列表/圖表一致 */
+    static void appendRow(StringBuilder sb, FatigueRecord r, SimpleDateFormat localFmt) {
+        long effective = r.effectiveTime();
+        sb.append(r.getId()).append(',')
+                .append(effective).append(',')
+                .append('"').append(effective > 0 ? localFmt.format(new Date(effective)) : "").append('"').append(',')
+                .append(r.getScore()).append(',')
+                .append(r.isSynced() ? 1 : 0).append(',');
+        appendField(sb, r.getServerId());
+        sb.append('\n');
+    }
+
+    /** 含逗號、引號或換行的欄位以雙引號包起來（RFC 4180） */
+    static void appendField(StringBuilder sb, @Nullable String value) {
+        if (value == null) return;
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /** 主執行緒回呼的閘門：owner DESTROYED 後不再送出；finish() 送出最後一個並移除 observer */
+    private final class Gate {
+        private final Lifecycle lifecycle;
+        private final LifecycleEventObserver observer;
+
+        Gate(Lifecycle lifecycle, LifecycleEventObserver observer) {
+            this.lifecycle = lifecycle;
+            this.observer = observer;
+        }
+
+        void post(Runnable r) {
+            main.post(() -> {
+                if (lifecycle.getCurrentState() != Lifecycle.State.DESTROYED) r.run();
+            });
+        }
+
+        void finish(Runnable r) {
+            main.post(() -> {
+                lifecycle.removeObserver(observer);
+                if (lifecycle.getCurrentState() != Lifecycle.State.DESTROYED) r.run();
+            });
+        }
+    }
+}
@@ -6,61 +6,155 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-/** DAO：加入 LiveData 觀察版（給 AdminActivity 用），並保留同步/統計方法 */
+/**
+ * DAO：加入 LiveData 觀察版（給 AdminActivity 用），並保留同步/統計方法
+ * 時間條件一律用 effectiveAt（有索引），不要再寫 CASE 運算式，否則會整表掃描
+ *
+ * 寫入一律走 insert / insertAll / update / delete / deleteAll：
+ * 它們在同一個 transaction 內一併維護 fatigue_rollups；xxxRaw 只給這些方法內部使用
+ */
 @Dao
 public interface FatigueDao {
 
     // ---------- INSERT ----------
     @Insert(onConflict = OnConflictStrategy.ABORT)
-    long insert(FatigueRecord r);
+    long insertRaw(FatigueRecord r);
 
-    /** 批次新增（伺服器寫回本機常用）；REPLACE 避免重複衝突 */
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    long[] insertAll(List<FatigueRecord> list);
+    long[] insertAllRaw(List<FatigueRecord> list);
+
+    @Transaction
+    default long insert(FatigueRecord r) {
+        r.ensureClientId();
+        long id = insertRaw(r);
+        FatigueRollups.onInserted(this, Collections.singletonList(r), Collections.emptyList());
+        return id;
+    }
+
+    /** 批次新增（伺服器寫回本機常用）；REPLACE 避免重複衝突，被覆蓋的舊紀錄所在的天會重算 rollup */
+    @Transaction
+    default long[] insertAll(List<FatigueRecord> list) {
+        for (FatigueRecord r : list) r.ensureClientId();
+        List<Long> ids = FatigueRollups.assignedIds(list);
+        List<FatigueRecord> replaced = ids.isEmpty() ? Collections.emptyList() : getByIds(ids);
+        long[] rowIds = insertAllRaw(list);
+        FatigueRollups.onInserted(this, list, replaced);
+        return rowIds;
+    }
 
     // ---------- UPDATE / DELETE ----------
     @Update
-    int update(FatigueRecord r);
+    int updateRaw(FatigueRecord r);
 
     @Delete
-    int delete(FatigueRecord r);
+    int deleteRaw(FatigueRecord r);
 
-    /** 全刪（重置/除錯） */
     @Query("DELETE FROM fatigue_records")
-    void deleteAll();
+    void deleteAllRaw();
+
+    @Transaction
+    default int update(FatigueRecord r) {
+        FatigueRecord before = getById(r.getId());
+        int n = updateRaw(r);
+        FatigueRollups.onChanged(this, before, r);
+        return n;
+    }
+
+    @Transaction
+    default int delete(FatigueRecord r) {
+        FatigueRecord before = getById(r.getId());
+        int n = deleteRaw(r);
+        FatigueRollups.onChanged(this, before, null);
+        return n;
+    }
+
+    /** 全刪（重置/除錯）；同步游標一併歸零，下次同步才會把伺服器資料重新抓回來 */
+    @Transaction
+    default void deleteAll() {
+        deleteAllRaw();
+        deleteAllRollups();
+        resetSyncCursors();
+    }
 
     /** 同 deleteAll；AdminActivity 會呼叫這個名字 */
-    @Query("DELETE FROM fatigue_records")
-    void clearAll();
+    default void clearAll() {
+        deleteAll();
+    }
 
     // ---------- 查詢（同步/一次性取用） ----------
+    @Query("SELECT * FROM fatigue_records WHERE id = :id")
+    FatigueRecord getById(long id);
+
+    @Query("SELECT * FROM fatigue_records WHERE id IN (:ids)")
+    List<FatigueRecord> getByIds(List<Long> ids);
+
+    @Query("SELECT * FROM fatigue_records WHERE serverId = :serverId")
+    FatigueRecord getByServerId(String serverId);
+
+    /** serverId 有唯一索引；一次最多約 900 個（SQLite 參數上限） */
+    @Query("SELECT * FROM fatigue_records WHERE serverId IN (:serverIds)")
+    List<FatigueRecord> getByServerIds(List<String> serverIds);
+
+    @Query("SELECT * FROM fatigue_records WHERE clientId IN (:clientIds)")
+    List<FatigueRecord> getByClientIds(List<String> clientIds);
+
+    /** 單一使用者的區間（重算 rollup 用，走 (userId, effectiveAt) 索引） */
+    @Query("SELECT * FROM fatigue_records " +
+            "WHERE userId = :userId AND effectiveAt BETWEEN :start AND :end " +
+            "ORDER BY effectiveAt ASC")
+    List<FatigueRecord> getUserRecordsBetween(long userId, long start, long end);
+
     /** 以有效時間由新到舊；一次性清單 */
     @Query("SELECT * FROM fatigue_records " +
-            "ORDER BY (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) DESC")
+            "ORDER BY effectiveAt DESC")
     List<FatigueRecord> getAllDesc();
 
     /** 區間查詢（回傳由早到晚，畫折線自然）；一次性清單 */
     @Query("SELECT * FROM fatigue_records " +
-            "WHERE (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) " +
-            "BETWEEN :start AND :end " +
-            "ORDER BY (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) ASC")
+            "WHERE effectiveAt BETWEEN :start AND :end " +
+            "ORDER BY effectiveAt ASC")
     List<FatigueRecord> getByTimeRange(long start, long end);
 
+    // ---------- 分頁（keyset：依 effectiveAt、id；FatigueRecordPagingSource 與 CSV 匯出用） ----------
+    // 多寫一次 effectiveAt <= / >= 讓 SQLite 能用 effectiveAt 索引（索引本身含 rowid = id）
+    @Query("SELECT * FROM fatigue_records " +
+            "WHERE effectiveAt BETWEEN :start AND :end " +
+            "ORDER BY effectiveAt DESC, id DESC LIMIT :limit")
+    List<FatigueRecord> pageNewest(long start, long end, int limit);
+
+    /** 排在 (atMs, id) 之後（較舊）的下一頁 */
+    @Query("SELECT * FROM fatigue_records " +
+            "WHERE effectiveAt BETWEEN :start AND :end AND effectiveAt <= :atMs " +
+            "AND (effectiveAt < :atMs OR id < :id) " +
+            "ORDER BY effectiveAt DESC, id DESC LIMIT :limit")
+    List<FatigueRecord> pageOlderThan(long start, long end, long atMs, long id, int limit);
+
+    /** 排在 (atMs, id) 之前（較新）的上一頁；回傳由舊到新，呼叫端自行反轉 */
+    @Query("SELECT * FROM fatigue_records " +
+            "WHERE effectiveAt BETWEEN :start AND :end AND effectiveAt >= :atMs " +
+            "AND (effectiveAt > :atMs OR id > :id) " +
+            "ORDER BY effectiveAt ASC, id ASC LIMIT :limit")
+    List<FatigueRecord> pageNewerThan(long start, long end, long atMs, long id, int limit);
+
     // ---------- 查詢（UI 觀察用 LiveData；AdminActivity 直接用這兩個） ----------
     /** 以有效時間由新到舊；LiveData 會即時更新列表 */
     @Query("SELECT * FROM fatigue_records " +
-            "ORDER BY (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) DESC")
+            "ORDER BY effectiveAt DESC")
     LiveData<List<FatigueRecord>> observeAll();
 
     /** 區間（由早到晚）；LiveData 會即時更新列表與圖表 */
     @Query("SELECT * FROM fatigue_records " +
-            "WHERE (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) " +
-            "BETWEEN :start AND :end " +
-            "ORDER BY (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) ASC")
+            "WHERE effectiveAt BETWEEN :start AND :end " +
+            "ORDER BY effectiveAt ASC")
     LiveData<List<FatigueRecord>> observeBetween(long start, long end);
 
     // ---------- 統計（可選） ----------
@@ -70,26 +164,148 @@ public interface FatigueDao {
     @Query("SELECT AVG(score) FROM fatigue_records")
     Float avgScore();
 
+    @Query("SELECT COUNT(*) FROM fatigue_records WHERE effectiveAt BETWEEN :start AND :end")
+    long countBetween(long start, long end);
+
     @Query("SELECT AVG(score) FROM fatigue_records " +
-            "WHERE (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) BETWEEN :start AND :end")
+            "WHERE effectiveAt BETWEEN :start AND :end")
     Float avgScoreBetween(long start, long end);
 
     @Query("SELECT MAX(score) FROM fatigue_records " +
-            "WHERE (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) BETWEEN :start AND :end")
+            "WHERE effectiveAt BETWEEN :start AND :end")
     Float maxScoreBetween(long start, long end);
 
     @Query("SELECT MIN(score) FROM fatigue_records " +
-            "WHERE (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) BETWEEN :start AND :end")
+            "WHERE effectiveAt BETWEEN :start AND :end")
     Float minScoreBetween(long start, long end);
 
     // ---------- 同步（UploadWorker 用） ----------
     /** 未同步清單（由早到晚） */
     @Query("SELECT * FROM fatigue_records " +
             "WHERE synced = 0 " +
-            "ORDER BY (CASE WHEN detectedAt=0 THEN COALESCE(timestampMs,0) ELSE detectedAt END) ASC")
+            "ORDER BY effectiveAt ASC")
     List<FatigueRecord> getUnsynced();
 
-    /** 單筆設為已同步並寫入 serverId */
+    /**
+     * 最早的一批未同步紀錄（分批上傳；已上傳的批次標成 synced 後自然不會再出現）
+     * 沒有時間的舊資料（effectiveAt = 0）也要上傳，和 getUnsynced 一樣不過濾；它們會排在最前面
+     */
+    @Query("SELECT * FROM fatigue_records " +
+            "WHERE synced = 0 " +
+            "ORDER BY effectiveAt ASC, id ASC LIMIT :limit")
+    List<FatigueRecord> getUnsyncedChunk(int limit);
+
     @Query("UPDATE fatigue_records SET synced = 1, serverId = :serverId WHERE id = :localId")
-    int markSynced(long localId, String serverId);
+    int markSyncedRaw(long localId, String serverId);
+
+    /**
+     * 單筆設為已同步並寫入 serverId
+     * 增量同步可能已先把同一筆（伺服器版本）抓下來，先刪掉那筆，避免 serverId 唯一索引衝突
+     */
+    @Transaction
+    default int markSynced(long localId, String serverId) {
+        FatigueRecord dup = getByServerId(serverId);
+        if (dup != null && dup.getId() != localId) delete(dup);
+        return markSyncedRaw(localId, serverId);
+    }
+
+    /** 補上舊資料缺的 clientId（不影響 rollup，不必走 update） */
+    @Query("UPDATE fatigue_records SET clientId = :clientId WHERE id = :id")
+    int setClientId(long id, String clientId);
+
+    /** 一批上傳結果一次寫回（localId → serverId） */
+    @Transaction
+    default int markSyncedAll(Map<Long, String> serverIdsByLocalId) {
+        int n = 0;
+        for (Map.Entry<Long, String> e : serverIdsByLocalId.entrySet()) {
+            n += markSynced(e.getKey(), e.getValue());
+        }
+        return n;
+    }
+
+    // ---------- 增量同步（FatigueSyncWorker 用） ----------
+    /**
+     * 套用一頁伺服器變更（以 serverId 對應本機紀錄，找不到再用 clientId）：
+     * - 已存在：內容不同才 update（保留本機 id / userId / clientId）
+     *   本機剛上傳、還沒寫回 serverId 的紀錄會用 clientId 對上，不會多出一筆
+     * - 不存在：insertAll 新增
+     * - deletedServerIds：墓碑，本機有就刪
+     * 呼叫端需確保同一頁內 serverId 不重複；回傳實際變動筆數
+     */
+    @Transaction
+    default int applyRemoteChanges(List<FatigueRecord> upserts, List<String> deletedServerIds) {
+        int changed = 0;
+        if (!deletedServerIds.isEmpty()) {
+            for (FatigueRecord old : getByServerIds(deletedServerIds)) changed += delete(old);
+        }
+        if (upserts.isEmpty()) return changed;
+
+        List<String> serverIds = new ArrayList<>(upserts.size());
+        List<String> clientIds = new ArrayList<>();
+        for (FatigueRecord r : upserts) {
+            serverIds.add(r.getServerId());
+            if (r.getClientId() != null) clientIds.add(r.getClientId());
+        }
+        Map<String, FatigueRecord> byServerId = new HashMap<>();
+        for (FatigueRecord old : getByServerIds(serverIds)) byServerId.put(old.getServerId(), old);
+        Map<String, FatigueRecord> byClientId = new HashMap<>();
+        if (!clientIds.isEmpty()) {
+            for (FatigueRecord old : getByClientIds(clientIds)) byClientId.put(old.getClientId(), old);
+        }
+
+        RemoteChanges plan = RemoteChanges.match(upserts, byServerId, byClientId);
+        for (FatigueRecord r : plan.updates) changed += update(r);
+        if (!plan.inserts.isEmpty()) {
+            insertAll(plan.inserts);
+            changed += plan.inserts.size();
+        }
+        return changed;
+    }
+
+    @Query("DELETE FROM sync_state WHERE scope LIKE 'fatigue_records:%'")
+    void resetSyncCursors();
+
+    // ---------- Rollup（圖表/統計用；由上面的寫入方法維護） ----------
+    @Query("SELECT * FROM fatigue_rollups " +
+            "WHERE userId = :userId AND resolutionMs = :resolutionMs AND bucketStart = :bucketStart")
+    FatigueRollup getRollup(long userId, long resolutionMs, long bucketStart);
+
+    /** bucketStart 落在區間內的桶（各使用者分開，由早到晚） */
+    @Query("SELECT * FROM fatigue_rollups " +
+            "WHERE resolutionMs = :resolutionMs AND bucketStart BETWEEN :start AND :end " +
+            "ORDER BY bucketStart ASC")
+    List<FatigueRollup> getRollupsBetween(long resolutionMs, long start, long end);
+
+    @Query("SELECT * FROM fatigue_rollups " +
+            "WHERE userId = :userId AND resolutionMs = :resolutionMs AND bucketStart BETWEEN :start AND :end " +
+            "ORDER BY bucketStart ASC")
+    List<FatigueRollup> getUserRollupsBetween(long userId, long resolutionMs, long start, long end);
+
+    @Query("SELECT * FROM fatigue_rollups WHERE resolutionMs = :resolutionMs")
+    List<FatigueRollup> getRollupsAt(long resolutionMs);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertRollups(List<FatigueRollup> rows);
+
+    @Query("DELETE FROM fatigue_rollups " +
+            "WHERE userId = :userId AND bucketStart BETWEEN :start AND :end")
+    void deleteUserRollupsBetween(long userId, long start, long end);
+
+    @Query("DELETE FROM fatigue_rollups")
+    void deleteAllRollups();
+
+    /** 區間內各桶（跨使用者合併），由早到晚；resolutionMs 用 FatigueRollup.resolutionFor() 挑 */
+    default List<FatigueRollup> rollupSeries(long start, long end, long resolutionMs) {
+        return FatigueRollups.series(this, start, end, resolutionMs);
+    }
+
+    /** 區間總計（sampleCount / 平均 / 最小 / 最大 / p95） */
+    default FatigueRollup rollupSummary(long start, long end) {
+        return FatigueRollups.summary(this, start, end);
+    }
+
+    /** 全部紀錄的總計（只讀每天一筆） */
+    default FatigueRollup rollupSummaryAll() {
+        return FatigueRollups.summarize(getRollupsAt(FatigueRollup.DAY));
+    }
 }
@@ -4,18 +4,33 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.util.UUID;
+
 /**
  * 疲勞紀錄實體：
  * - userId: 關聯 users 表
  * - detectedAt：新時間欄位（毫秒，優先）
  * - timestampMs：舊欄位（毫秒，可為 null）
  * - effectiveTime()：統一對外時間
+ * - effectiveAt：effectiveTime() 的實體欄位（寫入時同步），讓區間查詢/排序走索引
+ * - serverId：唯一（null 可重複），增量同步以它對應本機紀錄
+ * - clientId：本機產生的 UUID（DAO 新增時補上），上傳時當冪等鍵，重送不會在伺服器產生重複資料
  *
  * UI 相容用 getter/setter：fatigueLevel / sourceDevice / blinks / yawns / eyesClosedMs
  */
-@Entity(tableName = "fatigue_records")
+@Entity(
+        tableName = "fatigue_records",
+        indices = {
+                @Index(value = { "effectiveAt" }),
+                @Index(value = { "userId", "effectiveAt" }),
+                @Index(value = { "synced", "effectiveAt" }),
+                @Index(value = { "serverId" }, unique = true),
+                @Index(value = { "clientId" }, unique = true)
+        }
+)
 public class FatigueRecord {
 
     @PrimaryKey(autoGenerate = true)
@@ -30,6 +45,10 @@ public class FatigueRecord {
     @Nullable
     private String serverId;
 
+    @ColumnInfo(name = "clientId")
+    @Nullable
+    private String clientId;
+
     @ColumnInfo(name = "detectedAt")
     private long detectedAt; // 0 表示未設定
 
@@ -37,6 +56,10 @@ public class FatigueRecord {
     @Nullable
     private Long timestampMs; // 舊欄位
 
+    /** = effectiveTime()；由時間 setter 維護，不要另外寫 */
+    @ColumnInfo(name = "effectiveAt", defaultValue = "0")
+    private long effectiveAt;
+
     @ColumnInfo(name = "score")
     private float score;
 
@@ -50,6 +73,7 @@ public class FatigueRecord {
     public FatigueRecord(long detectedAt, float score) {
         this.detectedAt = detectedAt;
         this.timestampMs = detectedAt;
+        this.effectiveAt = detectedAt;
         this.score = score;
         this.synced = false;
         this.userId = 0; // 預設 0（未知使用者）
@@ -60,6 +84,22 @@ public class FatigueRecord {
         return new FatigueRecord(System.currentTimeMillis(), score);
     }
 
+    /** 複製一份（分頁清單持有的物件不能直接改，否則 DiffUtil 比不出差異、列不會重綁） */
+    @NonNull
+    public FatigueRecord copy() {
+        FatigueRecord c = new FatigueRecord();
+        c.id = id;
+        c.userId = userId;
+        c.serverId = serverId;
+        c.clientId = clientId;
+        c.detectedAt = detectedAt;
+        c.timestampMs = timestampMs;
+        c.effectiveAt = effectiveAt;
+        c.score = score;
+        c.synced = synced;
+        return c;
+    }
+
     // ==== 小工具方法 ====
     public long effectiveTime() {
         if (detectedAt != 0) return detectedAt;
@@ -69,6 +109,7 @@ public class FatigueRecord {
     public void setBothTimes(long tsMillis) {
         this.detectedAt = tsMillis;
         this.timestampMs = tsMillis;
+        syncEffectiveAt();
     }
 
     public long safeTimestampMs() {
@@ -82,6 +123,16 @@ public class FatigueRecord {
         if ((timestampMs == null || timestampMs == 0) && detectedAt > 0) {
             timestampMs = detectedAt;
         }
+        syncEffectiveAt();
+    }
+
+    /** 還沒有 clientId 就產生一個（FatigueDao.insert / insertAll 會呼叫） */
+    public void ensureClientId() {
+        if (clientId == null || clientId.isEmpty()) clientId = UUID.randomUUID().toString();
+    }
+
+    private void syncEffectiveAt() {
+        effectiveAt = effectiveTime();
     }
 
     // ==== 相容用 Getter/Setter（不入庫）====
@@ -110,11 +161,18 @@ public class FatigueRecord {
     public @Nullable String getServerId() { return serverId; }
     public void setServerId(@Nullable String serverId) { this.serverId = serverId; }
 
+    public @Nullable String getClientId() { return clientId; }
+    public void setClientId(@Nullable String clientId) { this.clientId = clientId; }
+
     public long getDetectedAt() { return detectedAt; }
-    public void setDetectedAt(long detectedAt) { this.detectedAt = detectedAt; }
+    public void setDetectedAt(long detectedAt) { this.detectedAt = detectedAt; syncEffectiveAt(); }
 
     public @Nullable Long getTimestampMs() { return timestampMs; }
-    public void setTimestampMs(@Nullable Long timestampMs) { this.timestampMs = timestampMs; }
+    public void setTimestampMs(@Nullable Long timestampMs) { this.timestampMs = timestampMs; syncEffectiveAt(); }
+
+    public long getEffectiveAt() { return effectiveAt; }
+    /** 給 Room 讀取用；一般程式請改時間欄位 */
+    public void setEffectiveAt(long effectiveAt) { this.effectiveAt = effectiveAt; }
 
     public float getScore() { return score; }
     public void setScore(float score) { this.score = score; }
@@ -129,8 +187,10 @@ public class FatigueRecord {
                 "id=" + id +
                 ", userId=" + userId +
                 ", serverId=" + serverId +
+                ", clientId=" + clientId +
                 ", detectedAt=" + detectedAt +
                 ", timestampMs=" + timestampMs +
+                ", effectiveAt=" + effectiveAt +
                 ", score=" + score +
                 ", synced=" + synced +
                 '}';
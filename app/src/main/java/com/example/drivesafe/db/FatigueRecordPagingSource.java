@@ -0,0 +1,150 @@
+package com.example.drivesafe.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+import androidx.paging.PagingState;
+import androidx.room.InvalidationTracker;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 疲勞紀錄分頁（keyset）：
+ * - 由新到舊排序 (effectiveAt DESC, id DESC)，key = 邊界那一筆的 (effectiveAt, id)
+ * - 往下載入「比最後一筆舊」、往上載入「比第一筆新」，不用 OFFSET，翻到很後面也一樣快
+ * - fatigue_records 變動時 invalidate()，Pager 會從目前可見位置附近重載
+ *
+ * Room 內建的 PagingSource 是 LIMIT/OFFSET，越往後越慢，所以自己實作。
+ */
+public class FatigueRecordPagingSource
+        extends ListenableFuturePagingSource<FatigueRecordPagingSource.Key, FatigueRecord> {
+
+    public static final int PAGE_SIZE = 50;
+
+    /** 頁面邊界：該筆紀錄的 (effectiveAt, id) */
+    public static final class Key {
+        final long effectiveAt;
+        final long id;
+
+        Key(long effectiveAt, long id) {
+            this.effectiveAt = effectiveAt;
+            this.id = id;
+        }
+
+        static Key of(@NonNull FatigueRecord r) {
+            return new Key(r.getEffectiveAt(), r.getId());
+        }
+    }
+
+    private final AppDatabase db;
+    private final long start, end;
+    private final AtomicBoolean observing = new AtomicBoolean(false);
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("fatigue_records") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate();
+        }
+    };
+
+    /** start / end 為 effectiveAt 的閉區間；全部用 Long.MIN_VALUE / Long.MAX_VALUE */
+    public FatigueRecordPagingSource(@NonNull AppDatabase db, long start, long end) {
+        this.db = db;
+        this.start = start;
+        this.end = end;
+        registerInvalidatedCallback(() -> {
+            if (observing.get()) db.getInvalidationTracker().removeObserver(observer);
+            return kotlin.Unit.INSTANCE;
+        });
+    }
+
+    /** 給列表用的 LiveData；每次資料變動會送出新的 PagingData */
+    @NonNull
+    public static LiveData<PagingData<FatigueRecord>> liveData(@NonNull AppDatabase db, long start, long end) {
+        Pager<Key, FatigueRecord> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PAGE_SIZE / 2, false, PAGE_SIZE * 2),
+                () -> new FatigueRecordPagingSource(db, start, end));
+        return PagingLiveData.getLiveData(pager);
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Key, FatigueRecord>> loadFuture(@NonNull LoadParams<Key> params) {
+        ListenableFutureTask<LoadResult<Key, FatigueRecord>> task = ListenableFutureTask.create(() -> {
+            try {
+                return load(params);
+            } catch (Exception e) {
+                return new LoadResult.Error<>(e);
+            }
+        });
+        db.getQueryExecutor().execute(task);
+        return task;
+    }
+
+    private LoadResult<Key, FatigueRecord> load(LoadParams<Key> params) {
+        if (getInvalid()) return new LoadResult.Invalid<>();
+        // addObserver 會碰 DB，放在查詢執行緒上、第一次載入時才註冊
+        if (observing.compareAndSet(false, true)) {
+            db.getInvalidationTracker().addObserver(observer);
+            // 註冊前後剛好被 invalidate：callback 可能已跑過而沒移除，這裡補移除（重複移除無妨）
+            if (getInvalid()) {
+                db.getInvalidationTracker().removeObserver(observer);
+                return new LoadResult.Invalid<>();
+            }
+        }
+
+        FatigueDao dao = db.fatigueDao();
+        Key key = params.getKey();
+        int limit = params.getLoadSize();
+
+        if (params instanceof LoadParams.Prepend) {
+            return newerPage(dao.pageNewerThan(start, end, key.effectiveAt, key.id, limit), limit);
+        }
+        // Refresh / Append：往舊的方向
+        List<FatigueRecord> older = (key == null)
+                ? dao.pageNewest(start, end, limit)
+                : dao.pageOlderThan(start, end, key.effectiveAt, key.id, limit);
+        return olderPage(older, key, limit);
+    }
+
+    /** prepend：查詢結果由舊到新，翻成由新到舊；不足一頁表示已到最新 */
+    @NonNull
+    static LoadResult.Page<Key, FatigueRecord> newerPage(@NonNull List<FatigueRecord> newer, int limit) {
+        Collections.reverse(newer);
+        if (newer.isEmpty()) return new LoadResult.Page<>(newer, null, null);
+        Key prev = newer.size() < limit ? null : Key.of(newer.get(0));
+        return new LoadResult.Page<>(newer, prev, Key.of(newer.get(newer.size() - 1)));
+    }
+
+    /** refresh / append：由新到舊；從最上面開始的 refresh（key == null）沒有上一頁 */
+    @NonNull
+    static LoadResult.Page<Key, FatigueRecord> olderPage(@NonNull List<FatigueRecord> older, @Nullable Key key,
+                                                        int limit) {
+        if (older.isEmpty()) return new LoadResult.Page<>(older, null, null);
+        Key prev = (key == null) ? null : Key.of(older.get(0));
+        Key next = older.size() < limit ? null : Key.of(older.get(older.size() - 1));
+        return new LoadResult.Page<>(older, prev, next);
+    }
+
+    /** 重載時從目前可見位置那一筆（含）開始，上方再用 prepend 補回 */
+    @Nullable
+    @Override
+    public Key getRefreshKey(@NonNull PagingState<Key, FatigueRecord> state) {
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) return null;
+        FatigueRecord item = state.closestItemToPosition(anchor);
+        if (item == null) return null;
+        // pageOlderThan 是嚴格小於，id + 1 讓這一筆本身也包含在內
+        return new Key(item.getEffectiveAt(), item.getId() + 1);
+    }
+}
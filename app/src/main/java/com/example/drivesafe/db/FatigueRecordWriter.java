@@ -0,0 +1,173 @@
+package com.example.drivesafe.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 疲勞紀錄寫入緩衝（write-behind）：
+ * - add() 只放進記憶體；同一使用者在 COALESCE_WINDOW_MS 內的紀錄合併成一筆（保留較高分數）
+ * - 累積 MAX_BATCH 筆或第一筆進來後 FLUSH_DELAY_MS，在同一個 transaction 內 insertAll 一次寫入
+ *   （fatigue_rollups 也在同一個 transaction 內更新）
+ * - 寫入後呼叫 afterFlush（例如排一次唯一的上傳工作），而不是每筆都排
+ * - onStop / onTrimMemory 呼叫 flushAsync()，不卡主執行緒；flushBlocking() 只給背景執行緒上要等寫完的呼叫端
+ * - 寫入失敗時整批放回緩衝前端，下一次門檻再試
+ *
+ * 行程被直接殺掉時最多遺失 FLUSH_DELAY_MS 內尚未寫入的紀錄。
+ */
+public final class FatigueRecordWriter {
+
+    private static final String TAG = "FatigueRecordWriter";
+    static final int MAX_BATCH = 32;
+    private static final long FLUSH_DELAY_MS = 10_000L;
+    private static final long COALESCE_WINDOW_MS = 1_000L;
+    private static final long BLOCKING_FLUSH_TIMEOUT_MS = 2_000L;
+
+    private static volatile FatigueRecordWriter INSTANCE;
+
+    /** 一次寫入一批（正式版：同一個 transaction 內 insertAll） */
+    interface BatchInserter {
+        void insertAll(@NonNull List<FatigueRecord> batch);
+    }
+
+    private final BatchInserter inserter;
+    private final long flushDelayMs;
+    // 具名執行緒：效能取樣依名稱把 CPU 時間歸到 DB 分類
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "FatigueDbWriter"));
+
+    private final Object lock = new Object();
+    private List<FatigueRecord> pending = new ArrayList<>(MAX_BATCH);
+    @Nullable private ScheduledFuture<?> scheduledFlush;
+    @Nullable private volatile Runnable afterFlush;
+
+    private FatigueRecordWriter(@NonNull AppDatabase db) {
+        this(batch -> db.runInTransaction(() -> db.fatigueDao().insertAll(batch)), FLUSH_DELAY_MS);
+    }
+
+    @VisibleForTesting
+    FatigueRecordWriter(@NonNull BatchInserter inserter, long flushDelayMs) {
+        this.inserter = inserter;
+        this.flushDelayMs = flushDelayMs;
+    }
+
+    public static FatigueRecordWriter getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (FatigueRecordWriter.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new FatigueRecordWriter(AppDatabase.getInstance(context.getApplicationContext()));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /** 每次實際寫入 DB 後執行（在寫入執行緒上）；例如排程唯一的上傳工作 */
+    public void setAfterFlush(@Nullable Runnable afterFlush) {
+        this.afterFlush = afterFlush;
+    }
+
+    /** 放進緩衝；達到批次大小時立刻排一次寫入，否則等時間門檻 */
+    public void add(@NonNull FatigueRecord record) {
+        record.alignTimesIfMissing();
+        boolean flushNow;
+        synchronized (lock) {
+            if (!coalesce(record)) pending.add(record);
+            flushNow = pending.size() >= MAX_BATCH;
+            if (flushNow) {
+                cancelScheduledLocked();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::flushInternal, flushDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) executor.execute(this::flushInternal);
+    }
+
+    /** 不等待的寫入（例如 App 進背景時） */
+    public void flushAsync() {
+        executor.execute(this::flushInternal);
+    }
+
+    /** 寫入並等待完成（最多 BLOCKING_FLUSH_TIMEOUT_MS）；回傳是否在時間內完成。不可在主執行緒呼叫 */
+    @WorkerThread
+    public boolean flushBlocking() {
+        Future<?> f = executor.submit(this::flushInternal);
+        try {
+            f.get(BLOCKING_FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "flushBlocking did not complete: " + e);
+            return false;
+        }
+    }
+
+    /** 目前緩衝筆數（除錯用） */
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /** 與最後一筆同使用者、時間相近 → 合併（保留較早時間與較高分數） */
+    private boolean coalesce(FatigueRecord record) {
+        if (pending.isEmpty()) return false;
+        FatigueRecord last = pending.get(pending.size() - 1);
+        if (last.getUserId() != record.getUserId()) return false;
+        if (Math.abs(record.effectiveTime() - last.effectiveTime()) >= COALESCE_WINDOW_MS) return false;
+        if (record.getScore() > last.getScore()) last.setScore(record.getScore());
+        return true;
+    }
+
+    private void cancelScheduledLocked() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    /** 只在寫入執行緒上執行 */
+    private void flushInternal() {
+        final List<FatigueRecord> batch;
+        synchronized (lock) {
+            cancelScheduledLocked();
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>(MAX_BATCH);
+        }
+        try {
+            inserter.insertAll(batch);
+            Log.i(TAG, "flushed " + batch.size() + " records");
+        } catch (Exception e) {
+            // 寫入失敗：放回緩衝前端，等下一次門檻再試
+            Log.e(TAG, "flush failed: " + e.getMessage(), e);
+            synchronized (lock) {
+                batch.addAll(pending);
+                pending = batch;
+                if (scheduledFlush == null) {
+                    scheduledFlush = executor.schedule(this::flushInternal, flushDelayMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            return;
+        }
+        Runnable callback = afterFlush;
+        if (callback != null) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                Log.e(TAG, "afterFlush failed: " + e.getMessage(), e);
+            }
+        }
+    }
+}
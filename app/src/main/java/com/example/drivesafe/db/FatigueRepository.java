@@ -0,0 +1,203 @@
+package com.example.drivesafe.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.content.ContextCompat;
+import androidx.core.util.Consumer;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagingData;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 畫面存取疲勞紀錄的唯一入口（取代各 Activity 自己開 Thread / Executor）：
+ * - 觀察：回傳 LiveData（含分頁），跟著 lifecycle 自動停止
+ * - 一次性查詢：在 Room 的查詢執行緒池（固定大小）上跑，回傳 ListenableFuture
+ * - 寫入：在 Room 的 transaction 執行緒上依序執行
+ * - deliver()：結果回主執行緒；畫面 DESTROYED 時取消尚未執行的工作，結果也不會再送回
+ *
+ * 全部共用 Room 的執行緒，不另外建立執行緒，旋轉螢幕也不會留下 Executor。
+ */
+public final class FatigueRepository {
+
+    private static final String TAG = "FatigueRepository";
+    // 整包下載寫回時每段筆數（serverId / clientId 各佔一組 IN 參數）
+    private static final int REMOTE_CHUNK = 400;
+
+    private static volatile FatigueRepository INSTANCE;
+
+    private final AppDatabase db;
+    private final FatigueDao dao;
+    private final Executor reads;
+    private final Executor writes;
+    private final Executor main;
+
+    private FatigueRepository(@NonNull Context appContext, @NonNull AppDatabase db) {
+        this.db = db;
+        this.dao = db.fatigueDao();
+        this.reads = db.getQueryExecutor();
+        this.writes = db.getTransactionExecutor();
+        this.main = ContextCompat.getMainExecutor(appContext);
+    }
+
+    public static FatigueRepository getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (FatigueRepository.class) {
+                if (INSTANCE == null) {
+                    Context app = context.getApplicationContext();
+                    INSTANCE = new FatigueRepository(app, AppDatabase.getInstance(app));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // ==== 觀察 ====
+
+    /** effectiveAt 落在 [start, end] 的分頁（keyset）；全部用 Long.MIN_VALUE / Long.MAX_VALUE */
+    @NonNull
+    public LiveData<PagingData<FatigueRecord>> paged(long start, long end) {
+        return FatigueRecordPagingSource.liveData(db, start, end);
+    }
+
+    // ==== 一次性查詢 ====
+
+    /** 區間內各桶（跨使用者合併），由早到晚 */
+    @NonNull
+    public ListenableFuture<List<FatigueRollup>> rollupSeries(long start, long end, long resolutionMs) {
+        return read(() -> dao.rollupSeries(start, end, resolutionMs));
+    }
+
+    /** 區間總計；start / end 為 null 表示全部 */
+    @NonNull
+    public ListenableFuture<FatigueRollup> rollupSummary(@Nullable Long start, @Nullable Long end) {
+        return read(() -> (start == null || end == null)
+                ? dao.rollupSummaryAll()
+                : dao.rollupSummary(start, end));
+    }
+
+    /** 其他唯讀工作（例如查完順便整理成畫面要的資料），同樣在查詢執行緒上跑 */
+    @NonNull
+    public <T> ListenableFuture<T> read(@NonNull Callable<T> work) {
+        return submit(reads, work);
+    }
+
+    // ==== 寫入 ====
+
+    @NonNull
+    public ListenableFuture<Long> insert(@NonNull FatigueRecord r) {
+        return submit(writes, () -> dao.insert(r));
+    }
+
+    @NonNull
+    public ListenableFuture<Integer> update(@NonNull FatigueRecord r) {
+        return submit(writes, () -> dao.update(r));
+    }
+
+    @NonNull
+    public ListenableFuture<Integer> delete(@NonNull FatigueRecord r) {
+        return submit(writes, () -> dao.delete(r));
+    }
+
+    /** 伺服器抓回的紀錄：依 serverId / clientId 合併進本機（舊的整包下載路徑用），回傳實際變動筆數 */
+    @NonNull
+    public ListenableFuture<Integer> applyRemote(@NonNull List<FatigueRecord> records) {
+        return submit(writes, () -> {
+            // 分段避免 IN (...) 超過 SQLite 參數上限
+            int changed = 0;
+            for (int i = 0; i < records.size(); i += REMOTE_CHUNK) {
+                List<FatigueRecord> chunk = records.subList(i, Math.min(records.size(), i + REMOTE_CHUNK));
+                changed += dao.applyRemoteChanges(chunk, Collections.emptyList());
+            }
+            return changed;
+        });
+    }
+
+    /** 全刪（含 rollup 與同步游標） */
+    @NonNull
+    public ListenableFuture<Void> deleteAll() {
+        return submit(writes, () -> {
+            dao.deleteAll();
+            return null;
+        });
+    }
+
+    // ==== 匯出 ====
+
+    /** CSV 匯出器（跑在查詢執行緒上）；匯出跟著傳入的 LifecycleOwner，DESTROYED 時自動取消 */
+    @NonNull
+    public FatigueCsvExporter exporter() {
+        return new FatigueCsvExporter(db, reads);
+    }
+
+    // ==== 交付結果 ====
+
+    /**
+     * 讀取結果回主執行緒交給 onResult（失敗只記 log）
+     * owner DESTROYED 時取消 future；已經在跑的查詢會跑完，但結果不會送回
+     */
+    public <T> void deliver(@NonNull LifecycleOwner owner, @NonNull ListenableFuture<T> future,
+                            @NonNull Consumer<T> onResult) {
+        deliver(owner.getLifecycle(), future, onResult, main, true);
+    }
+
+    /**
+     * 寫入結果回主執行緒交給 onResult（失敗只記 log）
+     * owner DESTROYED 時不取消：已送出的寫入一定做完（例如刪除後馬上離開畫面），只是不再回呼
+     */
+    public <T> void deliverWrite(@NonNull LifecycleOwner owner, @NonNull ListenableFuture<T> future,
+                                 @NonNull Consumer<T> onResult) {
+        deliver(owner.getLifecycle(), future, onResult, main, false);
+    }
+
+    @VisibleForTesting
+    static <T> void deliver(@NonNull Lifecycle lifecycle, @NonNull ListenableFuture<T> future,
+                            @NonNull Consumer<T> onResult, @NonNull Executor callbackExecutor,
+                            boolean cancelOnDestroy) {
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            if (cancelOnDestroy) future.cancel(false);
+            return;
+        }
+        LifecycleEventObserver canceller = null;
+        if (cancelOnDestroy) {
+            canceller = (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) future.cancel(false);
+            };
+            lifecycle.addObserver(canceller);
+        }
+
+        final LifecycleEventObserver registered = canceller;
+        future.addListener(() -> {
+            if (registered != null) lifecycle.removeObserver(registered);
+            if (future.isCancelled() || lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) return;
+            try {
+                onResult.accept(future.get());
+            } catch (ExecutionException e) {
+                Log.e(TAG, "task failed: " + e.getCause(), e.getCause());
+            } catch (InterruptedException | CancellationException ignored) {
+                // 已取消
+            }
+        }, callbackExecutor);
+    }
+
+    private static <T> ListenableFuture<T> submit(Executor executor, Callable<T> work) {
+        ListenableFutureTask<T> task = ListenableFutureTask.create(work);
+        executor.execute(task);
+        return task;
+    }
+}
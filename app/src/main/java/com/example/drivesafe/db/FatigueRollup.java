@@ -0,0 +1,167 @@
+package com.example.drivesafe.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+
+/**
+ * 疲勞分數的時間桶彙總（每位使用者 × 解析度 × 桶起點一筆）：
+ * - resolutionMs：MINUTE / HOUR / DAY
+ * - bucketStart：以 UTC 對齊的桶起點（epoch ms）；換時區、日光節約都不影響已存的桶，
+ *   顯示時才換算成本地時間（圖表以毫秒差算 x 軸，標籤用裝置時區格式化）
+ * - sampleCount / scoreSum / scoreMin / scoreMax：可直接相加合併
+ * - sketch：分數直方圖（ScoreSketch），合併後再算 scoreP95
+ *
+ * 與 fatigue_records 在同一個 transaction 內維護（見 FatigueDao 的 insert/update/delete），
+ * 圖表與統計讀這張表，不再逐筆載入原始紀錄。
+ */
+@Entity(
+        tableName = "fatigue_rollups",
+        primaryKeys = { "userId", "resolutionMs", "bucketStart" },
+        indices = { @Index(value = { "resolutionMs", "bucketStart" }) }
+)
+public class FatigueRollup {
+
+    public static final long MINUTE = 60_000L;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+    /** 由細到粗 */
+    public static final long[] RESOLUTIONS = { MINUTE, HOUR, DAY };
+
+    @ColumnInfo(name = "userId")
+    private long userId;
+
+    @ColumnInfo(name = "resolutionMs")
+    private long resolutionMs;
+
+    @ColumnInfo(name = "bucketStart")
+    private long bucketStart;
+
+    @ColumnInfo(name = "sampleCount")
+    private int sampleCount;
+
+    @ColumnInfo(name = "scoreSum")
+    private double scoreSum;
+
+    @ColumnInfo(name = "scoreMin")
+    private float scoreMin;
+
+    @ColumnInfo(name = "scoreMax")
+    private float scoreMax;
+
+    @ColumnInfo(name = "scoreP95")
+    private float scoreP95;
+
+    @NonNull
+    @ColumnInfo(name = "sketch")
+    private byte[] sketch = new byte[0];
+
+    /** 累加中的直方圖；seal() 時寫回 sketch */
+    @Ignore
+    private ScoreSketch working;
+
+    public FatigueRollup() {}
+
+    @Ignore
+    public FatigueRollup(long userId, long resolutionMs, long bucketStart) {
+        this.userId = userId;
+        this.resolutionMs = resolutionMs;
+        this.bucketStart = bucketStart;
+    }
+
+    // ==== 時間桶 ====
+    /** t 所在桶的起點（UTC 對齊，與裝置時區無關） */
+    public static long bucketStart(long t, long resolutionMs) {
+        return Math.floorDiv(t, resolutionMs) * resolutionMs;
+    }
+
+    /** 讓 span 內的桶數不超過 maxBuckets 的最細解析度；都超過就用 DAY */
+    public static long resolutionFor(long spanMs, int maxBuckets) {
+        for (long res : RESOLUTIONS) {
+            if (spanMs / res <= maxBuckets) return res;
+        }
+        return DAY;
+    }
+
+    // ==== 累加 / 合併 ====
+    public void add(float score) {
+        if (sampleCount == 0 || score < scoreMin) scoreMin = score;
+        if (sampleCount == 0 || score > scoreMax) scoreMax = score;
+        sampleCount++;
+        scoreSum += score;
+        sketch().add(score);
+    }
+
+    public void merge(@NonNull FatigueRollup other) {
+        if (other.sampleCount == 0) return;
+        if (sampleCount == 0 || other.scoreMin < scoreMin) scoreMin = other.scoreMin;
+        if (sampleCount == 0 || other.scoreMax > scoreMax) scoreMax = other.scoreMax;
+        sampleCount += other.sampleCount;
+        scoreSum += other.scoreSum;
+        sketch().merge(other.sketch());
+    }
+
+    /** 寫入 DB 或讀 p95 前呼叫：把直方圖編碼回 BLOB 並更新 scoreP95 */
+    @NonNull
+    public FatigueRollup seal() {
+        if (working != null) {
+            sketch = working.encode();
+            scoreP95 = Math.min(scoreMax, Math.max(scoreMin, working.percentile(0.95f)));
+        }
+        return this;
+    }
+
+    public float average() {
+        return sampleCount == 0 ? 0f : (float) (scoreSum / sampleCount);
+    }
+
+    private ScoreSketch sketch() {
+        if (working == null) working = ScoreSketch.decode(sketch);
+        return working;
+    }
+
+    // ==== Getter / Setter ====
+    public long getUserId() { return userId; }
+    public void setUserId(long userId) { this.userId = userId; }
+
+    public long getResolutionMs() { return resolutionMs; }
+    public void setResolutionMs(long resolutionMs) { this.resolutionMs = resolutionMs; }
+
+    public long getBucketStart() { return bucketStart; }
+    public void setBucketStart(long bucketStart) { this.bucketStart = bucketStart; }
+
+    public int getSampleCount() { return sampleCount; }
+    public void setSampleCount(int sampleCount) { this.sampleCount = sampleCount; }
+
+    public double getScoreSum() { return scoreSum; }
+    public void setScoreSum(double scoreSum) { this.scoreSum = scoreSum; }
+
+    public float getScoreMin() { return scoreMin; }
+    public void setScoreMin(float scoreMin) { this.scoreMin = scoreMin; }
+
+    public float getScoreMax() { return scoreMax; }
+    public void setScoreMax(float scoreMax) { this.scoreMax = scoreMax; }
+
+    public float getScoreP95() { return scoreP95; }
+    public void setScoreP95(float scoreP95) { this.scoreP95 = scoreP95; }
+
+    @NonNull public byte[] getSketch() { return sketch; }
+    public void setSketch(@NonNull byte[] sketch) { this.sketch = sketch; working = null; }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FatigueRollup{" +
+                "userId=" + userId +
+                ", resolutionMs=" + resolutionMs +
+                ", bucketStart=" + bucketStart +
+                ", sampleCount=" + sampleCount +
+                ", avg=" + average() +
+                ", min=" + scoreMin +
+                ", max=" + scoreMax +
+                ", p95=" + scoreP95 +
+                '}';
+    }
+}
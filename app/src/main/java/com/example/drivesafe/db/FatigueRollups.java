@@ -0,0 +1,230 @@
+package com.example.drivesafe.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * fatigue_rollups 的維護與查詢：
+ * - 新增：只把新紀錄累加進既有的桶（不需要重讀原始資料）
+ * - 修改 / 刪除 / REPLACE 覆蓋：min/max 無法扣回，改成重算受影響的「使用者 × 當天」
+ * - 查詢：同一桶可能有多位使用者，讀出後在記憶體合併
+ *
+ * 寫入方法都假設呼叫端已在 transaction 內（FatigueDao 的 @Transaction 方法）。
+ */
+public final class FatigueRollups {
+
+    private FatigueRollups() {}
+
+    /** 單一使用者的累加器：add 完後 rows() 取出三種解析度的桶 */
+    static final class Accumulator {
+        final long userId;
+        private final List<Map<Long, FatigueRollup>> buckets = new ArrayList<>(FatigueRollup.RESOLUTIONS.length);
+
+        Accumulator(long userId) {
+            this.userId = userId;
+            for (int i = 0; i < FatigueRollup.RESOLUTIONS.length; i++) buckets.add(new LinkedHashMap<>());
+        }
+
+        void add(long t, float score) {
+            for (int i = 0; i < FatigueRollup.RESOLUTIONS.length; i++) {
+                long res = FatigueRollup.RESOLUTIONS[i];
+                long start = FatigueRollup.bucketStart(t, res);
+                FatigueRollup bucket = buckets.get(i).get(start);
+                if (bucket == null) {
+                    bucket = new FatigueRollup(userId, res, start);
+                    buckets.get(i).put(start, bucket);
+                }
+                bucket.add(score);
+            }
+        }
+
+        List<FatigueRollup> rows() {
+            List<FatigueRollup> out = new ArrayList<>();
+            for (Map<Long, FatigueRollup> m : buckets) {
+                for (FatigueRollup r : m.values()) out.add(r.seal());
+            }
+            return out;
+        }
+    }
+
+    // ==== 寫入端（在 transaction 內） ====
+
+    /** 有指定 id 的紀錄（insertAll 的 REPLACE 可能覆蓋舊資料） */
+    @NonNull
+    static List<Long> assignedIds(@NonNull List<FatigueRecord> records) {
+        List<Long> ids = new ArrayList<>();
+        for (FatigueRecord r : records) if (r.getId() != 0) ids.add(r.getId());
+        return ids;
+    }
+
+    /** 新增後：一般紀錄直接累加；被覆蓋或指定 id 的紀錄所在的天整天重算 */
+    static void onInserted(@NonNull FatigueDao dao,
+                           @NonNull List<FatigueRecord> inserted,
+                           @NonNull List<FatigueRecord> replaced) {
+        Map<Long, Set<Long>> rebuild = new HashMap<>();
+        for (FatigueRecord old : replaced) markDay(rebuild, old);
+        for (FatigueRecord r : inserted) if (r.getId() != 0) markDay(rebuild, r);
+
+        Map<Long, Accumulator> byUser = new HashMap<>();
+        for (FatigueRecord r : inserted) {
+            long t = r.getEffectiveAt();
+            if (t <= 0 || isMarked(rebuild, r.getUserId(), t)) continue;
+            Accumulator acc = byUser.get(r.getUserId());
+            if (acc == null) {
+                acc = new Accumulator(r.getUserId());
+                byUser.put(r.getUserId(), acc);
+            }
+            acc.add(t, r.getScore());
+        }
+
+        List<FatigueRollup> upserts = new ArrayList<>();
+        for (Accumulator acc : byUser.values()) {
+            for (FatigueRollup row : acc.rows()) {
+                FatigueRollup existing = dao.getRollup(row.getUserId(), row.getResolutionMs(), row.getBucketStart());
+                if (existing == null) {
+                    upserts.add(row);
+                } else {
+                    existing.merge(row);
+                    upserts.add(existing.seal());
+                }
+            }
+        }
+        if (!upserts.isEmpty()) dao.upsertRollups(upserts);
+        rebuildDays(dao, rebuild);
+    }
+
+    /** 修改或刪除後：舊、新兩個時間所在的天都重算（before / after 可為 null） */
+    static void onChanged(@NonNull FatigueDao dao, @Nullable FatigueRecord before, @Nullable FatigueRecord after) {
+        Map<Long, Set<Long>> rebuild = new HashMap<>();
+        if (before != null) markDay(rebuild, before);
+        if (after != null) markDay(rebuild, after);
+        rebuildDays(dao, rebuild);
+    }
+
+    private static void rebuildDays(@NonNull FatigueDao dao, @NonNull Map<Long, Set<Long>> days) {
+        for (Map.Entry<Long, Set<Long>> e : days.entrySet()) {
+            long userId = e.getKey();
+            for (long dayStart : e.getValue()) {
+                long dayEnd = dayStart + FatigueRollup.DAY - 1;
+                dao.deleteUserRollupsBetween(userId, dayStart, dayEnd);
+                Accumulator acc = new Accumulator(userId);
+                for (FatigueRecord r : dao.getUserRecordsBetween(userId, dayStart, dayEnd)) {
+                    acc.add(r.getEffectiveAt(), r.getScore());
+                }
+                List<FatigueRollup> rows = acc.rows();
+                if (!rows.isEmpty()) dao.upsertRollups(rows);
+            }
+        }
+    }
+
+    private static void markDay(Map<Long, Set<Long>> days, FatigueRecord r) {
+        long t = r.getEffectiveAt();
+        if (t <= 0) return;
+        Set<Long> set = days.get(r.getUserId());
+        if (set == null) {
+            set = new HashSet<>();
+            days.put(r.getUserId(), set);
+        }
+        set.add(FatigueRollup.bucketStart(t, FatigueRollup.DAY));
+    }
+
+    private static boolean isMarked(Map<Long, Set<Long>> days, long userId, long t) {
+        Set<Long> set = days.get(userId);
+        return set != null && set.contains(FatigueRollup.bucketStart(t, FatigueRollup.DAY));
+    }
+
+    // ==== 查詢端 ====
+
+    /** 區間內各桶（跨使用者合併），由早到晚；含 start 所在的桶 */
+    @NonNull
+    static List<FatigueRollup> series(@NonNull FatigueDao dao, long start, long end, long resolutionMs) {
+        List<FatigueRollup> rows = dao.getRollupsBetween(resolutionMs, FatigueRollup.bucketStart(start, resolutionMs), end);
+        Map<Long, FatigueRollup> merged = new LinkedHashMap<>();
+        for (FatigueRollup row : rows) {
+            FatigueRollup bucket = merged.get(row.getBucketStart());
+            if (bucket == null) {
+                merged.put(row.getBucketStart(), row);
+            } else {
+                bucket.merge(row);
+            }
+        }
+        List<FatigueRollup> out = new ArrayList<>(merged.size());
+        for (FatigueRollup r : merged.values()) out.add(r.seal());
+        return out;
+    }
+
+    /** 把多個桶合併成一筆總計（sampleCount = 0 表示沒有資料） */
+    @NonNull
+    public static FatigueRollup summarize(@NonNull List<FatigueRollup> buckets) {
+        FatigueRollup total = new FatigueRollup();
+        for (FatigueRollup b : buckets) total.merge(b);
+        return total.seal();
+    }
+
+    /** 區間總計：用兩端都對齊的最粗解析度（桶為 UTC 對齊，本地整天在整點時區用 HOUR，非整點時區退回 MINUTE） */
+    @NonNull
+    static FatigueRollup summary(@NonNull FatigueDao dao, long start, long end) {
+        long res = FatigueRollup.MINUTE;
+        for (int i = FatigueRollup.RESOLUTIONS.length - 1; i >= 0; i--) {
+            long r = FatigueRollup.RESOLUTIONS[i];
+            if (FatigueRollup.bucketStart(start, r) == start && FatigueRollup.bucketStart(end + 1, r) == end + 1) {
+                res = r;
+                break;
+            }
+        }
+        return summarize(series(dao, start, end, res));
+    }
+
+    // ==== Migration ====
+
+    /** 依既有紀錄建立全部 rollup；依 (userId, effectiveAt) 排序讀取，一次只在記憶體保留一天 */
+    static void backfill(@NonNull SupportSQLiteDatabase db) {
+        try (Cursor c = db.query("SELECT userId, effectiveAt, score FROM fatigue_records " +
+                "WHERE effectiveAt > 0 ORDER BY userId, effectiveAt")) {
+            Accumulator acc = null;
+            long day = 0;
+            while (c.moveToNext()) {
+                long userId = c.getLong(0);
+                long t = c.getLong(1);
+                long d = FatigueRollup.bucketStart(t, FatigueRollup.DAY);
+                if (acc == null || acc.userId != userId || d != day) {
+                    if (acc != null) insertRows(db, acc.rows());
+                    acc = new Accumulator(userId);
+                    day = d;
+                }
+                acc.add(t, c.getFloat(2));
+            }
+            if (acc != null) insertRows(db, acc.rows());
+        }
+    }
+
+    private static void insertRows(SupportSQLiteDatabase db, List<FatigueRollup> rows) {
+        ContentValues cv = new ContentValues();
+        for (FatigueRollup r : rows) {
+            cv.clear();
+            cv.put("userId", r.getUserId());
+            cv.put("resolutionMs", r.getResolutionMs());
+            cv.put("bucketStart", r.getBucketStart());
+            cv.put("sampleCount", r.getSampleCount());
+            cv.put("scoreSum", r.getScoreSum());
+            cv.put("scoreMin", r.getScoreMin());
+            cv.put("scoreMax", r.getScoreMax());
+            cv.put("scoreP95", r.getScoreP95());
+            cv.put("sketch", r.getSketch());
+            db.insert("fatigue_rollups", SQLiteDatabase.CONFLICT_REPLACE, cv);
+        }
+    }
+}
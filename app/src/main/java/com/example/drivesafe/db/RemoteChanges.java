@@ -0,0 +1,46 @@
+package com.example.drivesafe.db;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 伺服器變更與本機紀錄的對應（FatigueDao.applyRemoteChanges 用，不碰 DB）：
+ * - 先以 serverId 找，找不到再以 clientId 找（本機剛上傳、還沒寫回 serverId 的那筆）
+ * - 找到且已同步、時間與分數都相同 → 略過
+ * - 找到但不同 → 沿用本機 id / userId / clientId 後放進 updates
+ * - 都找不到 → inserts
+ */
+final class RemoteChanges {
+
+    final List<FatigueRecord> inserts = new ArrayList<>();
+    final List<FatigueRecord> updates = new ArrayList<>();
+
+    private RemoteChanges() {}
+
+    @NonNull
+    static RemoteChanges match(@NonNull List<FatigueRecord> upserts,
+                               @NonNull Map<String, FatigueRecord> byServerId,
+                               @NonNull Map<String, FatigueRecord> byClientId) {
+        RemoteChanges out = new RemoteChanges();
+        for (FatigueRecord r : upserts) {
+            FatigueRecord old = byServerId.get(r.getServerId());
+            if (old == null && r.getClientId() != null) old = byClientId.get(r.getClientId());
+            if (old == null) {
+                out.inserts.add(r);
+                continue;
+            }
+            if (old.isSynced() && r.getServerId().equals(old.getServerId())
+                    && old.getEffectiveAt() == r.getEffectiveAt() && old.getScore() == r.getScore()) {
+                continue;
+            }
+            r.setId(old.getId());
+            r.setUserId(old.getUserId());
+            r.setClientId(old.getClientId());
+            out.updates.add(r);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.drivesafe.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 分數分佈的小型直方圖（給 rollup 算 p95）：
+ * - 本機分數 0~10、伺服器/管理員輸入可能是 0~100（見 FatigueAdapter）：
+ *   0~10 每 0.1 一格，10~100 每 1 一格（相對誤差都約 1%），超出範圍夾到兩端
+ * - 格號 0~100 與舊版（只有 0~10）相同，舊 BLOB 直接可讀
+ * - 可直接相加合併（分鐘 → 小時 → 天、多個使用者）
+ * - 只編碼非零格：每格 [short 格號][int 次數]，一分鐘只有兩三筆時只佔十幾 bytes
+ */
+public final class ScoreSketch {
+
+    static final float FINE_MAX = 10f;
+    static final float FINE_WIDTH = 0.1f;
+    static final float MAX_SCORE = 100f;
+    static final float COARSE_WIDTH = 1f;
+    // 0~10 細格（含 10）+ 10~100 粗格
+    private static final int FINE_BINS = Math.round(FINE_MAX / FINE_WIDTH) + 1;
+    static final int BINS = FINE_BINS + Math.round((MAX_SCORE - FINE_MAX) / COARSE_WIDTH);
+    private static final int ENTRY_BYTES = 6;
+
+    private final int[] counts = new int[BINS];
+    private long total;
+
+    public void add(float score) {
+        counts[binOf(score)]++;
+        total++;
+    }
+
+    public void merge(@NonNull ScoreSketch other) {
+        for (int i = 0; i < BINS; i++) counts[i] += other.counts[i];
+        total += other.total;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    /** q ∈ (0,1]；回傳所在格的代表值，沒有資料時回 0 */
+    public float percentile(float q) {
+        if (total == 0) return 0f;
+        long rank = (long) Math.ceil(q * total);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BINS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return valueOf(i);
+        }
+        return MAX_SCORE;
+    }
+
+    @NonNull
+    public byte[] encode() {
+        int nonZero = 0;
+        for (int c : counts) if (c != 0) nonZero++;
+        ByteBuffer buf = ByteBuffer.allocate(nonZero * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < BINS; i++) {
+            if (counts[i] == 0) continue;
+            buf.putShort((short) i);
+            buf.putInt(counts[i]);
+        }
+        return buf.array();
+    }
+
+    /** 壞掉或空的 BLOB 視為空分佈 */
+    @NonNull
+    public static ScoreSketch decode(@Nullable byte[] bytes) {
+        ScoreSketch sketch = new ScoreSketch();
+        if (bytes == null) return sketch;
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.remaining() >= ENTRY_BYTES) {
+            int bin = buf.getShort();
+            int count = buf.getInt();
+            if (bin < 0 || bin >= BINS || count < 0) continue;
+            sketch.counts[bin] += count;
+            sketch.total += count;
+        }
+        return sketch;
+    }
+
+    private static int binOf(float score) {
+        if (!(score > 0f)) return 0; // 含 NaN
+        int fine = Math.round(score / FINE_WIDTH);
+        if (fine < FINE_BINS) return fine;
+        int coarse = Math.round((score - FINE_MAX) / COARSE_WIDTH);
+        return Math.min(FINE_BINS - 1 + coarse, BINS - 1);
+    }
+
+    static float valueOf(int bin) {
+        if (bin < FINE_BINS) return bin * FINE_WIDTH;
+        return FINE_MAX + (bin - FINE_BINS + 1) * COARSE_WIDTH;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.drivesafe.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * 增量同步的進度（每個同步範圍一筆）：
+ * - scope：同步範圍，例如 "fatigue_records:" + userId
+ * - cursor：伺服器給的游標（updated_at/id 高水位）；null 表示還沒同步過，下次從頭抓
+ * - lastSyncAt：最後一次成功套用變更的時間（毫秒）
+ *
+ * 游標與該頁變更在同一個 transaction 內寫入，中途中斷也不會跳過或重複套用。
+ */
+@Entity(tableName = "sync_state")
+public class SyncState {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "scope")
+    private String scope = "";
+
+    @ColumnInfo(name = "cursor")
+    @Nullable
+    private String cursor;
+
+    @ColumnInfo(name = "lastSyncAt")
+    private long lastSyncAt;
+
+    public SyncState() {}
+
+    @Ignore
+    public SyncState(@NonNull String scope, @Nullable String cursor, long lastSyncAt) {
+        this.scope = scope;
+        this.cursor = cursor;
+        this.lastSyncAt = lastSyncAt;
+    }
+
+    // ==== Getter / Setter ====
+    @NonNull public String getScope() { return scope; }
+    public void setScope(@NonNull String scope) { this.scope = scope; }
+
+    public @Nullable String getCursor() { return cursor; }
+    public void setCursor(@Nullable String cursor) { this.cursor = cursor; }
+
+    public long getLastSyncAt() { return lastSyncAt; }
+    public void setLastSyncAt(long lastSyncAt) { this.lastSyncAt = lastSyncAt; }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SyncState{" +
+                "scope='" + scope + '\'' +
+                ", cursor='" + cursor + '\'' +
+                ", lastSyncAt=" + lastSyncAt +
+                '}';
+    }
+}
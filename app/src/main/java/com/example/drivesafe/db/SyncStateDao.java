@@ -0,0 +1,20 @@
+package com.example.drivesafe.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface SyncStateDao {
+
+    @Query("SELECT * FROM sync_state WHERE scope = :scope")
+    SyncState get(String scope);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(SyncState state);
+
+    /** 游標失效（或要強制重抓）時刪掉，下次從頭同步 */
+    @Query("DELETE FROM sync_state WHERE scope = :scope")
+    void delete(String scope);
+}
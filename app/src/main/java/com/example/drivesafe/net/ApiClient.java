@@ -1,82 +1,178 @@
 package com.example.drivesafe.net;
 
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.example.drivesafe.BuildConfig;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
-/** 建立並回傳 Retrofit；呼叫端用 .create(ApiService.class) 取得介面 */
+/**
+ * 全 App 共用的 HTTP 連線（Retrofit + OkHttp）：
+ * - 只有一個 OkHttpClient：同一組 connection pool / dispatcher，TLS 連線可重用；伺服器支援時走 HTTP/2
+ * - 有 token 的版本用 newBuilder() 衍生，仍共用同一個 pool 與快取；依 TokenStore 的 prefs 名稱只建一組，
+ *   每次 new TokenStore(context) 也不會多建 client
+ * - 磁碟快取（init 後才有）：伺服器給 ETag 時自動帶 If-None-Match，304 直接用快取內容
+ * - Retrofit 與 Service 依 base URL 快取，呼叫端用 api(baseUrl) 即可，不必每次 create
+ *
+ * DriveSafeApp.onCreate 會先呼叫 init(context)。
+ */
 public class ApiClient {
 
-    // ---- Plain Retrofit（不自動加 Authorization）----
-    private static Retrofit retrofit;
-    private static String lastBaseUrl;
+    private static final long CACHE_BYTES = 10L * 1024 * 1024;
 
-    // ---- Authed Retrofit（自動加 Authorization）----
-    private static Retrofit authedRetrofit;
-    private static String lastAuthedBaseUrl;
+    private static volatile OkHttpClient baseClient;
+    private static Cache cache;
+
+    // base URL → Retrofit / Service
+    private static final Map<String, Retrofit> retrofits = new ConcurrentHashMap<>();
+    private static final Map<String, Object> services = new ConcurrentHashMap<>();
+    // TokenStore 的 prefs 名稱 → 帶 token 的 client 與其 Retrofit / Service
+    private static final Map<String, Authed> authed = new ConcurrentHashMap<>();
+
+    /** 設定磁碟快取位置；要在第一次呼叫其他方法前執行（Application.onCreate） */
+    public static synchronized void init(Context context) {
+        if (cache != null) return;
+        cache = new Cache(new File(context.getApplicationContext().getCacheDir(), "http"), CACHE_BYTES);
+        baseClient = null;
+        retrofits.clear();
+        services.clear();
+        authed.clear();
+    }
 
     /** 一般用：不自動帶 Authorization header */
     public static Retrofit get(String baseUrl) {
-        if (retrofit == null || lastBaseUrl == null || !lastBaseUrl.equals(baseUrl)) {
-            retrofit = buildRetrofit(baseUrl, buildOkHttp(false, null));
-            lastBaseUrl = baseUrl;
+        String url = ensureEndsWithSlash(baseUrl);
+        Retrofit r = retrofits.get(url);
+        if (r == null) {
+            r = buildRetrofit(url, client());
+            Retrofit prev = retrofits.putIfAbsent(url, r);
+            if (prev != null) r = prev;
         }
-        return retrofit;
+        return r;
     }
 
     /** 自動帶 Authorization：會從 TokenStore 取 token，每次請求若有 token 就加上 Bearer */
-    public static Retrofit getAuthed(String baseUrl, final TokenStore tokenStore) {
-        if (authedRetrofit == null || lastAuthedBaseUrl == null || !lastAuthedBaseUrl.equals(baseUrl)) {
-            authedRetrofit = buildRetrofit(baseUrl, buildOkHttp(true, tokenStore));
-            lastAuthedBaseUrl = baseUrl;
+    public static Retrofit getAuthed(String baseUrl, @NonNull TokenStore tokenStore) {
+        String url = ensureEndsWithSlash(baseUrl);
+        Authed a = authed(tokenStore);
+        Retrofit r = a.retrofits.get(url);
+        if (r == null) {
+            r = buildRetrofit(url, a.client);
+            Retrofit prev = a.retrofits.putIfAbsent(url, r);
+            if (prev != null) r = prev;
         }
-        return authedRetrofit;
+        return r;
     }
 
-    // 方便用法：直接要 Service
+    /** 共用的 ApiService（不自動帶 Authorization） */
+    public static ApiService api(String baseUrl) {
+        return create(baseUrl, ApiService.class);
+    }
+
+    // 方便用法：直接要 Service（同一個 base URL + 介面只建一次）
+    @SuppressWarnings("unchecked")
     public static <T> T create(String baseUrl, Class<T> service) {
-        return get(baseUrl).create(service);
+        String key = ensureEndsWithSlash(baseUrl) + "|" + service.getName();
+        Object s = services.get(key);
+        if (s == null) {
+            s = get(baseUrl).create(service);
+            Object prev = services.putIfAbsent(key, s);
+            if (prev != null) s = prev;
+        }
+        return (T) s;
     }
-    public static <T> T createAuthed(String baseUrl, TokenStore tokenStore, Class<T> service) {
-        return getAuthed(baseUrl, tokenStore).create(service);
+
+    // 同上，帶 Authorization（同一份 token prefs + base URL + 介面只建一次）
+    @SuppressWarnings("unchecked")
+    public static <T> T createAuthed(String baseUrl, @NonNull TokenStore tokenStore, Class<T> service) {
+        String key = ensureEndsWithSlash(baseUrl) + "|" + service.getName();
+        Authed a = authed(tokenStore);
+        Object s = a.services.get(key);
+        if (s == null) {
+            s = getAuthed(baseUrl, tokenStore).create(service);
+            Object prev = a.services.putIfAbsent(key, s);
+            if (prev != null) s = prev;
+        }
+        return (T) s;
     }
 
     // ---- Helpers ----
 
     private static Retrofit buildRetrofit(String baseUrl, OkHttpClient ok) {
         return new Retrofit.Builder()
-                .baseUrl(ensureEndsWithSlash(baseUrl))
+                .baseUrl(baseUrl)
                 .addConverterFactory(GsonConverterFactory.create())
                 .client(ok)
                 .build();
     }
 
-    private static OkHttpClient buildOkHttp(boolean withAuth, final TokenStore tokenStore) {
-        HttpLoggingInterceptor log = new HttpLoggingInterceptor();
-        log.setLevel(HttpLoggingInterceptor.Level.BODY);
+    /** 共用的 OkHttpClient（第一次用到才建立） */
+    static OkHttpClient client() {
+        OkHttpClient c = baseClient;
+        if (c == null) {
+            synchronized (ApiClient.class) {
+                c = baseClient;
+                if (c == null) {
+                    c = buildOkHttp();
+                    baseClient = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /** 這份 token prefs 的那一組（第一次用到才建立；之後同名的 store 都共用，讀到的 token 相同） */
+    private static Authed authed(@NonNull TokenStore tokenStore) {
+        return authed.computeIfAbsent(tokenStore.prefsName(), name -> new Authed(authedClient(tokenStore)));
+    }
+
+    /** 帶 token 的版本；token 每次請求時才從 store 讀，換 token 不必重建 */
+    static OkHttpClient authedClient(@NonNull TokenStore tokenStore) {
+        Interceptor auth = chain -> {
+            Request orig = chain.request();
+            String token = tokenStore.get();
+            Request.Builder rb = orig.newBuilder();
+            if (token != null && !token.isEmpty()) {
+                rb.addHeader("Authorization", "Bearer " + token);
+            }
+            return chain.proceed(rb.build());
+        };
+        return client().newBuilder().addInterceptor(auth).build();
+    }
 
+    private static OkHttpClient buildOkHttp() {
         OkHttpClient.Builder b = new OkHttpClient.Builder()
-                .addInterceptor(log)
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .addInterceptor(new GzipRequestInterceptor())
                 .connectTimeout(15, TimeUnit.SECONDS)
                 .readTimeout(20, TimeUnit.SECONDS)
                 .writeTimeout(20, TimeUnit.SECONDS);
 
-        if (withAuth) {
-            Interceptor auth = chain -> {
-                Request orig = chain.request();
-                String token = tokenStore == null ? null : tokenStore.get();
-                Request.Builder rb = orig.newBuilder();
-                if (token != null && !token.isEmpty()) {
-                    rb.addHeader("Authorization", "Bearer " + token);
-                }
-                return chain.proceed(rb.build());
-            };
-            b.addInterceptor(auth);
+        if (cache != null) b.cache(cache);
+
+        // BODY 會把整個請求/回應複製進記憶體，只在 debug 開；
+        // 掛在 network 層才看得到 Authorization、If-None-Match 與 304（快取命中的請求不會出現）
+        if (BuildConfig.DEBUG) {
+            HttpLoggingInterceptor log = new HttpLoggingInterceptor();
+            log.setLevel(HttpLoggingInterceptor.Level.BODY);
+            b.addNetworkInterceptor(log);
         }
 
         return b.build();
@@ -85,4 +181,15 @@ public class ApiClient {
     private static String ensureEndsWithSlash(String url) {
         return url.endsWith("/") ? url : (url + "/");
     }
+
+    /** 一份 token prefs 的 client 與依 base URL 快取的 Retrofit / Service */
+    private static final class Authed {
+        final OkHttpClient client;
+        final Map<String, Retrofit> retrofits = new ConcurrentHashMap<>();
+        final Map<String, Object> services = new ConcurrentHashMap<>();
+
+        Authed(OkHttpClient client) {
+            this.client = client;
+        }
+    }
 }
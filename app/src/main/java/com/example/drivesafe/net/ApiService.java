@@ -8,6 +8,7 @@ import retrofit2.http.Field;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.GET;
 import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.Query;
 
@@ -31,7 +32,7 @@ public interface ApiService {
             @Field("password") String password
     );
 
-    /* ========== 舊 schema：FatigueDto（HistoryActivity.fetchFromServerAndCache / UploadWorker 會用到） ========== */
+    /* ========== 舊 schema：FatigueDto（UploadWorker / FatigueSyncWorker 會用到） ========== */
 
     // 查詢一段時間內的舊版疲勞紀錄
     @GET("driving_records")
@@ -56,9 +57,29 @@ public interface ApiService {
             @Body List<FatigueDto> payload
     );
 
+    // 批次上傳（欄式 + gzip）；X-Sync-Format 告訴後端格式版本，不支援時回 404/415 → UploadWorker 改用 postRecords
+    @Headers({ "Content-Encoding: gzip", "X-Sync-Format: " + FatigueBatchDto.FORMAT })
+    @POST("driving_records/batch")
+    Call<FatigueBatchResp> postRecordBatch(
+            @Header("Authorization") String bearerToken,
+            @Body FatigueBatchDto batch
+    );
+
+    // 增量同步（FatigueSyncWorker）：取 since 游標之後的新增/修改/刪除（since 為 null 表示從頭）
+    @Headers("Cache-Control: no-store")   // 游標每次都不同，不必進快取
+    @GET("driving_records/changes")
+    Call<FatigueChangesResp> getRecordChanges(
+            @Header("Authorization") String bearerToken,
+            @Query("user_id") String userId,
+            @Query("since") String since,
+            @Query("limit") int limit
+    );
+
     /* ========== 新 schema：DrivingRecordDto（HistoryActivity.cloudFetchAllThenShow / testUploadOneRecord 會用到） ========== */
 
     // 依 member_id 取得雲端駕駛紀錄（清單）
+    // no-cache：每次都帶 If-None-Match 回伺服器確認，沒變就回 304 用快取
+    @Headers("Cache-Control: no-cache")
     @GET("driving_records")
     Call<List<DrivingRecordDto>> getDrivingRecords(@Query("member_id") int memberId);
 
@@ -68,6 +89,7 @@ public interface ApiService {
 
     /* ========== 成員查詢（可用來把 email 對應成整數 member_id） ========== */
 
+    @Headers("Cache-Control: no-cache")
     @GET("members")
     Call<List<MemberDto>> getMembers();
 
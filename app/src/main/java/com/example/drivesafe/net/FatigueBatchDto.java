@@ -0,0 +1,55 @@
+package com.example.drivesafe.net;
+
+import androidx.annotation.Keep;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批次上傳的欄式格式（POST driving_records/batch）：
+ * - user_id 只送一次
+ * - t0：第一筆時間（毫秒）；dt：每筆與前一筆的時間差（第一筆為 0），依時間排序後都很小
+ * - s：分數 × 10 取整數（精度 0.1，與 rollup 直方圖相同）
+ * - client_id：各筆的冪等鍵（FatigueRecord.clientId）
+ * 陣列都依同一順序對齊。
+ */
+@Keep
+public class FatigueBatchDto {
+    public static final String FORMAT = "columnar-v1";
+    static final float SCORE_SCALE = 10f;
+
+    public String user_id;
+    public long t0;
+    public List<Long> dt;
+    public List<Integer> s;
+    public List<String> client_id;
+
+    // 上一筆時間（只在組裝時用，不序列化）
+    private transient long last;
+
+    /** GSON 需要無參數建構子 */
+    public FatigueBatchDto() {}
+
+    public FatigueBatchDto(String userId, int capacity) {
+        this.user_id = userId;
+        this.dt = new ArrayList<>(capacity);
+        this.s = new ArrayList<>(capacity);
+        this.client_id = new ArrayList<>(capacity);
+    }
+
+    /** 依時間先後加入（呼叫端負責排序） */
+    public void add(String clientId, long timestampMs, float score) {
+        if (dt.isEmpty()) {
+            t0 = timestampMs;
+            last = timestampMs;
+        }
+        dt.add(timestampMs - last);
+        s.add(Math.round(score * SCORE_SCALE));
+        client_id.add(clientId);
+        last = timestampMs;
+    }
+
+    public int size() {
+        return client_id == null ? 0 : client_id.size();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.drivesafe.net;
+
+import androidx.annotation.Keep;
+
+import java.util.List;
+
+/**
+ * 批次上傳回應（欄式）：
+ * - id：伺服器 UUID，與送出順序對齊（未建立的位置為 null）
+ * - client_id：對應的冪等鍵；有給就用它對回本機，沒給才依順序
+ */
+@Keep
+public class FatigueBatchResp {
+    public List<String> id;
+    public List<String> client_id;
+
+    public FatigueBatchResp() {}
+}
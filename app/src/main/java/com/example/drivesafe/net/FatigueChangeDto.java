@@ -0,0 +1,23 @@
+package com.example.drivesafe.net;
+
+import androidx.annotation.Keep;
+
+/**
+ * 增量同步的一筆變更（GET driving_records/changes）：
+ * - 一般欄位同 FatigueDto
+ * - updated_at：伺服器最後修改時間（毫秒），用來推進同步游標
+ * - deleted：true 表示墓碑（伺服器已刪除），本機要一起刪
+ * - client_id：上傳時帶的本機 UUID（伺服器建立的紀錄可能沒有）
+ */
+@Keep
+public class FatigueChangeDto {
+    public String id;
+    public String user_id;
+    public long timestamp_ms;
+    public float score;
+    public String client_id;
+    public long updated_at;
+    public boolean deleted;
+
+    public FatigueChangeDto() {}
+}
@@ -0,0 +1,19 @@
+package com.example.drivesafe.net;
+
+import androidx.annotation.Keep;
+
+import java.util.List;
+
+/**
+ * 增量同步回應：依 (updated_at, id) 排序的一頁變更
+ * - next_cursor：下次要帶的 since（不透明字串；伺服器沒給時用最後一筆的 updated_at:id）
+ * - has_more：還有下一頁
+ */
+@Keep
+public class FatigueChangesResp {
+    public List<FatigueChangeDto> changes;
+    public String next_cursor;
+    public boolean has_more;
+
+    public FatigueChangesResp() {}
+}
@@ -21,6 +21,9 @@ public class FatigueDto {
     /** 疲勞指數（1~10） */
     public float score;
 
+    /** 本機產生的 UUID（FatigueRecord.clientId）；後端以它去重，重送同一筆不會重複建立 */
+    public String client_id;
+
     /** GSON 需要無參數建構子 */
     public FatigueDto() {}
 
@@ -40,6 +43,7 @@ public class FatigueDto {
     @Override
     public String toString() {
         return "FatigueDto{id='" + id + "', user_id='" + user_id +
-                "', timestamp_ms=" + timestamp_ms + ", score=" + score + "}";
+                "', timestamp_ms=" + timestamp_ms + ", score=" + score +
+                ", client_id='" + client_id + "'}";
     }
 }
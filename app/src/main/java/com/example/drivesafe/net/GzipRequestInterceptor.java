@@ -0,0 +1,35 @@
+package com.example.drivesafe.net;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * 請求主體 gzip：只壓有標 Content-Encoding: gzip 的請求（見 ApiService.postRecordBatch）
+ * - 先壓進記憶體再送，Content-Length 已知，不會變成 chunked
+ * - 回應的 gzip 由 OkHttp 自動處理（自動帶 Accept-Encoding 並解壓），這裡不用管
+ */
+final class GzipRequestInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request req = chain.request();
+        RequestBody body = req.body();
+        if (body == null || !"gzip".equalsIgnoreCase(req.header("Content-Encoding"))) {
+            return chain.proceed(req);
+        }
+        Buffer buf = new Buffer();
+        try (BufferedSink gz = Okio.buffer(new GzipSink(buf))) {
+            body.writeTo(gz);
+        }
+        RequestBody gzipped = RequestBody.create(buf.readByteString(), body.contentType());
+        return chain.proceed(req.newBuilder().method(req.method(), gzipped).build());
+    }
+}
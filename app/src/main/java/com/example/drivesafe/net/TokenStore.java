@@ -3,11 +3,23 @@ package com.example.drivesafe.net;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import androidx.annotation.VisibleForTesting;
+
 public class TokenStore {
+    private static final String PREFS = "auth_prefs";
+
     private final SharedPreferences sp;
+    private final String prefsName;
     public TokenStore(Context ctx) {
-        sp = ctx.getSharedPreferences("auth_prefs", Context.MODE_PRIVATE);
+        this(ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE), PREFS);
+    }
+    @VisibleForTesting
+    TokenStore(SharedPreferences sp, String prefsName) {
+        this.sp = sp;
+        this.prefsName = prefsName;
     }
+    /** 同名的 prefs 在同一行程內是同一份資料；ApiClient 以它當帶 token client 的鍵 */
+    String prefsName() { return prefsName; }
     public void save(String token) { sp.edit().putString("access_token", token).apply(); }
     public String get() { return sp.getString("access_token", null); }
     public void clear() { sp.edit().remove("access_token").apply(); }
@@ -0,0 +1,141 @@
+package com.example.drivesafe.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.drivesafe.db.FatigueRecord;
+import com.example.drivesafe.net.ApiService;
+import com.example.drivesafe.net.FatigueChangeDto;
+import com.example.drivesafe.net.FatigueChangesResp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import retrofit2.Response;
+
+/**
+ * 增量同步的分頁迴圈（FatigueSyncWorker 用；不碰 WorkManager / Room，游標與寫入交給 Store）：
+ * - 帶游標呼叫 driving_records/changes，一頁一頁套用，has_more = false 或空頁就停
+ * - 410（游標過期）：清掉游標從頭抓；沒有游標還回 410 就交給 WorkManager 重試
+ * - 404 / 405 / 501：伺服器還沒有這個端點，回 UNSUPPORTED，畫面改走舊的整包下載
+ * - 其他錯誤或連線失敗：RETRY（已套用的頁與游標都已存好）
+ */
+final class DeltaSync {
+
+    static final int HTTP_NOT_FOUND = 404;
+    static final int HTTP_BAD_METHOD = 405;
+    static final int HTTP_GONE = 410;
+    static final int HTTP_NOT_IMPLEMENTED = 501;
+
+    enum Status { DONE, RETRY, UNSUPPORTED }
+
+    /** 游標與寫入（Worker 以 Room 實作） */
+    interface Store {
+        @Nullable String cursor();
+        void resetCursor();
+        /** 同一個 transaction 內套用一頁變更並存新游標；回傳實際變動的本機筆數 */
+        int apply(@NonNull List<FatigueRecord> upserts, @NonNull List<String> deletedServerIds, @Nullable String next);
+    }
+
+    static final class Outcome {
+        final Status status;
+        final int changed;
+
+        Outcome(Status status, int changed) {
+            this.status = status;
+            this.changed = changed;
+        }
+    }
+
+    private final ApiService api;
+    @Nullable private final String authHeader;
+    private final String userId;
+    private final int pageSize;
+    private final int maxPages;
+
+    DeltaSync(@NonNull ApiService api, @Nullable String authHeader, @NonNull String userId,
+              int pageSize, int maxPages) {
+        this.api = api;
+        this.authHeader = authHeader;
+        this.userId = userId;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    @NonNull
+    Outcome run(@NonNull Store store, @NonNull BooleanSupplier stopped) {
+        String cursor = store.cursor();
+        int changed = 0;
+        try {
+            for (int page = 0; page < maxPages && !stopped.getAsBoolean(); page++) {
+                Response<FatigueChangesResp> resp =
+                        api.getRecordChanges(authHeader, userId, cursor, pageSize).execute();
+
+                if (resp.code() == HTTP_GONE && cursor != null) {
+                    // 游標太舊伺服器已不保留變更紀錄：從頭抓（upsert 可重複套用）
+                    store.resetCursor();
+                    cursor = null;
+                    continue;
+                }
+                if (isUnsupported(resp.code())) return new Outcome(Status.UNSUPPORTED, changed);
+                if (!resp.isSuccessful() || resp.body() == null) return new Outcome(Status.RETRY, changed);
+
+                FatigueChangesResp body = resp.body();
+                List<FatigueChangeDto> changes = body.changes != null ? body.changes : Collections.emptyList();
+                String next = nextCursor(body, changes, cursor);
+
+                List<FatigueRecord> upserts = new ArrayList<>();
+                List<String> deleted = new ArrayList<>();
+                collapse(changes, upserts, deleted);
+                changed += store.apply(upserts, deleted, next);
+                cursor = next;
+
+                if (!body.has_more || changes.isEmpty()) break;
+            }
+        } catch (IOException e) {
+            return new Outcome(Status.RETRY, changed);
+        }
+        return new Outcome(Status.DONE, changed);
+    }
+
+    static boolean isUnsupported(int code) {
+        return code == HTTP_NOT_FOUND || code == HTTP_BAD_METHOD || code == HTTP_NOT_IMPLEMENTED;
+    }
+
+    /** 同一頁可能有同一筆的多次變更，只留最後一次；分成 upsert 與墓碑 */
+    static void collapse(@NonNull List<FatigueChangeDto> changes,
+                         @NonNull List<FatigueRecord> upserts, @NonNull List<String> deleted) {
+        Map<String, FatigueChangeDto> latest = new LinkedHashMap<>();
+        for (FatigueChangeDto d : changes) {
+            if (d != null && d.id != null) latest.put(d.id, d);
+        }
+        for (FatigueChangeDto d : latest.values()) {
+            if (d.deleted) {
+                deleted.add(d.id);
+            } else if (d.timestamp_ms > 0) {
+                FatigueRecord r = new FatigueRecord(d.timestamp_ms, d.score);
+                r.setServerId(d.id);
+                r.setClientId(d.client_id);
+                r.setSynced(true);
+                upserts.add(r);
+            }
+        }
+    }
+
+    /** 伺服器沒給 next_cursor 時，用這頁最後一筆的 updated_at:id 當高水位 */
+    @Nullable
+    static String nextCursor(@NonNull FatigueChangesResp body, @NonNull List<FatigueChangeDto> changes,
+                             @Nullable String current) {
+        if (body.next_cursor != null && !body.next_cursor.isEmpty()) return body.next_cursor;
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            FatigueChangeDto last = changes.get(i);
+            if (last != null && last.id != null) return last.updated_at + ":" + last.id;
+        }
+        return current;
+    }
+}
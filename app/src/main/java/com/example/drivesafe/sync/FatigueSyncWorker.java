@@ -0,0 +1,170 @@
+package com.example.drivesafe.sync;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.drivesafe.BuildConfig;
+import com.example.drivesafe.db.AppDatabase;
+import com.example.drivesafe.db.FatigueRecord;
+import com.example.drivesafe.db.SyncState;
+import com.example.drivesafe.net.ApiClient;
+import com.example.drivesafe.net.ApiService;
+import com.example.drivesafe.net.TokenStore;
+
+import java.util.List;
+
+/**
+ * 增量同步（伺服器 → 本機 Room）：
+ * - 帶上次的游標呼叫 driving_records/changes，只拿之後新增/修改/刪除的紀錄
+ * - 每頁的變更與新游標在同一個 transaction 內寫入（中斷後從上次成功那頁繼續）
+ * - 以 serverId upsert；deleted = true 的墓碑會刪掉本機對應紀錄
+ * - 伺服器回 410（游標過期）時清掉游標從頭抓
+ * - 伺服器還沒有這個端點（404/405/501）時 FAILED 並帶 KEY_UNSUPPORTED，
+ *   畫面用 isUnsupported() 判斷後改走舊的整包下載（端點上線前保留）
+ *
+ * 分頁迴圈在 DeltaSync；畫面讀 Room，要更新時 enqueue()，再觀察 observe() 的 WorkInfo 決定何時重畫/收 loading。
+ */
+public class FatigueSyncWorker extends Worker {
+
+    // 預設（若 enqueue 時沒傳就用這個）
+    private static final String DEFAULT_BASE_URL = BuildConfig.BASE_URL;
+    private static final String DEFAULT_USER_ID  = "00000000-0000-0000-0000-000000000001";
+
+    // InputData keys
+    private static final String KEY_BASE_URL = "base_url";
+    private static final String KEY_USER_ID  = "user_id";
+
+    /** OutputData：這次實際變動的本機筆數 */
+    public static final String KEY_CHANGED = "changed";
+    /** OutputData（FAILED 時）：伺服器沒有 changes 端點（404/405/501） */
+    public static final String KEY_UNSUPPORTED = "unsupported";
+
+    // 唯一工作名稱：同一時間最多一個同步
+    private static final String UNIQUE_WORK_NAME = "fatigue_sync";
+
+    private static final int PAGE_SIZE = 500;
+    // 單次最多抓幾頁；剩下的游標已存好，下次同步接著抓
+    private static final int MAX_PAGES_PER_RUN = 40;
+
+    private final AppDatabase db;
+
+    public FatigueSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        db = AppDatabase.getInstance(context.getApplicationContext());
+    }
+
+    /** 排程同步（KEEP：已在跑或排隊中就不重複加） */
+    public static void enqueue(@NonNull Context ctx, @NonNull String baseUrl, @NonNull String userId) {
+        Data input = new Data.Builder()
+                .putString(KEY_BASE_URL, baseUrl)
+                .putString(KEY_USER_ID, userId)
+                .build();
+
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(FatigueSyncWorker.class)
+                .setInputData(input)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(ctx.getApplicationContext())
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, req);
+    }
+
+    /** 同步工作的狀態（同一個唯一工作名稱下的所有 WorkInfo） */
+    @NonNull
+    public static LiveData<List<WorkInfo>> observe(@NonNull Context ctx) {
+        return WorkManager.getInstance(ctx.getApplicationContext())
+                .getWorkInfosForUniqueWorkLiveData(UNIQUE_WORK_NAME);
+    }
+
+    /** 最近一次同步是否因為伺服器沒有 changes 端點而失敗 */
+    public static boolean isUnsupported(@Nullable List<WorkInfo> infos) {
+        if (infos == null) return false;
+        for (WorkInfo info : infos) {
+            if (info.getState() == WorkInfo.State.FAILED
+                    && info.getOutputData().getBoolean(KEY_UNSUPPORTED, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 同步範圍（sync_state.scope） */
+    @NonNull
+    static String scope(@NonNull String userId) {
+        return "fatigue_records:" + userId;
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String baseUrl = getInputData().getString(KEY_BASE_URL);
+        if (baseUrl == null || baseUrl.isEmpty()) baseUrl = DEFAULT_BASE_URL;
+
+        String userId = getInputData().getString(KEY_USER_ID);
+        if (userId == null || userId.isEmpty()) userId = DEFAULT_USER_ID;
+
+        ApiService api = ApiClient.api(baseUrl);
+
+        String token = new TokenStore(getApplicationContext()).get();
+        String authHeader = (token != null && !token.isEmpty()) ? ("Bearer " + token) : null;
+
+        DeltaSync sync = new DeltaSync(api, authHeader, userId, PAGE_SIZE, MAX_PAGES_PER_RUN);
+        DeltaSync.Outcome outcome = sync.run(new RoomStore(scope(userId)), this::isStopped);
+        switch (outcome.status) {
+            case UNSUPPORTED:
+                // 伺服器還沒有 changes 端點：重試也沒用，讓畫面改走舊的整包下載
+                return Result.failure(new Data.Builder().putBoolean(KEY_UNSUPPORTED, true).build());
+            case RETRY:
+                return Result.retry();
+            default:
+                return Result.success(new Data.Builder().putInt(KEY_CHANGED, outcome.changed).build());
+        }
+    }
+
+    /** 游標存在 sync_state；每頁的變更與新游標在同一個 transaction 內寫入 */
+    private final class RoomStore implements DeltaSync.Store {
+        private final String scope;
+
+        RoomStore(String scope) {
+            this.scope = scope;
+        }
+
+        @Nullable
+        @Override
+        public String cursor() {
+            SyncState state = db.syncStateDao().get(scope);
+            return state == null ? null : state.getCursor();
+        }
+
+        @Override
+        public void resetCursor() {
+            db.syncStateDao().delete(scope);
+        }
+
+        @Override
+        public int apply(@NonNull List<FatigueRecord> upserts, @NonNull List<String> deletedServerIds,
+                         @Nullable String next) {
+            return db.runInTransaction(() -> {
+                int n = db.fatigueDao().applyRemoteChanges(upserts, deletedServerIds);
+                db.syncStateDao().upsert(new SyncState(scope, next, System.currentTimeMillis()));
+                return n;
+            });
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.drivesafe.sync;
 
 import android.content.Context;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.work.Constraints;
 import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.NetworkType;
 import androidx.work.OneTimeWorkRequest;
 import androidx.work.WorkManager;
@@ -17,19 +20,31 @@ import com.example.drivesafe.db.FatigueDao;
 import com.example.drivesafe.db.FatigueRecord;
 import com.example.drivesafe.net.ApiClient;
 import com.example.drivesafe.net.ApiService;
+import com.example.drivesafe.net.FatigueBatchDto;
+import com.example.drivesafe.net.FatigueBatchResp;
 import com.example.drivesafe.net.FatigueDto;
 import com.example.drivesafe.net.TokenStore;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import retrofit2.Response;
 
 /**
  * 將本機未同步紀錄上傳後端，成功後標記 synced=true 並寫回 serverId。
+ * - 分批上傳（筆數與估計大小都有上限），每批成功就在一個 transaction 內寫回
+ * - 每筆帶 client_id（FatigueRecord.clientId）當冪等鍵：逾時重送不會在伺服器重複建立
+ * - 回應用 client_id 對回本機紀錄（HashMap，O(1)）
+ * - 優先用欄式 + gzip 的 postRecordBatch；後端不支援時退回 postRecords（JSON），一段時間後再試
+ * - 中途失敗時已寫回的批次不會再上傳，重試從下一批開始
  */
 public class UploadWorker extends Worker {
 
+    private static final String TAG = "UploadWorker";
+
     // 預設（若 enqueue 時沒傳就用這個）
     private static final String DEFAULT_BASE_URL = BuildConfig.BASE_URL;
     private static final String DEFAULT_USER_ID  = "00000000-0000-0000-0000-000000000001";
@@ -38,6 +53,19 @@ public class UploadWorker extends Worker {
     private static final String KEY_BASE_URL = "base_url";
     private static final String KEY_USER_ID  = "user_id";
 
+    // 唯一工作名稱：同一時間最多一個待執行的上傳
+    private static final String UNIQUE_WORK_NAME = "fatigue_upload";
+
+    // 每批上限：筆數 / 估計 JSON 大小
+    private static final int CHUNK_MAX_RECORDS = 500;
+    private static final int CHUNK_MAX_BYTES = 128 * 1024;
+    // 每筆 JSON 除 user_id 以外的大約長度（欄位名 + client_id + 數字）
+    private static final int DTO_OVERHEAD_BYTES = 120;
+
+    // 後端不支援欄式批次時，多久後再試一次
+    private static final long COLUMNAR_RETRY_MS = 6 * 60 * 60 * 1000L;
+    private static volatile long columnarRetryAt = 0L;
+
     private final AppDatabase db;
     private final FatigueDao dao;
 
@@ -47,7 +75,10 @@ public class UploadWorker extends Worker {
         dao = db.fatigueDao();
     }
 
-    /** 供外部呼叫：一次排程上傳工作 */
+    /**
+     * 供外部呼叫：排程上傳工作
+     * 以唯一工作排程（KEEP）：已有待執行的上傳時不再新增，該次執行會一併帶走所有未同步紀錄
+     */
     public static void enqueue(@NonNull Context ctx, @NonNull String baseUrl, @NonNull String userId) {
         Data input = new Data.Builder()
                 .putString(KEY_BASE_URL, baseUrl)
@@ -63,72 +94,123 @@ public class UploadWorker extends Worker {
                 .setConstraints(constraints)
                 .build();
 
-        WorkManager.getInstance(ctx.getApplicationContext()).enqueue(req);
+        WorkManager.getInstance(ctx.getApplicationContext())
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, req);
     }
 
     @NonNull
     @Override
     public Result doWork() {
-        try {
-            // 讀取 InputData，沒有就用預設
-            String baseUrl = getInputData().getString(KEY_BASE_URL);
-            if (baseUrl == null || baseUrl.isEmpty()) baseUrl = DEFAULT_BASE_URL;
-
-            String userId = getInputData().getString(KEY_USER_ID);
-            if (userId == null || userId.isEmpty()) userId = DEFAULT_USER_ID;
+        // 讀取 InputData，沒有就用預設
+        String baseUrl = getInputData().getString(KEY_BASE_URL);
+        if (baseUrl == null || baseUrl.isEmpty()) baseUrl = DEFAULT_BASE_URL;
 
-            // 建立 ApiService（ApiClient 現在回傳 Retrofit，這裡用 .create(...)）
-            ApiService api = ApiClient.get(baseUrl).create(ApiService.class);
+        String userId = getInputData().getString(KEY_USER_ID);
+        if (userId == null || userId.isEmpty()) userId = DEFAULT_USER_ID;
 
-            // 1) 取未同步
-            List<FatigueRecord> unsynced = dao.getUnsynced();
-            if (unsynced == null || unsynced.isEmpty()) {
-                return Result.success();
-            }
+        // 共用的 ApiService（同一組連線與快取）
+        ApiService api = ApiClient.api(baseUrl);
 
-            // 2) 組 DTO（時間以 effectiveTime() 為準）
-            List<FatigueDto> payload = new ArrayList<>(unsynced.size());
-            for (FatigueRecord r : unsynced) {
-                long ts = r.effectiveTime();
-                if (ts <= 0) continue;
-                payload.add(FatigueDto.of(userId, ts, r.getScore()));
-            }
-            if (payload.isEmpty()) {
-                return Result.success();
-            }
+        // Authorization 標頭（若無 token 就傳 null）
+        String token = new TokenStore(getApplicationContext()).get();
+        String authHeader = (token != null && !token.isEmpty()) ? ("Bearer " + token) : null;
 
-            // 3) Authorization 標頭（若無 token 就傳 null）
-            String token = new TokenStore(getApplicationContext()).get();
-            String authHeader = (token != null && !token.isEmpty()) ? ("Bearer " + token) : null;
+        int chunkSize = chunkSize(userId);
 
-            // 4) 呼叫後端（多筆上傳）
-            Response<List<FatigueDto>> resp = api.postRecords(authHeader, payload).execute();
-            if (!resp.isSuccessful() || resp.body() == null) {
-                return Result.retry();
-            }
-            List<FatigueDto> created = resp.body();
-
-            // 5) 寫回本機（標記 synced 並存 serverId）
-            for (FatigueRecord r : unsynced) {
-                // 嘗試找出對應的 FatigueDto：用時間戳 & 分數比對
-                FatigueDto match = null;
-                for (FatigueDto d : created) {
-                    if (d != null && d.timestamp_ms == r.effectiveTime()
-                            && d.score == r.getScore()) {
-                        match = d;
-                        break;
+        try {
+            while (!isStopped()) {
+                // 1) 取最早的一批未同步（上一批已寫回 synced，不會重複取到）
+                List<FatigueRecord> chunk = dao.getUnsyncedChunk(chunkSize);
+                if (chunk.isEmpty()) return Result.success();
+
+                // 2) 補 clientId：理論上 DAO 新增時都已補上；保險起見先寫回 DB 再送，重試才會用同一個鍵
+                Map<String, Long> localIdByClientId = new HashMap<>(chunk.size() * 2);
+                for (FatigueRecord r : chunk) {
+                    if (r.getClientId() == null) {
+                        r.ensureClientId();
+                        dao.setClientId(r.getId(), r.getClientId());
                     }
+                    localIdByClientId.put(r.getClientId(), r.getId());
                 }
-                if (match != null && match.id != null) {
-                    dao.markSynced(r.getId(), match.id);
-                }
-            }
 
-            return Result.success();
+                // 3) 呼叫後端（這一批），回傳 localId → serverId；null 表示這次失敗
+                Map<Long, String> serverIds = post(api, authHeader, userId, chunk, localIdByClientId);
+
+                // 4) 這一批一次寫回；一筆都沒對上就停，避免同一批一直重送
+                if (serverIds == null || serverIds.isEmpty()) return Result.retry();
+                dao.markSyncedAll(serverIds);
+                if (serverIds.size() < chunk.size()) return Result.retry();
+            }
+            return Result.retry();
 
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.e(TAG, "upload failed: " + e.getMessage(), e);
             return Result.retry();
         }
     }
+
+    @Nullable
+    private Map<Long, String> post(ApiService api, String authHeader, String userId,
+                                   List<FatigueRecord> chunk, Map<String, Long> localIdByClientId) throws IOException {
+        if (System.currentTimeMillis() >= columnarRetryAt) {
+            FatigueBatchDto batch = new FatigueBatchDto(userId, chunk.size());
+            for (FatigueRecord r : chunk) batch.add(r.getClientId(), r.effectiveTime(), r.getScore());
+
+            Response<FatigueBatchResp> resp = api.postRecordBatch(authHeader, batch).execute();
+            if (resp.isSuccessful() && resp.body() != null) {
+                return match(resp.body().id, resp.body().client_id, batch.client_id, localIdByClientId);
+            }
+            if (!isFormatUnsupported(resp.code())) return null;
+            columnarRetryAt = System.currentTimeMillis() + COLUMNAR_RETRY_MS;
+        }
+
+        // 舊格式：每筆一個 JSON 物件（時間以 effectiveTime() 為準）
+        List<FatigueDto> payload = new ArrayList<>(chunk.size());
+        List<String> sentClientIds = new ArrayList<>(chunk.size());
+        for (FatigueRecord r : chunk) {
+            FatigueDto dto = FatigueDto.of(userId, r.effectiveTime(), r.getScore());
+            dto.client_id = r.getClientId();
+            payload.add(dto);
+            sentClientIds.add(r.getClientId());
+        }
+        Response<List<FatigueDto>> resp = api.postRecords(authHeader, payload).execute();
+        if (!resp.isSuccessful() || resp.body() == null) return null;
+
+        List<FatigueDto> created = resp.body();
+        List<String> ids = new ArrayList<>(created.size());
+        List<String> clientIds = new ArrayList<>(created.size());
+        for (FatigueDto d : created) {
+            ids.add(d == null ? null : d.id);
+            clientIds.add(d == null ? null : d.client_id);
+        }
+        return match(ids, clientIds, sentClientIds, localIdByClientId);
+    }
+
+    /** 每批筆數：筆數上限與估計大小上限取小者（user_id 每筆都會重複送） */
+    static int chunkSize(@NonNull String userId) {
+        int maxRecords = Math.max(1, CHUNK_MAX_BYTES / (DTO_OVERHEAD_BYTES + userId.length()));
+        return Math.min(CHUNK_MAX_RECORDS, maxRecords);
+    }
+
+    /** 用 client_id 對回本機；後端沒回 client_id 時依送出順序對應（筆數一致才對） */
+    @NonNull
+    static Map<Long, String> match(@Nullable List<String> ids, @Nullable List<String> clientIds,
+                                           List<String> sentClientIds, Map<String, Long> localIdByClientId) {
+        Map<Long, String> out = new HashMap<>();
+        if (ids == null) return out;
+        for (int i = 0; i < ids.size(); i++) {
+            String serverId = ids.get(i);
+            if (serverId == null) continue;
+            String clientId = (clientIds != null && i < clientIds.size()) ? clientIds.get(i) : null;
+            if (clientId == null && ids.size() == sentClientIds.size()) clientId = sentClientIds.get(i);
+            Long localId = clientId == null ? null : localIdByClientId.get(clientId);
+            if (localId != null) out.put(localId, serverId);
+        }
+        return out;
+    }
+
+    /** 後端還沒有 batch 端點或不認得格式 */
+    private static boolean isFormatUnsupported(int code) {
+        return code == 404 || code == 405 || code == 415 || code == 501;
+    }
 }
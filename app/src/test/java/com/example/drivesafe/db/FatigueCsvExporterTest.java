@@ -0,0 +1,60 @@
+package com.example.drivesafe.db;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class FatigueCsvExporterTest {
+
+    @Test
+    public void plainFields_areWrittenAsIs() {
+        assertEquals("abc-123", field("abc-123"));
+        assertEquals("", field(null));
+    }
+
+    @Test
+    public void specialCharacters_areQuotedPerRfc4180() {
+        assertEquals("\"a,b\"", field("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", field("say \"hi\""));
+        assertEquals("\"line1\nline2\"", field("line1\nline2"));
+        assertEquals("\"cr\r\"", field("cr\r"));
+    }
+
+    @Test
+    public void row_usesEffectiveTimeAndQuotedLocalTime() {
+        FatigueRecord r = new FatigueRecord(0L, 2.5f);
+        r.setId(7);
+        r.setSynced(true);
+        r.setServerId("srv,1");
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.US);
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        StringBuilder sb = new StringBuilder();
+        FatigueCsvExporter.appendRow(sb, r, fmt);
+        assertEquals("7,0,\"\",2.5,1,\"srv,1\"\n", sb.toString());
+
+        r.setBothTimes(86_400_000L);
+        sb.setLength(0);
+        FatigueCsvExporter.appendRow(sb, r, fmt);
+        assertEquals("7,86400000,\"1970/01/02 00:00:00\",2.5,1,\"srv,1\"\n", sb.toString());
+    }
+
+    @Test
+    public void header_matchesRowColumnCount() {
+        FatigueRecord r = new FatigueRecord(1_000L, 1f);
+        StringBuilder sb = new StringBuilder();
+        FatigueCsvExporter.appendRow(sb, r, new SimpleDateFormat("yyyy", Locale.US));
+
+        assertEquals(FatigueCsvExporter.HEADER.split(",").length, sb.toString().trim().split(",", -1).length);
+    }
+
+    private static String field(String value) {
+        StringBuilder sb = new StringBuilder();
+        FatigueCsvExporter.appendField(sb, value);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.drivesafe.db;
+
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingSource.LoadResult;
+import androidx.paging.PagingState;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FatigueRecordPagingSourceTest {
+
+    private static final int LIMIT = 3;
+
+    @Test
+    public void refreshFromTop_hasNoPrevKeyAndEndsAtLastRow() {
+        List<FatigueRecord> rows = records(500, 400, 300);
+
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> page =
+                FatigueRecordPagingSource.olderPage(rows, null, LIMIT);
+
+        assertNull(page.getPrevKey());
+        assertKey(300, 3, page.getNextKey());
+    }
+
+    @Test
+    public void append_shortPageIsTheEnd() {
+        FatigueRecordPagingSource.Key after = new FatigueRecordPagingSource.Key(300, 3);
+        List<FatigueRecord> rows = records(200, 100);
+
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> page =
+                FatigueRecordPagingSource.olderPage(rows, after, LIMIT);
+
+        assertKey(200, 1, page.getPrevKey());
+        assertNull(page.getNextKey());
+    }
+
+    @Test
+    public void prepend_reversesToNewestFirst() {
+        // pageNewerThan 由舊到新回傳
+        List<FatigueRecord> rows = records(600, 700, 800);
+
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> page =
+                FatigueRecordPagingSource.newerPage(rows, LIMIT);
+
+        assertEquals(800, page.getData().get(0).getEffectiveAt());
+        assertKey(800, 3, page.getPrevKey());
+        assertKey(600, 1, page.getNextKey());
+    }
+
+    @Test
+    public void prepend_shortPageReachesTheNewest() {
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> page =
+                FatigueRecordPagingSource.newerPage(records(600), LIMIT);
+
+        assertNull(page.getPrevKey());
+        assertKey(600, 1, page.getNextKey());
+    }
+
+    @Test
+    public void emptyResults_haveNoKeys() {
+        FatigueRecordPagingSource.Key key = new FatigueRecordPagingSource.Key(300, 3);
+
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> older =
+                FatigueRecordPagingSource.olderPage(new ArrayList<>(), key, LIMIT);
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> newer =
+                FatigueRecordPagingSource.newerPage(new ArrayList<>(), LIMIT);
+
+        assertNull(older.getPrevKey());
+        assertNull(older.getNextKey());
+        assertNull(newer.getPrevKey());
+        assertNull(newer.getNextKey());
+    }
+
+    @Test
+    public void refreshKey_includesTheAnchorRow() {
+        List<FatigueRecord> rows = records(500, 400, 300);
+        LoadResult.Page<FatigueRecordPagingSource.Key, FatigueRecord> page =
+                FatigueRecordPagingSource.olderPage(rows, null, LIMIT);
+        PagingState<FatigueRecordPagingSource.Key, FatigueRecord> state = new PagingState<>(
+                Collections.singletonList(page), 1, new PagingConfig(LIMIT), 0);
+
+        FatigueRecordPagingSource.Key key = new FatigueRecordPagingSource(null, 0, 0).getRefreshKey(state);
+
+        // pageOlderThan 是嚴格小於，所以 id + 1
+        assertKey(400, 3, key);
+    }
+
+    /** id 依序為 1, 2, 3…（與 effectiveAt 的順序無關） */
+    private static List<FatigueRecord> records(long... effectiveAt) {
+        List<FatigueRecord> out = new ArrayList<>();
+        for (int i = 0; i < effectiveAt.length; i++) {
+            FatigueRecord r = new FatigueRecord(effectiveAt[i], 1f);
+            r.setId(i + 1);
+            out.add(r);
+        }
+        return out;
+    }
+
+    private static void assertKey(long effectiveAt, long id, FatigueRecordPagingSource.Key key) {
+        assertEquals(effectiveAt, key.effectiveAt);
+        assertEquals(id, key.id);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.drivesafe.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class FatigueRecordTest {
+
+    @Test
+    public void copy_keepsEveryColumn() {
+        FatigueRecord r = new FatigueRecord(1_000L, 3f);
+        r.setId(7L);
+        r.setUserId(2L);
+        r.setServerId("s1");
+        r.setClientId("c1");
+        r.setSynced(true);
+
+        FatigueRecord c = r.copy();
+
+        assertNotSame(r, c);
+        assertEquals(7L, c.getId());
+        assertEquals(2L, c.getUserId());
+        assertEquals("s1", c.getServerId());
+        assertEquals("c1", c.getClientId());
+        assertEquals(1_000L, c.getDetectedAt());
+        assertEquals(Long.valueOf(1_000L), c.getTimestampMs());
+        assertEquals(1_000L, c.getEffectiveAt());
+        assertEquals(3f, c.getScore(), 0f);
+        assertTrue(c.isSynced());
+    }
+
+    @Test
+    public void copy_editsDoNotTouchTheOriginal() {
+        FatigueRecord r = new FatigueRecord(1_000L, 3f);
+
+        FatigueRecord c = r.copy();
+        c.setScore(8f);
+        c.setBothTimes(5_000L);
+
+        assertEquals(3f, r.getScore(), 0f);
+        assertEquals(1_000L, r.getEffectiveAt());
+        assertEquals(5_000L, c.getEffectiveAt());
+    }
+}
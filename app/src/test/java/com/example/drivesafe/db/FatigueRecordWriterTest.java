@@ -0,0 +1,136 @@
+package com.example.drivesafe.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FatigueRecordWriterTest {
+
+    /** 時間門檻設很長，只有大小門檻或手動 flush 會寫入 */
+    private static final long NEVER_MS = 60_000L;
+
+    /** 記下每一批寫入；failNext 為 true 時下一次寫入丟例外 */
+    private static class FakeInserter implements FatigueRecordWriter.BatchInserter {
+        final List<List<FatigueRecord>> batches = Collections.synchronizedList(new ArrayList<>());
+        final AtomicBoolean failNext = new AtomicBoolean();
+        volatile CountDownLatch written = new CountDownLatch(1);
+
+        @Override
+        public void insertAll(List<FatigueRecord> batch) {
+            if (failNext.getAndSet(false)) throw new IllegalStateException("disk full");
+            batches.add(new ArrayList<>(batch));
+            written.countDown();
+        }
+    }
+
+    private static FatigueRecord record(long ts, float score) {
+        return new FatigueRecord(ts, score);
+    }
+
+    @Test
+    public void add_coalescesSameUserWithinWindow_keepingHigherScore() {
+        FakeInserter inserter = new FakeInserter();
+        FatigueRecordWriter writer = new FatigueRecordWriter(inserter, NEVER_MS);
+
+        writer.add(record(10_000L, 2f));
+        writer.add(record(10_500L, 5f));
+        writer.add(record(10_900L, 3f));
+        assertEquals(1, writer.pendingCount());
+
+        assertTrue(writer.flushBlocking());
+        assertEquals(1, inserter.batches.size());
+        FatigueRecord merged = inserter.batches.get(0).get(0);
+        assertEquals(10_000L, merged.effectiveTime());
+        assertEquals(5f, merged.getScore(), 0f);
+    }
+
+    @Test
+    public void add_doesNotCoalesceOtherUserOrOutsideWindow() {
+        FakeInserter inserter = new FakeInserter();
+        FatigueRecordWriter writer = new FatigueRecordWriter(inserter, NEVER_MS);
+
+        writer.add(record(10_000L, 2f));
+        FatigueRecord otherUser = record(10_100L, 2f);
+        otherUser.setUserId(2L);
+        writer.add(otherUser);
+        writer.add(record(20_000L, 2f));
+
+        assertEquals(3, writer.pendingCount());
+    }
+
+    @Test
+    public void add_flushesImmediatelyAtBatchSize() throws Exception {
+        FakeInserter inserter = new FakeInserter();
+        FatigueRecordWriter writer = new FatigueRecordWriter(inserter, NEVER_MS);
+
+        for (int i = 0; i < FatigueRecordWriter.MAX_BATCH; i++) {
+            writer.add(record(10_000L + i * 2_000L, 1f));
+        }
+
+        assertTrue(inserter.written.await(2, TimeUnit.SECONDS));
+        assertEquals(FatigueRecordWriter.MAX_BATCH, inserter.batches.get(0).size());
+        assertEquals(0, writer.pendingCount());
+    }
+
+    @Test
+    public void add_flushesAfterTimeThreshold() throws Exception {
+        FakeInserter inserter = new FakeInserter();
+        FatigueRecordWriter writer = new FatigueRecordWriter(inserter, 50L);
+
+        writer.add(record(10_000L, 1f));
+
+        assertTrue(inserter.written.await(2, TimeUnit.SECONDS));
+        assertEquals(1, inserter.batches.get(0).size());
+    }
+
+    @Test
+    public void flush_failure_requeuesBatchAheadOfNewerRecords() {
+        FakeInserter inserter = new FakeInserter();
+        FatigueRecordWriter writer = new FatigueRecordWriter(inserter, NEVER_MS);
+        AtomicInteger afterFlush = new AtomicInteger();
+        writer.setAfterFlush(afterFlush::incrementAndGet);
+
+        writer.add(record(10_000L, 1f));
+        writer.add(record(20_000L, 2f));
+        inserter.failNext.set(true);
+        writer.flushBlocking();
+
+        assertEquals(0, inserter.batches.size());
+        assertEquals(2, writer.pendingCount());
+        assertEquals(0, afterFlush.get());
+
+        writer.add(record(30_000L, 3f));
+        writer.flushBlocking();
+
+        assertEquals(1, inserter.batches.size());
+        List<FatigueRecord> batch = inserter.batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals(10_000L, batch.get(0).effectiveTime());
+        assertEquals(20_000L, batch.get(1).effectiveTime());
+        assertEquals(30_000L, batch.get(2).effectiveTime());
+        assertEquals(0, writer.pendingCount());
+        assertEquals(1, afterFlush.get());
+    }
+
+    @Test
+    public void flush_withEmptyBuffer_skipsInsertAndCallback() {
+        FakeInserter inserter = new FakeInserter();
+        FatigueRecordWriter writer = new FatigueRecordWriter(inserter, NEVER_MS);
+        AtomicInteger afterFlush = new AtomicInteger();
+        writer.setAfterFlush(afterFlush::incrementAndGet);
+
+        assertTrue(writer.flushBlocking());
+
+        assertEquals(0, inserter.batches.size());
+        assertEquals(0, afterFlush.get());
+    }
+}
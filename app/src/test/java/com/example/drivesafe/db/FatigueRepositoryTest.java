@@ -0,0 +1,115 @@
+package com.example.drivesafe.db;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FatigueRepositoryTest {
+
+    private Owner owner;
+    private List<Integer> delivered;
+
+    @Before
+    public void setUp() {
+        owner = new Owner();
+        owner.registry.setCurrentState(Lifecycle.State.RESUMED);
+        delivered = new ArrayList<>();
+    }
+
+    @Test
+    public void deliver_whileAlive_passesResult() {
+        SettableFuture<Integer> read = SettableFuture.create();
+        SettableFuture<Integer> write = SettableFuture.create();
+        deliver(read, true);
+        deliver(write, false);
+
+        read.set(1);
+        write.set(2);
+
+        assertEquals(2, delivered.size());
+        assertEquals(Integer.valueOf(1), delivered.get(0));
+        assertEquals(Integer.valueOf(2), delivered.get(1));
+    }
+
+    @Test
+    public void deliver_read_isCancelledOnDestroy() {
+        SettableFuture<Integer> read = SettableFuture.create();
+        deliver(read, true);
+
+        owner.registry.setCurrentState(Lifecycle.State.DESTROYED);
+
+        assertTrue(read.isCancelled());
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void deliver_write_keepsRunningButDropsCallbackOnDestroy() throws Exception {
+        SettableFuture<Integer> write = SettableFuture.create();
+        deliver(write, false);
+
+        owner.registry.setCurrentState(Lifecycle.State.DESTROYED);
+        write.set(7);
+
+        assertFalse(write.isCancelled());
+        assertEquals(Integer.valueOf(7), write.get());
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void deliver_afterDestroy_cancelsReadsOnly() {
+        owner.registry.setCurrentState(Lifecycle.State.DESTROYED);
+        SettableFuture<Integer> read = SettableFuture.create();
+        SettableFuture<Integer> write = SettableFuture.create();
+
+        deliver(read, true);
+        deliver(write, false);
+        write.set(1);
+
+        assertTrue(read.isCancelled());
+        assertFalse(write.isCancelled());
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void deliver_removesItsObserverOnceDone() {
+        SettableFuture<Integer> read = SettableFuture.create();
+        deliver(read, true);
+        assertEquals(1, owner.registry.getObserverCount());
+
+        read.set(1);
+
+        assertEquals(0, owner.registry.getObserverCount());
+    }
+
+    // ---- helpers ----
+
+    private void deliver(SettableFuture<Integer> future, boolean cancelOnDestroy) {
+        FatigueRepository.deliver(owner.getLifecycle(), future, delivered::add,
+                MoreExecutors.directExecutor(), cancelOnDestroy);
+    }
+
+    /** JVM 測試用：不檢查主執行緒的 LifecycleRegistry */
+    private static final class Owner implements LifecycleOwner {
+        final LifecycleRegistry registry = LifecycleRegistry.createUnsafe(this);
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return registry;
+        }
+    }
+}
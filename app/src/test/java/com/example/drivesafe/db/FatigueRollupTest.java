@@ -0,0 +1,75 @@
+package com.example.drivesafe.db;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class FatigueRollupTest {
+
+    @Test
+    public void bucketStart_alignsToUtcRegardlessOfDeviceZone() {
+        long t = 1_700_000_123_456L;
+        TimeZone original = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Taipei"));
+            long taipei = FatigueRollup.bucketStart(t, FatigueRollup.DAY);
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            long newYork = FatigueRollup.bucketStart(t, FatigueRollup.DAY);
+
+            assertEquals(taipei, newYork);
+            assertEquals(t - t % FatigueRollup.DAY, taipei);
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    @Test
+    public void bucketStart_floorsEachResolution() {
+        long t = 3 * FatigueRollup.DAY + 5 * FatigueRollup.HOUR + 7 * FatigueRollup.MINUTE + 1_234L;
+
+        assertEquals(t - 1_234L, FatigueRollup.bucketStart(t, FatigueRollup.MINUTE));
+        assertEquals(3 * FatigueRollup.DAY + 5 * FatigueRollup.HOUR, FatigueRollup.bucketStart(t, FatigueRollup.HOUR));
+        assertEquals(3 * FatigueRollup.DAY, FatigueRollup.bucketStart(t, FatigueRollup.DAY));
+        // 1970 以前也往下取整，不往 0 靠
+        assertEquals(-FatigueRollup.MINUTE, FatigueRollup.bucketStart(-1L, FatigueRollup.MINUTE));
+    }
+
+    @Test
+    public void resolutionFor_picksTheFinestThatFits() {
+        assertEquals(FatigueRollup.MINUTE, FatigueRollup.resolutionFor(FatigueRollup.DAY, 1_440));
+        assertEquals(FatigueRollup.HOUR, FatigueRollup.resolutionFor(FatigueRollup.DAY, 100));
+        assertEquals(FatigueRollup.DAY, FatigueRollup.resolutionFor(30 * FatigueRollup.DAY, 100));
+        assertEquals(FatigueRollup.DAY, FatigueRollup.resolutionFor(365 * FatigueRollup.DAY, 100));
+    }
+
+    @Test
+    public void addMergeSeal_keepMinMaxAverageAndP95() {
+        FatigueRollup a = new FatigueRollup(1, FatigueRollup.HOUR, 0);
+        FatigueRollup b = new FatigueRollup(2, FatigueRollup.HOUR, 0);
+        for (int i = 1; i <= 10; i++) a.add(i * 0.5f);
+        b.add(9f);
+
+        a.merge(b.seal());
+        a.seal();
+
+        assertEquals(11, a.getSampleCount());
+        assertEquals(0.5f, a.getScoreMin(), 0f);
+        assertEquals(9f, a.getScoreMax(), 0f);
+        assertEquals((27.5f + 9f) / 11f, a.average(), 1e-5f);
+        assertEquals(9f, a.getScoreP95(), 1e-4f);
+        assertEquals(11, ScoreSketch.decode(a.getSketch()).total());
+    }
+
+    @Test
+    public void seal_hundredPointScores_p95IsNotClampedToTen() {
+        FatigueRollup r = new FatigueRollup(1, FatigueRollup.HOUR, 0);
+        for (int i = 1; i <= 100; i++) r.add(i);
+
+        r.seal();
+
+        assertEquals(95f, r.getScoreP95(), 1e-4f);
+        assertEquals(100f, r.getScoreMax(), 0f);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.drivesafe.db;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteChangesTest {
+
+    @Test
+    public void match_unknownServerId_isInserted() {
+        FatigueRecord remote = remote("s1", "c1", 1_000L, 3f);
+
+        RemoteChanges plan = RemoteChanges.match(list(remote), new HashMap<>(), new HashMap<>());
+
+        assertEquals(list(remote), plan.inserts);
+        assertTrue(plan.updates.isEmpty());
+    }
+
+    @Test
+    public void match_byServerId_keepsLocalIdentity() {
+        FatigueRecord local = local(7L, 2L, "s1", "local-c", 1_000L, 3f, true);
+        FatigueRecord remote = remote("s1", null, 2_000L, 4f);
+
+        RemoteChanges plan = RemoteChanges.match(list(remote), map("s1", local), new HashMap<>());
+
+        assertTrue(plan.inserts.isEmpty());
+        assertEquals(1, plan.updates.size());
+        FatigueRecord r = plan.updates.get(0);
+        assertSame(remote, r);
+        assertEquals(7L, r.getId());
+        assertEquals(2L, r.getUserId());
+        assertEquals("local-c", r.getClientId());
+        assertEquals(2_000L, r.getEffectiveAt());
+    }
+
+    @Test
+    public void match_byClientId_whenServerIdNotWrittenBackYet() {
+        FatigueRecord local = local(9L, 1L, null, "c1", 1_000L, 3f, false);
+        FatigueRecord remote = remote("s1", "c1", 1_000L, 3f);
+
+        RemoteChanges plan = RemoteChanges.match(list(remote), new HashMap<>(), map("c1", local));
+
+        assertTrue(plan.inserts.isEmpty());
+        assertEquals(1, plan.updates.size());
+        assertEquals(9L, plan.updates.get(0).getId());
+        assertEquals("s1", plan.updates.get(0).getServerId());
+        assertTrue(plan.updates.get(0).isSynced());
+    }
+
+    @Test
+    public void match_serverIdWinsOverClientId() {
+        FatigueRecord byServer = local(1L, 1L, "s1", "a", 1_000L, 3f, true);
+        FatigueRecord byClient = local(2L, 1L, null, "b", 1_000L, 3f, false);
+        FatigueRecord remote = remote("s1", "b", 5_000L, 3f);
+
+        RemoteChanges plan = RemoteChanges.match(list(remote), map("s1", byServer), map("b", byClient));
+
+        assertEquals(1L, plan.updates.get(0).getId());
+    }
+
+    @Test
+    public void match_unchangedSyncedRow_isSkipped() {
+        FatigueRecord local = local(7L, 1L, "s1", "c1", 1_000L, 3f, true);
+        FatigueRecord remote = remote("s1", "c1", 1_000L, 3f);
+
+        RemoteChanges plan = RemoteChanges.match(list(remote), map("s1", local), new HashMap<>());
+
+        assertTrue(plan.inserts.isEmpty());
+        assertTrue(plan.updates.isEmpty());
+    }
+
+    @Test
+    public void match_sameValuesButLocalUnsynced_isStillUpdated() {
+        FatigueRecord local = local(7L, 1L, "s1", "c1", 1_000L, 3f, false);
+        FatigueRecord remote = remote("s1", "c1", 1_000L, 3f);
+
+        RemoteChanges plan = RemoteChanges.match(list(remote), map("s1", local), new HashMap<>());
+
+        assertEquals(1, plan.updates.size());
+    }
+
+    // ---- helpers ----
+
+    private static FatigueRecord remote(String serverId, String clientId, long at, float score) {
+        FatigueRecord r = new FatigueRecord(at, score);
+        r.setServerId(serverId);
+        r.setClientId(clientId);
+        r.setSynced(true);
+        return r;
+    }
+
+    private static FatigueRecord local(long id, long userId, String serverId, String clientId,
+                                       long at, float score, boolean synced) {
+        FatigueRecord r = new FatigueRecord(at, score);
+        r.setId(id);
+        r.setUserId(userId);
+        r.setServerId(serverId);
+        r.setClientId(clientId);
+        r.setSynced(synced);
+        return r;
+    }
+
+    private static List<FatigueRecord> list(FatigueRecord r) {
+        return Collections.singletonList(r);
+    }
+
+    private static Map<String, FatigueRecord> map(String key, FatigueRecord r) {
+        Map<String, FatigueRecord> m = new HashMap<>();
+        m.put(key, r);
+        return m;
+    }
+}
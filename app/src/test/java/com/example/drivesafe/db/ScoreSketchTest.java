@@ -0,0 +1,118 @@
+package com.example.drivesafe.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScoreSketchTest {
+
+    @Test
+    public void emptySketch_percentileIsZero() {
+        assertEquals(0f, new ScoreSketch().percentile(0.95f), 0f);
+    }
+
+    @Test
+    public void percentiles_followTheRankOfEachBin() {
+        ScoreSketch sketch = new ScoreSketch();
+        for (int i = 0; i < 100; i++) sketch.add(i * 0.1f);
+
+        assertEquals(100, sketch.total());
+        assertEquals(0f, sketch.percentile(0.01f), 1e-4f);
+        assertEquals(4.9f, sketch.percentile(0.5f), 1e-4f);
+        assertEquals(9.4f, sketch.percentile(0.95f), 1e-4f);
+        assertEquals(9.9f, sketch.percentile(1f), 1e-4f);
+    }
+
+    @Test
+    public void outOfRangeScores_areClampedToTheEnds() {
+        ScoreSketch sketch = new ScoreSketch();
+        sketch.add(-3f);
+        sketch.add(Float.NaN);
+        sketch.add(420f);
+
+        assertEquals(0f, sketch.percentile(0.5f), 0f);
+        assertEquals(ScoreSketch.MAX_SCORE, sketch.percentile(1f), 1e-4f);
+    }
+
+    @Test
+    public void hundredPointScores_keepOnePointResolution() {
+        ScoreSketch sketch = new ScoreSketch();
+        for (int i = 0; i < 100; i++) sketch.add(i);
+
+        assertEquals(49f, sketch.percentile(0.5f), 1e-4f);
+        assertEquals(94f, sketch.percentile(0.95f), 1e-4f);
+        assertEquals(99f, sketch.percentile(1f), 1e-4f);
+        assertEquals(42f, ScoreSketch.decode(single(42.3f).encode()).percentile(1f), 1e-4f);
+        assertEquals(100f, single(100f).percentile(1f), 1e-4f);
+    }
+
+    @Test
+    public void tenPointBoundary_staysOnTheFineGrid() {
+        assertEquals(10f, single(10f).percentile(1f), 1e-4f);
+        assertEquals(10f, single(10.3f).percentile(1f), 1e-4f);
+        assertEquals(11f, single(10.6f).percentile(1f), 1e-4f);
+        assertEquals(9.9f, single(9.9f).percentile(1f), 1e-4f);
+    }
+
+    @Test
+    public void merge_equalsAddingEverythingToOneSketch() {
+        ScoreSketch a = new ScoreSketch();
+        ScoreSketch b = new ScoreSketch();
+        ScoreSketch all = new ScoreSketch();
+        for (int i = 0; i < 50; i++) {
+            a.add(i * 0.2f);
+            b.add(10f - i * 0.1f);
+            all.add(i * 0.2f);
+            all.add(10f - i * 0.1f);
+        }
+
+        a.merge(b);
+
+        assertEquals(all.total(), a.total());
+        for (float q : new float[]{ 0.1f, 0.5f, 0.9f, 0.95f, 1f }) {
+            assertEquals(all.percentile(q), a.percentile(q), 0f);
+        }
+    }
+
+    @Test
+    public void encode_keepsOnlyNonZeroBinsAndRoundTrips() {
+        ScoreSketch sketch = new ScoreSketch();
+        sketch.add(1f);
+        sketch.add(1f);
+        sketch.add(7.5f);
+
+        byte[] bytes = sketch.encode();
+        ScoreSketch decoded = ScoreSketch.decode(bytes);
+
+        assertEquals(2 * 6, bytes.length);
+        assertEquals(3, decoded.total());
+        assertEquals(sketch.percentile(0.5f), decoded.percentile(0.5f), 0f);
+        assertEquals(sketch.percentile(1f), decoded.percentile(1f), 0f);
+    }
+
+    @Test
+    public void decode_readsBlobsWrittenWithOnlyTheTenPointBins() {
+        // 舊版格號 0~100 = 0.0~10.0
+        byte[] old = { 100, 0, 2, 0, 0, 0, 50, 0, 1, 0, 0, 0 };
+        ScoreSketch decoded = ScoreSketch.decode(old);
+
+        assertEquals(3, decoded.total());
+        assertEquals(5f, decoded.percentile(0.1f), 1e-4f);
+        assertEquals(10f, decoded.percentile(1f), 1e-4f);
+    }
+
+    @Test
+    public void decode_treatsNullAndBrokenBlobsAsEmpty() {
+        assertEquals(0, ScoreSketch.decode(null).total());
+        assertEquals(0, ScoreSketch.decode(new byte[5]).total());
+        // 格號超出範圍的項目略過
+        byte[] badBin = { (byte) 0xFF, 0x7F, 1, 0, 0, 0 };
+        assertEquals(0, ScoreSketch.decode(badBin).total());
+    }
+
+    private static ScoreSketch single(float score) {
+        ScoreSketch sketch = new ScoreSketch();
+        sketch.add(score);
+        return sketch;
+    }
+}
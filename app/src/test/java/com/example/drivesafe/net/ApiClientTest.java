@@ -0,0 +1,109 @@
+package com.example.drivesafe.net;
+
+import android.content.SharedPreferences;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ApiClientTest {
+
+    private static final String URL = "http://example.test/api";
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void api_isCachedPerBaseUrlWithOrWithoutSlash() {
+        ApiService a = ApiClient.api(URL);
+
+        assertSame(a, ApiClient.api(URL + "/"));
+        assertSame(ApiClient.get(URL), ApiClient.get(URL + "/"));
+        assertNotSame(a, ApiClient.api("http://other.test/"));
+    }
+
+    @Test
+    public void createAuthed_isCachedPerPrefsName_notPerStoreInstance() {
+        AtomicReference<String> token = new AtomicReference<>("a");
+        TokenStore first = store(token, "cache_prefs");
+        TokenStore sameName = store(token, "cache_prefs");
+        TokenStore other = store(new AtomicReference<>("b"), "cache_other_prefs");
+
+        ApiService s1 = ApiClient.createAuthed(URL, first, ApiService.class);
+
+        assertSame(s1, ApiClient.createAuthed(URL + "/", first, ApiService.class));
+        assertSame(s1, ApiClient.createAuthed(URL, sameName, ApiService.class));
+        assertSame(ApiClient.getAuthed(URL, first), ApiClient.getAuthed(URL, sameName));
+        assertNotSame(s1, ApiClient.createAuthed(URL, other, ApiService.class));
+        assertNotSame(s1, ApiClient.api(URL));
+    }
+
+    @Test
+    public void authedClient_sharesPoolWithBaseClient() {
+        OkHttpClient authed = (OkHttpClient) ApiClient.getAuthed(URL, store(new AtomicReference<>(null), "pool_prefs")).callFactory();
+
+        assertSame(ApiClient.client().connectionPool(), authed.connectionPool());
+        assertSame(ApiClient.client().dispatcher(), authed.dispatcher());
+    }
+
+    @Test
+    public void authedClient_readsTokenFromItsOwnPrefsOnEachRequest() throws Exception {
+        AtomicReference<String> tokenA = new AtomicReference<>("a");
+        TokenStore a = store(tokenA, "read_a_prefs");
+        TokenStore b = store(new AtomicReference<>("b"), "read_b_prefs");
+        String url = server.url("/").toString();
+
+        assertEquals("Bearer a", authHeaderSentBy(a, url));
+        assertEquals("Bearer b", authHeaderSentBy(b, url));
+        tokenA.set("a2");
+        assertEquals("Bearer a2", authHeaderSentBy(a, url));
+        tokenA.set(null);
+        assertNull(authHeaderSentBy(a, url));
+    }
+
+    // ---- helpers ----
+
+    private String authHeaderSentBy(TokenStore store, String url) throws Exception {
+        server.enqueue(new MockResponse());
+        OkHttpClient ok = (OkHttpClient) ApiClient.getAuthed(url, store).callFactory();
+        try (Response ignored = ok.newCall(new Request.Builder().url(url + "ping").build()).execute()) {
+            return server.takeRequest().getHeader("Authorization");
+        }
+    }
+
+    /** 只實作 getString 的 SharedPreferences（JVM 測試沒有 Context） */
+    private static TokenStore store(AtomicReference<String> token, String prefsName) {
+        SharedPreferences sp = (SharedPreferences) Proxy.newProxyInstance(
+                SharedPreferences.class.getClassLoader(),
+                new Class<?>[]{ SharedPreferences.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getString")) return token.get();
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return new TokenStore(sp, prefsName);
+    }
+}
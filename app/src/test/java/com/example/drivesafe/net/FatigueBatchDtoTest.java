@@ -0,0 +1,68 @@
+package com.example.drivesafe.net;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FatigueBatchDtoTest {
+
+    @Test
+    public void add_storesFirstTimeAsT0AndDeltasAfterwards() {
+        FatigueBatchDto batch = new FatigueBatchDto("u1", 3);
+        batch.add("a", 1_700_000_000_000L, 1f);
+        batch.add("b", 1_700_000_000_250L, 1f);
+        batch.add("c", 1_700_000_001_250L, 1f);
+
+        assertEquals(1_700_000_000_000L, batch.t0);
+        assertEquals(Arrays.asList(0L, 250L, 1_000L), batch.dt);
+        assertEquals(Arrays.asList("a", "b", "c"), batch.client_id);
+        assertEquals(3, batch.size());
+    }
+
+    @Test
+    public void add_sameTimestamp_givesZeroDelta() {
+        FatigueBatchDto batch = new FatigueBatchDto("u1", 2);
+        batch.add("a", 5_000L, 1f);
+        batch.add("b", 5_000L, 1f);
+
+        assertEquals(Arrays.asList(0L, 0L), batch.dt);
+    }
+
+    @Test
+    public void add_quantizesScoreToTenths() {
+        FatigueBatchDto batch = new FatigueBatchDto("u1", 4);
+        batch.add("a", 0L, 0f);
+        batch.add("b", 1L, 0.34f);
+        batch.add("c", 2L, 0.36f);
+        batch.add("d", 3L, 7.06f);
+
+        assertEquals(Arrays.asList(0, 3, 4, 71), batch.s);
+    }
+
+    @Test
+    public void size_emptyAndGsonDefault_isZero() {
+        assertEquals(0, new FatigueBatchDto("u1", 0).size());
+        assertEquals(0, new FatigueBatchDto().size());
+    }
+
+    @Test
+    public void json_sendsColumnsOnly() {
+        FatigueBatchDto batch = new FatigueBatchDto("u1", 2);
+        batch.add("a", 1_000L, 2f);
+        batch.add("b", 1_500L, 2.5f);
+
+        JsonObject json = new Gson().toJsonTree(batch).getAsJsonObject();
+
+        assertEquals("u1", json.get("user_id").getAsString());
+        assertEquals(1_000L, json.get("t0").getAsLong());
+        assertEquals(500L, json.getAsJsonArray("dt").get(1).getAsLong());
+        assertEquals(25, json.getAsJsonArray("s").get(1).getAsInt());
+        assertFalse(json.has("last"));
+    }
+}
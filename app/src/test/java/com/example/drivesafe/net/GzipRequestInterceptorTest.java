@@ -0,0 +1,117 @@
+package com.example.drivesafe.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GzipRequestInterceptorTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new GzipRequestInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void gzipHeader_compressesBodyWithKnownLength() throws Exception {
+        String payload = repeatJson(200);
+        server.enqueue(new MockResponse());
+
+        execute(new Request.Builder()
+                .url(server.url("/batch"))
+                .header("Content-Encoding", "gzip")
+                .post(RequestBody.create(payload, JSON))
+                .build());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("gzip", recorded.getHeader("Content-Encoding"));
+        assertNull(recorded.getHeader("Transfer-Encoding"));
+        long sent = recorded.getBodySize();
+        assertEquals(String.valueOf(sent), recorded.getHeader("Content-Length"));
+        assertEquals(JSON.toString(), recorded.getHeader("Content-Type"));
+        assertEquals(payload, gunzip(recorded.getBody()));
+        // 重複性高的 JSON 應該明顯變小
+        assertTrue(sent < payload.length() / 4);
+    }
+
+    @Test
+    public void withoutGzipHeader_bodyIsUntouched() throws Exception {
+        String payload = "{\"a\":1}";
+        server.enqueue(new MockResponse());
+
+        execute(new Request.Builder()
+                .url(server.url("/records"))
+                .post(RequestBody.create(payload, JSON))
+                .build());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertNull(recorded.getHeader("Content-Encoding"));
+        assertEquals(payload, recorded.getBody().readUtf8());
+    }
+
+    @Test
+    public void bodylessRequest_passesThrough() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        execute(new Request.Builder()
+                .url(server.url("/ping"))
+                .header("Content-Encoding", "gzip")
+                .build());
+
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals("GET", recorded.getMethod());
+        assertEquals(0L, recorded.getBodySize());
+    }
+
+    // ---- helpers ----
+
+    private void execute(Request req) throws IOException {
+        try (Response resp = client.newCall(req).execute()) {
+            assertEquals(200, resp.code());
+        }
+    }
+
+    private static String gunzip(Buffer body) throws IOException {
+        return Okio.buffer(new GzipSource(body)).readUtf8();
+    }
+
+    private static String repeatJson(int n) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"user_id\":\"00000000-0000-0000-0000-000000000001\",\"score\":5}");
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.drivesafe.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.drivesafe.db.FatigueRecord;
+import com.example.drivesafe.net.ApiService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaSyncTest {
+
+    private MockWebServer server;
+    private ApiService api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(ApiService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void run_followsNextCursorUntilNoMore() throws Exception {
+        server.enqueue(json("{\"changes\":[" + change("s1", 100, 2f) + "],\"next_cursor\":\"c1\",\"has_more\":true}"));
+        server.enqueue(json("{\"changes\":[" + change("s2", 200, 3f) + "],\"next_cursor\":\"c2\",\"has_more\":false}"));
+        FakeStore store = new FakeStore(null);
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.DONE, out.status);
+        assertEquals(2, out.changed);
+        assertEquals("c2", store.cursor);
+        assertEquals(2, server.getRequestCount());
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("since"));
+        RecordedRequest second = server.takeRequest();
+        assertEquals("c1", second.getRequestUrl().queryParameter("since"));
+        assertEquals("u1", second.getRequestUrl().queryParameter("user_id"));
+        assertEquals("Bearer t", second.getHeader("Authorization"));
+    }
+
+    @Test
+    public void run_withoutNextCursor_usesLastUpdatedAtAndId() throws Exception {
+        server.enqueue(json("{\"changes\":[" + change("s1", 100, 2f) + "," + change("s2", 150, 3f) + "],\"has_more\":false}"));
+        FakeStore store = new FakeStore("old");
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.DONE, out.status);
+        assertEquals("150:s2", store.cursor);
+        assertEquals("old", server.takeRequest().getRequestUrl().queryParameter("since"));
+    }
+
+    @Test
+    public void run_stopsAtMaxPages() {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(json("{\"changes\":[" + change("s" + i, i, 1f) + "],\"next_cursor\":\"c" + i + "\",\"has_more\":true}"));
+        }
+        FakeStore store = new FakeStore(null);
+
+        DeltaSync.Outcome out = sync(2).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.DONE, out.status);
+        assertEquals(2, server.getRequestCount());
+        assertEquals("c1", store.cursor);
+    }
+
+    @Test
+    public void run_gone_resetsCursorAndRestartsFromScratch() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(410));
+        server.enqueue(json("{\"changes\":[" + change("s1", 100, 2f) + "],\"next_cursor\":\"fresh\",\"has_more\":false}"));
+        FakeStore store = new FakeStore("expired");
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.DONE, out.status);
+        assertEquals(1, store.resets);
+        assertEquals("fresh", store.cursor);
+        assertEquals("expired", server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("since"));
+    }
+
+    @Test
+    public void run_goneWithoutCursor_retries() {
+        server.enqueue(new MockResponse().setResponseCode(410));
+        FakeStore store = new FakeStore(null);
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.RETRY, out.status);
+        assertEquals(0, store.resets);
+    }
+
+    @Test
+    public void run_tombstonesAndRepeatedIds_collapseToLastChange() {
+        server.enqueue(json("{\"changes\":["
+                + change("s1", 100, 2f) + ","
+                + change("s1", 110, 5f) + ","
+                + change("s2", 120, 3f) + ","
+                + "{\"id\":\"s2\",\"updated_at\":130,\"deleted\":true}"
+                + "],\"has_more\":false}"));
+        FakeStore store = new FakeStore(null);
+
+        sync(10).run(store, () -> false);
+
+        assertEquals(1, store.upserts.size());
+        FatigueRecord r = store.upserts.get(0);
+        assertEquals("s1", r.getServerId());
+        assertEquals("client-s1", r.getClientId());
+        assertEquals(5f, r.getScore(), 0f);
+        assertTrue(r.isSynced());
+        assertEquals(1, store.deleted.size());
+        assertEquals("s2", store.deleted.get(0));
+    }
+
+    @Test
+    public void run_missingEndpoint_isUnsupported() {
+        for (int code : new int[]{ 404, 405, 501 }) {
+            server.enqueue(new MockResponse().setResponseCode(code));
+            FakeStore store = new FakeStore("c");
+
+            DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+            assertEquals("HTTP " + code, DeltaSync.Status.UNSUPPORTED, out.status);
+            assertEquals("c", store.cursor);
+        }
+    }
+
+    @Test
+    public void run_serverError_retriesAndKeepsAppliedPages() {
+        server.enqueue(json("{\"changes\":[" + change("s1", 100, 2f) + "],\"next_cursor\":\"c1\",\"has_more\":true}"));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        FakeStore store = new FakeStore(null);
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.RETRY, out.status);
+        assertEquals(1, out.changed);
+        assertEquals("c1", store.cursor);
+    }
+
+    @Test
+    public void run_connectionDropped_retries() {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        FakeStore store = new FakeStore(null);
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> false);
+
+        assertEquals(DeltaSync.Status.RETRY, out.status);
+    }
+
+    @Test
+    public void run_stopped_makesNoRequest() {
+        FakeStore store = new FakeStore(null);
+
+        DeltaSync.Outcome out = sync(10).run(store, () -> true);
+
+        assertEquals(DeltaSync.Status.DONE, out.status);
+        assertEquals(0, server.getRequestCount());
+    }
+
+    // ---- helpers ----
+
+    private DeltaSync sync(int maxPages) {
+        return new DeltaSync(api, "Bearer t", "u1", 50, maxPages);
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    private static String change(String id, long updatedAt, float score) {
+        return "{\"id\":\"" + id + "\",\"timestamp_ms\":" + (1_000L + updatedAt) + ",\"score\":" + score
+                + ",\"client_id\":\"client-" + id + "\",\"updated_at\":" + updatedAt + ",\"deleted\":false}";
+    }
+
+    /** 記憶體版 Store：記下每頁套用的內容與游標 */
+    private static final class FakeStore implements DeltaSync.Store {
+        @Nullable String cursor;
+        int resets;
+        final List<FatigueRecord> upserts = new ArrayList<>();
+        final List<String> deleted = new ArrayList<>();
+
+        FakeStore(@Nullable String cursor) {
+            this.cursor = cursor;
+        }
+
+        @Nullable
+        @Override
+        public String cursor() {
+            return cursor;
+        }
+
+        @Override
+        public void resetCursor() {
+            resets++;
+            cursor = null;
+        }
+
+        @Override
+        public int apply(@NonNull List<FatigueRecord> upserts, @NonNull List<String> deletedServerIds,
+                         @Nullable String next) {
+            this.upserts.addAll(upserts);
+            this.deleted.addAll(deletedServerIds);
+            cursor = next;
+            return upserts.size() + deletedServerIds.size();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.drivesafe.sync;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadWorkerTest {
+
+    private static final List<String> SENT = Arrays.asList("c1", "c2", "c3");
+
+    @Test
+    public void match_byClientId_ignoresResponseOrder() {
+        Map<Long, String> out = UploadWorker.match(
+                Arrays.asList("s3", "s1", "s2"), Arrays.asList("c3", "c1", "c2"), SENT, localIds());
+
+        assertEquals(3, out.size());
+        assertEquals("s1", out.get(1L));
+        assertEquals("s2", out.get(2L));
+        assertEquals("s3", out.get(3L));
+    }
+
+    @Test
+    public void match_withoutClientIds_fallsBackToSendOrderWhenCountsMatch() {
+        Map<Long, String> out = UploadWorker.match(Arrays.asList("s1", "s2", "s3"), null, SENT, localIds());
+
+        assertEquals("s1", out.get(1L));
+        assertEquals("s3", out.get(3L));
+    }
+
+    @Test
+    public void match_withoutClientIds_andCountMismatch_matchesNothing() {
+        Map<Long, String> out = UploadWorker.match(Arrays.asList("s1", "s2"), null, SENT, localIds());
+
+        assertTrue(out.isEmpty());
+    }
+
+    @Test
+    public void match_skipsNullServerIdsAndUnknownClientIds() {
+        Map<Long, String> out = UploadWorker.match(
+                Arrays.asList(null, "s2", "s9"), Arrays.asList("c1", "c2", "other"), SENT, localIds());
+
+        assertEquals(1, out.size());
+        assertEquals("s2", out.get(2L));
+    }
+
+    @Test
+    public void match_nullIds_isEmpty() {
+        assertTrue(UploadWorker.match(null, null, SENT, localIds()).isEmpty());
+        assertTrue(UploadWorker.match(Collections.emptyList(), null, SENT, localIds()).isEmpty());
+    }
+
+    @Test
+    public void chunkSize_cappedByRecordCountForUuidUserIds() {
+        assertEquals(500, UploadWorker.chunkSize("00000000-0000-0000-0000-000000000001"));
+    }
+
+    @Test
+    public void chunkSize_shrinksWithLongUserIds() {
+        assertEquals(128 * 1024 / (120 + 200), UploadWorker.chunkSize(repeat(200)));
+        // 再長也至少一筆
+        assertEquals(1, UploadWorker.chunkSize(repeat(200_000)));
+    }
+
+    private static String repeat(int n) {
+        char[] c = new char[n];
+        Arrays.fill(c, 'x');
+        return new String(c);
+    }
+
+    private static Map<String, Long> localIds() {
+        Map<String, Long> m = new HashMap<>();
+        m.put("c1", 1L);
+        m.put("c2", 2L);
+        m.put("c3", 3L);
+        return m;
+    }
+}
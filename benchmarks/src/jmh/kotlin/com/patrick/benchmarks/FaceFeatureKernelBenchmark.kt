@@ -0,0 +1,100 @@
+package com.patrick.benchmarks
+
+import com.patrick.detection.FaceFeatureKernel
+import com.patrick.detection.FaceFeatures
+import com.patrick.detection.RecordedLandmarkFrame
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import kotlin.math.sqrt
+
+/**
+ * 每幀 EAR / MAR 計算（FaceFeatureKernel），預期 0 B/op
+ * legacyPerCall：舊版 FatigueDetector 的作法（List<Int> 索引、逐點讀 landmark 物件，偵測與統計各算一次）
+ */
+@State(Scope.Thread)
+open class FaceFeatureKernelBenchmark {
+    private val kernel = FaceFeatureKernel()
+    private val features = FaceFeatures()
+    private lateinit var synthetic: Array<RecordedLandmarkFrame>
+    private lateinit var recorded: Array<RecordedLandmarkFrame>
+    private lateinit var legacyFrames: Array<List<Landmark>>
+    private var index = 0
+
+    @Setup
+    fun setUp() {
+        synthetic = SyntheticLandmarks.frames(64)
+        recorded = SyntheticLandmarks.recordedFrames(1024)
+        // 與 syntheticStream 同一批臉，轉成舊版的物件清單（MediaPipe NormalizedLandmark 的替身）
+        legacyFrames =
+            Array(synthetic.size) { i ->
+                val frame = synthetic[i]
+                List(frame.landmarkCount) { Landmark(frame.x(it), frame.y(it)) }
+            }
+    }
+
+    @Benchmark
+    fun syntheticStream(): Float = computeNext(synthetic)
+
+    @Benchmark
+    fun recordedStream(): Float = computeNext(recorded)
+
+    @Benchmark
+    fun legacyPerCall(): Float {
+        val landmarks = legacyFrames[index]
+        index = if (index + 1 == legacyFrames.size) 0 else index + 1
+        var sink = Legacy.combinedEar(landmarks) + Legacy.mar(landmarks)
+        sink += Legacy.combinedEar(landmarks) + Legacy.mar(landmarks)
+        return sink
+    }
+
+    private fun computeNext(frames: Array<RecordedLandmarkFrame>): Float {
+        val frame = frames[index]
+        index = if (index + 1 == frames.size) 0 else index + 1
+        if (!kernel.load(frame)) return 0f
+        kernel.compute(features)
+        return features.ear + features.mar
+    }
+
+    class Landmark(private val x: Float, private val y: Float) {
+        fun x(): Float = x
+
+        fun y(): Float = y
+    }
+
+    /**
+     * 舊版 FatigueDetector 的計算方式
+     */
+    private object Legacy {
+        val LEFT_EYE = listOf(33, 160, 158, 133, 153, 144)
+        val RIGHT_EYE = listOf(362, 385, 387, 263, 373, 380)
+        val MOUTH = listOf(61, 84, 17, 314, 405, 320, 307, 375, 321, 308, 324, 318)
+
+        fun ear(
+            landmarks: List<Landmark>,
+            idx: List<Int>,
+        ): Float {
+            val p1 = landmarks[idx[0]]
+            val p2 = landmarks[idx[1]]
+            val p3 = landmarks[idx[2]]
+            val p4 = landmarks[idx[3]]
+            val p5 = landmarks[idx[4]]
+            val p6 = landmarks[idx[5]]
+            return (distance(p2, p6) + distance(p3, p5)) / (2.0f * distance(p1, p4))
+        }
+
+        fun combinedEar(landmarks: List<Landmark>): Float = (ear(landmarks, LEFT_EYE) + ear(landmarks, RIGHT_EYE)) / 2.0f
+
+        fun mar(landmarks: List<Landmark>): Float = ear(landmarks, MOUTH)
+
+        private fun distance(
+            p1: Landmark,
+            p2: Landmark,
+        ): Float {
+            val dx = p1.x() - p2.x()
+            val dy = p1.y() - p2.y()
+            return sqrt(dx * dx + dy * dy)
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.patrick.benchmarks
+
+import com.patrick.core.FatigueAnalysisReport
+import com.patrick.core.FloatTimeSeries
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * 分析報告的組裝成本：直接讀環形序列 vs. 先複製成 List
+ */
+@State(Scope.Thread)
+open class FatigueAnalysisReportBenchmark {
+    private val earSeries = FloatTimeSeries(500)
+    private val marSeries = FloatTimeSeries(500)
+    private val earList = ArrayList<Float>()
+    private val marList = ArrayList<Float>()
+    private val eventCounts = mapOf("EyeClosure" to 3, "Yawn" to 2, "HighBlinkFrequency" to 1)
+    private val thresholds = mapOf("ear" to 0.15f, "mar" to 0.6f, "fatigueEvent" to 2f)
+
+    @Setup
+    fun setUp() {
+        for (i in 0 until 500) {
+            val e = 0.2f + (i % 10) * 0.01f
+            val m = 0.3f + (i % 7) * 0.02f
+            earSeries.add(i * 33L, e)
+            marSeries.add(i * 33L, m)
+            earList.add(e)
+            marList.add(m)
+        }
+    }
+
+    @Benchmark
+    fun reportFromSeries(): String = FatigueAnalysisReport.generate(earSeries, marSeries, eventCounts, thresholds)
+
+    @Benchmark
+    fun reportFromLists(): String = FatigueAnalysisReport.generate(earList, marList, eventCounts, thresholds)
+}
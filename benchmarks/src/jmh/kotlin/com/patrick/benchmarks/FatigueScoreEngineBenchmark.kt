@@ -0,0 +1,28 @@
+package com.patrick.benchmarks
+
+import com.patrick.detection.FatigueScoreEngine
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+
+/**
+ * 分數引擎：大多數幀只做時間制恢復，偶爾有呵欠 / 閉眼懲罰
+ */
+@State(Scope.Thread)
+open class FatigueScoreEngineBenchmark {
+    private val engine = FatigueScoreEngine()
+    private var frame = 0
+    private var nowMs = 1L
+
+    @Benchmark
+    fun mixedEvents(): Int {
+        nowMs += 33L
+        when (frame++ % 300) {
+            0 -> engine.addYawnPenalty(nowMs)
+            150 -> engine.addEyeClosurePenalty()
+            200 -> engine.addBlinkPenalty()
+            else -> engine.recover(nowMs, fast = frame % 1000 > 900)
+        }
+        return engine.getScore() + engine.getLevel().ordinal
+    }
+}
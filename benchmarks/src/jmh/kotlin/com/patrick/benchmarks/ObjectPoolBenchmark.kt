@@ -0,0 +1,60 @@
+package com.patrick.benchmarks
+
+import com.patrick.core.LockFreeObjectPool
+import com.patrick.core.ObjectPool
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Threads
+
+/**
+ * 借用 + 歸還一次：Mutex 版 ObjectPool vs. LockFreeObjectPool，單執行緒與 4 執行緒競爭
+ */
+@State(Scope.Benchmark)
+open class ObjectPoolBenchmark {
+    private lateinit var mutexPool: ObjectPool<ByteArray>
+    private lateinit var lockFreePool: LockFreeObjectPool<ByteArray>
+
+    @Setup
+    fun setUp() {
+        mutexPool = ObjectPool(maxSize = POOL_SIZE, factory = { ByteArray(BUFFER_SIZE) })
+        lockFreePool = LockFreeObjectPool(maxSize = POOL_SIZE, factory = { ByteArray(BUFFER_SIZE) })
+        lockFreePool.prefill(POOL_SIZE)
+        runBlocking { mutexPool.prefill(POOL_SIZE) }
+    }
+
+    @Benchmark
+    fun lockFree(): Int = borrowAndReturnLockFree()
+
+    @Benchmark
+    @Threads(4)
+    fun lockFreeContended(): Int = borrowAndReturnLockFree()
+
+    @Benchmark
+    fun mutex(): Int = runBlocking { borrowAndReturnMutex() }
+
+    @Benchmark
+    @Threads(4)
+    fun mutexContended(): Int = runBlocking { borrowAndReturnMutex() }
+
+    private fun borrowAndReturnLockFree(): Int {
+        val buffer = lockFreePool.borrow()
+        val size = buffer.size
+        lockFreePool.returnObject(buffer)
+        return size
+    }
+
+    private suspend fun borrowAndReturnMutex(): Int {
+        val buffer = mutexPool.borrow()
+        val size = buffer.size
+        mutexPool.returnObject(buffer)
+        return size
+    }
+
+    companion object {
+        private const val POOL_SIZE = 8
+        private const val BUFFER_SIZE = 4096
+    }
+}
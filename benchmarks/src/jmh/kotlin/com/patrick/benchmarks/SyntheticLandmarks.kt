@@ -0,0 +1,97 @@
+package com.patrick.benchmarks
+
+import com.patrick.detection.LandmarkRecorder
+import com.patrick.detection.LandmarkRecording
+import com.patrick.detection.LandmarkRecordingReader
+import com.patrick.detection.RecordedLandmarkFrame
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.InputStream
+
+/**
+ * 基準輸入：合成的 478 點臉部串流，或以 -Dbenchmarks.recording=<檔案> 指定的實際錄製檔
+ */
+object SyntheticLandmarks {
+    private const val RECORDING_PROPERTY = "benchmarks.recording"
+    private const val FRAME_INTERVAL_MS = 33L
+
+    private val LEFT_EYE = intArrayOf(33, 160, 158, 133, 153, 144)
+    private val RIGHT_EYE = intArrayOf(362, 385, 387, 263, 373, 380)
+    private val MOUTH = intArrayOf(61, 84, 17, 314, 405, 320)
+
+    /**
+     * 一幀假臉；眼睛開合隨 seed 變化（含閉眼），嘴巴偶爾張大
+     */
+    fun face(seed: Int): RecordedLandmarkFrame {
+        val frame = RecordedLandmarkFrame(LandmarkRecording.DEFAULT_LANDMARK_COUNT)
+        frame.timestampMs = seed * FRAME_INTERVAL_MS
+        frame.hasFace = true
+        for (i in 0 until frame.landmarkCount) frame.setLandmark(i, 0.5f, 0.5f)
+
+        val open = if (seed % 30 < 4) 0.001f else 0.01f + (seed % 10) * 0.001f
+        eye(frame, LEFT_EYE, 0.4f, open)
+        eye(frame, RIGHT_EYE, 0.6f, open)
+
+        val mouthOpen = if (seed % 90 < 20) 0.05f else 0.02f
+        frame.setLandmark(MOUTH[0], 0.45f, 0.65f)
+        frame.setLandmark(MOUTH[1], 0.48f, 0.65f + mouthOpen)
+        frame.setLandmark(MOUTH[2], 0.52f, 0.65f + mouthOpen)
+        frame.setLandmark(MOUTH[3], 0.55f, 0.65f)
+        frame.setLandmark(MOUTH[4], 0.52f, 0.65f - mouthOpen)
+        frame.setLandmark(MOUTH[5], 0.48f, 0.65f - mouthOpen)
+
+        frame.setLandmark(1, 0.5f, 0.52f)
+        frame.setLandmark(152, 0.5f, 0.8f)
+        frame.setBlendshapeScore("jawOpen", mouthOpen * 10f)
+        frame.setBlendshapeScore("eyeBlinkLeft", 1f - open * 50f)
+        return frame
+    }
+
+    fun frames(count: Int): Array<RecordedLandmarkFrame> = Array(count) { face(it) }
+
+    /**
+     * 錄製檔串流：有指定檔案時讀取（最多 maxFrames 幀），否則把合成串流錄製再讀回
+     */
+    fun recordedFrames(maxFrames: Int): Array<RecordedLandmarkFrame> {
+        val path = System.getProperty(RECORDING_PROPERTY)
+        val input: InputStream =
+            if (path != null) {
+                File(path).inputStream()
+            } else {
+                ByteArrayInputStream(recordSynthetic(maxFrames))
+            }
+        LandmarkRecordingReader(input).use { reader ->
+            val frames = ArrayList<RecordedLandmarkFrame>()
+            while (frames.size < maxFrames) {
+                val frame = reader.newFrame()
+                if (!reader.next(frame)) break
+                frames.add(frame)
+            }
+            check(frames.isNotEmpty()) { "recording has no frames" }
+            return frames.toTypedArray()
+        }
+    }
+
+    private fun recordSynthetic(count: Int): ByteArray {
+        val output = ByteArrayOutputStream()
+        LandmarkRecorder(output, dropWhenFull = false).use { recorder ->
+            for (i in 0 until count) recorder.record(face(i))
+        }
+        return output.toByteArray()
+    }
+
+    private fun eye(
+        frame: RecordedLandmarkFrame,
+        indices: IntArray,
+        cx: Float,
+        open: Float,
+    ) {
+        frame.setLandmark(indices[0], cx - 0.04f, 0.4f)
+        frame.setLandmark(indices[1], cx - 0.015f, 0.4f - open)
+        frame.setLandmark(indices[2], cx + 0.015f, 0.4f - open)
+        frame.setLandmark(indices[3], cx + 0.04f, 0.4f)
+        frame.setLandmark(indices[4], cx + 0.015f, 0.4f + open)
+        frame.setLandmark(indices[5], cx - 0.015f, 0.4f + open)
+    }
+}
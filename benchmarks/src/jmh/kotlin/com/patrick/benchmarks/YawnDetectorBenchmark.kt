@@ -0,0 +1,32 @@
+package com.patrick.benchmarks
+
+import com.patrick.detection.YawnDetector
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * YawnDetector.update：以錄製串流的 jawOpen 分數驅動（30 fps）
+ */
+@State(Scope.Thread)
+open class YawnDetectorBenchmark {
+    private val detector = YawnDetector()
+    private lateinit var scores: FloatArray
+    private var index = 0
+    private var nowMs = 1L
+
+    @Setup
+    fun setUp() {
+        val frames = SyntheticLandmarks.recordedFrames(1024)
+        scores = FloatArray(frames.size) { i -> frames[i].blendshapeScore("jawOpen").let { if (it.isNaN()) 0f else it } }
+    }
+
+    @Benchmark
+    fun update(): Boolean {
+        val score = scores[index]
+        index = if (index + 1 == scores.size) 0 else index + 1
+        nowMs += 33L
+        return detector.update(score, nowMs).yawnTriggered
+    }
+}
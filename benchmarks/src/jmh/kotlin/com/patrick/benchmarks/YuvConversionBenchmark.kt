@@ -0,0 +1,167 @@
+package com.patrick.benchmarks
+
+import com.patrick.camera.YuvPlaneConverter
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+import javax.imageio.IIOImage
+import javax.imageio.ImageIO
+import javax.imageio.ImageWriteParam
+import javax.imageio.ImageWriter
+
+/**
+ * YUV_420_888（NV21 排列，semi-planar）→ RGBA：640×480 全幀與 256×256 臉部 ROI
+ * legacyJpeg：舊路徑 YUV → NV21 → JPEG → Bitmap → 旋轉 90 度，與 fullFrame 對照
+ */
+@State(Scope.Thread)
+open class YuvConversionBenchmark {
+    private val converter = YuvPlaneConverter()
+    private lateinit var yPlane: ByteBuffer
+    private lateinit var uPlane: ByteBuffer
+    private lateinit var vPlane: ByteBuffer
+    private lateinit var fullTarget: IntBuffer
+    private lateinit var roiTarget: IntBuffer
+    private lateinit var legacy: LegacyJpegPath
+
+    @Setup
+    fun setUp() {
+        val y = ByteArray(WIDTH * HEIGHT) { (it * 31).toByte() }
+        // NV21：V/U 交錯，U 平面從第二個位元組開始（pixelStride = 2）
+        val vu = ByteArray(WIDTH * HEIGHT / 2) { (it * 17 + 128).toByte() }
+        yPlane = ByteBuffer.allocateDirect(y.size).put(y).also { it.rewind() }
+        val vuBuffer = ByteBuffer.allocateDirect(vu.size).put(vu).also { it.rewind() }
+        vPlane = vuBuffer.duplicate()
+        uPlane = vuBuffer.duplicate().also { it.position(1) }.slice()
+
+        fullTarget = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4).order(ByteOrder.BIG_ENDIAN).asIntBuffer()
+        roiTarget = ByteBuffer.allocateDirect(ROI_SIZE * ROI_SIZE * 4).order(ByteOrder.BIG_ENDIAN).asIntBuffer()
+        legacy = LegacyJpegPath(WIDTH, HEIGHT)
+    }
+
+    @Benchmark
+    fun fullFrame(): Int {
+        converter.convertInto(WIDTH, HEIGHT, yPlane, WIDTH, uPlane, vPlane, WIDTH, 2, fullTarget)
+        return fullTarget.get(WIDTH * HEIGHT / 2)
+    }
+
+    @Benchmark
+    fun faceRoi(): Int {
+        converter.convertRegionInto(
+            yPlane = yPlane,
+            yRowStride = WIDTH,
+            uPlane = uPlane,
+            vPlane = vPlane,
+            uvRowStride = WIDTH,
+            uvPixelStride = 2,
+            cropLeft = 200,
+            cropTop = 120,
+            cropWidth = 240,
+            cropHeight = 240,
+            outWidth = ROI_SIZE,
+            outHeight = ROI_SIZE,
+            target = roiTarget,
+        )
+        return roiTarget.get(ROI_SIZE * ROI_SIZE / 2)
+    }
+
+    @Benchmark
+    fun legacyJpeg(): Int {
+        val rotated = legacy.convert(yPlane, vPlane)
+        return rotated[WIDTH * HEIGHT / 2]
+    }
+
+    companion object {
+        private const val WIDTH = 640
+        private const val HEIGHT = 480
+        private const val ROI_SIZE = 256
+    }
+}
+
+/**
+ * LegacyFrameConverter 的 JVM 模擬（沒有 android.graphics）：
+ * - NV21 打包：Y 平面 + 交錯的 VU，陣列重複使用
+ * - YuvImage.compressToJpeg(品質 100)：先轉 RGB 再以 ImageIO 編碼，輸出緩衝重複使用
+ * - BitmapFactory.decodeByteArray：ImageIO 解碼後取出 ARGB 像素
+ * - Canvas + Matrix 旋轉 90 度：寫進重複使用的目標陣列
+ * 解碼每幀都會配置（BitmapFactory 的 inBitmap 在 JVM 上沒有對應），這部分也是舊路徑的成本
+ */
+private class LegacyJpegPath(
+    private val width: Int,
+    private val height: Int,
+) {
+    private val nv21 = ByteArray(width * height * 3 / 2)
+    private val rgb = BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+    private val rgbPixels = (rgb.raster.dataBuffer as DataBufferInt).data
+    private val jpeg = ReusableByteArrayOutputStream()
+    private val writer: ImageWriter = ImageIO.getImageWritersByFormatName("jpeg").next()
+    private val param: ImageWriteParam =
+        writer.defaultWriteParam.apply {
+            compressionMode = ImageWriteParam.MODE_EXPLICIT
+            compressionQuality = 1.0f
+        }
+    private val decoded = IntArray(width * height)
+    private val rotated = IntArray(width * height)
+
+    init {
+        ImageIO.setUseCache(false)
+    }
+
+    fun convert(
+        yPlane: ByteBuffer,
+        vuPlane: ByteBuffer,
+    ): IntArray {
+        // 1. 打包 NV21
+        val ySize = width * height
+        yPlane.get(nv21, 0, ySize)
+        vuPlane.get(nv21, ySize, minOf(vuPlane.remaining(), nv21.size - ySize))
+        yPlane.rewind()
+        vuPlane.rewind()
+
+        // 2. 編碼 JPEG（YuvImage 內部同樣先做色彩轉換）
+        for (row in 0 until height) {
+            val uvRow = ySize + (row shr 1) * width
+            for (x in 0 until width) {
+                val y = nv21[row * width + x].toInt() and 0xFF
+                val uv = uvRow + (x and 1.inv())
+                val v = (nv21[uv].toInt() and 0xFF) - 128
+                val u = (nv21[uv + 1].toInt() and 0xFF) - 128
+                val r = clamp(y + ((1436 * v) shr 10))
+                val g = clamp(y - ((352 * u + 731 * v) shr 10))
+                val b = clamp(y + ((1815 * u) shr 10))
+                rgbPixels[row * width + x] = (r shl 16) or (g shl 8) or b
+            }
+        }
+        jpeg.reset()
+        ImageIO.createImageOutputStream(jpeg).use { output ->
+            writer.output = output
+            writer.write(null, IIOImage(rgb, null, null), param)
+        }
+
+        // 3. 解碼成 ARGB
+        val image = ImageIO.read(ByteArrayInputStream(jpeg.buffer(), 0, jpeg.size()))
+        image.getRGB(0, 0, width, height, decoded, 0, width)
+
+        // 4. 順時針旋轉 90 度（輸出 height × width）
+        for (row in 0 until height) {
+            for (x in 0 until width) {
+                rotated[x * height + (height - 1 - row)] = decoded[row * width + x]
+            }
+        }
+        return rotated
+    }
+
+    private fun clamp(c: Int): Int = if (c < 0) 0 else if (c > 255) 255 else c
+
+    /** 與 LegacyFrameConverter 相同：直接讀內部陣列，不做 toByteArray() 複製 */
+    private class ReusableByteArrayOutputStream : ByteArrayOutputStream(64 * 1024) {
+        fun buffer(): ByteArray = buf
+    }
+}
@@ -1,7 +1,7 @@
 package com.patrick.camera
 
 import android.content.Context
-import android.graphics.Bitmap
+import android.os.SystemClock
 import android.util.Log
 import androidx.camera.core.Camera
 import androidx.camera.core.CameraSelector
@@ -13,15 +13,28 @@ import androidx.camera.view.PreviewView
 import androidx.core.content.ContextCompat
 import androidx.lifecycle.LifecycleOwner
 import com.google.mediapipe.framework.image.BitmapImageBuilder
+import com.google.mediapipe.framework.image.MPImage
+import com.google.mediapipe.tasks.vision.core.ImageProcessingOptions
+import com.google.mediapipe.tasks.vision.core.RunningMode
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarker
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
-import com.patrick.camera.ImageUtils.toBitmap
+import com.patrick.camera.ImageUtils.toRgbaMPImage
+import com.patrick.camera.ImageUtils.toRgbaRoiMPImage
+import com.patrick.core.FrameBufferRing
+import com.patrick.core.FrameClock
+import com.patrick.core.FramePipelineMetrics
+import com.patrick.core.PipelineStage
 import com.patrick.detection.FaceLandmarkerManager
+import com.patrick.detection.FrameRateGovernor
+import com.patrick.detection.LandmarkRecorder
+import com.patrick.detection.MediaPipeLandmarkFrame
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
+import java.io.IOException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicReferenceArray
 
 /**
  * 攝像頭控制器
@@ -36,15 +49,98 @@ class CameraController(
     private var cameraProvider: ProcessCameraProvider? = null
     private var isBound = false
     private var camera: Camera? = null
-    private var cameraExecutor: ExecutorService = Executors.newSingleThreadExecutor()
+    // 具名執行緒：CpuSampler 依名稱把 CPU 時間歸到相機分類
+    private var cameraExecutor: ExecutorService = Executors.newSingleThreadExecutor { Thread(it, ANALYZER_THREAD_NAME) }
     private var retryCount = 0
     private val maxRetries = 3
     private var errorCallback: ((String) -> Unit)? = null
     private var faceLandmarker: FaceLandmarker? = null
     private var onFaceLandmarksDetected: ((FaceLandmarkerResult) -> Unit)? = null
 
+    @Volatile
+    private var frameConversionMode = FrameConversionMode.DIRECT_RGBA
+
+    // LIVE_STREAM：detectAsync + MediaPipe 幀間追蹤；IMAGE：同步 detect（測試 / 重播用）
+    @Volatile
+    private var runningMode = RunningMode.LIVE_STREAM
+
+    // detectAsync 要求時間戳嚴格遞增（毫秒）
+    private var lastFrameTimestampMs = -1L
+
+    private val yuvConverter = YuvPlaneConverter()
+    private val legacyConverter = LegacyFrameConverter()
+
+    // 分析用 RGBA 緩衝環：依實際分析解析度配置，解析度不變時不再配置
+    private val frameBufferRing = FrameBufferRing()
+
+    // 臉部 ROI：依上一幀外框裁切並縮小輸入，輸出尺寸固定，緩衝環只配置一次
+    @Volatile
+    private var roiEnabled = true
+    private val roiTracker = FaceRoiTracker()
+
+    // 其他執行緒要求重置 ROI 時只設旗標，由推論執行緒在取下一個裁切前執行
+    @Volatile
+    private var roiResetRequested = false
+    private val roiBufferRing = FrameBufferRing()
+    private val frameRoi = FaceRoiTracker.Roi()
+    private val landmarkBounds = FaceRoiTracker.Roi()
+    private val cropScratch = IntArray(4)
+
+    // 推論階段：容量 1、新幀覆蓋舊幀；landmarker 只在推論執行緒上建立、使用與關閉
+    private val inferenceExecutor =
+        InferenceExecutor<ImageProxy>(
+            threadName = INFERENCE_THREAD_NAME,
+            onFrame = { processImage(it) },
+            onDrop = { it.close() },
+            onExit = { releaseInferenceResources() },
+        )
+
+    @Volatile
+    private var landmarkerStale = true
+
+    // 分析幀率調節器；未設定時使用固定間隔
+    @Volatile
+    private var frameRateGovernor: FrameRateGovernor? = null
+
+    // 偵測時鐘：每個送出的結果以其幀時間戳推進
+    @Volatile
+    private var frameClock: FrameClock? = null
+
+    // landmark 錄製（除錯 / 回歸資料擷取）；未設定時不錄
+    @Volatile
+    private var landmarkRecorder: LandmarkRecorder? = null
+    private val recordingFrame = MediaPipeLandmarkFrame()
+
+    // LIVE_STREAM：推論執行緒送出時寫入、MediaPipe 結果執行緒依時間戳取回（固定格數，舊的直接覆蓋）
+    private val asyncSubmits = AtomicReferenceArray<AsyncSubmit?>(ASYNC_TRACKING_SLOTS)
+
+    // 各階段延遲（拍攝 → 分析 → 轉換 → 推論 → 送出），端到端由偵測端收尾
+    private val pipelineMetrics = FramePipelineMetrics.shared
+
+    /**
+     * LIVE_STREAM 一次送出的狀態；建立後不再修改（crop 為複本），
+     * 經由 AtomicReferenceArray 發布，結果執行緒讀到的一定是完整的一筆
+     */
+    private class AsyncSubmit(
+        val timestampMs: Long,
+        val submitNanos: Long,
+        val frameStartNanos: Long,
+        val crop: FaceRoiTracker.Roi,
+    )
+
     companion object {
         private const val TAG = "CameraController"
+
+        // 逐幀日誌會在熱路徑上產生字串配置，預設關閉
+        private const val FRAME_LOGGING = false
+        private const val RGBA_BYTES_PER_PIXEL = 4
+        private const val INFERENCE_THREAD_NAME = "FaceInference"
+        private const val ANALYZER_THREAD_NAME = "CameraAnalyzer"
+        private const val ASYNC_TRACKING_SLOTS = 8
+        private const val DEFAULT_MIN_INTERVAL_MS = 100L
+
+        // ROI 輸入邊長：MediaPipe 臉部網格模型輸入為 192，保留一些餘裕
+        private const val ROI_INPUT_SIZE = 256
     }
 
     /**
@@ -63,6 +159,52 @@ class CameraController(
         Log.d(TAG, "[CameraController] onFaceLandmarksDetected set to: non-null")
     }
 
+    /**
+     * 設置影像幀轉換方式（預設 DIRECT_RGBA，LEGACY_JPEG 為舊路徑）
+     */
+    fun setFrameConversionMode(mode: FrameConversionMode) {
+        Log.d(TAG, "Frame conversion mode: $mode")
+        frameConversionMode = mode
+    }
+
+    /**
+     * 設置分析幀率調節器（執行期依狀態 / 延遲調整分析間隔）
+     */
+    fun setFrameRateGovernor(governor: FrameRateGovernor?) {
+        this.frameRateGovernor = governor
+    }
+
+    /**
+     * 設置偵測時鐘（通常來自 FatigueViewModel.frameClock），結果送出前以幀時間戳推進
+     */
+    fun setFrameClock(clock: FrameClock?) {
+        frameClock = clock
+    }
+
+    /**
+     * 設置 landmark 錄製器（null 停止錄製；關閉由呼叫端負責）
+     */
+    fun setLandmarkRecorder(recorder: LandmarkRecorder?) {
+        landmarkRecorder = recorder
+    }
+
+    /**
+     * 啟用 / 停用臉部 ROI 裁切（停用時每幀都以全幀推論）
+     */
+    fun setRoiEnabled(enabled: Boolean) {
+        roiEnabled = enabled
+        if (!enabled) roiResetRequested = true
+    }
+
+    /**
+     * 設置 MediaPipe 執行模式（IMAGE 或 LIVE_STREAM），需在綁定攝像頭前設定
+     */
+    fun setRunningMode(mode: RunningMode) {
+        require(mode == RunningMode.IMAGE || mode == RunningMode.LIVE_STREAM) { "Unsupported running mode: $mode" }
+        Log.d(TAG, "Running mode: $mode")
+        runningMode = mode
+    }
+
     fun bindCamera() {
         if (isBound) {
             Log.d(TAG, "Camera already bound, skipping bind request")
@@ -150,10 +292,9 @@ class CameraController(
 
     private fun createImageAnalysis(): ImageAnalysis {
         Log.d(TAG, "[CameraController] createImageAnalysis called")
-        // 創建支持實時處理的 FaceLandmarker
-        faceLandmarker = FaceLandmarkerManager.createForRealTime(context)
+        // FaceLandmarker 於推論執行緒上依目前執行模式重新建立
+        landmarkerStale = true
 
-        val minInterval = 100L
         var lastAnalyzedTimestamp = 0L
         val analysis =
             ImageAnalysis.Builder()
@@ -161,13 +302,16 @@ class CameraController(
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .build()
         analysis.setAnalyzer(cameraExecutor) { imageProxy ->
-            val now = System.currentTimeMillis()
-            if (now - lastAnalyzedTimestamp > minInterval) {
+            // 以幀時間戳節流，不受牆上時間調整影響
+            val now = imageProxy.imageInfo.timestamp / 1_000_000L
+            val minInterval = frameRateGovernor?.currentIntervalMs() ?: DEFAULT_MIN_INTERVAL_MS
+            if (now - lastAnalyzedTimestamp >= minInterval || now < lastAnalyzedTimestamp) {
                 lastAnalyzedTimestamp = now
-                // MediaPipe 推論與特徵計算放到 background thread
-                kotlinx.coroutines.CoroutineScope(kotlinx.coroutines.Dispatchers.Default).launch {
-                    processImage(imageProxy)
-                }
+                // 只記錄實際送去處理的幀，節流丟掉的幀不計入
+                val captureAge = captureAgeNanos(imageProxy)
+                if (captureAge >= 0L) pipelineMetrics.record(PipelineStage.CAPTURE_TO_ANALYZER, captureAge)
+                // 交給推論執行緒；尚未處理的舊幀會被關閉丟棄
+                inferenceExecutor.submit(imageProxy)
             } else {
                 imageProxy.close()
             }
@@ -175,55 +319,245 @@ class CameraController(
         return analysis
     }
 
-    private fun processImage(imageProxy: ImageProxy) {
-        Log.d(
-            TAG,
-            "[CameraController] processImage called: ${imageProxy.width}x${imageProxy.height}, timestamp=${imageProxy.imageInfo.timestamp}, previewView hashCode: ${previewView.hashCode()}",
-        )
-        
-        var bitmap: Bitmap? = null
-        try {
-            Log.d(TAG, "Processing image: ${imageProxy.width}x${imageProxy.height}")
+    /**
+     * 在推論執行緒上建立（或重建）FaceLandmarker
+     */
+    private fun ensureLandmarker(): FaceLandmarker? {
+        if (!landmarkerStale && faceLandmarker != null) return faceLandmarker
 
-            // 將 ImageProxy 轉換為 Bitmap
-            bitmap = imageProxy.toBitmap()
-            Log.d(TAG, "Bitmap created: ${bitmap.width}x${bitmap.height}")
+        faceLandmarker?.close()
+        lastFrameTimestampMs = -1L
+        for (i in 0 until ASYNC_TRACKING_SLOTS) asyncSubmits.set(i, null)
+        roiResetRequested = false
+        roiTracker.reset()
+        faceLandmarker =
+            when (runningMode) {
+                RunningMode.LIVE_STREAM ->
+                    FaceLandmarkerManager.createForLiveStream(
+                        context,
+                        onResult = { result, _ -> onLiveStreamResult(result) },
+                        onError = { e -> Log.e(TAG, "MediaPipe live stream error", e) },
+                    )
+                else -> FaceLandmarkerManager.createForRealTime(context)
+            }
+        landmarkerStale = false
+        return faceLandmarker
+    }
 
-            // 從 Bitmap 創建 MPImage
-            val mpImage = BitmapImageBuilder(bitmap).build()
-            Log.d(TAG, "MPImage created successfully")
+    /**
+     * LIVE_STREAM 結果回調（MediaPipe 執行緒，依時間戳順序送達）
+     */
+    private fun onLiveStreamResult(result: FaceLandmarkerResult) {
+        val timestampMs = result.timestampMs()
+        val index = (timestampMs % ASYNC_TRACKING_SLOTS).toInt()
+        val submit = asyncSubmits.get(index)
+        if (submit != null && submit.timestampMs == timestampMs) {
+            asyncSubmits.compareAndSet(index, submit, null)
+            recordInferenceLatency(System.nanoTime() - submit.submitNanos)
+            deliverResult(result, submit.crop, timestampMs, submit.frameStartNanos)
+        } else {
+            // 找不到送出時的裁切：無法換回全幀座標，丟棄結果，下一幀回到全幀偵測
+            roiResetRequested = true
+        }
+    }
 
-            // 使用 MediaPipe 進行同步檢測
-            val result = faceLandmarker?.detect(mpImage)
+    /**
+     * 更新 ROI 追蹤，推進偵測時鐘，換回全幀座標後送出結果
+     * frameStartNanos 為該幀拍攝時間（System.nanoTime 時基），供端到端延遲統計
+     */
+    private fun deliverResult(
+        result: FaceLandmarkerResult,
+        crop: FaceRoiTracker.Roi,
+        frameTimestampMs: Long,
+        frameStartNanos: Long,
+    ) {
+        if (RoiLandmarkMapper.faceBounds(result, landmarkBounds)) {
+            roiTracker.onLandmarks(landmarkBounds, crop)
+        } else {
+            roiTracker.onNoFace()
+        }
+        val clock = frameClock
+        val detectionTimeMs =
+            if (clock != null) {
+                clock.onFrame(frameTimestampMs)
+                clock.nowMs()
+            } else {
+                frameTimestampMs
+            }
+        val fullFrame = RoiLandmarkMapper.toFullFrame(result, crop)
+        landmarkRecorder?.let { record(it, fullFrame, detectionTimeMs) }
+        pipelineMetrics.beginFrame(frameStartNanos)
+        onFaceLandmarksDetected?.invoke(fullFrame)
+    }
+
+    /**
+     * 只把座標複製進錄製器的緩衝，檔案 I/O 在錄製器自己的執行緒上；緩衝用完時丟幀（droppedCount）
+     */
+    private fun record(
+        recorder: LandmarkRecorder,
+        result: FaceLandmarkerResult,
+        timestampMs: Long,
+    ) {
+        try {
+            recorder.record(recordingFrame.wrap(result), timestampMs)
+        } catch (e: IOException) {
+            Log.e(TAG, "Landmark recording failed, recorder detached", e)
+            if (landmarkRecorder === recorder) landmarkRecorder = null
+        }
+    }
+
+    private fun processImage(imageProxy: ImageProxy) {
+        if (FRAME_LOGGING) {
             Log.d(
                 TAG,
-                "[CameraController] MediaPipe detection result: ${result?.faceLandmarks()?.size ?: 0} faces detected, landmark0 size=${result?.faceLandmarks()?.getOrNull(0)?.size ?: -1}",
+                "[CameraController] processImage called: ${imageProxy.width}x${imageProxy.height}, timestamp=${imageProxy.imageInfo.timestamp}, previewView hashCode: ${previewView.hashCode()}",
             )
+        }
+
+        val entryNanos = System.nanoTime()
+        val queueWaitNanos = inferenceExecutor.currentQueueWaitNanos
+        pipelineMetrics.record(PipelineStage.QUEUE_WAIT, queueWaitNanos)
+        // 拍攝時間換算不出來時，以送進佇列的時間近似
+        val captureAge = captureAgeNanos(imageProxy, entryNanos)
+        val frameStartNanos = entryNanos - if (captureAge >= 0L) captureAge else queueWaitNanos
+
+        var slot: FrameBufferRing.Slot? = null
+        var slotRing: FrameBufferRing? = null
+        try {
+            val result =
+                when (frameConversionMode) {
+                    FrameConversionMode.DIRECT_RGBA -> {
+                        val rotation = imageProxy.imageInfo.rotationDegrees
+                        val upright = rotation == 90 || rotation == 270
+                        val uprightWidth = if (upright) imageProxy.height else imageProxy.width
+                        val uprightHeight = if (upright) imageProxy.width else imageProxy.height
+                        if (roiResetRequested) {
+                            roiResetRequested = false
+                            roiTracker.reset()
+                        }
+                        val useRoi = roiEnabled && roiTracker.nextRoi(uprightWidth, uprightHeight, frameRoi)
+                        if (!useRoi) frameRoi.setFullFrame()
 
-            // 處理檢測結果
-            result?.let {
+                        slotRing = if (useRoi) roiBufferRing else frameBufferRing
+                        if (useRoi) {
+                            roiBufferRing.ensureFrameSize(ROI_INPUT_SIZE, ROI_INPUT_SIZE, RGBA_BYTES_PER_PIXEL)
+                        } else {
+                            frameBufferRing.ensureFrameSize(imageProxy.width, imageProxy.height, RGBA_BYTES_PER_PIXEL)
+                        }
+                        slot = slotRing.acquire()
+                        val frameSlot = slot ?: return // 緩衝環已借完：丟棄此幀
+                        // YUV 平面直接轉 RGBA，旋轉交給 MediaPipe（只在推論執行緒上執行，轉換器不需加鎖）
+                        val conversionStart = System.nanoTime()
+                        val mpImage =
+                            if (useRoi) {
+                                imageProxy.toRgbaRoiMPImage(yuvConverter, frameSlot, frameRoi, ROI_INPUT_SIZE, cropScratch)
+                            } else {
+                                imageProxy.toRgbaMPImage(yuvConverter, frameSlot)
+                            }
+                        pipelineMetrics.record(PipelineStage.CONVERSION, System.nanoTime() - conversionStart)
+                        runInference(mpImage, ImageUtils.rotationOptions(rotation), imageProxy, frameRoi, frameStartNanos)
+                    }
+                    FrameConversionMode.LEGACY_JPEG -> {
+                        // NV21 → JPEG → Bitmap，Bitmap 由轉換器重複使用，不可 recycle
+                        val conversionStart = System.nanoTime()
+                        val mpImage = BitmapImageBuilder(legacyConverter.convert(imageProxy)).build()
+                        pipelineMetrics.record(PipelineStage.CONVERSION, System.nanoTime() - conversionStart)
+                        frameRoi.setFullFrame()
+                        runInference(mpImage, ImageUtils.rotationOptions(0), imageProxy, frameRoi, frameStartNanos)
+                    }
+                }
+            if (FRAME_LOGGING) {
                 Log.d(
                     TAG,
-                    "[CameraController] onFaceLandmarksDetected callback triggered, callback is ${if (onFaceLandmarksDetected != null) "non-null" else "null"}",
+                    "[CameraController] MediaPipe detection result: ${result?.faceLandmarks()?.size ?: 0} faces detected, landmark0 size=${result?.faceLandmarks()?.getOrNull(0)?.size ?: -1}",
                 )
-                onFaceLandmarksDetected?.invoke(it)
             }
 
+            // 處理檢測結果（LIVE_STREAM 模式由結果回調處理）
+            result?.let { deliverResult(it, frameRoi, imageProxy.imageInfo.timestamp / 1_000_000L, frameStartNanos) }
         } catch (e: Exception) {
             Log.e(TAG, "Error processing image with MediaPipe", e)
         } finally {
-            // 重要：手動回收 Bitmap 避免記憶體洩漏
-            bitmap?.let {
-                if (!it.isRecycled) {
-                    it.recycle()
-                    Log.d(TAG, "Bitmap recycled successfully")
-                }
-            }
+            slot?.let { slotRing?.release(it) }
             // 手動關閉 imageProxy
             imageProxy.close()
         }
     }
 
+    /**
+     * 依執行模式送出推論
+     * IMAGE 回傳同步結果；LIVE_STREAM 回傳 null，結果由 createForLiveStream 的回調送出。
+     * detectAsync 建立封包時會複製像素，返回後即可歸還緩衝區。
+     */
+    private fun runInference(
+        mpImage: MPImage,
+        options: ImageProcessingOptions,
+        imageProxy: ImageProxy,
+        crop: FaceRoiTracker.Roi,
+        frameStartNanos: Long,
+    ): FaceLandmarkerResult? {
+        val landmarker = ensureLandmarker() ?: return null
+        return if (runningMode == RunningMode.LIVE_STREAM) {
+            val timestampMs = nextFrameTimestampMs(imageProxy)
+            val index = (timestampMs % ASYNC_TRACKING_SLOTS).toInt()
+            val cropCopy = FaceRoiTracker.Roi().also { it.set(crop) }
+            asyncSubmits.set(index, AsyncSubmit(timestampMs, System.nanoTime(), frameStartNanos, cropCopy))
+            landmarker.detectAsync(mpImage, options, timestampMs)
+            null
+        } else {
+            val start = System.nanoTime()
+            val result = landmarker.detect(mpImage, options)
+            recordInferenceLatency(System.nanoTime() - start)
+            result
+        }
+    }
+
+    private fun recordInferenceLatency(nanos: Long) {
+        inferenceExecutor.recordInferenceNanos(nanos)
+        pipelineMetrics.record(PipelineStage.INFERENCE, nanos)
+        frameRateGovernor?.recordInferenceLatencyMs(nanos / 1_000_000L)
+    }
+
+    /**
+     * 拍攝至今的時間（ns）；時間戳時基無法判斷時回傳 -1
+     */
+    private fun captureAgeNanos(
+        imageProxy: ImageProxy,
+        nowNanos: Long = System.nanoTime(),
+    ): Long =
+        FramePipelineMetrics.captureAgeNanos(
+            imageProxy.imageInfo.timestamp,
+            nowNanos,
+            SystemClock.elapsedRealtimeNanos(),
+        )
+
+    /**
+     * 以相機幀時間戳（ns）換算毫秒，並保證嚴格遞增
+     */
+    private fun nextFrameTimestampMs(imageProxy: ImageProxy): Long {
+        var timestampMs = imageProxy.imageInfo.timestamp / 1_000_000L
+        if (timestampMs <= lastFrameTimestampMs) {
+            timestampMs = lastFrameTimestampMs + 1
+        }
+        lastFrameTimestampMs = timestampMs
+        return timestampMs
+    }
+
+    /**
+     * 取得影像緩衝環統計（命中 / 未命中 / 配置次數）
+     */
+    fun getFrameBufferStats(): FrameBufferRing.Stats = frameBufferRing.getStats()
+
+    /**
+     * ROI 幀佔比（其餘為全幀偵測）
+     */
+    fun getRoiRatio(): Float = roiTracker.roiRatio()
+
+    /**
+     * 取得推論階段統計（丟幀數、佇列等待、推論耗時）
+     */
+    fun getInferenceStats(): InferenceExecutor.Stats = inferenceExecutor.getStats()
+
     private fun handleCameraError(error: Exception) {
         Log.e(TAG, "Camera error occurred", error)
         retryCount++
@@ -271,9 +605,20 @@ class CameraController(
     fun release() {
         Log.d(TAG, "Releasing camera controller")
         unbindCamera()
+        cameraExecutor.shutdown()
+        // landmarker 與轉換器由推論執行緒結束時關閉（onExit），不會關到還在 detect 的實例
+        if (!inferenceExecutor.shutdown()) {
+            Log.w(TAG, "Inference still running, landmarker will be closed when the current frame finishes")
+        }
+    }
+
+    /**
+     * 推論執行緒結束時呼叫
+     */
+    private fun releaseInferenceResources() {
         faceLandmarker?.close()
         faceLandmarker = null
-        cameraExecutor.shutdown()
+        legacyConverter.release()
     }
 
     /**
@@ -5,6 +5,9 @@ import android.util.Log
 import androidx.camera.view.PreviewView
 import androidx.lifecycle.LifecycleOwner
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+import com.patrick.core.FrameClock
+import com.patrick.detection.FrameRateGovernor
+import com.patrick.detection.LandmarkRecorder
 
 /**
  * 攝像頭管理器
@@ -20,6 +23,9 @@ class CameraManager(
 
     private var cameraController: CameraController? = null
     private var onFaceLandmarksDetected: ((FaceLandmarkerResult) -> Unit)? = null
+    private var frameRateGovernor: FrameRateGovernor? = null
+    private var landmarkRecorder: LandmarkRecorder? = null
+    private var frameClock: FrameClock? = null
 
     /**
      * 設置面部特徵點檢測回調
@@ -29,6 +35,30 @@ class CameraManager(
         this.onFaceLandmarksDetected = callback
     }
 
+    /**
+     * 設置分析幀率調節器
+     */
+    fun setFrameRateGovernor(governor: FrameRateGovernor?) {
+        this.frameRateGovernor = governor
+        cameraController?.setFrameRateGovernor(governor)
+    }
+
+    /**
+     * 設置偵測時鐘（以幀時間戳推進）
+     */
+    fun setFrameClock(clock: FrameClock?) {
+        this.frameClock = clock
+        cameraController?.setFrameClock(clock)
+    }
+
+    /**
+     * 設置 landmark 錄製器（null 停止錄製）
+     */
+    fun setLandmarkRecorder(recorder: LandmarkRecorder?) {
+        this.landmarkRecorder = recorder
+        cameraController?.setLandmarkRecorder(recorder)
+    }
+
     /**
      * 初始化攝像頭
      */
@@ -54,6 +84,10 @@ class CameraManager(
                 onFaceLandmarksDetected?.invoke(result)
             }
 
+            cameraController?.setFrameRateGovernor(frameRateGovernor)
+            cameraController?.setLandmarkRecorder(landmarkRecorder)
+            cameraController?.setFrameClock(frameClock)
+
             // 綁定攝像頭（在設置 callback 之後）
             Log.d(TAG, "[CameraManager] Binding camera")
             cameraController?.bindCamera()
@@ -3,6 +3,8 @@ package com.patrick.camera
 import androidx.camera.view.PreviewView
 import androidx.lifecycle.LifecycleOwner
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+import com.patrick.core.FrameClock
+import com.patrick.detection.FrameRateGovernor
 import kotlinx.coroutines.flow.StateFlow
 
 /**
@@ -69,4 +71,14 @@ interface CameraRepository {
      * 設置面部特徵點檢測回調
      */
     fun setFaceLandmarksCallback(callback: (FaceLandmarkerResult) -> Unit)
+
+    /**
+     * 設置分析幀率調節器（null = 使用固定間隔）
+     */
+    fun setFrameRateGovernor(governor: FrameRateGovernor?)
+
+    /**
+     * 設置偵測時鐘（null = 不推進，偵測端使用系統單調時鐘）
+     */
+    fun setFrameClock(clock: FrameClock?)
 }
@@ -5,6 +5,8 @@ import android.util.Log
 import androidx.camera.view.PreviewView
 import androidx.lifecycle.LifecycleOwner
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+import com.patrick.core.FrameClock
+import com.patrick.detection.FrameRateGovernor
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -23,6 +25,8 @@ class CameraRepositoryImpl(
 
     private var cameraManager: CameraManager? = null
     private var onFaceLandmarksDetected: ((FaceLandmarkerResult) -> Unit)? = null
+    private var frameRateGovernor: FrameRateGovernor? = null
+    private var frameClock: FrameClock? = null
 
     // 狀態流
     private val _cameraState = MutableStateFlow(CameraRepository.CameraState.UNINITIALIZED)
@@ -51,6 +55,9 @@ class CameraRepositoryImpl(
                 onFaceLandmarksDetected?.invoke(result)
             }
 
+            cameraManager?.setFrameRateGovernor(frameRateGovernor)
+            cameraManager?.setFrameClock(frameClock)
+
             // 初始化攝像頭
             cameraManager?.initializeCamera(previewView, lifecycleOwner)
 
@@ -118,4 +125,14 @@ class CameraRepositoryImpl(
         Log.d(TAG, "[CameraRepositoryImpl] setFaceLandmarksCallback called")
         this.onFaceLandmarksDetected = callback
     }
+
+    override fun setFrameRateGovernor(governor: FrameRateGovernor?) {
+        this.frameRateGovernor = governor
+        cameraManager?.setFrameRateGovernor(governor)
+    }
+
+    override fun setFrameClock(clock: FrameClock?) {
+        this.frameClock = clock
+        cameraManager?.setFrameClock(clock)
+    }
 }
@@ -3,6 +3,8 @@ package com.patrick.camera
 import androidx.camera.view.PreviewView
 import androidx.lifecycle.LifecycleOwner
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+import com.patrick.core.FrameClock
+import com.patrick.detection.FrameRateGovernor
 import kotlinx.coroutines.flow.StateFlow
 
 /**
@@ -74,4 +76,18 @@ class CameraUseCase(
     fun setFaceLandmarksCallback(callback: (FaceLandmarkerResult) -> Unit) {
         repository.setFaceLandmarksCallback(callback)
     }
+
+    /**
+     * 設置分析幀率調節器
+     */
+    fun setFrameRateGovernor(governor: FrameRateGovernor?) {
+        repository.setFrameRateGovernor(governor)
+    }
+
+    /**
+     * 設置偵測時鐘
+     */
+    fun setFrameClock(clock: FrameClock?) {
+        repository.setFrameClock(clock)
+    }
 }
@@ -6,6 +6,8 @@ import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.LifecycleOwner
 import androidx.lifecycle.viewModelScope
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+import com.patrick.core.FrameClock
+import com.patrick.detection.FrameRateGovernor
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.launch
@@ -53,6 +55,20 @@ class CameraViewModel(
         }
     }
 
+    /**
+     * 設置分析幀率調節器（通常來自 FatigueViewModel.frameRateGovernor）
+     */
+    fun setFrameRateGovernor(governor: FrameRateGovernor?) {
+        cameraUseCase.setFrameRateGovernor(governor)
+    }
+
+    /**
+     * 設置偵測時鐘（通常來自 FatigueViewModel.frameClock）
+     */
+    fun setFrameClock(clock: FrameClock?) {
+        cameraUseCase.setFrameClock(clock)
+    }
+
     /**
      * 釋放相機資源
      */
@@ -0,0 +1,262 @@
+package com.patrick.camera
+
+import kotlin.math.abs
+import kotlin.math.roundToInt
+
+/**
+ * 臉部 ROI 追蹤器
+ * 以上一幀 landmark 的外框加上邊界，決定下一幀要裁切的區域（正方形、以像素計），
+ * 讓推論只處理臉部附近並縮小輸入。遇到以下情況回到全幀偵測：
+ * - 尚未有臉 / 上一幀沒有臉
+ * - 每 fullFrameInterval 幀強制一次（讓畫面其他位置的臉也能被找到）
+ * - 臉碰到裁切邊緣（可能被切掉，追蹤不可靠）
+ * - 臉太大（裁切範圍超過畫面）或太小（外框不可靠）
+ *
+ * 座標一律為「旋轉後（正立）畫面」的正規化座標 0..1，與 MediaPipe 輸出一致；
+ * 轉成感光元件裁切像素請用 [Roi.toSensorCrop]。
+ *
+ * 不依賴 Android API。nextRoi 在推論執行緒、onLandmarks 可能在 MediaPipe 回調執行緒，方法皆已同步。
+ */
+class FaceRoiTracker(
+    private val config: Config = Config(),
+) {
+    data class Config(
+        // 外框每邊外擴比例（相對外框長邊）
+        val marginRatio: Float = 0.3f,
+        val fullFrameInterval: Int = 30,
+        // 外框距裁切邊緣小於此比例（裁切座標）視為碰邊
+        val edgeThreshold: Float = 0.02f,
+        // 外框長邊小於畫面短邊此比例時不裁切
+        val minFaceRatio: Float = 0.08f,
+        // 新外框仍在目前裁切內且大小變化小於此比例時沿用目前裁切（穩定輸入，利於 MediaPipe 幀間追蹤）
+        val resizeTolerance: Float = 0.2f,
+    )
+
+    /**
+     * 正規化矩形（可重複使用，不在每幀配置）
+     */
+    class Roi {
+        var left = 0f
+        var top = 0f
+        var right = 1f
+        var bottom = 1f
+
+        val width: Float get() = right - left
+        val height: Float get() = bottom - top
+        val isFullFrame: Boolean get() = left <= 0f && top <= 0f && right >= 1f && bottom >= 1f
+
+        fun set(
+            left: Float,
+            top: Float,
+            right: Float,
+            bottom: Float,
+        ) {
+            this.left = left
+            this.top = top
+            this.right = right
+            this.bottom = bottom
+        }
+
+        fun set(other: Roi) = set(other.left, other.top, other.right, other.bottom)
+
+        fun setFullFrame() = set(0f, 0f, 1f, 1f)
+
+        /**
+         * 正立座標的 ROI 轉為感光元件（未旋轉）像素裁切 [left, top, width, height]
+         * rotationDegrees 為 ImageInfo.rotationDegrees（順時針轉到正立所需角度）
+         */
+        fun toSensorCrop(
+            rotationDegrees: Int,
+            sensorWidth: Int,
+            sensorHeight: Int,
+            out: IntArray,
+        ) {
+            val x0: Float
+            val x1: Float
+            val y0: Float
+            val y1: Float
+            when (((rotationDegrees % 360) + 360) % 360) {
+                90 -> {
+                    x0 = top
+                    x1 = bottom
+                    y0 = 1f - right
+                    y1 = 1f - left
+                }
+                180 -> {
+                    x0 = 1f - right
+                    x1 = 1f - left
+                    y0 = 1f - bottom
+                    y1 = 1f - top
+                }
+                270 -> {
+                    x0 = 1f - bottom
+                    x1 = 1f - top
+                    y0 = left
+                    y1 = right
+                }
+                else -> {
+                    x0 = left
+                    x1 = right
+                    y0 = top
+                    y1 = bottom
+                }
+            }
+            val cropLeft = (x0 * sensorWidth).roundToInt().coerceIn(0, sensorWidth - 1)
+            val cropTop = (y0 * sensorHeight).roundToInt().coerceIn(0, sensorHeight - 1)
+            val cropRight = (x1 * sensorWidth).roundToInt().coerceIn(cropLeft + 1, sensorWidth)
+            val cropBottom = (y1 * sensorHeight).roundToInt().coerceIn(cropTop + 1, sensorHeight)
+            out[0] = cropLeft
+            out[1] = cropTop
+            out[2] = cropRight - cropLeft
+            out[3] = cropBottom - cropTop
+        }
+    }
+
+    private var hasFace = false
+    private var forceFullFrame = true
+    private var framesSinceFullFrame = 0
+
+    // 上一次偵測到的臉部外框（正立畫面正規化座標）
+    private val faceBounds = Roi()
+
+    // 目前的裁切（正立畫面像素）
+    private var frameWidth = 0
+    private var frameHeight = 0
+    private var cropCenterX = 0f
+    private var cropCenterY = 0f
+    private var cropSide = 0f
+
+    private var fullFrameCount = 0L
+    private var roiFrameCount = 0L
+
+    /**
+     * 決定下一幀的輸入區域
+     * @param frameWidth  正立畫面寬（像素）
+     * @param frameHeight 正立畫面高（像素）
+     * @return true = 使用 out 裁切；false = 全幀（out 設為 0..1）
+     */
+    @Synchronized
+    fun nextRoi(
+        frameWidth: Int,
+        frameHeight: Int,
+        out: Roi,
+    ): Boolean {
+        if (frameWidth != this.frameWidth || frameHeight != this.frameHeight) {
+            this.frameWidth = frameWidth
+            this.frameHeight = frameHeight
+            cropSide = 0f
+            forceFullFrame = true
+        }
+
+        framesSinceFullFrame++
+        if (!hasFace || forceFullFrame || framesSinceFullFrame >= config.fullFrameInterval) {
+            return useFullFrame(out)
+        }
+
+        val faceWidth = faceBounds.width * frameWidth
+        val faceHeight = faceBounds.height * frameHeight
+        val faceSide = maxOf(faceWidth, faceHeight)
+        val shortSide = minOf(frameWidth, frameHeight).toFloat()
+        val side = faceSide * (1f + 2f * config.marginRatio)
+        if (faceSide < shortSide * config.minFaceRatio || side >= shortSide) {
+            return useFullFrame(out)
+        }
+
+        val centerX = (faceBounds.left + faceBounds.right) * 0.5f * frameWidth
+        val centerY = (faceBounds.top + faceBounds.bottom) * 0.5f * frameHeight
+        if (!currentCropStillFits(centerX, centerY, faceSide, side)) {
+            cropSide = side
+            cropCenterX = centerX.coerceIn(side * 0.5f, frameWidth - side * 0.5f)
+            cropCenterY = centerY.coerceIn(side * 0.5f, frameHeight - side * 0.5f)
+        }
+
+        val half = cropSide * 0.5f
+        out.set(
+            (cropCenterX - half) / frameWidth,
+            (cropCenterY - half) / frameHeight,
+            (cropCenterX + half) / frameWidth,
+            (cropCenterY + half) / frameHeight,
+        )
+        roiFrameCount++
+        return true
+    }
+
+    /**
+     * 回報一幀的 landmark 外框
+     * @param cropBounds 外框（以該幀裁切為 0..1 的正規化座標，即 MediaPipe 原始輸出）
+     * @param crop       該幀使用的裁切（正立畫面正規化座標）
+     */
+    @Synchronized
+    fun onLandmarks(
+        cropBounds: Roi,
+        crop: Roi,
+    ) {
+        val edge = config.edgeThreshold
+        // 只有裁切邊不是畫面邊時，碰邊才代表臉可能被切掉
+        val touchesEdge =
+            (crop.left > 0f && cropBounds.left < edge) ||
+                (crop.top > 0f && cropBounds.top < edge) ||
+                (crop.right < 1f && cropBounds.right > 1f - edge) ||
+                (crop.bottom < 1f && cropBounds.bottom > 1f - edge)
+        if (touchesEdge) forceFullFrame = true
+
+        faceBounds.set(
+            crop.left + cropBounds.left * crop.width,
+            crop.top + cropBounds.top * crop.height,
+            crop.left + cropBounds.right * crop.width,
+            crop.top + cropBounds.bottom * crop.height,
+        )
+        hasFace = true
+    }
+
+    /**
+     * 回報一幀沒有偵測到臉，下一幀回到全幀
+     */
+    @Synchronized
+    fun onNoFace() {
+        hasFace = false
+    }
+
+    @Synchronized
+    fun reset() {
+        hasFace = false
+        forceFullFrame = true
+        framesSinceFullFrame = 0
+        cropSide = 0f
+    }
+
+    /**
+     * ROI 幀佔比（全幀 + ROI 幀中 ROI 幀的比例）
+     */
+    @Synchronized
+    fun roiRatio(): Float {
+        val total = fullFrameCount + roiFrameCount
+        return if (total > 0) roiFrameCount.toFloat() / total else 0f
+    }
+
+    private fun useFullFrame(out: Roi): Boolean {
+        framesSinceFullFrame = 0
+        forceFullFrame = false
+        cropSide = 0f
+        out.setFullFrame()
+        fullFrameCount++
+        return false
+    }
+
+    private fun currentCropStillFits(
+        centerX: Float,
+        centerY: Float,
+        faceSide: Float,
+        side: Float,
+    ): Boolean {
+        if (cropSide <= 0f) return false
+        if (abs(side - cropSide) > cropSide * config.resizeTolerance) return false
+        // 臉加上一半邊界仍在目前裁切內
+        val needed = faceSide * (0.5f + config.marginRatio * 0.5f)
+        val half = cropSide * 0.5f
+        return centerX - needed >= cropCenterX - half &&
+            centerX + needed <= cropCenterX + half &&
+            centerY - needed >= cropCenterY - half &&
+            centerY + needed <= cropCenterY + half
+    }
+}
@@ -0,0 +1,12 @@
+package com.patrick.camera
+
+/**
+ * 影像幀轉換方式
+ */
+enum class FrameConversionMode {
+    // YUV 平面直接轉 RGBA buffer，旋轉交給 ImageProcessingOptions
+    DIRECT_RGBA,
+
+    // 舊路徑：NV21 → JPEG → Bitmap → 旋轉 Bitmap（保留作為備援）
+    LEGACY_JPEG,
+}
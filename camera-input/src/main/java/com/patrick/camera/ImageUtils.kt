@@ -7,15 +7,93 @@ import android.graphics.Matrix
 import android.graphics.Rect
 import android.graphics.YuvImage
 import androidx.camera.core.ImageProxy
+import com.google.mediapipe.framework.image.ByteBufferImageBuilder
+import com.google.mediapipe.framework.image.MPImage
+import com.google.mediapipe.tasks.vision.core.ImageProcessingOptions
+import com.patrick.core.FrameBufferRing
 import java.io.ByteArrayOutputStream
 
 /**
  * ImageProxy 工具類
- * 提供 ImageProxy 到 Bitmap 的轉換功能
+ * 提供 ImageProxy 到 MPImage / Bitmap 的轉換功能
  */
 object ImageUtils {
+    // 旋轉角度只有 0/90/180/270，選項物件可共用
+    private val rotationOptions =
+        Array(4) { ImageProcessingOptions.builder().setRotationDegrees(it * 90).build() }
+
+    /**
+     * 將 ImageProxy 的 YUV 平面直接轉為 RGBA MPImage
+     * 像素寫入 FrameBufferRing 借出的 slot，不做旋轉，旋轉角度請透過 [rotationOptions] 交給 MediaPipe
+     */
+    fun ImageProxy.toRgbaMPImage(
+        converter: YuvPlaneConverter,
+        slot: FrameBufferRing.Slot,
+    ): MPImage {
+        val yPlane = planes[0]
+        val uPlane = planes[1]
+        val vPlane = planes[2]
+
+        converter.convertInto(
+            width,
+            height,
+            yPlane.buffer,
+            yPlane.rowStride,
+            uPlane.buffer,
+            vPlane.buffer,
+            uPlane.rowStride,
+            uPlane.pixelStride,
+            slot.intView,
+        )
+        slot.buffer.rewind()
+        return ByteBufferImageBuilder(slot.buffer, width, height, MPImage.IMAGE_FORMAT_RGBA).build()
+    }
+
+    /**
+     * 只轉換臉部 ROI 並縮放為 outputSize × outputSize 的 RGBA MPImage
+     * roi 為正立畫面的正規化座標，依旋轉角度換成感光元件裁切；cropScratch 為呼叫端重複使用的 IntArray(4)
+     */
+    fun ImageProxy.toRgbaRoiMPImage(
+        converter: YuvPlaneConverter,
+        slot: FrameBufferRing.Slot,
+        roi: FaceRoiTracker.Roi,
+        outputSize: Int,
+        cropScratch: IntArray,
+    ): MPImage {
+        roi.toSensorCrop(imageInfo.rotationDegrees, width, height, cropScratch)
+        val yPlane = planes[0]
+        val uPlane = planes[1]
+        val vPlane = planes[2]
+
+        converter.convertRegionInto(
+            yPlane = yPlane.buffer,
+            yRowStride = yPlane.rowStride,
+            uPlane = uPlane.buffer,
+            vPlane = vPlane.buffer,
+            uvRowStride = uPlane.rowStride,
+            uvPixelStride = uPlane.pixelStride,
+            cropLeft = cropScratch[0],
+            cropTop = cropScratch[1],
+            cropWidth = cropScratch[2],
+            cropHeight = cropScratch[3],
+            outWidth = outputSize,
+            outHeight = outputSize,
+            target = slot.intView,
+        )
+        slot.buffer.rewind()
+        return ByteBufferImageBuilder(slot.buffer, outputSize, outputSize, MPImage.IMAGE_FORMAT_RGBA).build()
+    }
+
+    /**
+     * 取得對應旋轉角度的 ImageProcessingOptions
+     */
+    fun rotationOptions(rotationDegrees: Int): ImageProcessingOptions {
+        val index = ((rotationDegrees % 360 + 360) % 360) / 90
+        return rotationOptions[index]
+    }
+
     /**
-     * 將 ImageProxy 轉換為 Bitmap
+     * 將 ImageProxy 轉換為 Bitmap（舊路徑，經 JPEG 編解碼）
      */
     fun ImageProxy.toBitmap(): Bitmap {
         val yBuffer = planes[0].buffer // Y
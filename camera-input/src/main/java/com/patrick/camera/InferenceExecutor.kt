@@ -0,0 +1,208 @@
+package com.patrick.camera
+
+import android.util.Log
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * 推論執行器
+ * 容量為 1 的單一消費者佇列（新幀覆蓋舊幀），搭配一條專屬推論執行緒：
+ * - analyzer 執行緒只負責 submit，立即返回
+ * - 尚未處理的舊幀被新幀取代時，透過 onDrop 釋放（例如關閉 ImageProxy）
+ * - 所有幀在同一執行緒依序處理，結果依序送出，landmarker 不會被併發呼叫
+ * - 執行緒結束前呼叫 onExit（例如關閉 landmarker），所以關閉一定在最後一幀處理完之後
+ *
+ * 除了 android.util.Log 之外不依賴 Android API，可在 JVM 上測試。
+ */
+class InferenceExecutor<T : Any>(
+    private val threadName: String,
+    private val onFrame: (T) -> Unit,
+    private val onDrop: (T) -> Unit,
+    private val onExit: () -> Unit = {},
+) {
+    private val lock = ReentrantLock()
+
+    // pending 有幀或 running 變成 false 時 signal
+    private val frameAvailable = lock.newCondition()
+    private var pending: T? = null
+    private var pendingSubmitNanos = 0L
+    private var running = true
+
+    private val submittedCount = AtomicLong()
+    private val processedCount = AtomicLong()
+    private val droppedCount = AtomicLong()
+    private val failedCount = AtomicLong()
+    private val queueWaitTotalNanos = AtomicLong()
+    private val queueWaitMaxNanos = AtomicLong()
+    private val processTotalNanos = AtomicLong()
+    private val processMaxNanos = AtomicLong()
+    private val inferenceCount = AtomicLong()
+    private val inferenceTotalNanos = AtomicLong()
+    private val inferenceMaxNanos = AtomicLong()
+
+    // 目前處理中這幀的佇列等待時間；只在推論執行緒上寫入，onFrame 內可讀取
+    @Volatile
+    var currentQueueWaitNanos = 0L
+        private set
+
+    private val worker =
+        Thread({ runLoop() }, threadName).apply {
+            isDaemon = true
+            start()
+        }
+
+    /**
+     * 送出一幀；若前一幀尚未被取走則丟棄前一幀
+     * 執行器已關閉時直接丟棄本幀
+     */
+    fun submit(frame: T) {
+        var dropped: T? = null
+        lock.withLock {
+            if (!running) {
+                dropped = frame
+            } else {
+                dropped = pending
+                pending = frame
+                pendingSubmitNanos = System.nanoTime()
+                submittedCount.incrementAndGet()
+                frameAvailable.signal()
+            }
+        }
+        dropped?.let {
+            droppedCount.incrementAndGet()
+            onDrop(it)
+        }
+    }
+
+    /**
+     * 記錄一次推論耗時（IMAGE 模式為 detect 耗時；LIVE_STREAM 模式為送出到收到結果）
+     */
+    fun recordInferenceNanos(nanos: Long) {
+        inferenceCount.incrementAndGet()
+        inferenceTotalNanos.addAndGet(nanos)
+        updateMax(inferenceMaxNanos, nanos)
+    }
+
+    /**
+     * 停止推論執行緒，未處理的幀以 onDrop 釋放
+     * 會等待正在處理中的幀完成（最多 timeoutMs）；回傳執行緒是否已結束（onExit 已執行）。
+     * 逾時回傳 false 時執行緒仍會在該幀處理完後自行結束並呼叫 onExit。
+     */
+    fun shutdown(timeoutMs: Long = 1000L): Boolean {
+        var dropped: T? = null
+        lock.withLock {
+            running = false
+            dropped = pending
+            pending = null
+            frameAvailable.signalAll()
+        }
+        dropped?.let {
+            droppedCount.incrementAndGet()
+            onDrop(it)
+        }
+        if (Thread.currentThread() === worker) return false
+        worker.join(timeoutMs)
+        return !worker.isAlive
+    }
+
+    /**
+     * 是否在推論執行緒上
+     */
+    fun isInferenceThread(): Boolean = Thread.currentThread() === worker
+
+    /**
+     * 取得統計資訊
+     */
+    fun getStats(): Stats {
+        val processed = processedCount.get()
+        val inferences = inferenceCount.get()
+        return Stats(
+            submitted = submittedCount.get(),
+            processed = processed,
+            dropped = droppedCount.get(),
+            failed = failedCount.get(),
+            avgQueueWaitMs = if (processed > 0) queueWaitTotalNanos.get() / processed / 1e6 else 0.0,
+            maxQueueWaitMs = queueWaitMaxNanos.get() / 1e6,
+            avgProcessMs = if (processed > 0) processTotalNanos.get() / processed / 1e6 else 0.0,
+            maxProcessMs = processMaxNanos.get() / 1e6,
+            avgInferenceMs = if (inferences > 0) inferenceTotalNanos.get() / inferences / 1e6 else 0.0,
+            maxInferenceMs = inferenceMaxNanos.get() / 1e6,
+        )
+    }
+
+    private fun runLoop() {
+        try {
+            processLoop()
+        } finally {
+            try {
+                onExit()
+            } catch (e: Exception) {
+                Log.w(TAG, "[$threadName] onExit failed", e)
+            }
+        }
+    }
+
+    private fun processLoop() {
+        while (true) {
+            val frame: T
+            val waitNanos: Long
+            lock.withLock {
+                while (running && pending == null) {
+                    frameAvailable.await()
+                }
+                if (!running) return
+                frame = pending!!
+                pending = null
+                waitNanos = System.nanoTime() - pendingSubmitNanos
+            }
+
+            queueWaitTotalNanos.addAndGet(waitNanos)
+            updateMax(queueWaitMaxNanos, waitNanos)
+            currentQueueWaitNanos = waitNanos
+
+            val start = System.nanoTime()
+            try {
+                onFrame(frame)
+            } catch (e: Exception) {
+                // 單幀失敗不可中斷推論執行緒；onFrame 應自行處理並釋放資源
+                failedCount.incrementAndGet()
+                Log.w(TAG, "[$threadName] frame processing failed", e)
+            }
+            val processNanos = System.nanoTime() - start
+            processedCount.incrementAndGet()
+            processTotalNanos.addAndGet(processNanos)
+            updateMax(processMaxNanos, processNanos)
+        }
+    }
+
+    private fun updateMax(
+        max: AtomicLong,
+        value: Long,
+    ) {
+        while (true) {
+            val current = max.get()
+            if (value <= current || max.compareAndSet(current, value)) return
+        }
+    }
+
+    companion object {
+        private const val TAG = "InferenceExecutor"
+    }
+
+    data class Stats(
+        val submitted: Long,
+        val processed: Long,
+        val dropped: Long,
+        // onFrame 拋出例外的幀數
+        val failed: Long,
+        val avgQueueWaitMs: Double,
+        val maxQueueWaitMs: Double,
+        val avgProcessMs: Double,
+        val maxProcessMs: Double,
+        val avgInferenceMs: Double,
+        val maxInferenceMs: Double,
+    ) {
+        val dropRate: Float = if (submitted > 0) dropped.toFloat() / submitted else 0f
+    }
+}
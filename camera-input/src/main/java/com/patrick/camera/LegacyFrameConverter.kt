@@ -0,0 +1,139 @@
+package com.patrick.camera
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.graphics.ImageFormat
+import android.graphics.Matrix
+import android.graphics.Paint
+import android.graphics.Rect
+import android.graphics.YuvImage
+import android.util.Log
+import androidx.camera.core.ImageProxy
+import java.io.ByteArrayOutputStream
+
+/**
+ * 舊路徑（NV21 → JPEG → Bitmap → 旋轉）的可重用版本
+ * NV21 陣列、JPEG 輸出緩衝、解碼 Bitmap（inBitmap）與旋轉後 Bitmap 皆重複使用，
+ * 解析度不變時不再配置大型物件。
+ *
+ * 回傳的 Bitmap 由轉換器持有，呼叫端不可 recycle，下次 convert 前有效。
+ * 非執行緒安全。
+ */
+class LegacyFrameConverter {
+    companion object {
+        private const val TAG = "LegacyFrameConverter"
+        private const val JPEG_QUALITY = 100
+    }
+
+    private var nv21 = ByteArray(0)
+    private val jpegStream = ReusableByteArrayOutputStream()
+    private val decodeOptions = BitmapFactory.Options().apply { inMutable = true }
+    private var decoded: Bitmap? = null
+    private var rotated: Bitmap? = null
+    private val canvas = Canvas()
+    private val matrix = Matrix()
+    private val paint = Paint(Paint.FILTER_BITMAP_FLAG)
+    private val jpegRect = Rect()
+
+    /**
+     * 將 ImageProxy 轉換為（已旋轉的）Bitmap
+     */
+    fun convert(image: ImageProxy): Bitmap {
+        val yBuffer = image.planes[0].buffer // Y
+        val uBuffer = image.planes[1].buffer // U
+        val vBuffer = image.planes[2].buffer // V
+
+        val ySize = yBuffer.remaining()
+        val uSize = uBuffer.remaining()
+        val vSize = vBuffer.remaining()
+
+        val nv21Size = ySize + uSize + vSize
+        if (nv21.size != nv21Size) {
+            nv21 = ByteArray(nv21Size)
+        }
+
+        // U and V are swapped
+        yBuffer.get(nv21, 0, ySize)
+        vBuffer.get(nv21, ySize, vSize)
+        uBuffer.get(nv21, ySize + vSize, uSize)
+        yBuffer.rewind()
+        uBuffer.rewind()
+        vBuffer.rewind()
+
+        val width = image.width
+        val height = image.height
+        jpegRect.set(0, 0, width, height)
+        jpegStream.reset()
+        YuvImage(nv21, ImageFormat.NV21, width, height, null).compressToJpeg(jpegRect, JPEG_QUALITY, jpegStream)
+
+        val bitmap = decode(width, height)
+        val rotation = image.imageInfo.rotationDegrees
+        return if (rotation != 0) rotate(bitmap, rotation) else bitmap
+    }
+
+    /**
+     * 釋放持有的 Bitmap
+     */
+    fun release() {
+        decoded?.recycle()
+        rotated?.recycle()
+        decoded = null
+        rotated = null
+        nv21 = ByteArray(0)
+    }
+
+    private fun decode(
+        width: Int,
+        height: Int,
+    ): Bitmap {
+        val reusable = decoded?.takeIf { !it.isRecycled && it.width == width && it.height == height }
+        decodeOptions.inBitmap = reusable
+        val bitmap =
+            try {
+                BitmapFactory.decodeByteArray(jpegStream.buffer(), 0, jpegStream.size(), decodeOptions)
+            } catch (e: IllegalArgumentException) {
+                // inBitmap 不相容時改為重新配置
+                Log.w(TAG, "inBitmap reuse failed, allocating new bitmap", e)
+                decodeOptions.inBitmap = null
+                BitmapFactory.decodeByteArray(jpegStream.buffer(), 0, jpegStream.size(), decodeOptions)
+            }
+        decoded = bitmap
+        return bitmap
+    }
+
+    private fun rotate(
+        source: Bitmap,
+        rotationDegrees: Int,
+    ): Bitmap {
+        val swap = rotationDegrees == 90 || rotationDegrees == 270
+        val targetWidth = if (swap) source.height else source.width
+        val targetHeight = if (swap) source.width else source.height
+
+        var target = rotated
+        if (target == null || target.isRecycled || target.width != targetWidth || target.height != targetHeight) {
+            target?.recycle()
+            target = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888)
+            rotated = target
+        }
+
+        matrix.reset()
+        matrix.postRotate(rotationDegrees.toFloat())
+        when (rotationDegrees) {
+            90 -> matrix.postTranslate(source.height.toFloat(), 0f)
+            180 -> matrix.postTranslate(source.width.toFloat(), source.height.toFloat())
+            270 -> matrix.postTranslate(0f, source.width.toFloat())
+        }
+        canvas.setBitmap(target)
+        canvas.drawBitmap(source, matrix, paint)
+        canvas.setBitmap(null)
+        return target
+    }
+
+    /**
+     * 可直接取得內部陣列的 ByteArrayOutputStream，避免 toByteArray() 複製
+     */
+    private class ReusableByteArrayOutputStream : ByteArrayOutputStream(64 * 1024) {
+        fun buffer(): ByteArray = buf
+    }
+}
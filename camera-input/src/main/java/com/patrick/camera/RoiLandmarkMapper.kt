@@ -0,0 +1,116 @@
+package com.patrick.camera
+
+import com.google.mediapipe.tasks.components.containers.Category
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark
+import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+import java.util.Optional
+
+/**
+ * ROI 推論結果 → 全幀座標
+ * MediaPipe 對裁切輸入回傳的 landmark 以裁切為 0..1，
+ * 交給 FatigueDetector 前必須換回全幀（正立畫面）正規化座標，EAR / MAR 的長寬比才會與全幀一致。
+ */
+internal object RoiLandmarkMapper {
+    /**
+     * 第一張臉的 landmark 外框（原始座標）；沒有臉時回傳 false
+     */
+    fun faceBounds(
+        result: FaceLandmarkerResult,
+        out: FaceRoiTracker.Roi,
+    ): Boolean {
+        val faces = result.faceLandmarks()
+        if (faces.isEmpty() || faces[0].isEmpty()) return false
+
+        val landmarks = faces[0]
+        var minX = Float.MAX_VALUE
+        var minY = Float.MAX_VALUE
+        var maxX = -Float.MAX_VALUE
+        var maxY = -Float.MAX_VALUE
+        for (i in landmarks.indices) {
+            val landmark = landmarks[i]
+            val x = landmark.x()
+            val y = landmark.y()
+            if (x < minX) minX = x
+            if (x > maxX) maxX = x
+            if (y < minY) minY = y
+            if (y > maxY) maxY = y
+        }
+        out.set(minX, minY, maxX, maxY)
+        return true
+    }
+
+    /**
+     * 將裁切座標的結果換成全幀座標；crop 為全幀時原樣回傳
+     * 不複製 landmark：回傳的結果只記下裁切，座標在讀取時才換算（每點第一次讀取時建立一次），
+     * 偵測端只讀幾十個點，不必每幀配置 478 個物件。crop 的值在此複製，之後修改 crop 不影響結果。
+     */
+    fun toFullFrame(
+        result: FaceLandmarkerResult,
+        crop: FaceRoiTracker.Roi,
+    ): FaceLandmarkerResult {
+        if (crop.isFullFrame) return result
+        return RoiMappedFaceLandmarkerResult(result, crop.left, crop.top, crop.width, crop.height)
+    }
+
+    /**
+     * 只替換 landmark；blendshapes 與座標無關，沿用原結果（transformation matrix 仍為裁切座標，目前未使用）
+     */
+    private class RoiMappedFaceLandmarkerResult(
+        private val source: FaceLandmarkerResult,
+        private val left: Float,
+        private val top: Float,
+        private val scaleX: Float,
+        private val scaleY: Float,
+    ) : FaceLandmarkerResult() {
+        private var faces: List<List<NormalizedLandmark>>? = null
+
+        override fun faceLandmarks(): List<List<NormalizedLandmark>> {
+            faces?.let { return it }
+            val sourceFaces = source.faceLandmarks()
+            val mapped =
+                if (sourceFaces.size == 1) {
+                    listOf(MappedLandmarks(sourceFaces[0]))
+                } else {
+                    sourceFaces.map { MappedLandmarks(it) }
+                }
+            faces = mapped
+            return mapped
+        }
+
+        override fun faceBlendshapes(): Optional<List<List<Category>>> = source.faceBlendshapes()
+
+        override fun facialTransformationMatrixes(): Optional<List<FloatArray>> = source.facialTransformationMatrixes()
+
+        override fun timestampMs(): Long = source.timestampMs()
+
+        /**
+         * 一張臉的 landmark 檢視：get(i) 第一次被呼叫時才換算並建立該點，之後回傳同一個物件
+         * （結果可能交給其他執行緒，例如 StateFlow，建立後的點不再修改）
+         */
+        private inner class MappedLandmarks(
+            private val landmarks: List<NormalizedLandmark>,
+        ) : AbstractList<NormalizedLandmark>(), RandomAccess {
+            @Volatile
+            private var mapped: Array<NormalizedLandmark?>? = null
+
+            override val size: Int get() = landmarks.size
+
+            override fun get(index: Int): NormalizedLandmark {
+                val cache = mapped ?: arrayOfNulls<NormalizedLandmark>(landmarks.size).also { mapped = it }
+                cache[index]?.let { return it }
+                val landmark = landmarks[index]
+                val fullFrame =
+                    NormalizedLandmark.create(
+                        left + landmark.x() * scaleX,
+                        top + landmark.y() * scaleY,
+                        // z 與 x 同尺度
+                        landmark.z() * scaleX,
+                        landmark.visibility(),
+                        landmark.presence(),
+                    )
+                cache[index] = fullFrame
+                return fullFrame
+            }
+        }
+    }
+}
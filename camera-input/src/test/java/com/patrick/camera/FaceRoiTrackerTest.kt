@@ -0,0 +1,132 @@
+package com.patrick.camera
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class FaceRoiTrackerTest {
+    // 正立畫面 480x640（640x480 感光元件旋轉 90 度）
+    private val frameWidth = 480
+    private val frameHeight = 640
+
+    private lateinit var tracker: FaceRoiTracker
+    private val roi = FaceRoiTracker.Roi()
+
+    @Before
+    fun setUp() {
+        tracker = FaceRoiTracker(FaceRoiTracker.Config(fullFrameInterval = 10))
+    }
+
+    @Test
+    fun `first frame and frames without face use full frame`() {
+        assertFalse(tracker.nextRoi(frameWidth, frameHeight, roi))
+        assertTrue(roi.isFullFrame)
+
+        tracker.onNoFace()
+        assertFalse(tracker.nextRoi(frameWidth, frameHeight, roi))
+    }
+
+    @Test
+    fun `face in full frame produces square crop around it`() {
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+        reportFace(0.4f, 0.4f, 0.6f, 0.55f)
+
+        assertTrue(tracker.nextRoi(frameWidth, frameHeight, roi))
+        // 外框長邊 = 0.55-0.4 = 0.15 * 640 = 96px；加邊界 → 96 * 1.6 = 153.6px
+        assertEquals(153.6f, roi.width * frameWidth, 0.5f)
+        assertEquals(153.6f, roi.height * frameHeight, 0.5f)
+        assertEquals(0.5f, (roi.left + roi.right) / 2, 1e-4f)
+        assertEquals(0.475f, (roi.top + roi.bottom) / 2, 1e-4f)
+    }
+
+    @Test
+    fun `landmarks are mapped from crop back to full frame`() {
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+        reportFace(0.4f, 0.4f, 0.6f, 0.55f)
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+
+        // 臉在裁切中央：回報後外框不變，裁切也不應移動
+        val crop = FaceRoiTracker.Roi().also { it.set(roi) }
+        val cropBounds = FaceRoiTracker.Roi()
+        cropBounds.set(
+            (0.4f - crop.left) / crop.width,
+            (0.4f - crop.top) / crop.height,
+            (0.6f - crop.left) / crop.width,
+            (0.55f - crop.top) / crop.height,
+        )
+        tracker.onLandmarks(cropBounds, crop)
+
+        assertTrue(tracker.nextRoi(frameWidth, frameHeight, roi))
+        assertEquals(crop.left, roi.left, 1e-4f)
+        assertEquals(crop.top, roi.top, 1e-4f)
+        assertEquals(crop.right, roi.right, 1e-4f)
+        assertEquals(crop.bottom, roi.bottom, 1e-4f)
+    }
+
+    @Test
+    fun `face touching crop edge falls back to full frame`() {
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+        reportFace(0.4f, 0.4f, 0.6f, 0.55f)
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+
+        val crop = FaceRoiTracker.Roi().also { it.set(roi) }
+        val cropBounds = FaceRoiTracker.Roi().also { it.set(0.3f, 0.3f, 0.995f, 0.7f) }
+        tracker.onLandmarks(cropBounds, crop)
+
+        assertFalse(tracker.nextRoi(frameWidth, frameHeight, roi))
+    }
+
+    @Test
+    fun `full frame is forced periodically`() {
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+        reportFace(0.4f, 0.4f, 0.6f, 0.55f)
+
+        var fullFrames = 0
+        repeat(30) {
+            if (!tracker.nextRoi(frameWidth, frameHeight, roi)) {
+                fullFrames++
+                reportFace(0.4f, 0.4f, 0.6f, 0.55f)
+            }
+        }
+        assertEquals(3, fullFrames)
+    }
+
+    @Test
+    fun `face too large or too small uses full frame`() {
+        tracker.nextRoi(frameWidth, frameHeight, roi)
+        reportFace(0.1f, 0.1f, 0.9f, 0.8f)
+        assertFalse(tracker.nextRoi(frameWidth, frameHeight, roi))
+
+        reportFace(0.5f, 0.5f, 0.51f, 0.51f)
+        assertFalse(tracker.nextRoi(frameWidth, frameHeight, roi))
+    }
+
+    @Test
+    fun `upright roi converts to sensor crop for each rotation`() {
+        val upright = FaceRoiTracker.Roi().also { it.set(0.25f, 0.1f, 0.75f, 0.3f) }
+        val out = IntArray(4)
+
+        upright.toSensorCrop(0, 640, 480, out)
+        assertArrayEquals(intArrayOf(160, 48, 320, 96), out)
+
+        // 90 度：感光元件 x ← 正立 y，感光元件 y ← 1 - 正立 x
+        upright.toSensorCrop(90, 640, 480, out)
+        assertArrayEquals(intArrayOf(64, 120, 128, 240), out)
+
+        upright.toSensorCrop(270, 640, 480, out)
+        assertArrayEquals(intArrayOf(448, 120, 128, 240), out)
+    }
+
+    private fun reportFace(
+        left: Float,
+        top: Float,
+        right: Float,
+        bottom: Float,
+    ) {
+        val bounds = FaceRoiTracker.Roi().also { it.set(left, top, right, bottom) }
+        tracker.onLandmarks(bounds, FaceRoiTracker.Roi())
+    }
+}
@@ -0,0 +1,75 @@
+package com.patrick.camera
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class InferenceExecutorTest {
+    @Test
+    fun `failing frames are counted and do not stop the worker`() {
+        val processed = CountDownLatch(2)
+        val executor =
+            InferenceExecutor<Int>(
+                threadName = "test-inference",
+                onFrame = {
+                    processed.countDown()
+                    if (it == 1) throw IllegalStateException("boom")
+                },
+                onDrop = {},
+            )
+
+        executor.submit(1)
+        awaitIdle(executor, 1)
+        executor.submit(2)
+
+        assertTrue(processed.await(1, TimeUnit.SECONDS))
+        assertTrue(executor.shutdown())
+        assertEquals(1L, executor.getStats().failed)
+        assertEquals(2L, executor.getStats().processed)
+    }
+
+    @Test
+    fun `onExit runs after the in-flight frame even when shutdown times out`() {
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val frameFinished = AtomicBoolean(false)
+        val exitAfterFrame = AtomicBoolean(false)
+        val exited = CountDownLatch(1)
+        val executor =
+            InferenceExecutor<Int>(
+                threadName = "test-inference",
+                onFrame = {
+                    started.countDown()
+                    release.await()
+                    frameFinished.set(true)
+                },
+                onDrop = {},
+                onExit = {
+                    exitAfterFrame.set(frameFinished.get())
+                    exited.countDown()
+                },
+            )
+
+        executor.submit(1)
+        assertTrue(started.await(1, TimeUnit.SECONDS))
+        assertFalse(executor.shutdown(timeoutMs = 20))
+
+        release.countDown()
+        assertTrue(exited.await(1, TimeUnit.SECONDS))
+        assertTrue(exitAfterFrame.get())
+    }
+
+    private fun awaitIdle(
+        executor: InferenceExecutor<*>,
+        processed: Long,
+    ) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1)
+        while (executor.getStats().processed < processed && System.nanoTime() < deadline) {
+            Thread.sleep(1)
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.patrick.camera
+
+import com.patrick.core.FrameBufferRing
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.IntBuffer
+
+/**
+ * YUV 直接轉 RGBA 的正確性；耗時與配置量見 :benchmarks 的 YuvConversionBenchmark
+ */
+class YuvPlaneConverterTest {
+    private val width = 640
+    private val height = 480
+
+    @Test
+    fun `direct rgba conversion matches reference pixel`() {
+        val frame = SyntheticFrame(width, height)
+        val converter = YuvPlaneConverter()
+        val rgba = frame.convertDirect(converter)
+
+        assertEquals(width * height * 4, converter.outputSizeBytes())
+        // 第一個像素：Y=16 + 0, U=V=128 → 黑色
+        assertEquals(0, rgba.get(0).toInt() and 0xFF)
+        assertEquals(0xFF, rgba.get(3).toInt() and 0xFF)
+    }
+
+    @Test
+    fun `frame buffer ring reuses its slots`() {
+        val frame = SyntheticFrame(width, height)
+        val converter = YuvPlaneConverter()
+        val ring = FrameBufferRing()
+
+        repeat(FrameBufferRing.DEFAULT_CAPACITY * 4) {
+            ring.ensureFrameSize(width, height, 4)
+            val slot = ring.acquire()!!
+            frame.convertInto(converter, slot)
+            ring.release(slot)
+        }
+
+        val stats = ring.getStats()
+        assertEquals(FrameBufferRing.DEFAULT_CAPACITY.toLong(), stats.allocations)
+        assertEquals(0L, stats.misses)
+    }
+
+    @Test
+    fun `roi conversion samples the same pixels as full frame`() {
+        val frame = SyntheticFrame(width, height)
+        val full = frame.convertDirect(YuvPlaneConverter()).asIntBuffer()
+
+        // 從 (161, 101) 起裁 256x256，縮成 128x128：每個輸出像素取來源的偶數位移
+        val roi = ByteBuffer.allocateDirect(128 * 128 * 4).asIntBuffer()
+        frame.convertRegion(YuvPlaneConverter(), 161, 101, 256, 256, 128, roi)
+
+        for ((x, y) in listOf(0 to 0, 5 to 9, 127 to 127, 64 to 3)) {
+            assertEquals(full.get((101 + y * 2) * width + 161 + x * 2), roi.get(y * 128 + x))
+        }
+    }
+
+    /**
+     * 模擬 CameraX 常見的 YUV_420_888 版面：Y 有 padding，UV 為交錯（pixelStride = 2）
+     */
+    private class SyntheticFrame(val width: Int, val height: Int) {
+        val yRowStride = width + 32
+        val uvRowStride = width + 32
+        val yPlane: ByteBuffer = ByteBuffer.allocateDirect(yRowStride * height)
+        val uPlane: ByteBuffer
+        val vPlane: ByteBuffer
+
+        init {
+            for (row in 0 until height) {
+                for (x in 0 until width) {
+                    yPlane.put(row * yRowStride + x, (16 + (x + row) % 220).toByte())
+                }
+            }
+            // 交錯 UV：V/U 共用同一塊記憶體，彼此錯開一個位元組
+            val chroma = ByteBuffer.allocateDirect(uvRowStride * height / 2)
+            for (i in 0 until chroma.capacity()) chroma.put(i, 128.toByte())
+            uPlane = chroma.duplicate().also { it.position(1) }.slice()
+            vPlane = chroma.duplicate().also { it.limit(chroma.capacity() - 1) }.slice()
+        }
+
+        fun convertDirect(converter: YuvPlaneConverter): ByteBuffer =
+            converter.convert(width, height, yPlane, yRowStride, uPlane, vPlane, uvRowStride, 2)
+
+        fun convertInto(
+            converter: YuvPlaneConverter,
+            slot: FrameBufferRing.Slot,
+        ) = converter.convertInto(width, height, yPlane, yRowStride, uPlane, vPlane, uvRowStride, 2, slot.intView)
+
+        fun convertRegion(
+            converter: YuvPlaneConverter,
+            left: Int,
+            top: Int,
+            cropWidth: Int,
+            cropHeight: Int,
+            outSize: Int,
+            target: IntBuffer,
+        ) = converter.convertRegionInto(
+            yPlane, yRowStride, uPlane, vPlane, uvRowStride, 2,
+            left, top, cropWidth, cropHeight, outSize, outSize, target,
+        )
+    }
+}
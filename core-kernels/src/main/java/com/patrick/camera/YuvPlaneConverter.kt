@@ -0,0 +1,250 @@
+package com.patrick.camera
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+
+/**
+ * YUV_420_888 → RGBA 轉換器
+ * 直接讀取 ImageProxy 的 Y/U/V 平面，寫入重複使用的 direct ByteBuffer
+ * （內建緩衝區或外部傳入，例如 FrameBufferRing 的 slot），
+ * 取代「NV21 → JPEG → Bitmap → 旋轉 Bitmap」的來回轉換。
+ *
+ * 也可只轉換臉部 ROI 並同時縮小（見 [convertRegionInto]）。
+ *
+ * 不依賴 Android API，可直接在 JVM 上做基準測試。
+ * 非執行緒安全：同一實例一次只能由一個執行緒使用。
+ */
+class YuvPlaneConverter {
+    private var width = 0
+    private var height = 0
+
+    // 輸出（RGBA_8888，緊密排列）
+    private var output: ByteBuffer = ByteBuffer.allocateDirect(0)
+    private var outputInts: IntBuffer = output.asIntBuffer()
+
+    // 每列暫存（解析度不變時不再配置）
+    private var yRow = ByteArray(0)
+    private var uRow = ByteArray(0)
+    private var vRow = ByteArray(0)
+    private var rgbaRow = IntArray(0)
+
+    // 輸出欄 → 來源欄對照表（裁切 / 縮放參數不變時不重算）
+    private var lumaColumns = IntArray(0)
+    private var chromaColumns = IntArray(0)
+    private var columnKeyLeft = -1
+    private var columnKeyWidth = -1
+    private var columnKeyOut = -1
+    private var columnKeyStride = -1
+
+    /**
+     * 將三個平面轉成 RGBA，回傳的 buffer 在下次呼叫前有效
+     *
+     * @param uvRowStride   U/V 平面的 rowStride（YUV_420_888 保證兩者相同）
+     * @param uvPixelStride U/V 平面的 pixelStride（1 = planar，2 = semi-planar）
+     */
+    fun convert(
+        width: Int,
+        height: Int,
+        yPlane: ByteBuffer,
+        yRowStride: Int,
+        uPlane: ByteBuffer,
+        vPlane: ByteBuffer,
+        uvRowStride: Int,
+        uvPixelStride: Int,
+    ): ByteBuffer {
+        ensureOutput(width, height)
+        convertInto(width, height, yPlane, yRowStride, uPlane, vPlane, uvRowStride, uvPixelStride, outputInts)
+        output.rewind()
+        return output
+    }
+
+    /**
+     * 將三個平面轉成 RGBA，寫入外部提供的 int 視圖
+     * target 必須是 BIG_ENDIAN ByteBuffer 的 asIntBuffer()，容量至少 width * height
+     */
+    fun convertInto(
+        width: Int,
+        height: Int,
+        yPlane: ByteBuffer,
+        yRowStride: Int,
+        uPlane: ByteBuffer,
+        vPlane: ByteBuffer,
+        uvRowStride: Int,
+        uvPixelStride: Int,
+        target: IntBuffer,
+    ) {
+        convertRegionInto(
+            yPlane = yPlane,
+            yRowStride = yRowStride,
+            uPlane = uPlane,
+            vPlane = vPlane,
+            uvRowStride = uvRowStride,
+            uvPixelStride = uvPixelStride,
+            cropLeft = 0,
+            cropTop = 0,
+            cropWidth = width,
+            cropHeight = height,
+            outWidth = width,
+            outHeight = height,
+            target = target,
+        )
+    }
+
+    /**
+     * 只轉換 (cropLeft, cropTop, cropWidth, cropHeight) 區域，並以最近鄰取樣縮放為 outWidth × outHeight
+     * 座標為感光元件（未旋轉）像素；target 規則同 [convertInto]，容量至少 outWidth * outHeight
+     */
+    fun convertRegionInto(
+        yPlane: ByteBuffer,
+        yRowStride: Int,
+        uPlane: ByteBuffer,
+        vPlane: ByteBuffer,
+        uvRowStride: Int,
+        uvPixelStride: Int,
+        cropLeft: Int,
+        cropTop: Int,
+        cropWidth: Int,
+        cropHeight: Int,
+        outWidth: Int,
+        outHeight: Int,
+        target: IntBuffer,
+    ) {
+        val chromaLeft = cropLeft shr 1
+        val chromaCount = ((cropLeft + cropWidth - 1) shr 1) - chromaLeft + 1
+        val chromaRowLength = (chromaCount - 1) * uvPixelStride + 1
+        ensureScratch(cropWidth, chromaRowLength, outWidth)
+        buildColumnTable(cropLeft, cropWidth, outWidth, chromaLeft, uvPixelStride)
+
+        val yStart = yPlane.position()
+        val uStart = uPlane.position()
+        val vStart = vPlane.position()
+        var lastSourceRow = -1
+        var lastChromaRow = -1
+
+        try {
+            for (row in 0 until outHeight) {
+                val sourceRow = cropTop + row * cropHeight / outHeight
+                if (sourceRow != lastSourceRow) {
+                    readRow(yPlane, yStart + sourceRow * yRowStride + cropLeft, yRow, cropWidth)
+                    val chromaRow = sourceRow shr 1
+                    if (chromaRow != lastChromaRow) {
+                        val chromaOffset = chromaRow * uvRowStride + chromaLeft * uvPixelStride
+                        readRow(uPlane, uStart + chromaOffset, uRow, chromaRowLength)
+                        readRow(vPlane, vStart + chromaOffset, vRow, chromaRowLength)
+                        lastChromaRow = chromaRow
+                    }
+                    convertRow(outWidth)
+                    lastSourceRow = sourceRow
+                }
+                target.position(row * outWidth)
+                target.put(rgbaRow, 0, outWidth)
+            }
+        } finally {
+            yPlane.position(yStart)
+            uPlane.position(uStart)
+            vPlane.position(vStart)
+        }
+
+        target.rewind()
+    }
+
+    /**
+     * 目前輸出緩衝區大小（位元組）
+     */
+    fun outputSizeBytes(): Int = output.capacity()
+
+    private fun ensureOutput(
+        width: Int,
+        height: Int,
+    ) {
+        if (this.width == width && this.height == height) return
+
+        this.width = width
+        this.height = height
+        // ByteBuffer 預設 BIG_ENDIAN：int 0xRRGGBBAA 依序寫出 R,G,B,A
+        output = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.BIG_ENDIAN)
+        outputInts = output.asIntBuffer()
+    }
+
+    private fun ensureScratch(
+        cropWidth: Int,
+        chromaRowLength: Int,
+        outWidth: Int,
+    ) {
+        if (yRow.size < cropWidth) yRow = ByteArray(cropWidth)
+        if (uRow.size < chromaRowLength) {
+            uRow = ByteArray(chromaRowLength)
+            vRow = ByteArray(chromaRowLength)
+        }
+        if (rgbaRow.size < outWidth) {
+            rgbaRow = IntArray(outWidth)
+            lumaColumns = IntArray(outWidth)
+            chromaColumns = IntArray(outWidth)
+            columnKeyOut = -1
+        }
+    }
+
+    /**
+     * 預先算好每個輸出欄對應的 Y / UV 索引（同一組參數時沿用）
+     */
+    private fun buildColumnTable(
+        cropLeft: Int,
+        cropWidth: Int,
+        outWidth: Int,
+        chromaLeft: Int,
+        uvPixelStride: Int,
+    ) {
+        if (columnKeyLeft == cropLeft && columnKeyWidth == cropWidth &&
+            columnKeyOut == outWidth && columnKeyStride == uvPixelStride
+        ) {
+            return
+        }
+        for (x in 0 until outWidth) {
+            val sourceX = x * cropWidth / outWidth
+            lumaColumns[x] = sourceX
+            chromaColumns[x] = (((cropLeft + sourceX) shr 1) - chromaLeft) * uvPixelStride
+        }
+        columnKeyLeft = cropLeft
+        columnKeyWidth = cropWidth
+        columnKeyOut = outWidth
+        columnKeyStride = uvPixelStride
+    }
+
+    private fun readRow(
+        plane: ByteBuffer,
+        offset: Int,
+        dst: ByteArray,
+        length: Int,
+    ) {
+        // 最後一列可能比 rowStride 短，以 limit 為準
+        val count = minOf(length, plane.limit() - offset)
+        if (count <= 0) return
+        plane.position(offset)
+        plane.get(dst, 0, count)
+    }
+
+    private fun convertRow(outWidth: Int) {
+        for (x in 0 until outWidth) {
+            val uvIndex = chromaColumns[x]
+            val y = ((yRow[lumaColumns[x]].toInt() and 0xFF) - 16).coerceAtLeast(0)
+            val u = (uRow[uvIndex].toInt() and 0xFF) - 128
+            val v = (vRow[uvIndex].toInt() and 0xFF) - 128
+
+            // BT.601 limited range，定點數（×1024）
+            val y1192 = 1192 * y
+            val r = clamp((y1192 + 1634 * v) shr 10)
+            val g = clamp((y1192 - 833 * v - 400 * u) shr 10)
+            val b = clamp((y1192 + 2066 * u) shr 10)
+
+            rgbaRow[x] = (r shl 24) or (g shl 16) or (b shl 8) or 0xFF
+        }
+    }
+
+    private fun clamp(value: Int): Int =
+        when {
+            value < 0 -> 0
+            value > 255 -> 255
+            else -> value
+        }
+}
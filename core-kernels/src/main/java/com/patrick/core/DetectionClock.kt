@@ -0,0 +1,101 @@
+package com.patrick.core
+
+/**
+ * 偵測邏輯使用的時間來源（毫秒，單調遞增；只用來算時間差，不是牆上時間）
+ * 相機執行時用 [FrameClock]（以幀時間戳推進）；沒有相機時用 [SystemDetectionClock]；
+ * 重播 / 測試時注入 [ManualDetectionClock]，讓疲勞判斷不依賴實際經過的時間。
+ */
+fun interface DetectionClock {
+    fun nowMs(): Long
+}
+
+/**
+ * 系統單調時鐘（System.nanoTime），不受 NTP 校時或時區調整影響
+ */
+object SystemDetectionClock : DetectionClock {
+    override fun nowMs(): Long = System.nanoTime() / 1_000_000L
+}
+
+/**
+ * 手動時鐘：由呼叫端設定 / 推進，時間不會倒退
+ */
+class ManualDetectionClock(
+    startMs: Long = 0L,
+) : DetectionClock {
+    @Volatile
+    private var currentMs = startMs
+
+    override fun nowMs(): Long = currentMs
+
+    fun set(timeMs: Long) {
+        if (timeMs > currentMs) currentMs = timeMs
+    }
+
+    fun advance(deltaMs: Long) {
+        currentMs += deltaMs.coerceAtLeast(0L)
+    }
+}
+
+/**
+ * 以相機幀時間戳推進的時鐘
+ * 每個送出結果的幀呼叫 [onFrame]；兩幀之間以 fallback 的經過時間外插。
+ * 幀時間戳（ImageProxy.imageInfo.timestamp）依裝置可能是 uptime 或 elapsedRealtime 時基，
+ * 因此第一幀時把它對齊到 fallback 的時基，之後只採用幀與幀之間的間隔。
+ * 輸出保證不倒退。執行緒安全。
+ */
+class FrameClock(
+    private val fallback: DetectionClock = SystemDetectionClock,
+) : DetectionClock {
+    companion object {
+        // 幀時間戳倒退超過此值（例如相機重新綁定）時重新對齊
+        private const val REANCHOR_THRESHOLD_MS = 1_000L
+    }
+
+    private var offsetMs = 0L
+    private var anchored = false
+    private var lastFrameMs = 0L // 最近一幀（已對齊）的時間
+    private var fallbackAtLastFrameMs = 0L
+    private var lastReturnedMs = Long.MIN_VALUE
+
+    /**
+     * 以幀時間戳（毫秒）推進時鐘
+     */
+    @Synchronized
+    fun onFrame(frameTimestampMs: Long) {
+        val fallbackNow = fallback.nowMs()
+        if (!anchored || frameTimestampMs + offsetMs < lastFrameMs - REANCHOR_THRESHOLD_MS) {
+            // 對齊到目前輸出，避免時間跳動
+            offsetMs = currentMs(fallbackNow) - frameTimestampMs
+            anchored = true
+        }
+        lastFrameMs = maxOf(lastFrameMs, frameTimestampMs + offsetMs)
+        fallbackAtLastFrameMs = fallbackNow
+    }
+
+    /**
+     * 以幀時間戳（奈秒，ImageProxy.imageInfo.timestamp）推進時鐘
+     */
+    fun onFrameNanos(frameTimestampNanos: Long) = onFrame(frameTimestampNanos / 1_000_000L)
+
+    @Synchronized
+    override fun nowMs(): Long = currentMs(fallback.nowMs())
+
+    /**
+     * 清除對齊狀態（例如切換相機）；輸出仍不倒退
+     */
+    @Synchronized
+    fun reset() {
+        anchored = false
+    }
+
+    private fun currentMs(fallbackNow: Long): Long {
+        val candidate =
+            if (anchored) {
+                lastFrameMs + (fallbackNow - fallbackAtLastFrameMs).coerceAtLeast(0L)
+            } else {
+                fallbackNow
+            }
+        if (candidate > lastReturnedMs) lastReturnedMs = candidate
+        return lastReturnedMs
+    }
+}
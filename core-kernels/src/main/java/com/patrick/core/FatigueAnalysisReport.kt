@@ -0,0 +1,131 @@
+package com.patrick.core
+
+import java.text.SimpleDateFormat
+import java.util.Locale
+
+/**
+ * 疲勞偵測分析報告（EAR / MAR 統計、事件次數、校正數據與閾值建議）
+ * 純字串組裝，不寫日誌；shared-core 的 FatigueDetectionLogger.generateAnalysisReport 轉呼叫這裡。
+ */
+object FatigueAnalysisReport {
+    private val dateFormat = SimpleDateFormat("HH:mm:ss.SSS", Locale.getDefault())
+
+    /**
+     * 由樣本清單生成
+     */
+    fun generate(
+        earValues: List<Float>,
+        marValues: List<Float>,
+        eventCounts: Map<String, Int>,
+        calibrationData: Map<String, Float>?,
+    ): String =
+        buildAnalysisReport(
+            ear = summarize(earValues),
+            mar = summarize(marValues),
+            eventCounts = eventCounts,
+            calibrationData = calibrationData,
+        )
+
+    /**
+     * 直接讀取環形序列，不複製樣本
+     */
+    fun generate(
+        earSeries: FloatTimeSeries,
+        marSeries: FloatTimeSeries,
+        eventCounts: Map<String, Int>,
+        calibrationData: Map<String, Float>?,
+    ): String =
+        buildAnalysisReport(
+            ear = summarize(earSeries),
+            mar = summarize(marSeries),
+            eventCounts = eventCounts,
+            calibrationData = calibrationData,
+        )
+
+    private class SeriesSummary(
+        val count: Int,
+        val mean: Double,
+        val min: Float,
+        val max: Float,
+    )
+
+    private fun summarize(values: List<Float>): SeriesSummary? =
+        if (values.isEmpty()) {
+            null
+        } else {
+            SeriesSummary(values.size, values.average(), values.min(), values.max())
+        }
+
+    private fun summarize(series: FloatTimeSeries): SeriesSummary? =
+        if (series.isEmpty()) {
+            null
+        } else {
+            SeriesSummary(series.count(), series.mean().toDouble(), series.min(), series.max())
+        }
+
+    private fun buildAnalysisReport(
+        ear: SeriesSummary?,
+        mar: SeriesSummary?,
+        eventCounts: Map<String, Int>,
+        calibrationData: Map<String, Float>?,
+    ): String {
+        val sb = StringBuilder()
+        val timestamp = dateFormat.format(System.currentTimeMillis())
+
+        sb.appendLine("=== 疲勞偵測分析報告 ===")
+        sb.appendLine("生成時間: $timestamp")
+        sb.appendLine()
+
+        // EAR 統計
+        sb.appendLine("=== EAR 統計 ===")
+        if (ear != null) {
+            sb.appendLine("樣本數: ${ear.count}")
+            sb.appendLine("平均值: ${"%.4f".format(ear.mean)}")
+            sb.appendLine("最小值: ${"%.4f".format(ear.min)}")
+            sb.appendLine("最大值: ${"%.4f".format(ear.max)}")
+        } else {
+            sb.appendLine("無 EAR 數據")
+        }
+
+        // MAR 統計
+        sb.appendLine("\n=== MAR 統計 ===")
+        if (mar != null) {
+            sb.appendLine("樣本數: ${mar.count}")
+            sb.appendLine("平均值: ${"%.4f".format(mar.mean)}")
+            sb.appendLine("最小值: ${"%.4f".format(mar.min)}")
+            sb.appendLine("最大值: ${"%.4f".format(mar.max)}")
+        } else {
+            sb.appendLine("無 MAR 數據")
+        }
+
+        // 事件統計
+        sb.appendLine("\n=== 事件統計 ===")
+        if (eventCounts.isNotEmpty()) {
+            eventCounts.forEach { (type, count) ->
+                sb.appendLine("$type: $count 次")
+            }
+        } else {
+            sb.appendLine("無事件記錄")
+        }
+
+        // 校正數據
+        sb.appendLine("\n=== 校正數據 ===")
+        if (!calibrationData.isNullOrEmpty()) {
+            calibrationData.forEach { (key, value) ->
+                sb.appendLine("$key: ${"%.4f".format(value)}")
+            }
+        } else {
+            sb.appendLine("無校正數據")
+        }
+
+        // 建議
+        sb.appendLine("\n=== 調整建議 ===")
+        if (ear != null) {
+            val avgEar = ear.mean.toFloat()
+            val suggestedThreshold = avgEar * 0.8f
+            sb.appendLine("建議 EAR 閾值: ${"%.4f".format(suggestedThreshold)} (基於平均值 ${"%.4f".format(avgEar)})")
+        }
+
+        return sb.toString()
+    }
+}
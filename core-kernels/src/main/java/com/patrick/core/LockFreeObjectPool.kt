@@ -0,0 +1,176 @@
+package com.patrick.core
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * 無鎖對象池
+ * 以固定長度的 AtomicReferenceArray 存放閒置對象，借用 / 歸還皆為 CAS，
+ * 不掛起、不加鎖、熱路徑不寫日誌，可直接在 CameraX analyzer 等非協程執行緒使用。
+ *
+ * 與 [ObjectPool] 共用 [ObjectPool.PoolStats]。
+ */
+class LockFreeObjectPool<T : Any>(
+    private val maxSize: Int,
+    private val factory: () -> T,
+    private val reset: (T) -> Unit = {},
+    private val exhaustionPolicy: ExhaustionPolicy = ExhaustionPolicy.Fail,
+) {
+    companion object {
+        private const val BLOCK_PARK_NANOS = 50_000L
+    }
+
+    /**
+     * 池內對象全部借出且已達 maxSize 時的處理方式
+     */
+    sealed class ExhaustionPolicy {
+        // 直接建立池外對象，歸還時若池已滿則丟棄
+        object Allocate : ExhaustionPolicy()
+
+        // 等待其他執行緒歸還，逾時拋出 IllegalStateException
+        data class Block(val timeoutMs: Long) : ExhaustionPolicy()
+
+        // 立即拋出 IllegalStateException（與 ObjectPool 行為一致）
+        object Fail : ExhaustionPolicy()
+    }
+
+    private val slots = AtomicReferenceArray<T?>(maxSize)
+    private val createdCount = AtomicInteger()
+    private val borrowedCount = AtomicInteger()
+    private val returnedCount = AtomicInteger()
+    private val idleCount = AtomicInteger()
+
+    init {
+        require(maxSize > 0) { "maxSize must be > 0" }
+    }
+
+    /**
+     * 非阻塞借用：有閒置對象或尚未達 maxSize 時回傳對象，否則回傳 null
+     */
+    fun tryBorrow(): T? {
+        val pooled = pollSlot()
+        if (pooled != null) {
+            borrowedCount.incrementAndGet()
+            return pooled
+        }
+
+        if (!reserveSlot()) return null
+        borrowedCount.incrementAndGet()
+        return factory()
+    }
+
+    /**
+     * 借用對象，池耗盡時依 [ExhaustionPolicy] 處理
+     */
+    fun borrow(): T {
+        tryBorrow()?.let { return it }
+
+        return when (val policy = exhaustionPolicy) {
+            is ExhaustionPolicy.Allocate -> {
+                borrowedCount.incrementAndGet()
+                factory()
+            }
+            is ExhaustionPolicy.Block -> awaitBorrow(policy.timeoutMs)
+            is ExhaustionPolicy.Fail -> throw IllegalStateException("Object pool is full and no objects available")
+        }
+    }
+
+    /**
+     * 歸還對象；池已滿時丟棄
+     */
+    fun returnObject(obj: T) {
+        reset(obj)
+        if (offerSlot(obj)) {
+            returnedCount.incrementAndGet()
+        }
+    }
+
+    /**
+     * 獲取池統計信息
+     */
+    fun getStats(): ObjectPool.PoolStats =
+        ObjectPool.PoolStats(
+            poolSize = idleCount.get(),
+            createdCount = createdCount.get(),
+            borrowedCount = borrowedCount.get(),
+            returnedCount = returnedCount.get(),
+            maxSize = maxSize,
+        )
+
+    /**
+     * 丟棄所有閒置對象，已建立數量只扣掉被丟棄的部分；
+     * 借出中的對象仍計入 maxSize，歸還後照常回到池內，借用中呼叫也安全
+     */
+    fun clear() {
+        var removed = 0
+        for (i in 0 until maxSize) {
+            if (slots.getAndSet(i, null) != null) removed++
+        }
+        if (removed > 0) {
+            idleCount.addAndGet(-removed)
+            createdCount.addAndGet(-removed)
+        }
+    }
+
+    /**
+     * 預填充池（最多到 maxSize）
+     */
+    fun prefill(count: Int) {
+        repeat(count) {
+            if (!reserveSlot()) return
+            if (!offerSlot(factory())) {
+                createdCount.decrementAndGet()
+                return
+            }
+        }
+    }
+
+    // createdCount + 1，直到成功或已達 maxSize（CAS 失敗只代表別的執行緒搶先，重試即可）
+    private fun reserveSlot(): Boolean {
+        while (true) {
+            val created = createdCount.get()
+            if (created >= maxSize) return false
+            if (createdCount.compareAndSet(created, created + 1)) return true
+        }
+    }
+
+    private fun pollSlot(): T? {
+        if (idleCount.get() == 0) return null
+        val start = probeStart()
+        for (n in 0 until maxSize) {
+            val i = (start + n) % maxSize
+            val obj = slots.get(i) ?: continue
+            if (slots.compareAndSet(i, obj, null)) {
+                idleCount.decrementAndGet()
+                return obj
+            }
+        }
+        return null
+    }
+
+    private fun offerSlot(obj: T): Boolean {
+        val start = probeStart()
+        for (n in 0 until maxSize) {
+            val i = (start + n) % maxSize
+            if (slots.get(i) == null && slots.compareAndSet(i, null, obj)) {
+                idleCount.incrementAndGet()
+                return true
+            }
+        }
+        return false
+    }
+
+    private fun awaitBorrow(timeoutMs: Long): T {
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs)
+        while (System.nanoTime() < deadline) {
+            tryBorrow()?.let { return it }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS)
+        }
+        throw IllegalStateException("Object pool exhausted, timed out after $timeoutMs ms")
+    }
+
+    // 依執行緒分散起點，降低多執行緒同時 CAS 同一格的機率
+    private fun probeStart(): Int = ((Thread.currentThread().id * 0x9E3779B9L) ushr 16).toInt().and(Int.MAX_VALUE) % maxSize
+}
@@ -1,6 +1,5 @@
 package com.patrick.core
 
-import android.util.Log
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
 import java.util.concurrent.ConcurrentLinkedQueue
@@ -8,16 +7,14 @@ import java.util.concurrent.ConcurrentLinkedQueue
 /**
  * 對象池管理工具
  * 用於減少對象創建和垃圾回收的開銷
+ * 需要在非協程執行緒借用 / 高併發時請改用 [LockFreeObjectPool]
+ * 不寫日誌（借用 / 歸還是熱路徑）；Bitmap 相關的池在 shared-core 的 BitmapPool.kt
  */
 class ObjectPool<T>(
     private val maxSize: Int,
     private val factory: () -> T,
     private val reset: (T) -> Unit = {},
 ) {
-    companion object {
-        private const val TAG = "ObjectPool"
-    }
-
     private val pool = ConcurrentLinkedQueue<T>()
     private val mutex = Mutex()
     private var createdCount = 0
@@ -32,13 +29,11 @@ class ObjectPool<T>(
             val obj = pool.poll()
             if (obj != null) {
                 borrowedCount++
-                Log.v(TAG, "Borrowed object from pool. Pool size: ${pool.size}")
                 obj
             } else {
                 if (createdCount < maxSize) {
                     createdCount++
                     borrowedCount++
-                    Log.v(TAG, "Created new object. Total created: $createdCount")
                     factory()
                 } else {
                     throw IllegalStateException("Object pool is full and no objects available")
@@ -51,13 +46,11 @@ class ObjectPool<T>(
      */
     suspend fun returnObject(obj: T) =
         mutex.withLock {
+            // 池已滿時丟棄
             if (pool.size < maxSize) {
                 reset(obj)
                 pool.offer(obj)
                 returnedCount++
-                Log.v(TAG, "Returned object to pool. Pool size: ${pool.size}")
-            } else {
-                Log.w(TAG, "Pool is full, discarding object")
             }
         }
 
@@ -81,7 +74,6 @@ class ObjectPool<T>(
     suspend fun clear() =
         mutex.withLock {
             pool.clear()
-            Log.i(TAG, "Object pool cleared")
         }
 
     /**
@@ -94,7 +86,6 @@ class ObjectPool<T>(
                 pool.offer(factory())
                 createdCount++
             }
-            Log.i(TAG, "Prefilled pool with $fillCount objects")
         }
 
     data class PoolStats(
@@ -109,35 +100,6 @@ class ObjectPool<T>(
     }
 }
 
-/**
- * 位圖對象池
- * 專門用於管理 Bitmap 對象
- */
-class BitmapPool(
-    maxSize: Int = 10,
-) {
-    private val pool =
-        ObjectPool<android.graphics.Bitmap>(
-            maxSize = maxSize,
-            factory = { android.graphics.Bitmap.createBitmap(1, 1, android.graphics.Bitmap.Config.ARGB_8888) },
-            reset = { bitmap ->
-                if (!bitmap.isRecycled) {
-                    bitmap.recycle()
-                }
-            },
-        )
-
-    suspend fun borrow(): android.graphics.Bitmap = pool.borrow()
-
-    suspend fun returnObject(bitmap: android.graphics.Bitmap) = pool.returnObject(bitmap)
-
-    suspend fun getStats(): ObjectPool.PoolStats = pool.getStats()
-
-    suspend fun clear() = pool.clear()
-
-    suspend fun prefill(count: Int) = pool.prefill(count)
-}
-
 /**
  * 字節數組對象池
  * 專門用於管理字節數組
@@ -147,7 +109,7 @@ class ByteArrayPool(
     maxSize: Int = 20,
 ) {
     private val pool =
-        ObjectPool<ByteArray>(
+        LockFreeObjectPool<ByteArray>(
             maxSize = maxSize,
             factory = { ByteArray(bufferSize) },
             reset = { bytes ->
@@ -164,6 +126,11 @@ class ByteArrayPool(
     suspend fun clear() = pool.clear()
 
     suspend fun prefill(count: Int) = pool.prefill(count)
+
+    // 非掛起版本，可在非協程執行緒使用
+    fun tryBorrow(): ByteArray? = pool.tryBorrow()
+
+    fun release(bytes: ByteArray) = pool.returnObject(bytes)
 }
 
 /**
@@ -174,7 +141,7 @@ class StringBuilderPool(
     maxSize: Int = 15,
 ) {
     private val pool =
-        ObjectPool<StringBuilder>(
+        LockFreeObjectPool<StringBuilder>(
             maxSize = maxSize,
             factory = { StringBuilder() },
             reset = { builder ->
@@ -191,4 +158,9 @@ class StringBuilderPool(
     suspend fun clear() = pool.clear()
 
     suspend fun prefill(count: Int) = pool.prefill(count)
+
+    // 非掛起版本，可在非協程執行緒使用
+    fun tryBorrow(): StringBuilder? = pool.tryBorrow()
+
+    fun release(builder: StringBuilder) = pool.returnObject(builder)
 }
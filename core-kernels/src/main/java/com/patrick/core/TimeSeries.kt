@@ -0,0 +1,242 @@
+package com.patrick.core
+
+/**
+ * 帶時間戳環形序列的共用部分：時間戳、寫入位置與區間掃描
+ * 固定容量，新增為 O(1)，滿了覆蓋最舊的樣本；子類別只保存自己型別的值陣列。
+ *
+ * 時間戳需依序非遞減寫入（同一來源的幀時間即可）。所有方法以 this 同步。
+ */
+abstract class TimestampRing(
+    val capacity: Int,
+) {
+    companion object {
+        // 查詢全部樣本
+        const val ALL = Long.MIN_VALUE
+    }
+
+    private val timestamps: LongArray
+    private var head = 0 // 下一個寫入位置
+    private var filled = 0
+
+    init {
+        require(capacity > 0) { "capacity must be > 0" }
+        timestamps = LongArray(capacity)
+    }
+
+    @Synchronized
+    fun size(): Int = filled
+
+    @Synchronized
+    fun isEmpty(): Boolean = filled == 0
+
+    @Synchronized
+    fun count(sinceMs: Long = ALL): Int = windowSize(sinceMs)
+
+    @Synchronized
+    fun clear() {
+        head = 0
+        filled = 0
+    }
+
+    /**
+     * 寫入時間戳並回傳這筆樣本的位置（子類別把值寫到同一位置；需在同步區內呼叫）
+     */
+    protected fun append(timestampMs: Long): Int {
+        val index = head
+        timestamps[index] = timestampMs
+        head = (head + 1) % capacity
+        if (filled < capacity) filled++
+        return index
+    }
+
+    // 由新到舊掃描，遇到早於 sinceMs 的樣本即停止
+    protected fun windowSize(sinceMs: Long): Int {
+        if (sinceMs == ALL) return filled
+        var n = 0
+        while (n < filled && timestamps[indexFromNewest(n)] >= sinceMs) n++
+        return n
+    }
+
+    protected fun indexFromNewest(offset: Int): Int = (head - 1 - offset + capacity * 2) % capacity
+
+    // 已排序 n 筆中的百分位（0..100，最近秩）位置
+    protected fun percentileRank(
+        percent: Float,
+        n: Int,
+    ): Int = ((percent.coerceIn(0f, 100f) / 100f) * (n - 1) + 0.5f).toInt()
+}
+
+/**
+ * 帶時間戳的 float 環形序列
+ * 區間查詢（count / mean / min / max / percentile since t）不配置任何物件。
+ */
+class FloatTimeSeries(
+    capacity: Int,
+) : TimestampRing(capacity) {
+    companion object {
+        const val ALL = TimestampRing.ALL
+    }
+
+    private val values = FloatArray(capacity)
+
+    // percentile 排序用暫存
+    private val scratch = FloatArray(capacity)
+
+    @Synchronized
+    fun add(
+        timestampMs: Long,
+        value: Float,
+    ) {
+        values[append(timestampMs)] = value
+    }
+
+    /**
+     * 最新一筆的值；沒有樣本時回傳 defaultValue
+     */
+    @Synchronized
+    fun latest(defaultValue: Float = 0f): Float = if (windowSize(ALL) == 0) defaultValue else values[indexFromNewest(0)]
+
+    /**
+     * 區間平均；沒有樣本時回傳 NaN
+     */
+    @Synchronized
+    fun mean(sinceMs: Long = ALL): Float {
+        val n = windowSize(sinceMs)
+        if (n == 0) return Float.NaN
+        var sum = 0.0
+        for (i in 0 until n) sum += values[indexFromNewest(i)]
+        return (sum / n).toFloat()
+    }
+
+    @Synchronized
+    fun min(sinceMs: Long = ALL): Float {
+        val n = windowSize(sinceMs)
+        if (n == 0) return Float.NaN
+        var result = Float.MAX_VALUE
+        for (i in 0 until n) {
+            val v = values[indexFromNewest(i)]
+            if (v < result) result = v
+        }
+        return result
+    }
+
+    @Synchronized
+    fun max(sinceMs: Long = ALL): Float {
+        val n = windowSize(sinceMs)
+        if (n == 0) return Float.NaN
+        var result = -Float.MAX_VALUE
+        for (i in 0 until n) {
+            val v = values[indexFromNewest(i)]
+            if (v > result) result = v
+        }
+        return result
+    }
+
+    /**
+     * 區間百分位數（0..100，最近秩）；沒有樣本時回傳 NaN
+     */
+    @Synchronized
+    fun percentile(
+        percent: Float,
+        sinceMs: Long = ALL,
+    ): Float {
+        val n = windowSize(sinceMs)
+        if (n == 0) return Float.NaN
+        for (i in 0 until n) scratch[i] = values[indexFromNewest(i)]
+        java.util.Arrays.sort(scratch, 0, n)
+        return scratch[percentileRank(percent, n)]
+    }
+}
+
+/**
+ * 帶時間戳的 long 環形序列（例如事件計數、耗時）
+ * 只記錄事件發生時可用 add(timestamp) 並以 count(since) 查詢。
+ */
+class LongTimeSeries(
+    capacity: Int,
+) : TimestampRing(capacity) {
+    companion object {
+        const val ALL = TimestampRing.ALL
+    }
+
+    private val values = LongArray(capacity)
+    private val scratch = LongArray(capacity)
+
+    @Synchronized
+    fun add(
+        timestampMs: Long,
+        value: Long = 1L,
+    ) {
+        values[append(timestampMs)] = value
+    }
+
+    @Synchronized
+    fun sum(sinceMs: Long = ALL): Long {
+        val n = windowSize(sinceMs)
+        var total = 0L
+        for (i in 0 until n) total += values[indexFromNewest(i)]
+        return total
+    }
+
+    /**
+     * 區間平均；沒有樣本時回傳 NaN
+     */
+    @Synchronized
+    fun mean(sinceMs: Long = ALL): Double {
+        val n = windowSize(sinceMs)
+        if (n == 0) return Double.NaN
+        return sum(sinceMs).toDouble() / n
+    }
+
+    /**
+     * 區間最小值；沒有樣本時回傳 defaultValue
+     */
+    @Synchronized
+    fun min(
+        sinceMs: Long = ALL,
+        defaultValue: Long = 0L,
+    ): Long {
+        val n = windowSize(sinceMs)
+        if (n == 0) return defaultValue
+        var result = Long.MAX_VALUE
+        for (i in 0 until n) {
+            val v = values[indexFromNewest(i)]
+            if (v < result) result = v
+        }
+        return result
+    }
+
+    /**
+     * 區間最大值；沒有樣本時回傳 defaultValue
+     */
+    @Synchronized
+    fun max(
+        sinceMs: Long = ALL,
+        defaultValue: Long = 0L,
+    ): Long {
+        val n = windowSize(sinceMs)
+        if (n == 0) return defaultValue
+        var result = Long.MIN_VALUE
+        for (i in 0 until n) {
+            val v = values[indexFromNewest(i)]
+            if (v > result) result = v
+        }
+        return result
+    }
+
+    /**
+     * 區間百分位數（0..100，最近秩）；沒有樣本時回傳 defaultValue
+     */
+    @Synchronized
+    fun percentile(
+        percent: Float,
+        sinceMs: Long = ALL,
+        defaultValue: Long = 0L,
+    ): Long {
+        val n = windowSize(sinceMs)
+        if (n == 0) return defaultValue
+        for (i in 0 until n) scratch[i] = values[indexFromNewest(i)]
+        java.util.Arrays.sort(scratch, 0, n)
+        return scratch[percentileRank(percent, n)]
+    }
+}
@@ -0,0 +1,117 @@
+package com.patrick.detection
+
+import kotlin.math.sqrt
+
+/**
+ * 每幀的臉部特徵（可重複使用，所有偵測器共用同一份）
+ */
+class FaceFeatures {
+    var valid = false
+    var leftEar = 0f
+    var rightEar = 0f
+    var ear = 0f
+    var mar = 0f
+
+    fun copyFrom(other: FaceFeatures) {
+        valid = other.valid
+        leftEar = other.leftEar
+        rightEar = other.rightEar
+        ear = other.ear
+        mar = other.mar
+    }
+
+    fun clear() {
+        valid = false
+        leftEar = 0f
+        rightEar = 0f
+        ear = 0f
+        mar = 0f
+    }
+}
+
+/**
+ * 臉部特徵計算核心
+ * 只把需要的 landmark 座標複製進重複使用的 FloatArray，以 IntArray 索引表計算
+ * 左右 EAR 與 MAR；每幀只算一次，穩定狀態下不配置任何物件。
+ *
+ * 非執行緒安全：同一實例一次只能由一個執行緒使用。
+ * 不依賴 MediaPipe；直接從 List<NormalizedLandmark> 載入的版本在 MediaPipeLandmarkFrame.kt。
+ */
+class FaceFeatureKernel {
+    companion object {
+        // MediaPipe Face Mesh 索引
+        private val LEFT_EYE = intArrayOf(33, 160, 158, 133, 153, 144)
+        private val RIGHT_EYE = intArrayOf(362, 385, 387, 263, 373, 380)
+        private val MOUTH = intArrayOf(61, 84, 17, 314, 405, 320)
+
+        // 需要複製的 landmark（去重）；其餘表格存的是 slot 位置
+        val REQUIRED_INDICES: IntArray = (LEFT_EYE + RIGHT_EYE + MOUTH).distinct().toIntArray()
+
+        // 至少要有這麼多 landmark 才能計算
+        val MIN_LANDMARKS: Int = REQUIRED_INDICES.max() + 1
+
+        private fun slotsOf(indices: IntArray): IntArray = IntArray(indices.size) { REQUIRED_INDICES.indexOf(indices[it]) }
+
+        private val LEFT_EYE_SLOTS = slotsOf(LEFT_EYE)
+        private val RIGHT_EYE_SLOTS = slotsOf(RIGHT_EYE)
+        private val MOUTH_SLOTS = slotsOf(MOUTH)
+    }
+
+    // [x0, y0, x1, y1, ...]，依 REQUIRED_INDICES 順序
+    private val points = FloatArray(REQUIRED_INDICES.size * 2)
+
+    /**
+     * 從 [LandmarkFrame] 複製所需座標；沒有臉或 landmark 數量不足時回傳 false
+     */
+    fun load(frame: LandmarkFrame): Boolean {
+        if (!frame.hasFace || frame.landmarkCount < MIN_LANDMARKS) return false
+        for (slot in REQUIRED_INDICES.indices) {
+            val index = REQUIRED_INDICES[slot]
+            points[slot * 2] = frame.x(index)
+            points[slot * 2 + 1] = frame.y(index)
+        }
+        return true
+    }
+
+    /**
+     * 直接寫入一個 slot 的座標（重播 / 測試用，slot 對應 REQUIRED_INDICES 的位置）
+     */
+    fun setPoint(
+        slot: Int,
+        x: Float,
+        y: Float,
+    ) {
+        points[slot * 2] = x
+        points[slot * 2 + 1] = y
+    }
+
+    /**
+     * 以目前載入的座標計算特徵，寫入 out
+     */
+    fun compute(out: FaceFeatures) {
+        out.leftEar = aspectRatio(LEFT_EYE_SLOTS)
+        out.rightEar = aspectRatio(RIGHT_EYE_SLOTS)
+        out.ear = (out.leftEar + out.rightEar) / 2.0f
+        out.mar = aspectRatio(MOUTH_SLOTS)
+        out.valid = true
+    }
+
+    /**
+     * (|p2-p6| + |p3-p5|) / (2 |p1-p4|)，EAR 與 MAR 共用
+     */
+    private fun aspectRatio(slots: IntArray): Float {
+        val a = distance(slots[1], slots[5])
+        val b = distance(slots[2], slots[4])
+        val c = distance(slots[0], slots[3])
+        return (a + b) / (2.0f * c)
+    }
+
+    private fun distance(
+        slotA: Int,
+        slotB: Int,
+    ): Float {
+        val dx = points[slotA * 2] - points[slotB * 2]
+        val dy = points[slotA * 2 + 1] - points[slotB * 2 + 1]
+        return sqrt(dx * dx + dy * dy)
+    }
+}
@@ -0,0 +1,78 @@
+package com.patrick.detection
+
+import com.patrick.core.FatigueLevel
+import kotlin.math.max
+
+/**
+ * 疲勞分數引擎（時間制恢復 + 事件懲罰 + 短暫鎖恢復）
+ * 純計算、不配置物件，時間由呼叫端傳入；非執行緒安全。
+ */
+class FatigueScoreEngine {
+    companion object {
+        private const val YAWN_PENALTY = 25
+        private const val BLINK_PENALTY = 10
+
+        // 回復參數
+        private const val RECOVER_STEP = 1
+        private const val RECOVER_PERIOD_MS = 1500L
+        private const val FAST_RECOVER_STEP = 3
+        private const val FAST_RECOVER_PERIOD_MS = 1000L
+
+        private const val HOLD_AFTER_YAWN_MS = 2000L
+
+        // 長閉眼時要拉到的目標分數
+        private const val EYE_CLOSURE_FORCE_SCORE = 70
+    }
+
+    private var score = 0
+    private var lastRecoverAt: Long = 0L
+    private var holdUntil: Long = 0L
+
+    fun reset() {
+        score = 0
+        lastRecoverAt = 0L
+        holdUntil = 0L
+    }
+
+    fun getScore(): Int = score
+
+    fun getLevel(): FatigueLevel =
+        when {
+            score >= 61 -> FatigueLevel.WARNING
+            score >= 31 -> FatigueLevel.NOTICE
+            else -> FatigueLevel.NORMAL
+        }
+
+    // 呵欠：+25 且鎖一段時間不恢復
+    fun addYawnPenalty(now: Long) {
+        score = (score + YAWN_PENALTY).coerceAtMost(100)
+        holdUntil = max(holdUntil, now + HOLD_AFTER_YAWN_MS)
+    }
+
+    fun addBlinkPenalty() {
+        score = (score + BLINK_PENALTY).coerceAtMost(100)
+    }
+
+    // 閉眼 ≥1s → 分數至少拉到 70（不覆蓋更高分）
+    fun addEyeClosurePenalty() {
+        score = max(score, EYE_CLOSURE_FORCE_SCORE)
+    }
+
+    fun recover(
+        now: Long,
+        fast: Boolean,
+    ) {
+        if (now < holdUntil) return
+        // 不用 Pair 解構，避免每幀配置
+        val step = if (fast) FAST_RECOVER_STEP else RECOVER_STEP
+        val period = if (fast) FAST_RECOVER_PERIOD_MS else RECOVER_PERIOD_MS
+        if (lastRecoverAt == 0L) {
+            lastRecoverAt = now
+            return
+        }
+        if (now - lastRecoverAt >= period && score > 0) {
+            score = (score - step).coerceAtLeast(0)
+            lastRecoverAt = now
+        }
+    }
+}
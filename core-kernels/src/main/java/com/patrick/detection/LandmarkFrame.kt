@@ -0,0 +1,136 @@
+package com.patrick.detection
+
+/**
+ * 一幀臉部 landmark（只看第一張臉）
+ * 偵測邏輯只透過這個介面讀取資料，可來自即時的 FaceLandmarkerResult（[MediaPipeLandmarkFrame]）
+ * 或錄製檔重播（[RecordedLandmarkFrame]）。所有存取皆為原始型別，不配置物件。
+ * 本檔不依賴 MediaPipe / Android，放在 :core-kernels，純 JVM 即可編譯。
+ */
+interface LandmarkFrame {
+    val hasFace: Boolean
+    val landmarkCount: Int
+
+    fun x(index: Int): Float
+
+    fun y(index: Int): Float
+
+    fun z(index: Int): Float
+
+    val blendshapeCount: Int
+
+    fun blendshapeName(index: Int): String
+
+    fun blendshapeScoreAt(index: Int): Float
+
+    /**
+     * 依名稱取得 blendshape 分數；沒有此項時回傳 NaN
+     */
+    fun blendshapeScore(name: String): Float {
+        for (i in 0 until blendshapeCount) {
+            if (blendshapeName(i) == name) return blendshapeScoreAt(i)
+        }
+        return Float.NaN
+    }
+}
+
+/**
+ * MediaPipe 52 個 blendshape 的標準順序（錄製檔表頭預設使用）
+ */
+object BlendshapeNames {
+    val ALL: List<String> =
+        listOf(
+            "_neutral", "browDownLeft", "browDownRight", "browInnerUp", "browOuterUpLeft", "browOuterUpRight",
+            "cheekPuff", "cheekSquintLeft", "cheekSquintRight", "eyeBlinkLeft", "eyeBlinkRight",
+            "eyeLookDownLeft", "eyeLookDownRight", "eyeLookInLeft", "eyeLookInRight", "eyeLookOutLeft",
+            "eyeLookOutRight", "eyeLookUpLeft", "eyeLookUpRight", "eyeSquintLeft", "eyeSquintRight",
+            "eyeWideLeft", "eyeWideRight", "jawForward", "jawLeft", "jawOpen", "jawRight", "mouthClose",
+            "mouthDimpleLeft", "mouthDimpleRight", "mouthFrownLeft", "mouthFrownRight", "mouthFunnel",
+            "mouthLeft", "mouthLowerDownLeft", "mouthLowerDownRight", "mouthPressLeft", "mouthPressRight",
+            "mouthPucker", "mouthRight", "mouthRollLower", "mouthRollUpper", "mouthShrugLower",
+            "mouthShrugUpper", "mouthSmileLeft", "mouthSmileRight", "mouthStretchLeft", "mouthStretchRight",
+            "mouthUpperUpLeft", "mouthUpperUpRight", "noseSneerLeft", "noseSneerRight",
+        )
+}
+
+/**
+ * 錄製檔中的一幀（也可用來組合測試資料）
+ * 座標與分數存在原始型別陣列中，讀取下一幀時覆寫，不配置物件。
+ */
+class RecordedLandmarkFrame(
+    landmarkCount: Int,
+    val blendshapeNames: List<String> = BlendshapeNames.ALL,
+) : LandmarkFrame {
+    var timestampMs = 0L
+    override var hasFace = false
+
+    override val landmarkCount: Int = landmarkCount
+
+    // [x0, y0, z0, x1, y1, z1, ...]
+    val coordinates = FloatArray(landmarkCount * 3)
+    val blendshapeScores = FloatArray(blendshapeNames.size) { Float.NaN }
+
+    private val blendshapeIndex = HashMap<String, Int>(blendshapeNames.size * 2).apply {
+        blendshapeNames.forEachIndexed { i, name -> put(name, i) }
+    }
+
+    override fun x(index: Int): Float = coordinates[index * 3]
+
+    override fun y(index: Int): Float = coordinates[index * 3 + 1]
+
+    override fun z(index: Int): Float = coordinates[index * 3 + 2]
+
+    fun setLandmark(
+        index: Int,
+        x: Float,
+        y: Float,
+        z: Float = 0f,
+    ) {
+        coordinates[index * 3] = x
+        coordinates[index * 3 + 1] = y
+        coordinates[index * 3 + 2] = z
+    }
+
+    override val blendshapeCount: Int get() = blendshapeNames.size
+
+    override fun blendshapeName(index: Int): String = blendshapeNames[index]
+
+    override fun blendshapeScoreAt(index: Int): Float = blendshapeScores[index]
+
+    override fun blendshapeScore(name: String): Float {
+        val index = blendshapeIndex[name] ?: return Float.NaN
+        return blendshapeScores[index]
+    }
+
+    fun setBlendshapeScore(
+        name: String,
+        score: Float,
+    ) {
+        blendshapeIndex[name]?.let { blendshapeScores[it] = score }
+    }
+
+    /**
+     * 從另一幀複製（例如把即時結果錄製下來）；只複製本幀表頭有的 blendshape
+     */
+    fun copyFrom(
+        frame: LandmarkFrame,
+        timestampMs: Long,
+    ) {
+        this.timestampMs = timestampMs
+        hasFace = frame.hasFace && frame.landmarkCount >= landmarkCount
+        blendshapeScores.fill(Float.NaN)
+        if (!hasFace) return
+
+        for (i in 0 until landmarkCount) {
+            coordinates[i * 3] = frame.x(i)
+            coordinates[i * 3 + 1] = frame.y(i)
+            coordinates[i * 3 + 2] = frame.z(i)
+        }
+        for (i in 0 until frame.blendshapeCount) {
+            val name = frame.blendshapeName(i)
+            // 標準順序時直接對位，否則查表
+            val index =
+                if (i < blendshapeNames.size && blendshapeNames[i] == name) i else blendshapeIndex[name] ?: continue
+            blendshapeScores[index] = frame.blendshapeScoreAt(i)
+        }
+    }
+}
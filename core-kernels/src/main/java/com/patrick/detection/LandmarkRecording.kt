@@ -0,0 +1,254 @@
+package com.patrick.detection
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 臉部 landmark 錄製檔格式（big-endian）
+ *
+ * 表頭：int MAGIC、short VERSION、short landmarkCount、short blendshapeCount、blendshapeCount 個 UTF 名稱
+ * 每幀：long timestampMs、byte flags（bit0 = 有臉）；有臉時接著
+ *      landmarkCount × (x, y, z) float 與 blendshapeCount 個 float 分數（缺項為 NaN）
+ *
+ * 478 點 + 52 個 blendshape 約 6 KB / 幀。
+ */
+object LandmarkRecording {
+    const val MAGIC = 0x4C4D4B52 // "LMKR"
+    const val VERSION: Short = 1
+    const val DEFAULT_LANDMARK_COUNT = 478
+
+    internal const val FLAG_FACE = 0x01
+}
+
+/**
+ * 錄製器：把每幀 [LandmarkFrame] 寫入串流
+ * 呼叫端只把資料複製進預先配置的 [RecordedLandmarkFrame] 緩衝並放進有界佇列，
+ * 檔案 I/O 全部在專屬的寫入執行緒上進行，不會卡住 MediaPipe 結果執行緒：
+ * - dropWhenFull = true（即時錄製）：緩衝用完時丟棄該幀並計入 [droppedCount]
+ * - dropWhenFull = false（離線產生錄製檔 / 測試）：等待寫入執行緒騰出緩衝，不丟幀
+ *
+ * 寫入失敗後，之後的 record / flush / close 會拋出該 IOException。執行緒安全。
+ */
+class LandmarkRecorder(
+    output: OutputStream,
+    landmarkCount: Int = LandmarkRecording.DEFAULT_LANDMARK_COUNT,
+    blendshapeNames: List<String> = BlendshapeNames.ALL,
+    queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+    private val dropWhenFull: Boolean = true,
+) : Closeable {
+    companion object {
+        // 478 點約 6 KB / 幀，32 格約 200 KB
+        const val DEFAULT_QUEUE_CAPACITY = 32
+        private const val TIMEOUT_MS = 2000L
+        private const val POLL_MS = 50L
+
+        // 佇列中除了幀以外的標記：CountDownLatch 為 flush，CLOSE 為結束
+        private val CLOSE = Any()
+        private const val MAX_MARKERS = 8
+    }
+
+    private val out = DataOutputStream(BufferedOutputStream(output))
+    private val free = ArrayBlockingQueue<RecordedLandmarkFrame>(queueCapacity)
+    private val pending = ArrayBlockingQueue<Any>(queueCapacity + MAX_MARKERS)
+    private val written = AtomicInteger()
+    private val dropped = AtomicLong()
+
+    @Volatile
+    private var closed = false
+
+    @Volatile
+    private var failure: IOException? = null
+
+    /** 已寫入的幀數 */
+    val frameCount: Int get() = written.get()
+
+    /** 因緩衝用完而丟棄的幀數 */
+    val droppedCount: Long get() = dropped.get()
+
+    init {
+        require(queueCapacity > 0) { "queueCapacity must be > 0" }
+        out.writeInt(LandmarkRecording.MAGIC)
+        out.writeShort(LandmarkRecording.VERSION.toInt())
+        out.writeShort(landmarkCount)
+        out.writeShort(blendshapeNames.size)
+        blendshapeNames.forEach { out.writeUTF(it) }
+        repeat(queueCapacity) { free.add(RecordedLandmarkFrame(landmarkCount, blendshapeNames)) }
+    }
+
+    private val worker =
+        Thread({ runLoop() }, "LandmarkRecorder").apply {
+            isDaemon = true
+            start()
+        }
+
+    /**
+     * 複製一幀並排入寫入佇列；已關閉或丟棄時回傳 false
+     */
+    @Throws(IOException::class)
+    fun record(
+        frame: LandmarkFrame,
+        timestampMs: Long,
+    ): Boolean {
+        failure?.let { throw it }
+        val buffer = acquireBuffer() ?: return false
+        buffer.copyFrom(frame, timestampMs)
+        pending.put(buffer)
+        return true
+    }
+
+    @Throws(IOException::class)
+    fun record(frame: RecordedLandmarkFrame): Boolean = record(frame, frame.timestampMs)
+
+    /**
+     * 等待目前佇列中的幀寫入並 flush 串流（最多約 2 秒）
+     */
+    @Throws(IOException::class)
+    fun flush() {
+        if (!closed) {
+            val latch = CountDownLatch(1)
+            if (pending.offer(latch, TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            }
+        }
+        failure?.let { throw it }
+    }
+
+    /**
+     * 寫完佇列中的幀後關閉串流並結束寫入執行緒
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    override fun close() {
+        if (closed) return
+        closed = true
+        if (pending.offer(CLOSE, TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            worker.join(TIMEOUT_MS)
+        } else {
+            worker.interrupt()
+        }
+        failure?.let { throw it }
+    }
+
+    private fun acquireBuffer(): RecordedLandmarkFrame? {
+        if (closed) return null
+        free.poll()?.let { return it }
+        if (dropWhenFull) {
+            dropped.incrementAndGet()
+            return null
+        }
+        while (!closed) {
+            free.poll(POLL_MS, TimeUnit.MILLISECONDS)?.let { return it }
+        }
+        return null
+    }
+
+    private fun runLoop() {
+        try {
+            while (true) {
+                when (val item = pending.take()) {
+                    is RecordedLandmarkFrame -> {
+                        if (failure == null) writeFrame(item)
+                        free.offer(item)
+                    }
+                    is CountDownLatch -> {
+                        guard { out.flush() }
+                        item.countDown()
+                    }
+                    CLOSE -> return
+                }
+            }
+        } catch (_: InterruptedException) {
+            // close() 逾時
+        } finally {
+            guard { out.close() }
+        }
+    }
+
+    private fun writeFrame(frame: RecordedLandmarkFrame) =
+        guard {
+            out.writeLong(frame.timestampMs)
+            out.writeByte(if (frame.hasFace) LandmarkRecording.FLAG_FACE else 0)
+            if (frame.hasFace) {
+                for (v in frame.coordinates) out.writeFloat(v)
+                for (v in frame.blendshapeScores) out.writeFloat(v)
+            }
+            written.incrementAndGet()
+        }
+
+    // 只保留第一個錯誤，交給呼叫端的下一次 record / flush / close
+    private inline fun guard(block: () -> Unit) {
+        try {
+            block()
+        } catch (e: IOException) {
+            if (failure == null) failure = e
+        }
+    }
+}
+
+/**
+ * 錄製檔讀取器
+ * 以 [newFrame] 建立一個 frame 後反覆呼叫 [next] 覆寫內容，讀取過程不配置物件。
+ */
+class LandmarkRecordingReader(
+    input: InputStream,
+) : Closeable {
+    private val inp = DataInputStream(BufferedInputStream(input))
+
+    val landmarkCount: Int
+    val blendshapeNames: List<String>
+
+    init {
+        val magic = inp.readInt()
+        if (magic != LandmarkRecording.MAGIC) throw IOException("Not a landmark recording (magic=0x${Integer.toHexString(magic)})")
+        val version = inp.readShort()
+        if (version != LandmarkRecording.VERSION) throw IOException("Unsupported recording version: $version")
+        landmarkCount = inp.readUnsignedShort()
+        val blendshapeCount = inp.readUnsignedShort()
+        blendshapeNames = List(blendshapeCount) { inp.readUTF() }
+    }
+
+    fun newFrame(): RecordedLandmarkFrame = RecordedLandmarkFrame(landmarkCount, blendshapeNames)
+
+    /**
+     * 讀取下一幀到 frame；檔案結束時回傳 false
+     */
+    @Throws(IOException::class)
+    fun next(frame: RecordedLandmarkFrame): Boolean {
+        require(frame.landmarkCount == landmarkCount && frame.blendshapeNames.size == blendshapeNames.size) {
+            "frame layout does not match recording"
+        }
+        val timestampMs =
+            try {
+                inp.readLong()
+            } catch (_: EOFException) {
+                return false
+            }
+        frame.timestampMs = timestampMs
+        frame.hasFace = (inp.readByte().toInt() and LandmarkRecording.FLAG_FACE) != 0
+        if (frame.hasFace) {
+            val coordinates = frame.coordinates
+            for (i in coordinates.indices) coordinates[i] = inp.readFloat()
+            val scores = frame.blendshapeScores
+            for (i in scores.indices) scores[i] = inp.readFloat()
+        } else {
+            frame.blendshapeScores.fill(Float.NaN)
+        }
+        return true
+    }
+
+    override fun close() {
+        inp.close()
+    }
+}
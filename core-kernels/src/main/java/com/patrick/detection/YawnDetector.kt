@@ -37,7 +37,7 @@ class YawnDetector(
 
     /**
      * @param rawOpenScore 通常取 max(jawOpen, mouthFunnel)
-     * @param tsMs         影像時間戳（或 SystemClock.elapsedRealtime()）
+     * @param tsMs         偵測時鐘時間（DetectionClock.nowMs，單調遞增）
      */
     fun update(rawOpenScore: Float, tsMs: Long): Result {
         if (lastTs == 0L) lastTs = tsMs
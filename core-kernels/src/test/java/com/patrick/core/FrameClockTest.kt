@@ -0,0 +1,56 @@
+package com.patrick.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FrameClockTest {
+    private val fallback = ManualDetectionClock(startMs = 5_000L)
+    private val clock = FrameClock(fallback)
+
+    @Test
+    fun `uses fallback before first frame`() {
+        assertEquals(5_000L, clock.nowMs())
+        fallback.advance(40L)
+        assertEquals(5_040L, clock.nowMs())
+    }
+
+    @Test
+    fun `first frame anchors without jumping`() {
+        // 幀時間戳的時基與 fallback 不同（例如 elapsedRealtime）
+        clock.onFrame(9_000_000L)
+        assertEquals(5_000L, clock.nowMs())
+
+        // 之後只採用幀間隔，與 fallback 的進度無關
+        fallback.advance(10L)
+        clock.onFrame(9_000_100L)
+        assertEquals(5_100L, clock.nowMs())
+    }
+
+    @Test
+    fun `extrapolates between frames and never goes backwards`() {
+        clock.onFrame(1_000L)
+        fallback.advance(30L)
+        assertEquals(5_030L, clock.nowMs())
+
+        // 幀在外插之前就已拍攝：不倒退
+        clock.onFrame(1_020L)
+        assertEquals(5_030L, clock.nowMs())
+
+        clock.onFrame(1_100L)
+        assertEquals(5_100L, clock.nowMs())
+    }
+
+    @Test
+    fun `reanchors when frame timestamps restart`() {
+        clock.onFrame(100_000L)
+        clock.onFrame(100_500L)
+        val before = clock.nowMs()
+
+        // 相機重新綁定，時間戳倒退很多
+        clock.onFrame(200L)
+        assertTrue(clock.nowMs() >= before)
+        clock.onFrame(300L)
+        assertEquals(before + 100L, clock.nowMs())
+    }
+}
@@ -0,0 +1,127 @@
+package com.patrick.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * LockFreeObjectPool 的正確性；Mutex 版與無鎖版的耗時比較見 :benchmarks 的 ObjectPoolBenchmark
+ */
+class LockFreeObjectPoolTest {
+    private class Token {
+        val inUse = AtomicBoolean(false)
+    }
+
+    @Test
+    fun `concurrent borrow never hands out the same object twice`() {
+        val pool = LockFreeObjectPool(maxSize = POOL_SIZE, factory = { Token() })
+        val conflicts = AtomicInteger()
+
+        contend(THREADS, OPERATIONS) {
+            val token = pool.borrow()
+            if (!token.inUse.compareAndSet(false, true)) conflicts.incrementAndGet()
+            token.inUse.set(false)
+            pool.returnObject(token)
+        }
+
+        val stats = pool.getStats()
+        assertEquals(0, conflicts.get())
+        assertTrue(stats.createdCount <= POOL_SIZE)
+        assertEquals(OPERATIONS, stats.borrowedCount)
+        assertEquals(stats.borrowedCount, stats.returnedCount)
+        assertEquals(stats.createdCount, stats.poolSize)
+    }
+
+    @Test
+    fun `concurrent prefill fills the pool exactly`() {
+        val pool = LockFreeObjectPool(maxSize = POOL_SIZE, factory = { Token() })
+
+        contend(THREADS, THREADS) { pool.prefill(POOL_SIZE) }
+
+        assertEquals(POOL_SIZE, pool.getStats().createdCount)
+        assertEquals(POOL_SIZE, pool.getStats().poolSize)
+    }
+
+    @Test
+    fun `clear keeps borrowed objects counted`() {
+        val pool = LockFreeObjectPool(maxSize = 2, factory = { Token() })
+        val held = pool.borrow()
+        pool.returnObject(pool.borrow())
+
+        pool.clear()
+        assertEquals(0, pool.getStats().poolSize)
+        assertEquals(1, pool.getStats().createdCount)
+
+        // 只剩一個名額，借出中的那個不能被重複建立
+        pool.borrow()
+        assertNull(pool.tryBorrow())
+
+        pool.returnObject(held)
+        assertTrue(pool.tryBorrow() === held)
+    }
+
+    @Test
+    fun `exhaustion policies`() {
+        val failing = LockFreeObjectPool(maxSize = 1, factory = { Any() })
+        failing.borrow()
+        assertNull(failing.tryBorrow())
+
+        val allocating =
+            LockFreeObjectPool(maxSize = 1, factory = { Any() }, exhaustionPolicy = LockFreeObjectPool.ExhaustionPolicy.Allocate)
+        allocating.borrow()
+        allocating.borrow()
+        assertEquals(1, allocating.getStats().createdCount)
+        assertEquals(2, allocating.getStats().borrowedCount)
+
+        val blocking =
+            LockFreeObjectPool(maxSize = 1, factory = { Any() }, exhaustionPolicy = LockFreeObjectPool.ExhaustionPolicy.Block(200))
+        val held = blocking.borrow()
+        val scheduler = Executors.newSingleThreadScheduledExecutor()
+        try {
+            scheduler.schedule({ blocking.returnObject(held) }, 20, TimeUnit.MILLISECONDS)
+            assertTrue(blocking.borrow() === held)
+        } finally {
+            scheduler.shutdownNow()
+            assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS))
+        }
+    }
+
+    private fun contend(
+        threads: Int,
+        operations: Int,
+        op: () -> Unit,
+    ) {
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val start = CountDownLatch(1)
+            val done = CountDownLatch(threads)
+            repeat(threads) {
+                executor.execute {
+                    try {
+                        start.await()
+                        repeat(operations / threads) { op() }
+                    } finally {
+                        done.countDown()
+                    }
+                }
+            }
+            start.countDown()
+            assertTrue("workers did not finish", done.await(10, TimeUnit.SECONDS))
+        } finally {
+            executor.shutdownNow()
+            assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS))
+        }
+    }
+
+    companion object {
+        private const val THREADS = 4
+        private const val POOL_SIZE = 8
+        private const val OPERATIONS = 40_000
+    }
+}
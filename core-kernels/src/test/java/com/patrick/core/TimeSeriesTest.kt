@@ -0,0 +1,44 @@
+package com.patrick.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TimeSeriesTest {
+    @Test
+    fun `float series keeps only the newest samples`() {
+        val series = FloatTimeSeries(4)
+        for (i in 1..6) series.add(i * 100L, i.toFloat())
+
+        assertEquals(4, series.count())
+        assertEquals(3f, series.min(), 0f)
+        assertEquals(6f, series.max(), 0f)
+        assertEquals(4.5f, series.mean(), 1e-6f)
+        assertEquals(6f, series.latest(), 0f)
+    }
+
+    @Test
+    fun `float series window queries start at since timestamp`() {
+        val series = FloatTimeSeries(16)
+        for (i in 0 until 10) series.add(i * 100L, i.toFloat())
+
+        assertEquals(3, series.count(700L))
+        assertEquals(8f, series.mean(700L), 1e-6f)
+        assertEquals(7f, series.min(700L), 0f)
+        assertEquals(9f, series.percentile(100f, 700L), 0f)
+        assertEquals(5f, series.percentile(50f), 0f)
+        assertTrue(series.mean(10_000L).isNaN())
+    }
+
+    @Test
+    fun `long series counts events in window`() {
+        val series = LongTimeSeries(8)
+        listOf(1_000L, 20_000L, 50_000L, 59_000L).forEach { series.add(it) }
+
+        assertEquals(2, series.count(60_000L - 30_000L))
+        assertEquals(4L, series.sum())
+
+        series.clear()
+        assertEquals(0, series.count())
+    }
+}
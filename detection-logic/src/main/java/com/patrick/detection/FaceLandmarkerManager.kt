@@ -3,23 +3,30 @@ package com.patrick.detection
 import android.content.Context
 import android.os.Handler
 import android.os.Looper
+import com.google.mediapipe.framework.image.MPImage
 import com.google.mediapipe.tasks.core.BaseOptions
 import com.google.mediapipe.tasks.core.Delegate
 import com.google.mediapipe.tasks.vision.core.RunningMode
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarker
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarker.FaceLandmarkerOptions
+import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
 import com.patrick.core.Constants
+import com.patrick.core.DetectionClock
+import com.patrick.core.SystemDetectionClock
 
 object FaceLandmarkerManager {
     @Volatile private var faceLandmarker: FaceLandmarker? = null
     private var lastUsedTimestamp: Long = 0L
     private const val IDLE_TIMEOUT_MS = 10_000L
+
+    // 閒置計時用的單調時鐘（可替換以便測試）
+    @Volatile var clock: DetectionClock = SystemDetectionClock
     private val handler = Handler(Looper.getMainLooper())
     private var idleCheckRunnable: Runnable? = null
 
     @Synchronized
     fun get(context: Context): FaceLandmarker {
-        lastUsedTimestamp = System.currentTimeMillis()
+        lastUsedTimestamp = clock.nowMs()
         if (faceLandmarker == null) {
             val baseOptions = BaseOptions.builder()
                 .setDelegate(Delegate.CPU)
@@ -58,6 +65,35 @@ object FaceLandmarkerManager {
         return FaceLandmarker.createFromOptions(context, options)
     }
 
+    /**
+     * 即時串流模式：detectAsync() + 結果回調
+     * MediaPipe 會在幀間追蹤臉部，追蹤成功的幀不再跑完整人臉偵測；
+     * 忙碌時會自行丟幀，因此不保證每個輸入都有回調。
+     */
+    @Synchronized
+    fun createForLiveStream(
+        context: Context,
+        onResult: (FaceLandmarkerResult, MPImage) -> Unit,
+        onError: (RuntimeException) -> Unit,
+    ): FaceLandmarker {
+        val baseOptions = BaseOptions.builder()
+            .setDelegate(Delegate.CPU)
+            .setModelAssetPath(Constants.FACE_LANDMARKER_MODEL_PATH)
+            .build()
+        val options = FaceLandmarkerOptions.builder()
+            .setBaseOptions(baseOptions)
+            .setRunningMode(RunningMode.LIVE_STREAM) // 非同步 detectAsync() → 用 LIVE_STREAM
+            .setMinFaceDetectionConfidence(0.5f)
+            .setMinTrackingConfidence(0.5f)
+            .setMinFacePresenceConfidence(0.5f)
+            .setNumFaces(1)
+            .setOutputFaceBlendshapes(true)
+            .setResultListener { result, input -> onResult(result, input) }
+            .setErrorListener { e -> onError(e) }
+            .build()
+        return FaceLandmarker.createFromOptions(context, options)
+    }
+
     @Synchronized
     fun release() {
         faceLandmarker?.close()
@@ -68,7 +104,7 @@ object FaceLandmarkerManager {
 
     @Synchronized
     fun maybeReleaseIfIdle() {
-        val idleTime = System.currentTimeMillis() - lastUsedTimestamp
+        val idleTime = clock.nowMs() - lastUsedTimestamp
         if (idleTime >= IDLE_TIMEOUT_MS) release()
     }
 
@@ -2,39 +2,54 @@ package com.patrick.detection
 
 import android.content.Context
 import android.util.Log
-import com.google.mediapipe.tasks.components.containers.Classifications
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
 import com.patrick.core.alert.FatigueAlertManager
+import com.patrick.core.DetectionClock
 import com.patrick.core.FatigueDialogCallback
 import com.patrick.core.FatigueDetectionListener
 import com.patrick.core.FatigueDetectionResult
 import com.patrick.core.FatigueLevel
 import com.patrick.core.FatigueUiCallback
-import java.util.concurrent.CopyOnWriteArrayList
+import com.patrick.core.FramePipelineMetrics
+import com.patrick.core.LongTimeSeries
+import com.patrick.core.PipelineStage
+import com.patrick.core.SystemDetectionClock
 import kotlin.math.max
 
 /**
  * 疲勞檢測管理器
  * 協調疲勞檢測器、警報管理器和 UI 回調
+ * alertManager 為 null 時不發出聲音 / 震動 / 對話框（重播與單元測試使用）
+ * 特徵、評分、UI 送出與「閉眼 → 警告」延遲記錄到 pipelineMetrics
+ * blendshapeYawnEnabled：是否用 blendshapes（jawOpen / mouthFunnel）做覆層打呵欠偵測；
+ * 會影響呵欠次數與 +25 分懲罰，原本這條路徑從未生效，預設維持關閉
  */
 class FatigueDetectionManager(
-    private val context: Context,
+    private val fatigueDetector: FatigueDetector,
+    private val alertManager: FatigueAlertManager?,
     private var uiCallback: FatigueUiCallback? = null,
+    private val clock: DetectionClock = SystemDetectionClock,
+    private val pipelineMetrics: FramePipelineMetrics = FramePipelineMetrics.shared,
+    private val blendshapeYawnEnabled: Boolean = false,
 ) : FatigueDetectionListener {
+    constructor(
+        context: Context,
+        uiCallback: FatigueUiCallback? = null,
+        clock: DetectionClock = SystemDetectionClock,
+    ) : this(FatigueDetector(context, clock), FatigueAlertManager(context), uiCallback, clock)
 
     companion object {
         private const val TAG = "FatigueDetectionManager"
         private const val NO_FACE_FRAME_THRESHOLD = 5
         private const val COOLDOWN_MS = 8000L // 使用者按「我已清醒」後的短暫冷卻
+        private const val OVERLAY_YAWN_HISTORY_SIZE = 64
     }
 
-    private val fatigueDetector = FatigueDetector(context)
-    private val alertManager = FatigueAlertManager(context)
-
     // —— 覆層：Blendshapes 打呵欠偵測 ——
     private val yawnDetector = YawnDetector()
     private var overlayYawnCount = 0
-    private val overlayYawnTimestamps = CopyOnWriteArrayList<Long>()
+    private val overlayYawnTimestamps = LongTimeSeries(OVERLAY_YAWN_HISTORY_SIZE)
+    private val mediaPipeFrame = MediaPipeLandmarkFrame()
     private var lastYawnTriggeredFlag = false // 本幀是否偵測到覆層 yawn
 
     // 簡易狀態機
@@ -52,71 +67,19 @@ class FatigueDetectionManager(
 
     private var lastError: Exception? = null
     private var noFaceFrameCount = 0
-    private var minProcessIntervalMs: Long = 50L
-    private var lastProcessedTimestamp: Long = 0L
+
+    // 分析幀率調節：由狀態與延遲驅動，相機端依此節流（取代固定的 minProcessIntervalMs）
+    val frameRateGovernor = FrameRateGovernor(timeSourceMs = clock::nowMs)
 
     // 冷卻：使用者按「我已清醒」後一段時間內不再彈窗，並加速分數回復
     private var cooldownUntil: Long = 0L
-    private fun inCooldown(): Boolean = System.currentTimeMillis() < cooldownUntil
-
-    // ====== 分數引擎（時間制恢復 + 事件懲罰 + 短暫鎖恢復）======
-    // ====== 分數引擎（時間制恢復 + 事件懲罰 + 短暫鎖恢復）======
-// FatigueDetectionManager.kt
-
-    private object FatigueScoreEngine {
-        private const val YAWN_PENALTY = 25
-        private const val BLINK_PENALTY = 10
-
-        // 回復參數（照你現在的就好）
-        private const val RECOVER_STEP = 1
-        private const val RECOVER_PERIOD_MS = 1500L
-        private const val FAST_RECOVER_STEP = 3
-        private const val FAST_RECOVER_PERIOD_MS = 1000L
-
-        private const val HOLD_AFTER_YAWN_MS = 2000L
-
-        // ★ 新增常數：長閉眼時要拉到的目標分數
-        private const val EYE_CLOSURE_FORCE_SCORE = 70
-
-        private var score = 0
-        private var lastRecoverAt: Long = 0L
-        private var holdUntil: Long = 0L
-
-        fun reset() { score = 0; lastRecoverAt = 0L; holdUntil = 0L }
-        fun getScore(): Int = score
-        fun getLevel(): com.patrick.core.FatigueLevel = when {
-            score >= 61 -> com.patrick.core.FatigueLevel.WARNING
-            score >= 31 -> com.patrick.core.FatigueLevel.NOTICE
-            else -> com.patrick.core.FatigueLevel.NORMAL
-        }
-
-        fun addYawnPenalty(now: Long) {
-            score = (score + YAWN_PENALTY).coerceAtMost(100)
-            holdUntil = kotlin.math.max(holdUntil, now + HOLD_AFTER_YAWN_MS)
-        }
-
-        fun addBlinkPenalty() {
-            score = (score + BLINK_PENALTY).coerceAtMost(100)
-        }
-
-        // ★ 改這裡：閉眼 ≥1s → 分數至少拉到 70（不覆蓋更高分）
-        fun addEyeClosurePenalty() {
-            score = kotlin.math.max(score, EYE_CLOSURE_FORCE_SCORE)
-        }
-
-        fun recover(now: Long, fast: Boolean) {
-            if (now < holdUntil) return
-            val (step, period) = if (fast) FAST_RECOVER_STEP to FAST_RECOVER_PERIOD_MS
-            else RECOVER_STEP to RECOVER_PERIOD_MS
-            if (lastRecoverAt == 0L) { lastRecoverAt = now; return }
-            if (now - lastRecoverAt >= period && score > 0) {
-                score = (score - step).coerceAtLeast(0)
-                lastRecoverAt = now
-            }
-        }
-    }
+    private fun inCooldown(): Boolean = clock.nowMs() < cooldownUntil
 
+    // 分數引擎：每個 manager 各一份，避免重播 / 多實例之間共用分數
+    private val scoreEngine = FatigueScoreEngine()
 
+    // 本次閉眼開始那幀的拍攝時間（ns）；0 = 未閉眼，-1 = 本次閉眼已記錄過警告延遲
+    private var eyeClosedSinceNanos = 0L
 
     private fun handleStateExit(state: DetectionState) {
         if (state == DetectionState.WARNING) {
@@ -128,28 +91,32 @@ class FatigueDetectionManager(
         when (state) {
             DetectionState.NO_FACE -> {
                 uiCallback?.onNoFaceDetected()
-                alertManager.stopAllAlerts()
+                alertManager?.stopAllAlerts()
             }
             DetectionState.WARNING -> {
                 uiCallback?.onWarningFatigue()
                 uiCallback?.setWarningDialogActive(true)
+                if (eyeClosedSinceNanos > 0L) {
+                    pipelineMetrics.record(PipelineStage.EYE_CLOSED_TO_ALERT, System.nanoTime() - eyeClosedSinceNanos)
+                    eyeClosedSinceNanos = -1L
+                }
             }
             DetectionState.NOTICE -> uiCallback?.onNoticeFatigue()
             DetectionState.ERROR -> {
-                alertManager.stopAllAlerts()
+                alertManager?.stopAllAlerts()
                 uiCallback?.setWarningDialogActive(false)
             }
             DetectionState.CALIBRATING -> {
                 uiCallback?.onCalibrationStarted()
-                alertManager.stopAllAlerts()
+                alertManager?.stopAllAlerts()
             }
             DetectionState.DETECTING -> uiCallback?.onNormalDetection()
             DetectionState.REST_MODE -> {
-                alertManager.stopAllAlerts()
+                alertManager?.stopAllAlerts()
                 uiCallback?.setWarningDialogActive(false)
             }
             DetectionState.SHUTDOWN -> {
-                alertManager.stopAllAlerts()
+                alertManager?.stopAllAlerts()
                 uiCallback?.setWarningDialogActive(false)
             }
             else -> {}
@@ -158,56 +125,70 @@ class FatigueDetectionManager(
 
     init {
         fatigueDetector.setFatigueListener(this)
-        alertManager.setDialogCallback(object : FatigueDialogCallback {
+        alertManager?.setDialogCallback(object : FatigueDialogCallback {
             override fun onUserAcknowledged() {
                 acknowledgeWarning()
                 uiCallback?.onUserAcknowledged()
                 transitionToState(DetectionState.DETECTING)
             }
             override fun onUserRequestedRest() {
-                alertManager.stopAllAlerts()
+                alertManager?.stopAllAlerts()
                 uiCallback?.onUserRequestedRest()
                 transitionToState(DetectionState.REST_MODE)
             }
         })
-        uiCallback?.let { alertManager.setUiCallback(it) }
+        uiCallback?.let { alertManager?.setUiCallback(it) }
     }
 
-    fun setMinProcessIntervalMs(intervalMs: Long) { minProcessIntervalMs = intervalMs }
-    fun setProcessingRateFps(fps: Int) { minProcessIntervalMs = (1000L / fps.coerceIn(1, 60)) }
+    // 設定一般狀態下的分析幀率；實際幀率由 frameRateGovernor 依狀態調整
+    fun setMinProcessIntervalMs(intervalMs: Long) { frameRateGovernor.setNormalIntervalMs(intervalMs) }
+    fun setProcessingRateFps(fps: Int) { frameRateGovernor.setNormalIntervalMs(1000L / fps.coerceIn(1, 60)) }
 
     fun acknowledgeWarning() {
-        cooldownUntil = System.currentTimeMillis() + COOLDOWN_MS
+        cooldownUntil = clock.nowMs() + COOLDOWN_MS
         uiCallback?.setWarningDialogActive(false)
         uiCallback?.onNormalDetection()
         transitionToState(DetectionState.DETECTING)
     }
 
     fun processFaceLandmarks(result: FaceLandmarkerResult) {
+        processFrame(mediaPipeFrame.wrap(result))
+    }
+
+    fun processFrame(frame: LandmarkFrame) {
         if (currentState == DetectionState.SHUTDOWN || currentState == DetectionState.ERROR) return
 
-        val now = System.currentTimeMillis()
-        val elapsed = now - lastProcessedTimestamp
-        if (elapsed in 0 until minProcessIntervalMs) return
-        lastProcessedTimestamp = now
+        val now = clock.nowMs()
+        val startNanos = System.nanoTime()
 
         try {
             lastYawnTriggeredFlag = false
 
-            val fatigueResult = fatigueDetector.processFaceLandmarks(result)
+            val fatigueResult = fatigueDetector.processFrame(frame)
+            val featuresDoneNanos = System.nanoTime()
+            pipelineMetrics.record(PipelineStage.FEATURE_EXTRACTION, featuresDoneNanos - startNanos)
+            val eyeClosed = fatigueDetector.isEyeClosed()
+            frameRateGovernor.onEyesClosing(eyeClosed)
+            if (!eyeClosed) {
+                eyeClosedSinceNanos = 0L
+            } else if (eyeClosedSinceNanos == 0L) {
+                // 以該幀拍攝時間為起點；重播等沒有相機幀時以本幀開始處理的時間代替
+                val frameStartNanos = pipelineMetrics.currentFrameStartNanos()
+                eyeClosedSinceNanos = if (frameStartNanos != 0L) frameStartNanos else startNanos
+            }
 
             // ===== 校正期間：完全不轉 NO_FACE，也不跑告警/分數 =====
             if (currentState == DetectionState.CALIBRATING) return
 
             // 覆層：blendshapes 打呵欠偵測（jawOpen / mouthFunnel）
-            try {
-                val openScore = extractMouthOpenScore(result)   // 相容層
+            if (blendshapeYawnEnabled) try {
+                val openScore = extractMouthOpenScore(frame)
                 if (openScore != null) {
                     val yd = yawnDetector.update(openScore, now)
                     if (yd.yawnTriggered) {
                         lastYawnTriggeredFlag = true
                         overlayYawnCount += 1
-                        overlayYawnTimestamps += now
+                        overlayYawnTimestamps.add(now)
                         Log.d(TAG, "yawn(triggered): ema=%.2f base=%.2f th=%.2f"
                             .format(yd.scoreEma, yd.baseline, yd.threshold))
                     }
@@ -218,7 +199,8 @@ class FatigueDetectionManager(
                 noFaceFrameCount = 0
                 if (currentState == DetectionState.NO_FACE) transitionToState(lastKnownState)
                 if (currentState != DetectionState.NO_FACE) {
-                    handleAlerts(fatigueResult, now)
+                    val scoredNanos = handleAlerts(fatigueResult, now, featuresDoneNanos)
+                    if (scoredNanos != 0L) pipelineMetrics.record(PipelineStage.UI_EMISSION, System.nanoTime() - scoredNanos)
                 }
             } else {
                 if (++noFaceFrameCount >= NO_FACE_FRAME_THRESHOLD && currentState != DetectionState.NO_FACE) {
@@ -230,40 +212,47 @@ class FatigueDetectionManager(
         } catch (e: Exception) {
             lastError = e
             transitionToState(DetectionState.ERROR)
+        } finally {
+            pipelineMetrics.endFrame()
         }
     }
 
-    private fun handleAlerts(result: FatigueDetectionResult, now: Long) {
+    /**
+     * 評分並送出 UI / 警報；回傳評分完成的時間（ns），未評分時回傳 0
+     */
+    private fun handleAlerts(result: FatigueDetectionResult, now: Long, scoringStartNanos: Long): Long {
         if (currentState in listOf(
                 DetectionState.CALIBRATING,
                 DetectionState.NO_FACE,
                 DetectionState.ERROR,
                 DetectionState.SHUTDOWN
-            )) return
+            )) return 0L
 
         // —— 事件 → 懲罰；否則 → 按時間恢復 ——
         when {
-            getEyeClosureDuration() >= 1000L -> FatigueScoreEngine.addEyeClosurePenalty()
+            getEyeClosureDuration() >= 1000L -> scoreEngine.addEyeClosurePenalty()
             lastYawnTriggeredFlag || result.events.any { it is com.patrick.core.FatigueEvent.Yawn } -> {
-                FatigueScoreEngine.addYawnPenalty(now)           // 呵欠：+25 且鎖 3 秒不恢復
+                scoreEngine.addYawnPenalty(now)           // 呵欠：+25 且鎖 3 秒不恢復
             }
-            getRecentBlinkCount(60000L) > 25 -> FatigueScoreEngine.addBlinkPenalty()
-            else -> FatigueScoreEngine.recover(now, fast = inCooldown())
+            getRecentBlinkCount(60000L) > 25 -> scoreEngine.addBlinkPenalty()
+            else -> scoreEngine.recover(now, fast = inCooldown())
         }
         lastYawnTriggeredFlag = false
 
-        val score = FatigueScoreEngine.getScore()
-        val level = FatigueScoreEngine.getLevel()
+        val score = scoreEngine.getScore()
+        val level = scoreEngine.getLevel()
+        val scoredNanos = System.nanoTime()
+        pipelineMetrics.record(PipelineStage.SCORING, scoredNanos - scoringStartNanos)
         uiCallback?.onFatigueScoreUpdated(score, level)
 
         // 冷卻期間不彈窗，維持偵測狀態就好
         if (inCooldown()) {
             transitionToState(DetectionState.DETECTING)
-            return
+            return scoredNanos
         }
 
         if (result.isFatigueDetected) {
-            alertManager.handleFatigueDetection(result)
+            alertManager?.handleFatigueDetection(result)
             when (result.fatigueLevel) {
                 FatigueLevel.NOTICE -> transitionToState(DetectionState.NOTICE)
                 FatigueLevel.WARNING -> transitionToState(DetectionState.WARNING)
@@ -272,6 +261,7 @@ class FatigueDetectionManager(
         } else {
             transitionToState(DetectionState.DETECTING)
         }
+        return scoredNanos
     }
 
     private fun transitionToState(newState: DetectionState) {
@@ -282,13 +272,26 @@ class FatigueDetectionManager(
         currentState = newState
         Log.d(TAG, "Transitioned to state: $previous -> $newState")
         handleStateEnter(newState)
+        frameRateGovernor.onDemand(demandFor(newState))
     }
 
+    private fun demandFor(state: DetectionState): FrameRateGovernor.Demand =
+        when (state) {
+            DetectionState.NO_FACE,
+            DetectionState.REST_MODE,
+            DetectionState.SHUTDOWN,
+            DetectionState.ERROR -> FrameRateGovernor.Demand.IDLE
+            DetectionState.NOTICE,
+            DetectionState.WARNING -> FrameRateGovernor.Demand.ELEVATED
+            else -> FrameRateGovernor.Demand.NORMAL
+        }
+
     // 外部控制
     fun startDetection() {
         resetFatigueEvents()
-        FatigueScoreEngine.reset()
+        scoreEngine.reset()
         cooldownUntil = 0L
+        eyeClosedSinceNanos = 0L
         overlayYawnCount = 0
         overlayYawnTimestamps.clear()
         yawnDetector.reset()
@@ -297,7 +300,7 @@ class FatigueDetectionManager(
 
     fun stopDetection() {
         fatigueDetector.reset()
-        alertManager.stopAllAlerts()
+        alertManager?.stopAllAlerts()
         transitionToState(DetectionState.SHUTDOWN)
     }
 
@@ -322,10 +325,11 @@ class FatigueDetectionManager(
     fun fullResetDetectorAndAlerts() {
         resetFatigueEvents()
         fatigueDetector.reset()
-        FatigueScoreEngine.reset()
-        alertManager.stopAllAlerts()
+        scoreEngine.reset()
+        alertManager?.stopAllAlerts()
         uiCallback?.setWarningDialogActive(false)
         cooldownUntil = 0L
+        eyeClosedSinceNanos = 0L
         overlayYawnCount = 0
         overlayYawnTimestamps.clear()
         yawnDetector.reset()
@@ -352,9 +356,8 @@ class FatigueDetectionManager(
 
     // 覆寫：回傳（底層 + 覆層）近窗打呵欠次數
     fun getRecentYawnCount(windowMs: Long = 60000L): Int {
-        val cutoff = System.currentTimeMillis() - windowMs
-        overlayYawnTimestamps.removeIf { it < cutoff } // 清舊
-        return fatigueDetector.getRecentYawnCount(windowMs) + overlayYawnTimestamps.count { it >= cutoff }
+        val cutoff = clock.nowMs() - windowMs
+        return fatigueDetector.getRecentYawnCount(windowMs) + overlayYawnTimestamps.count(cutoff)
     }
 
     fun getEyeClosureDuration(): Long = fatigueDetector.getEyeClosureDuration()
@@ -375,33 +378,11 @@ class FatigueDetectionManager(
     override fun onFatigueLevelChanged(level: FatigueLevel) {}
     override fun onBlink() { uiCallback?.onBlink() }
 
-    // —— 相容層：不同 MediaPipe 版本的 blendshapes 取法 ——
-    private fun getBlendshapesCompat(result: FaceLandmarkerResult): List<Classifications>? {
-        try {
-            val m = result::class.java.getMethod("faceBlendshapes")
-            @Suppress("UNCHECKED_CAST")
-            return m.invoke(result) as? List<Classifications>
-        } catch (_: Throwable) {}
-        return try {
-            val m2 = result::class.java.getMethod("getFaceBlendshapes")
-            @Suppress("UNCHECKED_CAST")
-            m2.invoke(result) as? List<Classifications>
-        } catch (_: Throwable) { null }
-    }
-
-    // 從 result 擷取嘴巴張開分數：max(jawOpen, mouthFunnel)
-    private fun extractMouthOpenScore(result: FaceLandmarkerResult): Float? {
-        val blendshapes = getBlendshapesCompat(result) ?: return null
-        if (blendshapes.isEmpty()) return null
-        val cats = blendshapes[0].categories() ?: return null
-        var jawOpen = 0f
-        var mouthFunnel = 0f
-        for (c in cats) {
-            when (c.categoryName()) {
-                "jawOpen"     -> jawOpen = c.score()
-                "mouthFunnel" -> mouthFunnel = c.score()
-            }
-        }
+    // 從 frame 擷取嘴巴張開分數：max(jawOpen, mouthFunnel)；缺項視為 0
+    private fun extractMouthOpenScore(frame: LandmarkFrame): Float? {
+        if (!frame.hasFace || frame.blendshapeCount == 0) return null
+        val jawOpen = frame.blendshapeScore("jawOpen").let { if (it.isNaN()) 0f else it }
+        val mouthFunnel = frame.blendshapeScore("mouthFunnel").let { if (it.isNaN()) 0f else it }
         val open = max(jawOpen, mouthFunnel)
         return if (open > 0f) open else null
     }
@@ -2,20 +2,31 @@ package com.patrick.detection
 
 import android.content.Context
 import android.util.Log
-import com.google.mediapipe.tasks.components.containers.NormalizedLandmark
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
 import com.patrick.core.CalibrationStateManager
+import com.patrick.core.CalibrationStateStore
+import com.patrick.core.DetectionClock
 import com.patrick.core.FatigueDetectionListener
 import com.patrick.core.FatigueDetectionLogger
 import com.patrick.core.FatigueDetectionResult
 import com.patrick.core.FatigueEvent
 import com.patrick.core.FatigueLevel
-import kotlin.math.sqrt
+import com.patrick.core.FloatTimeSeries
+import com.patrick.core.LongTimeSeries
+import com.patrick.core.SystemDetectionClock
 
 /**
  * 疲勞檢測器 - 核心疲勞檢測邏輯
+ * 輸入為 [LandmarkFrame]，時間取自 [DetectionClock]；不依賴 Android，可在 JVM 上重播錄製檔。
  */
-class FatigueDetector(private val context: Context) {
+class FatigueDetector(
+    private val calibrationStore: CalibrationStateStore,
+    private val clock: DetectionClock = SystemDetectionClock,
+) {
+    constructor(
+        context: Context,
+        clock: DetectionClock = SystemDetectionClock,
+    ) : this(CalibrationStateManager(context), clock)
 
     companion object {
         private const val TAG = "FatigueDetector"
@@ -30,11 +41,10 @@ class FatigueDetector(private val context: Context) {
         private const val DEFAULT_YAWN_MIN_DURATION = 1000L
         private const val DEFAULT_BLINK_FREQUENCY_THRESHOLD = 25
 
-        private object LandmarkIndices {
-            val LEFT_EYE = listOf(33, 160, 158, 133, 153, 144)
-            val RIGHT_EYE = listOf(362, 385, 387, 263, 373, 380)
-            val MOUTH = listOf(61, 84, 17, 314, 405, 320, 307, 375, 321, 308, 324, 318)
-        }
+        // 環形序列容量
+        private const val FEATURE_HISTORY_SIZE = 500
+        private const val BLINK_HISTORY_SIZE = 256
+        private const val CALIBRATION_HISTORY_SIZE = 1024
     }
 
     // 參數
@@ -51,10 +61,10 @@ class FatigueDetector(private val context: Context) {
     private var blinkCount = 0
     private var yawnCount = 0
     private var blinkFrequencyWarningCount = 0
-    private var lastMinuteStartTime: Long = System.currentTimeMillis()
+    private var lastMinuteStartTime: Long = clock.nowMs()
 
     // 眨眼時間戳（用於 Recent 計數）
-    private val blinkTimestamps = mutableListOf<Long>()
+    private val blinkTimestamps = LongTimeSeries(BLINK_HISTORY_SIZE)
 
     // 狀態旗標
     private var isEyeClosed = false
@@ -63,9 +73,8 @@ class FatigueDetector(private val context: Context) {
     // 校正
     private var isCalibrating = false
     private var calibrationStartTime: Long = 0
-    private val calibrationEarValues = mutableListOf<Float>()
+    private val calibrationEarValues = FloatTimeSeries(CALIBRATION_HISTORY_SIZE)
     private val calibrationDuration = 15000L
-    private val calibrationStateManager = CalibrationStateManager(context)
 
     // 臉部偵測狀態（不要在沒臉時停止校正）
     private var isFaceDetected = false
@@ -75,18 +84,26 @@ class FatigueDetector(private val context: Context) {
     private var fatigueListener: FatigueDetectionListener? = null
 
     // 記錄數據（供報告）
-    private val earValues = mutableListOf<Float>()
-    private val marValues = mutableListOf<Float>()
+    private val earValues = FloatTimeSeries(FEATURE_HISTORY_SIZE)
+    private val marValues = FloatTimeSeries(FEATURE_HISTORY_SIZE)
     private val fatigueEvents = mutableListOf<FatigueEvent>()
 
-    fun processFaceLandmarks(result: FaceLandmarkerResult): FatigueDetectionResult {
-        val now = System.currentTimeMillis()
-        val hasFace = result.faceLandmarks().isNotEmpty()
+    // 每幀特徵：只算一次，各偵測共用
+    private val featureKernel = FaceFeatureKernel()
+    private val features = FaceFeatures()
+    private val mediaPipeFrame = MediaPipeLandmarkFrame()
+
+    fun processFaceLandmarks(result: FaceLandmarkerResult): FatigueDetectionResult = processFrame(mediaPipeFrame.wrap(result))
+
+    fun processFrame(frame: LandmarkFrame): FatigueDetectionResult {
+        val now = clock.nowMs()
+        val hasFace = featureKernel.load(frame)
 
         // 更新臉部狀態（不因短暫沒臉而 stopCalibration）
         updateFaceState(hasFace, now)
 
         if (!hasFace) {
+            features.clear()
             return FatigueDetectionResult(
                 isFatigueDetected = false,
                 fatigueLevel = FatigueLevel.NORMAL,
@@ -95,11 +112,11 @@ class FatigueDetector(private val context: Context) {
             )
         }
 
-        val landmarks = result.faceLandmarks()[0]
+        featureKernel.compute(features)
 
         // 校正模式：累積樣本、回報進度；不做疲勞事件
         if (isCalibrating) {
-            handleCalibration(landmarks, now)
+            handleCalibration(features.ear, now)
             return FatigueDetectionResult(
                 isFatigueDetected = false,
                 fatigueLevel = FatigueLevel.NORMAL,
@@ -111,19 +128,19 @@ class FatigueDetector(private val context: Context) {
         val events = mutableListOf<FatigueEvent>()
 
         // 眼睛閉合
-        detectEyeClosure(landmarks, now)?.let {
+        detectEyeClosure(features.ear, now)?.let {
             events.add(it)
             fatigueEvents.add(it)
         }
 
         // 打哈欠
-        detectYawn(landmarks, now)?.let {
+        detectYawn(features.mar, now)?.let {
             events.add(it)
             fatigueEvents.add(it)
         }
 
         // 高頻眨眼（每分鐘檢查一次）
-        detectBlinkFrequency(landmarks, now)?.let {
+        detectBlinkFrequency(now)?.let {
             events.add(it)
             fatigueEvents.add(it)
         }
@@ -138,10 +155,8 @@ class FatigueDetector(private val context: Context) {
         }
 
         // 收集數據
-        val ear = calculateCombinedEAR(landmarks)
-        val mar = calculateMAR(landmarks, LandmarkIndices.MOUTH)
-        earValues.add(ear); if (earValues.size > 500) earValues.removeAt(0)
-        marValues.add(mar); if (marValues.size > 500) marValues.removeAt(0)
+        earValues.add(now, features.ear)
+        marValues.add(now, features.mar)
 
         return FatigueDetectionResult(
             isFatigueDetected = level != FatigueLevel.NORMAL,
@@ -152,7 +167,7 @@ class FatigueDetector(private val context: Context) {
     }
 
     private fun updateFatigueEventCount(events: List<FatigueEvent>) {
-        if (isCalibrating || !calibrationStateManager.hasCalibrated()) return
+        if (isCalibrating || !calibrationStore.hasCalibrated()) return
 
         fatigueEventCount = when {
             // 眼睛閉合超過門檻 → 直接警告
@@ -183,8 +198,7 @@ class FatigueDetector(private val context: Context) {
         }
     }
 
-    private fun detectEyeClosure(landmarks: List<NormalizedLandmark>, now: Long): FatigueEvent? {
-        val ear = calculateCombinedEAR(landmarks)
+    private fun detectEyeClosure(ear: Float, now: Long): FatigueEvent? {
         val eyesClosed = ear < currentEarThreshold
 
         return when {
@@ -215,8 +229,7 @@ class FatigueDetector(private val context: Context) {
         }
     }
 
-    private fun detectYawn(landmarks: List<NormalizedLandmark>, now: Long): FatigueEvent? {
-        val mar = calculateMAR(landmarks, LandmarkIndices.MOUTH)
+    private fun detectYawn(mar: Float, now: Long): FatigueEvent? {
         val yawnMarThreshold = currentMarThreshold * 1.2f
 
         return when {
@@ -250,7 +263,7 @@ class FatigueDetector(private val context: Context) {
         }
     }
 
-    private fun detectBlinkFrequency(@Suppress("UNUSED_PARAMETER") landmarks: List<NormalizedLandmark>, now: Long): FatigueEvent? {
+    private fun detectBlinkFrequency(now: Long): FatigueEvent? {
         if (now - lastMinuteStartTime >= 60000) {
             return if (blinkCount > DEFAULT_BLINK_FREQUENCY_THRESHOLD) {
                 blinkFrequencyWarningCount++
@@ -286,7 +299,7 @@ class FatigueDetector(private val context: Context) {
         lastEyeClosureStartTime = 0
         lastMouthOpenStartTime = 0
         lastBlinkTime = 0
-        lastMinuteStartTime = System.currentTimeMillis()
+        lastMinuteStartTime = clock.nowMs()
         blinkTimestamps.clear()
         stopCalibration()
         isFaceDetected = false
@@ -302,7 +315,7 @@ class FatigueDetector(private val context: Context) {
         lastEyeClosureStartTime = 0
         lastMouthOpenStartTime = 0
         lastBlinkTime = 0
-        lastMinuteStartTime = System.currentTimeMillis()
+        lastMinuteStartTime = clock.nowMs()
         blinkTimestamps.clear()
     }
 
@@ -316,7 +329,7 @@ class FatigueDetector(private val context: Context) {
         lastEyeClosureStartTime = 0
         lastMouthOpenStartTime = 0
         lastBlinkTime = 0
-        lastMinuteStartTime = System.currentTimeMillis()
+        lastMinuteStartTime = clock.nowMs()
         blinkTimestamps.clear()
     }
 
@@ -335,22 +348,29 @@ class FatigueDetector(private val context: Context) {
     fun getFatigueEventCount(): Int = fatigueEventCount
 
     fun getRecentBlinkCount(windowMs: Long): Int {
-        val now = System.currentTimeMillis()
-        blinkTimestamps.removeAll { now - it > windowMs }
-        return blinkTimestamps.size
+        val now = clock.nowMs()
+        return blinkTimestamps.count(now - windowMs)
     }
 
     fun getYawnCount(): Int = yawnCount
 
     fun getEyeClosureDuration(): Long {
-        return if (isEyeClosed && lastEyeClosureStartTime > 0) System.currentTimeMillis() - lastEyeClosureStartTime else 0L
+        return if (isEyeClosed && lastEyeClosureStartTime > 0) clock.nowMs() - lastEyeClosureStartTime else 0L
     }
 
     fun getRecentYawnCount(windowMs: Long = 60000L): Int = yawnCount
 
+    fun isEyeClosed(): Boolean = isEyeClosed
+
+    /**
+     * 最近一幀的臉部特徵（EAR / MAR）；沒有臉時 valid = false
+     * 回傳的是內部共用物件，下一幀會被覆寫，需要保留請 copyFrom
+     */
+    fun getLatestFeatures(): FaceFeatures = features
+
     fun startCalibration() {
         isCalibrating = true
-        calibrationStartTime = System.currentTimeMillis()
+        calibrationStartTime = clock.nowMs()
         calibrationEarValues.clear()
         fatigueListener?.onCalibrationStarted()
     }
@@ -360,14 +380,13 @@ class FatigueDetector(private val context: Context) {
         calibrationEarValues.clear()
     }
 
-    private fun handleCalibration(landmarks: List<NormalizedLandmark>, now: Long) {
+    private fun handleCalibration(ear: Float, now: Long) {
         val elapsed = now - calibrationStartTime
         if (elapsed >= calibrationDuration) {
             finishCalibration()
             return
         }
-        val ear = calculateCombinedEAR(landmarks)
-        calibrationEarValues.add(ear)
+        calibrationEarValues.add(now, ear)
         val progress = (elapsed * 100 / calibrationDuration).toInt()
         fatigueListener?.onCalibrationProgress(progress, ear)
     }
@@ -377,14 +396,13 @@ class FatigueDetector(private val context: Context) {
             stopCalibration()
             return
         }
-        val sorted = calibrationEarValues.sorted()
-        val minEar = sorted.first()
-        val maxEar = sorted.last()
-        val avgEar = calibrationEarValues.average().toFloat()
+        val minEar = calibrationEarValues.min()
+        val maxEar = calibrationEarValues.max()
+        val avgEar = calibrationEarValues.mean()
         val newThreshold = avgEar * 0.7f
 
         currentEarThreshold = newThreshold
-        calibrationStateManager.markCalibrationCompleted()
+        calibrationStore.markCalibrationCompleted()
         resetFatigueEventsAfterCalibration()
 
         fatigueListener?.onCalibrationCompleted(newThreshold, minEar, maxEar, avgEar)
@@ -392,14 +410,14 @@ class FatigueDetector(private val context: Context) {
     }
 
     fun isCalibrating(): Boolean = isCalibrating
-    fun resetCalibrationState() { calibrationStateManager.resetCalibrationState() }
+    fun resetCalibrationState() { calibrationStore.resetCalibrationState() }
 
     fun getResetStatusInfo(): String =
         "ResetProtection: false, Cooldown: false, FatigueCount: $fatigueEventCount"
 
     fun getCalibrationProgress(): Int {
         if (!isCalibrating) return 0
-        val elapsed = System.currentTimeMillis() - calibrationStartTime
+        val elapsed = clock.nowMs() - calibrationStartTime
         return (elapsed * 100 / calibrationDuration).toInt().coerceIn(0, 100)
     }
 
@@ -413,8 +431,8 @@ class FatigueDetector(private val context: Context) {
         )
         val eventCounts = fatigueEvents.groupBy { it.javaClass.simpleName }.mapValues { it.value.size }
         return FatigueDetectionLogger.generateAnalysisReport(
-            earValues = earValues.toList(),
-            marValues = marValues.toList(),
+            earSeries = earValues,
+            marSeries = marValues,
             eventCounts = eventCounts,
             calibrationData = thresholds,
         )
@@ -429,7 +447,7 @@ class FatigueDetector(private val context: Context) {
         "yawnMinDuration" to DEFAULT_YAWN_MIN_DURATION,
         "blinkFrequencyThreshold" to DEFAULT_BLINK_FREQUENCY_THRESHOLD,
         "calibrationDuration" to calibrationDuration,
-        "hasCalibrated" to calibrationStateManager.hasCalibrated(),
+        "hasCalibrated" to calibrationStore.hasCalibrated(),
         "isCalibrating" to isCalibrating,
         "fatigueEventCount" to fatigueEventCount,
         "blinkCount" to blinkCount,
@@ -446,33 +464,4 @@ class FatigueDetector(private val context: Context) {
     ) {
         FatigueDetectionLogger.setLogEnabled(sensitivity, trigger, calibration, event, reset)
     }
-
-    // ===== EAR / MAR =====
-    private fun calculateEAR(landmarks: List<NormalizedLandmark>, idx: List<Int>): Float {
-        if (idx.size < 6) return 0f
-        val p1 = landmarks[idx[0]]; val p2 = landmarks[idx[1]]; val p3 = landmarks[idx[2]]
-        val p4 = landmarks[idx[3]]; val p5 = landmarks[idx[4]]; val p6 = landmarks[idx[5]]
-        val A = euclideanDistance(p2, p6); val B = euclideanDistance(p3, p5); val C = euclideanDistance(p1, p4)
-        return (A + B) / (2.0f * C)
-    }
-
-    private fun calculateCombinedEAR(landmarks: List<NormalizedLandmark>): Float {
-        val left = calculateEAR(landmarks, LandmarkIndices.LEFT_EYE)
-        val right = calculateEAR(landmarks, LandmarkIndices.RIGHT_EYE)
-        return (left + right) / 2.0f
-    }
-
-    private fun calculateMAR(landmarks: List<NormalizedLandmark>, mouth: List<Int>): Float {
-        if (mouth.size < 6) return 0f
-        val p1 = landmarks[mouth[0]]; val p2 = landmarks[mouth[1]]; val p3 = landmarks[mouth[2]]
-        val p4 = landmarks[mouth[3]]; val p5 = landmarks[mouth[4]]; val p6 = landmarks[mouth[5]]
-        val A = euclideanDistance(p2, p6); val B = euclideanDistance(p3, p5); val C = euclideanDistance(p1, p4)
-        return (A + B) / (2.0f * C)
-    }
-
-    private fun euclideanDistance(p1: NormalizedLandmark, p2: NormalizedLandmark): Float {
-        val dx = p1.x() - p2.x()
-        val dy = p1.y() - p2.y()
-        return sqrt(dx * dx + dy * dy)
-    }
 }
@@ -0,0 +1,143 @@
+package com.patrick.detection
+
+/**
+ * 分析幀率調節器
+ * 依偵測狀態與推論延遲，在執行期決定相機分析的最小間隔：
+ * - IDLE（沒臉 / 休息模式）：降到低幀率，持續 idleHoldMs 後才降，避免短暫掉臉就降速
+ * - ELEVATED（正在閉眼 / NOTICE / WARNING）：立即提高幀率
+ * - 推論 p95 延遲超過該幀率的預算時退避，延遲回落並維持 backoffHoldMs 後才恢復
+ *
+ * 時間來源可注入，方便以模擬時鐘測試。執行緒安全。
+ */
+class FrameRateGovernor(
+    private val config: Config = Config(),
+    private val timeSourceMs: () -> Long = { System.nanoTime() / 1_000_000L },
+) {
+    companion object {
+        private const val MIN_SAMPLES_FOR_BACKOFF = 5
+    }
+
+    enum class Demand { IDLE, NORMAL, ELEVATED }
+
+    data class Config(
+        val idleIntervalMs: Long = 250L, // 4 fps
+        val normalIntervalMs: Long = 100L, // 10 fps
+        val elevatedIntervalMs: Long = 66L, // 15 fps
+        val maxIntervalMs: Long = 500L,
+        val idleHoldMs: Long = 2000L,
+        val backoffHoldMs: Long = 3000L,
+        val backoffFactor: Float = 1.25f,
+        val latencyWindow: Int = 30,
+    )
+
+    private var demand = Demand.NORMAL
+    private var idleSince = -1L
+    private var eyesClosing = false
+    private var normalIntervalMs = config.normalIntervalMs
+
+    // 推論延遲（環形緩衝 + 排序暫存，不配置）
+    private val latencies = LongArray(config.latencyWindow)
+    private val sortScratch = LongArray(config.latencyWindow)
+    private var latencyCount = 0
+    private var latencyNext = 0
+    private var p95Cache = 0L
+    private var p95Dirty = false
+
+    private var backoffIntervalMs = 0L
+    private var backoffUntil = 0L
+
+    /**
+     * 偵測狀態對應的需求等級
+     */
+    @Synchronized
+    fun onDemand(newDemand: Demand) {
+        if (newDemand == Demand.IDLE && demand != Demand.IDLE) {
+            idleSince = timeSourceMs()
+        }
+        demand = newDemand
+    }
+
+    /**
+     * 每幀回報眼睛是否正在閉合
+     */
+    @Synchronized
+    fun onEyesClosing(closing: Boolean) {
+        eyesClosing = closing
+    }
+
+    /**
+     * 設定一般狀態下的分析間隔（取代舊的固定節流設定）
+     */
+    @Synchronized
+    fun setNormalIntervalMs(intervalMs: Long) {
+        normalIntervalMs = intervalMs.coerceIn(config.elevatedIntervalMs, config.maxIntervalMs)
+    }
+
+    /**
+     * 記錄一次推論延遲
+     */
+    @Synchronized
+    fun recordInferenceLatencyMs(latencyMs: Long) {
+        latencies[latencyNext] = latencyMs
+        latencyNext = (latencyNext + 1) % latencies.size
+        if (latencyCount < latencies.size) latencyCount++
+        p95Dirty = true
+
+        val budget = targetIntervalMs(timeSourceMs())
+        val p95 = p95LatencyMs()
+        if (latencyCount >= MIN_SAMPLES_FOR_BACKOFF && p95 > budget) {
+            backoffIntervalMs = (p95 * config.backoffFactor).toLong().coerceAtMost(config.maxIntervalMs)
+            backoffUntil = timeSourceMs() + config.backoffHoldMs
+        }
+    }
+
+    /**
+     * 目前建議的最小分析間隔（ms）
+     */
+    @Synchronized
+    fun currentIntervalMs(): Long {
+        val now = timeSourceMs()
+        val target = targetIntervalMs(now)
+        return if (now < backoffUntil) maxOf(target, backoffIntervalMs) else target
+    }
+
+    /**
+     * 目前視窗內推論延遲的 p95（ms）
+     */
+    @Synchronized
+    fun p95LatencyMs(): Long {
+        if (!p95Dirty) return p95Cache
+        if (latencyCount == 0) return 0L
+        System.arraycopy(latencies, 0, sortScratch, 0, latencyCount)
+        java.util.Arrays.sort(sortScratch, 0, latencyCount)
+        val index = ((latencyCount - 1) * 95 + 50) / 100
+        p95Cache = sortScratch[index]
+        p95Dirty = false
+        return p95Cache
+    }
+
+    @Synchronized
+    fun isBackingOff(): Boolean = timeSourceMs() < backoffUntil
+
+    @Synchronized
+    fun reset() {
+        demand = Demand.NORMAL
+        idleSince = -1L
+        eyesClosing = false
+        latencyCount = 0
+        latencyNext = 0
+        p95Cache = 0L
+        p95Dirty = false
+        backoffIntervalMs = 0L
+        backoffUntil = 0L
+    }
+
+    private fun targetIntervalMs(now: Long): Long {
+        if (eyesClosing) return config.elevatedIntervalMs
+        return when (demand) {
+            Demand.ELEVATED -> config.elevatedIntervalMs
+            Demand.NORMAL -> normalIntervalMs
+            Demand.IDLE -> if (now - idleSince >= config.idleHoldMs) config.idleIntervalMs else normalIntervalMs
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.patrick.detection
+
+import com.patrick.core.CalibrationStateStore
+import com.patrick.core.FatigueLevel
+import com.patrick.core.FatigueUiCallback
+import com.patrick.core.FramePipelineMetrics
+import com.patrick.core.InMemoryCalibrationStateStore
+import com.patrick.core.LongTimeSeries
+import com.patrick.core.ManualDetectionClock
+
+/**
+ * 錄製檔重播器
+ * 以錄製的時間戳驅動 [ManualDetectionClock]，把每幀送進完整的 FatigueDetector + FatigueDetectionManager，
+ * 不需要相機、Context 或警報管理器；可在一般 JVM 上做回歸測試與每幀 CPU 成本量測。
+ *
+ * 每個 driver 只重播一次（偵測狀態不會在多次 replay 之間重置）。
+ */
+class LandmarkReplayDriver(
+    calibrationStore: CalibrationStateStore = InMemoryCalibrationStateStore(calibrated = true),
+    blendshapeYawnEnabled: Boolean = false,
+) {
+    companion object {
+        private const val TIMING_HISTORY_SIZE = 1 shl 16
+    }
+
+    /**
+     * 重播結果
+     * warnings / notices 為進入該狀態的次數；yawns 為 manager 的呵欠總數；nanos 為 manager.processFrame 的耗時
+     */
+    data class ReplayReport(
+        val frames: Int,
+        val faceFrames: Int,
+        val warnings: Int,
+        val notices: Int,
+        val blinks: Int,
+        val yawns: Int,
+        val maxScore: Int,
+        val finalScore: Int,
+        val finalLevel: FatigueLevel,
+        val meanNanos: Double,
+        val p50Nanos: Long,
+        val p95Nanos: Long,
+        val maxNanos: Long,
+    )
+
+    val clock = ManualDetectionClock()
+    private val callback = CountingCallback()
+    val detector = FatigueDetector(calibrationStore, clock)
+
+    // 各階段延遲另計，不混入即時偵測的 FramePipelineMetrics.shared
+    val pipelineMetrics = FramePipelineMetrics()
+    val manager =
+        FatigueDetectionManager(
+            detector,
+            alertManager = null,
+            uiCallback = callback,
+            clock = clock,
+            pipelineMetrics = pipelineMetrics,
+            blendshapeYawnEnabled = blendshapeYawnEnabled,
+        )
+
+    private val frameNanos = LongTimeSeries(TIMING_HISTORY_SIZE)
+
+    fun replay(reader: LandmarkRecordingReader): ReplayReport {
+        val frame = reader.newFrame()
+        var started = false
+        var frames = 0
+        var faceFrames = 0
+
+        while (reader.next(frame)) {
+            clock.set(frame.timestampMs)
+            if (!started) {
+                manager.startDetection()
+                started = true
+            }
+
+            val start = System.nanoTime()
+            manager.processFrame(frame)
+            frameNanos.add(frame.timestampMs, System.nanoTime() - start)
+
+            frames++
+            if (frame.hasFace) faceFrames++
+        }
+
+        return ReplayReport(
+            frames = frames,
+            faceFrames = faceFrames,
+            warnings = callback.warnings,
+            notices = callback.notices,
+            blinks = callback.blinks,
+            yawns = manager.getYawnCount(),
+            maxScore = callback.maxScore,
+            finalScore = callback.score,
+            finalLevel = callback.level,
+            meanNanos = frameNanos.mean(),
+            p50Nanos = frameNanos.percentile(50f),
+            p95Nanos = frameNanos.percentile(95f),
+            maxNanos = frameNanos.max(),
+        )
+    }
+
+    /**
+     * 只計數的 UI 回調；manager 會重複通知同一狀態，這裡只算狀態切換
+     */
+    private class CountingCallback : FatigueUiCallback {
+        private var lastLevel = FatigueLevel.NORMAL
+        var warnings = 0
+        var notices = 0
+        var blinks = 0
+        var score = 0
+        var maxScore = 0
+        var level = FatigueLevel.NORMAL
+
+        override fun onNormalDetection() {
+            lastLevel = FatigueLevel.NORMAL
+        }
+
+        override fun onNoFaceDetected() {
+            lastLevel = FatigueLevel.NORMAL
+        }
+
+        override fun onNoticeFatigue() {
+            if (lastLevel != FatigueLevel.NOTICE) notices++
+            lastLevel = FatigueLevel.NOTICE
+        }
+
+        override fun onWarningFatigue() {
+            if (lastLevel != FatigueLevel.WARNING) warnings++
+            lastLevel = FatigueLevel.WARNING
+        }
+
+        override fun onBlink() {
+            blinks++
+        }
+
+        override fun setWarningDialogActive(active: Boolean) {}
+
+        override fun onFatigueScoreUpdated(
+            score: Int,
+            level: FatigueLevel,
+        ) {
+            this.score = score
+            this.level = level
+            if (score > maxScore) maxScore = score
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.patrick.detection
+
+import com.google.mediapipe.tasks.components.containers.Category
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark
+import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
+
+/**
+ * FaceLandmarkerResult 的轉接器（可重複使用：每幀呼叫 [wrap]）
+ */
+class MediaPipeLandmarkFrame : LandmarkFrame {
+    companion object {
+        private fun firstFaceCategories(result: FaceLandmarkerResult): List<Category>? {
+            val faces = result.faceBlendshapes().orElse(null)
+            return if (faces.isNullOrEmpty()) null else faces[0]
+        }
+    }
+
+    private var result: FaceLandmarkerResult? = null
+    private var landmarks: List<NormalizedLandmark>? = null
+    private var categories: List<Category>? = null
+
+    fun wrap(result: FaceLandmarkerResult): MediaPipeLandmarkFrame {
+        this.result = result
+        val faces = result.faceLandmarks()
+        landmarks = if (faces.isEmpty()) null else faces[0]
+        categories = firstFaceCategories(result)
+        return this
+    }
+
+    /**
+     * 目前包裝的原始結果
+     */
+    fun result(): FaceLandmarkerResult? = result
+
+    override val hasFace: Boolean get() = !landmarks.isNullOrEmpty()
+    override val landmarkCount: Int get() = landmarks?.size ?: 0
+
+    override fun x(index: Int): Float = landmarks!![index].x()
+
+    override fun y(index: Int): Float = landmarks!![index].y()
+
+    override fun z(index: Int): Float = landmarks!![index].z()
+
+    override val blendshapeCount: Int get() = categories?.size ?: 0
+
+    override fun blendshapeName(index: Int): String = categories!![index].categoryName()
+
+    override fun blendshapeScoreAt(index: Int): Float = categories!![index].score()
+}
+
+/**
+ * 直接從 MediaPipe landmark 清單複製所需座標；landmark 數量不足時回傳 false
+ */
+fun FaceFeatureKernel.load(landmarks: List<NormalizedLandmark>): Boolean {
+    if (landmarks.size < FaceFeatureKernel.MIN_LANDMARKS) return false
+    val indices = FaceFeatureKernel.REQUIRED_INDICES
+    for (slot in indices.indices) {
+        val landmark = landmarks[indices[slot]]
+        setPoint(slot, landmark.x(), landmark.y())
+    }
+    return true
+}
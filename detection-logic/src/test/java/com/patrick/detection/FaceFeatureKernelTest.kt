@@ -0,0 +1,134 @@
+package com.patrick.detection
+
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.sqrt
+
+/**
+ * FaceFeatureKernel 與舊版 List<Int> 索引表（逐點存取 NormalizedLandmark）的計算結果一致
+ * 效能對照在 :benchmarks 的 FaceFeatureKernelBenchmark
+ */
+class FaceFeatureKernelTest {
+    private val frames = List(FRAME_COUNT) { syntheticFace(it) }
+
+    @Test
+    fun `kernel matches legacy ear and mar`() {
+        val kernel = FaceFeatureKernel()
+        val features = FaceFeatures()
+
+        for (landmarks in frames) {
+            assertTrue(kernel.load(landmarks))
+            kernel.compute(features)
+
+            assertTrue(features.valid)
+            assertEquals(Legacy.combinedEar(landmarks), features.ear, 1e-6f)
+            assertEquals(Legacy.mar(landmarks), features.mar, 1e-6f)
+            assertEquals(Legacy.ear(landmarks, Legacy.LEFT_EYE), features.leftEar, 1e-6f)
+            assertEquals(Legacy.ear(landmarks, Legacy.RIGHT_EYE), features.rightEar, 1e-6f)
+        }
+    }
+
+    @Test
+    fun `landmark frame path matches list path`() {
+        val fromList = FaceFeatureKernel()
+        val fromFrame = FaceFeatureKernel()
+        val a = FaceFeatures()
+        val b = FaceFeatures()
+
+        for (landmarks in frames) {
+            val frame = RecordedLandmarkFrame(LANDMARK_COUNT)
+            frame.hasFace = true
+            landmarks.forEachIndexed { i, p -> frame.setLandmark(i, p.x(), p.y(), p.z()) }
+
+            assertTrue(fromList.load(landmarks))
+            assertTrue(fromFrame.load(frame))
+            fromList.compute(a)
+            fromFrame.compute(b)
+
+            assertEquals(a.ear, b.ear, 0f)
+            assertEquals(a.mar, b.mar, 0f)
+        }
+    }
+
+    @Test
+    fun `too few landmarks is rejected`() {
+        val kernel = FaceFeatureKernel()
+
+        assertFalse(kernel.load(frames[0].subList(0, FaceFeatureKernel.MIN_LANDMARKS - 1)))
+    }
+
+    /**
+     * 478 點的假臉：眼睛、嘴巴開合隨 seed 變化
+     */
+    private fun syntheticFace(seed: Int): List<NormalizedLandmark> {
+        val open = 0.01f + (seed % 10) * 0.002f
+        val points = Array(LANDMARK_COUNT) { floatArrayOf(0.5f, 0.5f) }
+
+        fun eye(
+            indices: List<Int>,
+            cx: Float,
+        ) {
+            points[indices[0]] = floatArrayOf(cx - 0.04f, 0.4f)
+            points[indices[1]] = floatArrayOf(cx - 0.015f, 0.4f - open)
+            points[indices[2]] = floatArrayOf(cx + 0.015f, 0.4f - open)
+            points[indices[3]] = floatArrayOf(cx + 0.04f, 0.4f)
+            points[indices[4]] = floatArrayOf(cx + 0.015f, 0.4f + open)
+            points[indices[5]] = floatArrayOf(cx - 0.015f, 0.4f + open)
+        }
+        eye(Legacy.LEFT_EYE, 0.4f)
+        eye(Legacy.RIGHT_EYE, 0.6f)
+
+        val mouth = Legacy.MOUTH
+        points[mouth[0]] = floatArrayOf(0.45f, 0.65f)
+        points[mouth[1]] = floatArrayOf(0.48f, 0.65f + open * 2)
+        points[mouth[2]] = floatArrayOf(0.52f, 0.65f + open * 2)
+        points[mouth[3]] = floatArrayOf(0.55f, 0.65f)
+        points[mouth[4]] = floatArrayOf(0.52f, 0.65f - open * 2)
+        points[mouth[5]] = floatArrayOf(0.48f, 0.65f - open * 2)
+
+        return points.map { NormalizedLandmark.create(it[0], it[1], 0f) }
+    }
+
+    /**
+     * 舊版 FatigueDetector 的計算方式（List<Int> 索引、逐點存取 NormalizedLandmark）
+     */
+    private object Legacy {
+        val LEFT_EYE = listOf(33, 160, 158, 133, 153, 144)
+        val RIGHT_EYE = listOf(362, 385, 387, 263, 373, 380)
+        val MOUTH = listOf(61, 84, 17, 314, 405, 320, 307, 375, 321, 308, 324, 318)
+
+        fun ear(
+            landmarks: List<NormalizedLandmark>,
+            idx: List<Int>,
+        ): Float {
+            val p1 = landmarks[idx[0]]
+            val p2 = landmarks[idx[1]]
+            val p3 = landmarks[idx[2]]
+            val p4 = landmarks[idx[3]]
+            val p5 = landmarks[idx[4]]
+            val p6 = landmarks[idx[5]]
+            return (distance(p2, p6) + distance(p3, p5)) / (2.0f * distance(p1, p4))
+        }
+
+        fun combinedEar(landmarks: List<NormalizedLandmark>): Float = (ear(landmarks, LEFT_EYE) + ear(landmarks, RIGHT_EYE)) / 2.0f
+
+        fun mar(landmarks: List<NormalizedLandmark>): Float = ear(landmarks, MOUTH)
+
+        private fun distance(
+            p1: NormalizedLandmark,
+            p2: NormalizedLandmark,
+        ): Float {
+            val dx = p1.x() - p2.x()
+            val dy = p1.y() - p2.y()
+            return sqrt(dx * dx + dy * dy)
+        }
+    }
+
+    companion object {
+        private const val LANDMARK_COUNT = 478
+        private const val FRAME_COUNT = 16
+    }
+}
@@ -0,0 +1,86 @@
+package com.patrick.detection
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class FrameRateGovernorTest {
+    private var nowMs = 0L
+    private lateinit var governor: FrameRateGovernor
+
+    @Before
+    fun setUp() {
+        nowMs = 1_000L
+        governor = FrameRateGovernor(timeSourceMs = { nowMs })
+    }
+
+    @Test
+    fun `normal demand uses normal interval`() {
+        assertEquals(100L, governor.currentIntervalMs())
+
+        governor.setNormalIntervalMs(1000L / 12)
+        assertEquals(83L, governor.currentIntervalMs())
+    }
+
+    @Test
+    fun `idle only lowers rate after hold time`() {
+        governor.onDemand(FrameRateGovernor.Demand.IDLE)
+        assertEquals(100L, governor.currentIntervalMs())
+
+        nowMs += 1_999L
+        assertEquals(100L, governor.currentIntervalMs())
+
+        nowMs += 1L
+        assertEquals(250L, governor.currentIntervalMs())
+
+        // 臉回來：立即回到一般幀率
+        governor.onDemand(FrameRateGovernor.Demand.NORMAL)
+        assertEquals(100L, governor.currentIntervalMs())
+    }
+
+    @Test
+    fun `eyes closing raises rate immediately`() {
+        governor.onDemand(FrameRateGovernor.Demand.IDLE)
+        nowMs += 5_000L
+        assertEquals(250L, governor.currentIntervalMs())
+
+        governor.onEyesClosing(true)
+        assertEquals(66L, governor.currentIntervalMs())
+
+        governor.onEyesClosing(false)
+        governor.onDemand(FrameRateGovernor.Demand.ELEVATED)
+        assertEquals(66L, governor.currentIntervalMs())
+    }
+
+    @Test
+    fun `slow inference backs off and recovers after hold`() {
+        repeat(10) { governor.recordInferenceLatencyMs(160L) }
+
+        assertTrue(governor.isBackingOff())
+        assertEquals(160L, governor.p95LatencyMs())
+        assertEquals(200L, governor.currentIntervalMs())
+
+        // 延遲回落後不再延長退避，維持 backoffHoldMs 後恢復
+        repeat(30) { governor.recordInferenceLatencyMs(20L) }
+        nowMs += 3_000L
+        assertFalse(governor.isBackingOff())
+        assertEquals(100L, governor.currentIntervalMs())
+    }
+
+    @Test
+    fun `few slow samples do not trigger backoff`() {
+        repeat(4) { governor.recordInferenceLatencyMs(400L) }
+
+        assertFalse(governor.isBackingOff())
+        assertEquals(100L, governor.currentIntervalMs())
+    }
+
+    @Test
+    fun `backoff is capped at max interval`() {
+        repeat(10) { governor.recordInferenceLatencyMs(2_000L) }
+
+        assertEquals(500L, governor.currentIntervalMs())
+    }
+}
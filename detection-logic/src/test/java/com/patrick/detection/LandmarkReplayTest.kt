@@ -0,0 +1,193 @@
+package com.patrick.detection
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.CountDownLatch
+
+class LandmarkReplayTest {
+    @Test
+    fun `recording round trips frames`() {
+        val bytes = record(listOf(OPEN, CLOSED), withGap = true)
+        val reader = LandmarkRecordingReader(ByteArrayInputStream(bytes))
+        val frame = reader.newFrame()
+
+        assertEquals(LandmarkRecording.DEFAULT_LANDMARK_COUNT, reader.landmarkCount)
+        assertEquals(BlendshapeNames.ALL, reader.blendshapeNames)
+
+        assertTrue(reader.next(frame))
+        assertTrue(frame.hasFace)
+        assertEquals(START_MS, frame.timestampMs)
+        assertEquals(syntheticFace(OPEN).x(160), frame.x(160), 0f)
+        assertEquals(syntheticFace(OPEN).y(160), frame.y(160), 0f)
+        assertEquals(JAW_OPEN, frame.blendshapeScore("jawOpen"), 0f)
+        assertTrue(frame.blendshapeScore("mouthFunnel").isNaN())
+
+        assertTrue(reader.next(frame))
+        assertEquals(syntheticFace(CLOSED).y(160), frame.y(160), 0f)
+
+        // 沒臉的幀
+        assertTrue(reader.next(frame))
+        assertFalse(frame.hasFace)
+        assertFalse(reader.next(frame))
+    }
+
+    @Test
+    fun `replayed long eye closure raises warning`() {
+        // 10 fps：睜眼 3 秒 → 閉眼 2 秒 → 睜眼 3 秒
+        val session = List(30) { OPEN } + List(20) { CLOSED } + List(30) { OPEN }
+        val bytes = record(session)
+
+        val report = LandmarkReplayDriver().replay(LandmarkRecordingReader(ByteArrayInputStream(bytes)))
+
+        assertEquals(session.size, report.frames)
+        assertEquals(session.size, report.faceFrames)
+        assertTrue("warnings=${report.warnings}", report.warnings >= 1)
+        assertTrue("maxScore=${report.maxScore}", report.maxScore >= 70)
+        assertTrue(report.p95Nanos > 0L)
+    }
+
+    @Test
+    fun `blendshape yawn stays off by default`() {
+        val report = LandmarkReplayDriver().replay(LandmarkRecordingReader(ByteArrayInputStream(yawnSession())))
+
+        assertEquals(0, report.yawns)
+        assertEquals(0, report.maxScore)
+    }
+
+    @Test
+    fun `enabled blendshape yawn counts once and adds the yawn penalty`() {
+        val report =
+            LandmarkReplayDriver(blendshapeYawnEnabled = true)
+                .replay(LandmarkRecordingReader(ByteArrayInputStream(yawnSession())))
+
+        assertEquals(1, report.yawns)
+        assertEquals(25, report.maxScore)
+        // 鎖 2 秒後每 1.5 秒回復 1 分
+        assertEquals(23, report.finalScore)
+        assertEquals(0, report.warnings)
+    }
+
+    @Test
+    fun `live recorder drops frames instead of blocking when buffers run out`() {
+        val stalled = CountDownLatch(1)
+        val output =
+            object : ByteArrayOutputStream() {
+                override fun write(
+                    b: ByteArray,
+                    off: Int,
+                    len: Int,
+                ) {
+                    stalled.await()
+                    super.write(b, off, len)
+                }
+            }
+        val recorder = LandmarkRecorder(output, queueCapacity = 2)
+        val face = syntheticFace(OPEN)
+
+        // 寫入執行緒卡在第一幀：最多再收 2 幀，其餘丟棄
+        var accepted = 0
+        repeat(10) { if (recorder.record(face, START_MS + it)) accepted++ }
+        stalled.countDown()
+        recorder.close()
+
+        assertTrue("accepted=$accepted", accepted in 2..3)
+        assertEquals(10L - accepted, recorder.droppedCount)
+        assertEquals(accepted, recorder.frameCount)
+    }
+
+    @Test
+    fun `replay is deterministic`() {
+        val session = List(30) { OPEN } + List(20) { CLOSED } + List(30) { OPEN }
+        val bytes = record(session)
+
+        val first = LandmarkReplayDriver().replay(LandmarkRecordingReader(ByteArrayInputStream(bytes)))
+        val second = LandmarkReplayDriver().replay(LandmarkRecordingReader(ByteArrayInputStream(bytes)))
+
+        assertEquals(first.warnings, second.warnings)
+        assertEquals(first.maxScore, second.maxScore)
+        assertEquals(first.finalScore, second.finalScore)
+        assertEquals(first.finalLevel, second.finalLevel)
+    }
+
+    /**
+     * 10 fps 睜眼：嘴巴閉 3 秒 → jawOpen 0.8 張 2 秒 → 閉 3 秒
+     */
+    private fun yawnSession(): ByteArray {
+        val jaw = List(30) { JAW_OPEN } + List(20) { 0.8f } + List(30) { JAW_OPEN }
+        return record(List(jaw.size) { OPEN }, jawOpen = jaw)
+    }
+
+    private fun record(
+        eyeOpenings: List<Float>,
+        withGap: Boolean = false,
+        jawOpen: List<Float>? = null,
+    ): ByteArray {
+        val output = ByteArrayOutputStream()
+        val recorder = LandmarkRecorder(output, queueCapacity = 4, dropWhenFull = false)
+        recorder.use {
+            eyeOpenings.forEachIndexed { i, open ->
+                val face = syntheticFace(open, jawOpen?.get(i) ?: JAW_OPEN)
+                assertTrue(it.record(face, START_MS + i * FRAME_INTERVAL_MS))
+            }
+            if (withGap) {
+                val empty = RecordedLandmarkFrame(LandmarkRecording.DEFAULT_LANDMARK_COUNT)
+                assertTrue(it.record(empty, START_MS + eyeOpenings.size * FRAME_INTERVAL_MS))
+            }
+        }
+        assertEquals(eyeOpenings.size + if (withGap) 1 else 0, recorder.frameCount)
+        assertEquals(0L, recorder.droppedCount)
+        return output.toByteArray()
+    }
+
+    /**
+     * 478 點的假臉；open 為眼皮半開距離（EAR = 25 × open）
+     */
+    private fun syntheticFace(
+        open: Float,
+        jawOpen: Float = JAW_OPEN,
+    ): RecordedLandmarkFrame {
+        val frame = RecordedLandmarkFrame(LandmarkRecording.DEFAULT_LANDMARK_COUNT)
+        frame.hasFace = true
+        for (i in 0 until frame.landmarkCount) frame.setLandmark(i, 0.5f, 0.5f)
+
+        fun eye(
+            indices: IntArray,
+            cx: Float,
+        ) {
+            frame.setLandmark(indices[0], cx - 0.04f, 0.4f)
+            frame.setLandmark(indices[1], cx - 0.015f, 0.4f - open)
+            frame.setLandmark(indices[2], cx + 0.015f, 0.4f - open)
+            frame.setLandmark(indices[3], cx + 0.04f, 0.4f)
+            frame.setLandmark(indices[4], cx + 0.015f, 0.4f + open)
+            frame.setLandmark(indices[5], cx - 0.015f, 0.4f + open)
+        }
+        eye(intArrayOf(33, 160, 158, 133, 153, 144), 0.4f)
+        eye(intArrayOf(362, 385, 387, 263, 373, 380), 0.6f)
+
+        // 嘴巴微開（MAR 0.4，低於打哈欠門檻）
+        val mouth = intArrayOf(61, 84, 17, 314, 405, 320)
+        frame.setLandmark(mouth[0], 0.45f, 0.65f)
+        frame.setLandmark(mouth[1], 0.48f, 0.67f)
+        frame.setLandmark(mouth[2], 0.52f, 0.67f)
+        frame.setLandmark(mouth[3], 0.55f, 0.65f)
+        frame.setLandmark(mouth[4], 0.52f, 0.63f)
+        frame.setLandmark(mouth[5], 0.48f, 0.63f)
+
+        frame.setLandmark(1, 0.5f, 0.52f)
+        frame.setLandmark(152, 0.5f, 0.8f)
+        frame.setBlendshapeScore("jawOpen", jawOpen)
+        return frame
+    }
+
+    companion object {
+        private const val START_MS = 1_000L
+        private const val FRAME_INTERVAL_MS = 100L
+        private const val OPEN = 0.01f
+        private const val CLOSED = 0.001f
+        private const val JAW_OPEN = 0.05f
+    }
+}
@@ -0,0 +1,37 @@
+package com.patrick.core
+
+import android.graphics.Bitmap
+
+/**
+ * 位圖對象池
+ * 專門用於管理 Bitmap 對象
+ */
+class BitmapPool(
+    maxSize: Int = 10,
+) {
+    private val pool =
+        LockFreeObjectPool<Bitmap>(
+            maxSize = maxSize,
+            factory = { Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888) },
+            reset = { bitmap ->
+                if (!bitmap.isRecycled) {
+                    bitmap.recycle()
+                }
+            },
+        )
+
+    suspend fun borrow(): Bitmap = pool.borrow()
+
+    suspend fun returnObject(bitmap: Bitmap) = pool.returnObject(bitmap)
+
+    suspend fun getStats(): ObjectPool.PoolStats = pool.getStats()
+
+    suspend fun clear() = pool.clear()
+
+    suspend fun prefill(count: Int) = pool.prefill(count)
+
+    // 非掛起版本，可在非協程執行緒使用
+    fun tryBorrow(): Bitmap? = pool.tryBorrow()
+
+    fun release(bitmap: Bitmap) = pool.returnObject(bitmap)
+}
@@ -9,7 +9,7 @@ import android.util.Log
  * 負責管理校正狀態的持久化存儲
  * 確保校正只在程式啟動時執行一次
  */
-class CalibrationStateManager(context: Context) {
+class CalibrationStateManager(context: Context) : CalibrationStateStore {
     companion object {
         private const val TAG = "CalibrationStateManager"
         private const val PREF_NAME = "calibration_state"
@@ -35,7 +35,7 @@ class CalibrationStateManager(context: Context) {
     /**
      * 檢查是否已經完成校正
      */
-    fun hasCalibrated(): Boolean {
+    override fun hasCalibrated(): Boolean {
         val calibrated = sharedPreferences.getBoolean(KEY_HAS_CALIBRATED, false)
         val sessionId = sharedPreferences.getString(KEY_APP_SESSION_ID, null)
         
@@ -48,7 +48,7 @@ class CalibrationStateManager(context: Context) {
     /**
      * 標記校正已完成
      */
-    fun markCalibrationCompleted() {
+    override fun markCalibrationCompleted() {
         val timestamp = System.currentTimeMillis()
         sharedPreferences.edit()
             .putBoolean(KEY_HAS_CALIBRATED, true)
@@ -62,7 +62,7 @@ class CalibrationStateManager(context: Context) {
     /**
      * 重置校正狀態（僅在程式完全關閉時調用）
      */
-    fun resetCalibrationState() {
+    override fun resetCalibrationState() {
         sharedPreferences.edit()
             .remove(KEY_HAS_CALIBRATED)
             .remove(KEY_CALIBRATION_TIMESTAMP)
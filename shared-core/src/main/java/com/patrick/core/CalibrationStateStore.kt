@@ -0,0 +1,34 @@
+package com.patrick.core
+
+/**
+ * 校正狀態存取介面
+ * 裝置上由 [CalibrationStateManager]（SharedPreferences）實作；
+ * 重播 / 單元測試用 [InMemoryCalibrationStateStore]，不需要 Context。
+ */
+interface CalibrationStateStore {
+    fun hasCalibrated(): Boolean
+
+    fun markCalibrationCompleted()
+
+    fun resetCalibrationState()
+}
+
+/**
+ * 記憶體內的校正狀態（不持久化）
+ */
+class InMemoryCalibrationStateStore(
+    calibrated: Boolean = false,
+) : CalibrationStateStore {
+    @Volatile
+    private var calibrated = calibrated
+
+    override fun hasCalibrated(): Boolean = calibrated
+
+    override fun markCalibrationCompleted() {
+        calibrated = true
+    }
+
+    override fun resetCalibrationState() {
+        calibrated = false
+    }
+}
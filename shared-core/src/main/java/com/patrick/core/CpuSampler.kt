@@ -0,0 +1,193 @@
+package com.patrick.core
+
+import android.os.Process
+import java.io.File
+import java.io.IOException
+
+/**
+ * CPU 取樣器
+ * 每次 [sample] 讀取 /proc/stat 與 /proc/self/task/<tid>/stat，以「與上一次讀取的差值」計算這段期間的負載
+ * （累計值相除只會得到開機以來的平均）。iowait 算閒置，irq / softirq / steal 算忙碌。
+ *
+ * - 系統負載：Android 8 之後一般 App 讀不到 /proc/stat，此時 systemUsage 等欄位為 null，執行緒統計照常
+ * - 執行緒負載：以單核百分比表示（100% = 佔滿一個核心），並依 [ThreadCategory] 累計整段取樣期間的 tick
+ *
+ * 讀檔與解析都在呼叫端執行緒上，建議 5 秒以上呼叫一次；procRoot 可指向 fixture 目錄做單元測試。
+ */
+class CpuSampler(
+    private val procRoot: () -> File = { File("/proc") },
+    private val pid: Int = Process.myPid(),
+    private val clockTicksPerSecond: Long = DEFAULT_CLOCK_TICKS_PER_SECOND,
+    private val windowSize: Int = DEFAULT_WINDOW_SIZE,
+    private val nanoTime: () -> Long = System::nanoTime,
+) {
+    companion object {
+        const val DEFAULT_CLOCK_TICKS_PER_SECOND = 100L // USER_HZ
+        const val DEFAULT_WINDOW_SIZE = 12
+    }
+
+    /**
+     * 單一執行緒在一次取樣區間內的負載
+     */
+    data class ThreadUsage(
+        val tid: Int,
+        val name: String,
+        val category: ThreadCategory,
+        val deltaTicks: Long,
+        val corePercent: Float,
+    )
+
+    /**
+     * 一次取樣區間的結果
+     */
+    data class Sample(
+        val intervalMs: Long,
+        val systemUsage: Float?,
+        val iowaitPercent: Float?,
+        val irqPercent: Float?,
+        val processCorePercent: Float,
+        val threads: List<ThreadUsage>,
+    ) {
+        /** 依分類加總的單核百分比 */
+        val byCategory: Map<ThreadCategory, Float>
+            get() =
+                threads.groupBy { it.category }
+                    .mapValues { (_, usages) -> usages.sumOf { it.corePercent.toDouble() }.toFloat() }
+    }
+
+    private var hasBaseline = false
+    private var lastNanos = 0L
+    private var lastCpuTimes: CpuTimes? = null
+    private val lastThreadTicks = HashMap<Int, Long>()
+    private val window = ArrayDeque<Sample>(windowSize)
+    private val cumulativeTicks = LongArray(ThreadCategory.values().size)
+
+    /**
+     * 讀取一次並與上次比較；第一次呼叫只建立基準，回傳 null
+     */
+    @Synchronized
+    fun sample(): Sample? {
+        val now = nanoTime()
+        val root = procRoot()
+        val cpuTimes = readCpuTimes(root)
+        val threads = readThreads(root)
+
+        val previousNanos = lastNanos
+        val previousCpu = lastCpuTimes
+        lastNanos = now
+        lastCpuTimes = cpuTimes
+        if (!hasBaseline) {
+            hasBaseline = true
+            threads.forEach { lastThreadTicks[it.tid] = it.totalTicks }
+            return null
+        }
+
+        val intervalNanos = (now - previousNanos).coerceAtLeast(1L)
+        val intervalTicks = intervalNanos.toDouble() / 1e9 * clockTicksPerSecond
+
+        val usages = ArrayList<ThreadUsage>(threads.size)
+        var processTicks = 0L
+        val alive = HashSet<Int>(threads.size * 2)
+        for (thread in threads) {
+            alive.add(thread.tid)
+            // 上次沒看到的執行緒是在區間內啟動的，全部 tick 都屬於本區間
+            val delta = (thread.totalTicks - (lastThreadTicks[thread.tid] ?: 0L)).coerceAtLeast(0L)
+            lastThreadTicks[thread.tid] = thread.totalTicks
+            processTicks += delta
+            val category = ThreadCategory.of(thread.tid, thread.name, pid)
+            cumulativeTicks[category.ordinal] += delta
+            if (delta > 0L) {
+                usages.add(ThreadUsage(thread.tid, thread.name, category, delta, percentOf(delta.toDouble(), intervalTicks)))
+            }
+        }
+        lastThreadTicks.keys.retainAll(alive)
+        usages.sortByDescending { it.deltaTicks }
+
+        var systemUsage: Float? = null
+        var iowait: Float? = null
+        var irq: Float? = null
+        if (cpuTimes != null && previousCpu != null) {
+            val total = (cpuTimes.total - previousCpu.total).toDouble()
+            if (total > 0.0) {
+                systemUsage = percentOf((cpuTimes.busy - previousCpu.busy).toDouble(), total)
+                iowait = percentOf((cpuTimes.iowait - previousCpu.iowait).toDouble(), total)
+                irq = percentOf((cpuTimes.irq + cpuTimes.softirq - previousCpu.irq - previousCpu.softirq).toDouble(), total)
+            }
+        }
+
+        val sample =
+            Sample(
+                intervalMs = intervalNanos / 1_000_000L,
+                systemUsage = systemUsage,
+                iowaitPercent = iowait,
+                irqPercent = irq,
+                processCorePercent = percentOf(processTicks.toDouble(), intervalTicks),
+                threads = usages,
+            )
+        if (window.size == windowSize) window.removeFirst()
+        window.addLast(sample)
+        return sample
+    }
+
+    /**
+     * 最近 windowSize 次取樣，由舊到新
+     */
+    @Synchronized
+    fun window(): List<Sample> = window.toList()
+
+    /**
+     * 視窗內各分類的平均單核百分比
+     */
+    @Synchronized
+    fun windowAverageByCategory(): Map<ThreadCategory, Float> {
+        if (window.isEmpty()) return emptyMap()
+        val sums = FloatArray(ThreadCategory.values().size)
+        window.forEach { sample -> sample.threads.forEach { sums[it.category.ordinal] += it.corePercent } }
+        return ThreadCategory.values().associateWith { sums[it.ordinal] / window.size }
+    }
+
+    /**
+     * 自第一次取樣以來各分類累計的 CPU 時間（毫秒），用來比較整趟行程誰最耗電
+     */
+    @Synchronized
+    fun cumulativeCpuMsByCategory(): Map<ThreadCategory, Long> =
+        ThreadCategory.values().associateWith { cumulativeTicks[it.ordinal] * 1000L / clockTicksPerSecond }
+
+    @Synchronized
+    fun reset() {
+        hasBaseline = false
+        lastNanos = 0L
+        lastCpuTimes = null
+        lastThreadTicks.clear()
+        window.clear()
+        cumulativeTicks.fill(0L)
+    }
+
+    private fun percentOf(
+        part: Double,
+        whole: Double,
+    ): Float = if (whole > 0.0) (part / whole * 100.0).toFloat() else 0f
+
+    private fun readCpuTimes(root: File): CpuTimes? =
+        try {
+            ProcStatParser.parseCpuTimes(File(root, "stat").readText())
+        } catch (e: IOException) {
+            // Android 8+ 的 SELinux 政策不允許讀取
+            null
+        } catch (e: SecurityException) {
+            null
+        }
+
+    private fun readThreads(root: File): List<ThreadCpuTime> {
+        val taskDirs = File(root, "self/task").listFiles() ?: return emptyList()
+        val threads = ArrayList<ThreadCpuTime>(taskDirs.size)
+        for (dir in taskDirs) {
+            try {
+                ProcStatParser.parseThreadStat(File(dir, "stat").readText())?.let { threads.add(it) }
+            } catch (e: IOException) {
+                // 執行緒在列目錄與讀檔之間結束
+            }
+        }
+        return threads
+    }
+}
@@ -183,70 +183,15 @@ object FatigueDetectionLogger {
         marValues: List<Float>,
         eventCounts: Map<String, Int>,
         calibrationData: Map<String, Float>?,
-    ): String {
-        val sb = StringBuilder()
-        val timestamp = dateFormat.format(System.currentTimeMillis())
-
-        sb.appendLine("=== 疲勞偵測分析報告 ===")
-        sb.appendLine("生成時間: $timestamp")
-        sb.appendLine()
-
-        // EAR 統計
-        sb.appendLine("=== EAR 統計 ===")
-        if (earValues.isNotEmpty()) {
-            val avgEar = earValues.average()
-            val minEar = earValues.minOrNull()
-            val maxEar = earValues.maxOrNull()
-            sb.appendLine("樣本數: ${earValues.size}")
-            sb.appendLine("平均值: ${"%.4f".format(avgEar)}")
-            sb.appendLine("最小值: ${"%.4f".format(minEar)}")
-            sb.appendLine("最大值: ${"%.4f".format(maxEar)}")
-        } else {
-            sb.appendLine("無 EAR 數據")
-        }
+    ): String = FatigueAnalysisReport.generate(earValues, marValues, eventCounts, calibrationData)
 
-        // MAR 統計
-        sb.appendLine("\n=== MAR 統計 ===")
-        if (marValues.isNotEmpty()) {
-            val avgMar = marValues.average()
-            val minMar = marValues.minOrNull()
-            val maxMar = marValues.maxOrNull()
-            sb.appendLine("樣本數: ${marValues.size}")
-            sb.appendLine("平均值: ${"%.4f".format(avgMar)}")
-            sb.appendLine("最小值: ${"%.4f".format(minMar)}")
-            sb.appendLine("最大值: ${"%.4f".format(maxMar)}")
-        } else {
-            sb.appendLine("無 MAR 數據")
-        }
-
-        // 事件統計
-        sb.appendLine("\n=== 事件統計 ===")
-        if (eventCounts.isNotEmpty()) {
-            eventCounts.forEach { (type, count) ->
-                sb.appendLine("$type: $count 次")
-            }
-        } else {
-            sb.appendLine("無事件記錄")
-        }
-
-        // 校正數據
-        sb.appendLine("\n=== 校正數據 ===")
-        if (!calibrationData.isNullOrEmpty()) {
-            calibrationData.forEach { (key, value) ->
-                sb.appendLine("$key: ${"%.4f".format(value)}")
-            }
-        } else {
-            sb.appendLine("無校正數據")
-        }
-
-        // 建議
-        sb.appendLine("\n=== 調整建議 ===")
-        if (earValues.isNotEmpty()) {
-            val avgEar = earValues.average().toFloat()
-            val suggestedThreshold = avgEar * 0.8f
-            sb.appendLine("建議 EAR 閾值: ${"%.4f".format(suggestedThreshold)} (基於平均值 ${"%.4f".format(avgEar)})")
-        }
-
-        return sb.toString()
-    }
+    /**
+     * 生成分析報告（直接讀取環形序列，不複製樣本）
+     */
+    fun generateAnalysisReport(
+        earSeries: FloatTimeSeries,
+        marSeries: FloatTimeSeries,
+        eventCounts: Map<String, Int>,
+        calibrationData: Map<String, Float>?,
+    ): String = FatigueAnalysisReport.generate(earSeries, marSeries, eventCounts, calibrationData)
 }
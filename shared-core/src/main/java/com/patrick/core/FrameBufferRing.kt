@@ -0,0 +1,119 @@
+package com.patrick.core
+
+import java.nio.ByteBuffer
+import java.nio.IntBuffer
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 影像幀緩衝環
+ * 固定容量、預先配置的 direct ByteBuffer，分析執行緒借出後歸還，
+ * 解析度不變時不會再配置任何記憶體；解析度改變時整組重新配置。
+ *
+ * 借用與歸還皆不掛起、不加鎖等待，可直接在 CameraX analyzer 執行緒使用。
+ */
+class FrameBufferRing(
+    private val capacity: Int = DEFAULT_CAPACITY,
+) {
+    companion object {
+        const val DEFAULT_CAPACITY = 3
+    }
+
+    /**
+     * 借出的緩衝區
+     */
+    class Slot internal constructor(
+        val buffer: ByteBuffer,
+        internal val generation: Int,
+    ) {
+        // 以 int 寫入像素用的視圖（BIG_ENDIAN，0xRRGGBBAA 依序為 R,G,B,A）
+        val intView: IntBuffer = buffer.asIntBuffer()
+    }
+
+    private val free = ArrayBlockingQueue<Slot>(capacity)
+
+    @Volatile
+    private var generation = 0
+
+    @Volatile
+    private var frameBytes = 0
+
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+    private val allocationCount = AtomicLong()
+
+    init {
+        require(capacity > 0) { "capacity must be > 0" }
+    }
+
+    /**
+     * 依分析解析度配置緩衝區；尺寸相同時不做任何事
+     */
+    fun ensureFrameSize(
+        width: Int,
+        height: Int,
+        bytesPerPixel: Int,
+    ) {
+        val bytes = width * height * bytesPerPixel
+        if (bytes == frameBytes) return
+
+        synchronized(this) {
+            if (bytes == frameBytes) return
+            // 舊世代的 slot 歸還時會被丟棄
+            generation++
+            free.clear()
+            repeat(capacity) {
+                free.offer(Slot(ByteBuffer.allocateDirect(bytes), generation))
+                allocationCount.incrementAndGet()
+            }
+            frameBytes = bytes
+        }
+    }
+
+    /**
+     * 借出一個緩衝區，全部借出時回傳 null（呼叫端應丟棄該幀）
+     */
+    fun acquire(): Slot? {
+        val slot = free.poll()
+        if (slot == null) {
+            missCount.incrementAndGet()
+            return null
+        }
+        hitCount.incrementAndGet()
+        slot.buffer.clear()
+        slot.intView.clear()
+        return slot
+    }
+
+    /**
+     * 歸還緩衝區
+     */
+    fun release(slot: Slot) {
+        if (slot.generation != generation) return
+        free.offer(slot)
+    }
+
+    /**
+     * 取得統計資訊
+     */
+    fun getStats(): Stats =
+        Stats(
+            capacity = capacity,
+            available = free.size,
+            frameBytes = frameBytes,
+            hits = hitCount.get(),
+            misses = missCount.get(),
+            allocations = allocationCount.get(),
+        )
+
+    data class Stats(
+        val capacity: Int,
+        val available: Int,
+        val frameBytes: Int,
+        val hits: Long,
+        val misses: Long,
+        val allocations: Long,
+    ) {
+        val hitRate: Float = if (hits + misses > 0) hits.toFloat() / (hits + misses) else 0f
+    }
+}
@@ -0,0 +1,150 @@
+package com.patrick.core
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import java.util.Locale
+
+/**
+ * 幀處理管線的各階段
+ */
+enum class PipelineStage(val label: String) {
+    // 只計實際送去推論的幀（節流丟棄的不算）
+    CAPTURE_TO_ANALYZER("capture→analyzer"),
+    QUEUE_WAIT("queue wait"),
+    CONVERSION("conversion"),
+    INFERENCE("inference"),
+    FEATURE_EXTRACTION("features"),
+    SCORING("scoring"),
+    UI_EMISSION("ui emission"),
+    END_TO_END("end to end"),
+    EYE_CLOSED_TO_ALERT("eye closed→alert"),
+}
+
+/**
+ * 幀處理管線延遲統計
+ * 相機端（camera-input）、偵測端（detection-logic）各自呼叫 [record]；每個階段一個 [LatencyHistogram]，
+ * 記錄過程不配置物件。所有時間皆為 System.nanoTime 時基。
+ *
+ * 一幀的端到端延遲：相機端在送出結果前以 [beginFrame] 標記該幀的拍攝時間，
+ * 結果在同一執行緒上同步流經偵測與 UI 回調，最後由偵測端呼叫 [endFrame]。
+ * 統計快照不在熱路徑上計算，由 [publish]（PerformanceMonitor 定期呼叫）更新 [snapshot]。
+ */
+class FramePipelineMetrics {
+    companion object {
+        private const val NANOS_PER_MS = 1_000_000.0
+
+        // 拍攝時間戳換算時，超過此值視為時基不符
+        private const val MAX_CAPTURE_AGE_NANOS = 1_000_000_000L
+
+        /** 全程序共用的實例（相機、偵測、UI 分屬不同模組，統一寫到這裡） */
+        val shared = FramePipelineMetrics()
+
+        /**
+         * 相機拍攝時間戳（ns）距今多久
+         * CameraX 的時間戳依裝置可能是 uptime（同 System.nanoTime）或 elapsedRealtime 時基，
+         * 兩者都試，取落在 0–1 秒內的那個；都不合理時回傳 -1
+         */
+        fun captureAgeNanos(
+            captureTimestampNanos: Long,
+            nowNanos: Long,
+            realtimeNanos: Long,
+        ): Long {
+            val monotonicAge = nowNanos - captureTimestampNanos
+            if (monotonicAge in 0L..MAX_CAPTURE_AGE_NANOS) return monotonicAge
+            val realtimeAge = realtimeNanos - captureTimestampNanos
+            if (realtimeAge in 0L..MAX_CAPTURE_AGE_NANOS) return realtimeAge
+            return -1L
+        }
+    }
+
+    /**
+     * 所有階段的統計快照
+     */
+    data class Snapshot(
+        val stages: Map<PipelineStage, LatencyHistogram.Snapshot>,
+    ) {
+        operator fun get(stage: PipelineStage): LatencyHistogram.Snapshot = stages[stage] ?: LatencyHistogram.Snapshot.EMPTY
+
+        companion object {
+            val EMPTY = Snapshot(emptyMap())
+        }
+    }
+
+    private val histograms = Array(PipelineStage.values().size) { LatencyHistogram() }
+
+    // 目前在結果回調中的幀（拍攝時間，0 = 無）；同一時間只有一條執行緒在送出結果
+    @Volatile
+    private var frameStartNanos = 0L
+
+    private val _snapshot = MutableStateFlow(Snapshot.EMPTY)
+    val snapshot: StateFlow<Snapshot> = _snapshot
+
+    fun record(
+        stage: PipelineStage,
+        nanos: Long,
+    ) {
+        histograms[stage.ordinal].record(nanos)
+    }
+
+    /**
+     * 標記接下來送出的結果屬於哪一幀（拍攝時間，System.nanoTime 時基）
+     */
+    fun beginFrame(startNanos: Long) {
+        frameStartNanos = startNanos
+    }
+
+    /**
+     * 目前這幀的拍攝時間；不在相機結果回調中（例如重播）時回傳 0
+     */
+    fun currentFrameStartNanos(): Long = frameStartNanos
+
+    /**
+     * 一幀已送到 UI：記錄端到端延遲並清除標記
+     */
+    fun endFrame(endNanos: Long = System.nanoTime()) {
+        val start = frameStartNanos
+        if (start == 0L) return
+        frameStartNanos = 0L
+        record(PipelineStage.END_TO_END, endNanos - start)
+    }
+
+    /**
+     * 計算各階段的百分位並更新 [snapshot]
+     */
+    fun publish(): Snapshot {
+        val stages = PipelineStage.values().associateWith { histograms[it.ordinal].snapshot() }
+        return Snapshot(stages).also { _snapshot.value = it }
+    }
+
+    fun reset() {
+        histograms.forEach { it.reset() }
+        frameStartNanos = 0L
+        _snapshot.value = Snapshot.EMPTY
+    }
+
+    /**
+     * 以文字表格輸出各階段統計（毫秒）
+     */
+    fun dump(snapshot: Snapshot = publish()): String =
+        buildString {
+            append(
+                String.format(Locale.US, "%-18s %8s %8s %8s %8s %8s %8s%n", "stage", "count", "mean", "p50", "p95", "p99", "max"),
+            )
+            PipelineStage.values().forEach { stage ->
+                val s = snapshot[stage]
+                append(
+                    String.format(
+                        Locale.US,
+                        "%-18s %8d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                        stage.label,
+                        s.count,
+                        s.meanNanos / NANOS_PER_MS,
+                        s.p50Nanos / NANOS_PER_MS,
+                        s.p95Nanos / NANOS_PER_MS,
+                        s.p99Nanos / NANOS_PER_MS,
+                        s.maxNanos / NANOS_PER_MS,
+                    ),
+                )
+            }
+        }
+}
@@ -0,0 +1,110 @@
+package com.patrick.core
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 延遲直方圖（HdrHistogram 式 log-linear 分桶，單位 ns）
+ * 每個 2 的冪次區間切成 [SUB_BUCKET_COUNT] 個等寬子桶，相對誤差約 1 / SUB_BUCKET_COUNT（~3%）。
+ * 桶陣列在建構時配置一次；[record] 只做原子加法，不配置物件，可由多條執行緒同時呼叫。
+ * 超過 highestTrackableNanos 的值計入最後一桶（max 仍為實際值）。
+ */
+class LatencyHistogram(
+    highestTrackableNanos: Long = DEFAULT_HIGHEST_TRACKABLE_NANOS,
+) {
+    companion object {
+        private const val SUB_BUCKET_BITS = 5
+        private const val SUB_BUCKET_COUNT = 1 shl SUB_BUCKET_BITS
+        const val DEFAULT_HIGHEST_TRACKABLE_NANOS = 60_000_000_000L // 60 秒
+    }
+
+    /**
+     * 某一時刻的統計（單位 ns；百分位為所在桶的上界）
+     */
+    data class Snapshot(
+        val count: Long,
+        val meanNanos: Double,
+        val p50Nanos: Long,
+        val p95Nanos: Long,
+        val p99Nanos: Long,
+        val maxNanos: Long,
+    ) {
+        companion object {
+            val EMPTY = Snapshot(0L, 0.0, 0L, 0L, 0L, 0L)
+        }
+    }
+
+    private val bucketCount = indexOf(highestTrackableNanos.coerceAtLeast(SUB_BUCKET_COUNT.toLong())) + 1
+    private val counts = AtomicLongArray(bucketCount)
+    private val totalCount = AtomicLong()
+    private val totalNanos = AtomicLong()
+    private val maxNanos = AtomicLong()
+
+    fun record(nanos: Long) {
+        val value = nanos.coerceAtLeast(0L)
+        counts.incrementAndGet(indexOf(value).coerceAtMost(bucketCount - 1))
+        totalCount.incrementAndGet()
+        totalNanos.addAndGet(value)
+        while (true) {
+            val current = maxNanos.get()
+            if (value <= current || maxNanos.compareAndSet(current, value)) break
+        }
+    }
+
+    fun count(): Long = totalCount.get()
+
+    /**
+     * 取得百分位值（0–100）；沒有樣本時回傳 0
+     * 與 [record] 並行時讀到的是近似值
+     */
+    fun valueAtPercentile(percentile: Double): Long {
+        val total = totalCount.get()
+        if (total == 0L) return 0L
+        val target = Math.ceil(percentile.coerceIn(0.0, 100.0) / 100.0 * total).toLong().coerceAtLeast(1L)
+        var seen = 0L
+        for (i in 0 until bucketCount) {
+            seen += counts.get(i)
+            if (seen >= target) return highestEquivalentValue(i).coerceAtMost(maxNanos.get())
+        }
+        return maxNanos.get()
+    }
+
+    fun snapshot(): Snapshot {
+        val count = totalCount.get()
+        if (count == 0L) return Snapshot.EMPTY
+        return Snapshot(
+            count = count,
+            meanNanos = totalNanos.get().toDouble() / count,
+            p50Nanos = valueAtPercentile(50.0),
+            p95Nanos = valueAtPercentile(95.0),
+            p99Nanos = valueAtPercentile(99.0),
+            maxNanos = maxNanos.get(),
+        )
+    }
+
+    fun reset() {
+        for (i in 0 until bucketCount) counts.set(i, 0L)
+        totalCount.set(0L)
+        totalNanos.set(0L)
+        maxNanos.set(0L)
+    }
+
+    /**
+     * 值 → 桶索引：小於 SUB_BUCKET_COUNT 的值一對一；
+     * 其餘以最高位決定區間、其下 SUB_BUCKET_BITS 位決定子桶
+     */
+    private fun indexOf(value: Long): Int {
+        if (value < SUB_BUCKET_COUNT) return value.toInt()
+        val magnitude = 63 - java.lang.Long.numberOfLeadingZeros(value)
+        val shift = magnitude - SUB_BUCKET_BITS
+        val top = (value ushr shift).toInt() // [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        return (shift + 1) * SUB_BUCKET_COUNT + (top - SUB_BUCKET_COUNT)
+    }
+
+    private fun highestEquivalentValue(index: Int): Long {
+        if (index < SUB_BUCKET_COUNT) return index.toLong()
+        val shift = index / SUB_BUCKET_COUNT - 1
+        val top = (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT).toLong()
+        return ((top + 1) shl shift) - 1
+    }
+}
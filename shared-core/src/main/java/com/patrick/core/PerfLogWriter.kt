@@ -0,0 +1,282 @@
+package com.patrick.core
+
+import android.util.Log
+import java.io.Closeable
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 效能日誌寫入器（只附加、分段輪替）
+ * - 呼叫端只做一次 offer：有界佇列，滿了就丟棄並計數，不阻塞也不開檔
+ * - 單一消費者執行緒批次取出，編碼成 line protocol 後經由緩衝的 FileChannel 寫入
+ * - 目前分段超過 segmentBytes 時換下一段，只保留最新 maxSegments 段
+ *
+ * 每行格式：`<message>[ key=value,key=value] <epochMs>`，message / key / value 中的空白、逗號、等號以 \ 跳脫。
+ * 丟棄的筆數會在下一批寫入時以 `perf_log_dropped count=N` 補記。
+ * 不依賴 Android API（Log 除外），可在 JVM 上測試。
+ */
+class PerfLogWriter(
+    private val directory: () -> File,
+    private val filePrefix: String = DEFAULT_FILE_PREFIX,
+    private val segmentBytes: Long = DEFAULT_SEGMENT_BYTES,
+    private val maxSegments: Int = DEFAULT_MAX_SEGMENTS,
+    queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+    private val wallClockMs: () -> Long = System::currentTimeMillis,
+) : Closeable {
+    companion object {
+        private const val TAG = "PerfLogWriter"
+        const val DEFAULT_FILE_PREFIX = "perf"
+        const val DEFAULT_SEGMENT_BYTES = 256L * 1024
+        const val DEFAULT_MAX_SEGMENTS = 4
+        const val DEFAULT_QUEUE_CAPACITY = 1024
+        private const val SEGMENT_SUFFIX = ".log"
+        private const val MAX_BATCH = 256
+        private const val BUFFER_BYTES = 64 * 1024
+        private const val DROPPED_MESSAGE = "perf_log_dropped"
+    }
+
+    /**
+     * 佇列中的一筆；latch 不為 null 時為 flush / close 標記
+     */
+    private class Entry(
+        val timestampMs: Long,
+        val message: String,
+        val data: Map<String, Any>?,
+        val latch: CountDownLatch? = null,
+    )
+
+    data class Stats(
+        val written: Long,
+        val dropped: Long,
+        val bytesWritten: Long,
+        val segments: Int,
+    )
+
+    private val queue = ArrayBlockingQueue<Entry>(queueCapacity)
+    private val batch = ArrayList<Entry>(MAX_BATCH)
+    private val line = StringBuilder(256)
+    private val buffer = ByteBuffer.allocate(BUFFER_BYTES)
+
+    private val writtenCount = AtomicLong()
+    private val droppedCount = AtomicLong()
+    private val bytesWritten = AtomicLong()
+    private var reportedDropped = 0L
+
+    // 以下只在消費者執行緒上存取
+    private var channel: FileChannel? = null
+    private var segmentIndex = 0
+    private var segmentSize = 0L
+
+    @Volatile
+    private var closed = false
+
+    private val worker =
+        Thread({ runLoop() }, "PerfLogWriter").apply {
+            isDaemon = true
+            priority = Thread.MIN_PRIORITY
+            start()
+        }
+
+    /**
+     * 加入一筆紀錄；佇列已滿或已關閉時丟棄並回傳 false
+     */
+    fun log(
+        message: String,
+        data: Map<String, Any>? = null,
+    ): Boolean {
+        if (closed || !queue.offer(Entry(wallClockMs(), message, data))) {
+            droppedCount.incrementAndGet()
+            return false
+        }
+        return true
+    }
+
+    /**
+     * 等待目前佇列中的紀錄都寫入檔案
+     */
+    fun flush(timeoutMs: Long = 1000L): Boolean {
+        if (closed) return false
+        val latch = CountDownLatch(1)
+        if (!queue.offer(Entry(0L, "", null, latch), timeoutMs, TimeUnit.MILLISECONDS)) return false
+        return latch.await(timeoutMs, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * 寫完佇列中的紀錄後停止消費者執行緒並關閉檔案
+     */
+    override fun close() {
+        if (closed) return
+        flush()
+        closed = true
+        worker.interrupt()
+        worker.join(1000L)
+    }
+
+    fun getStats(): Stats =
+        Stats(
+            written = writtenCount.get(),
+            dropped = droppedCount.get(),
+            bytesWritten = bytesWritten.get(),
+            segments = segmentFiles().size,
+        )
+
+    /**
+     * 現有分段，由舊到新
+     */
+    fun segmentFiles(): List<File> =
+        directory().listFiles()
+            ?.filter { segmentIndexOf(it) >= 0 }
+            ?.sortedBy { segmentIndexOf(it) }
+            ?: emptyList()
+
+    private fun runLoop() {
+        try {
+            while (!closed) {
+                batch.add(queue.take())
+                queue.drainTo(batch, MAX_BATCH - 1)
+                writeBatch()
+            }
+        } catch (_: InterruptedException) {
+            // close()
+        } finally {
+            closeChannel()
+        }
+    }
+
+    private fun writeBatch() {
+        try {
+            openChannel()
+            val dropped = droppedCount.get()
+            if (dropped > reportedDropped) {
+                encode(DROPPED_MESSAGE, mapOf("count" to dropped - reportedDropped), wallClockMs())
+                reportedDropped = dropped
+            }
+            for (entry in batch) {
+                if (entry.latch == null) {
+                    encode(entry.message, entry.data, entry.timestampMs)
+                    writtenCount.incrementAndGet()
+                } else {
+                    drainBuffer()
+                    entry.latch.countDown()
+                }
+            }
+            drainBuffer()
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to write performance log", e)
+            buffer.clear()
+            closeChannel()
+            batch.forEach { it.latch?.countDown() }
+        } finally {
+            batch.clear()
+        }
+    }
+
+    private fun encode(
+        message: String,
+        data: Map<String, Any>?,
+        timestampMs: Long,
+    ) {
+        line.setLength(0)
+        appendEscaped(message)
+        if (!data.isNullOrEmpty()) {
+            line.append(' ')
+            var first = true
+            for ((key, value) in data) {
+                if (!first) line.append(',')
+                first = false
+                appendEscaped(key)
+                line.append('=')
+                appendEscaped(value.toString())
+            }
+        }
+        line.append(' ').append(timestampMs).append('\n')
+
+        val bytes = line.toString().toByteArray(Charsets.UTF_8)
+        if (segmentSize + buffer.position() + bytes.size > segmentBytes && segmentSize + buffer.position() > 0) {
+            drainBuffer()
+            rotate()
+        }
+        if (bytes.size > buffer.remaining()) drainBuffer()
+        if (bytes.size > buffer.capacity()) {
+            write(ByteBuffer.wrap(bytes))
+        } else {
+            buffer.put(bytes)
+        }
+    }
+
+    private fun appendEscaped(text: String) {
+        for (c in text) {
+            when (c) {
+                ' ', ',', '=', '\\' -> line.append('\\').append(c)
+                '\n' -> line.append("\\n")
+                '\r' -> {}
+                else -> line.append(c)
+            }
+        }
+    }
+
+    private fun drainBuffer() {
+        if (buffer.position() == 0) return
+        buffer.flip()
+        write(buffer)
+        buffer.clear()
+    }
+
+    private fun write(bytes: ByteBuffer) {
+        val target = openChannel()
+        while (bytes.hasRemaining()) {
+            val n = target.write(bytes)
+            segmentSize += n
+            bytesWritten.addAndGet(n.toLong())
+        }
+    }
+
+    private fun openChannel(): FileChannel {
+        channel?.let { return it }
+        val dir = directory()
+        if (!dir.exists() && !dir.mkdirs()) throw IOException("Cannot create log directory: $dir")
+        // 接續最新的分段
+        segmentIndex = segmentFiles().lastOrNull()?.let { segmentIndexOf(it) } ?: 0
+        val file = segmentFile(segmentIndex)
+        return FileOutputStream(file, true).channel.also {
+            channel = it
+            segmentSize = it.size()
+        }
+    }
+
+    private fun rotate() {
+        closeChannel()
+        segmentIndex++
+        segmentSize = 0L
+        val file = segmentFile(segmentIndex)
+        channel = FileOutputStream(file, true).channel
+        val segments = segmentFiles()
+        if (segments.size > maxSegments) {
+            segments.take(segments.size - maxSegments).forEach { it.delete() }
+        }
+    }
+
+    private fun closeChannel() {
+        try {
+            channel?.close()
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to close performance log", e)
+        }
+        channel = null
+    }
+
+    private fun segmentFile(index: Int): File = File(directory(), "$filePrefix-${index.toString().padStart(5, '0')}$SEGMENT_SUFFIX")
+
+    private fun segmentIndexOf(file: File): Int {
+        val name = file.name
+        if (!name.startsWith("$filePrefix-") || !name.endsWith(SEGMENT_SUFFIX)) return -1
+        return name.substring(filePrefix.length + 1, name.length - SEGMENT_SUFFIX.length).toIntOrNull() ?: -1
+    }
+}
@@ -2,16 +2,18 @@ package com.patrick.core
 
 import android.content.Context
 import android.os.StrictMode
+import android.system.Os
+import android.system.OsConstants
 import android.util.Log
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.withContext
 import java.io.File
-import java.io.FileWriter
-import java.io.PrintWriter
-import java.text.SimpleDateFormat
-import java.util.*
 import com.patrick.sharedcore.BuildConfig
 
 
@@ -22,9 +24,12 @@ import com.patrick.sharedcore.BuildConfig
 class PerformanceMonitor private constructor(private val context: Context) {
     companion object {
         private const val TAG = "PerformanceMonitor"
-        private const val LOG_FILE_NAME = "performance_log.txt"
-        private const val MAX_LOG_SIZE = 1024 * 1024 // 1MB
-        private const val MAX_LOG_LINES = 1000
+        private const val LEGACY_LOG_FILE_NAME = "performance_log.txt"
+        private const val LOG_DIR_NAME = "perf_logs"
+        private const val LOG_SEGMENT_BYTES = 256L * 1024
+        private const val LOG_MAX_SEGMENTS = 4 // 共 1MB
+        private const val DEFAULT_PIPELINE_REPORT_INTERVAL_MS = 1000L
+        private const val DEFAULT_CPU_SAMPLE_INTERVAL_MS = 5000L
 
         @Volatile
         private var INSTANCE: PerformanceMonitor? = null
@@ -37,7 +42,29 @@ class PerformanceMonitor private constructor(private val context: Context) {
     }
 
     private val scope = CoroutineScope(Dispatchers.IO)
-    private val dateFormat = SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault())
+
+    // 單一消費者、分段輪替的日誌寫入器；目錄在寫入執行緒上才解析
+    private val logWriter =
+        PerfLogWriter(
+            directory = { File(context.filesDir, LOG_DIR_NAME) },
+            segmentBytes = LOG_SEGMENT_BYTES,
+            maxSegments = LOG_MAX_SEGMENTS,
+        )
+
+    /** 幀處理管線各階段延遲（相機、偵測端直接寫入） */
+    val pipelineMetrics: FramePipelineMetrics = FramePipelineMetrics.shared
+
+    /** 各階段 p50 / p95 / p99 / max 快照，[startPipelineReporting] 期間定期更新 */
+    val pipelineLatency: StateFlow<FramePipelineMetrics.Snapshot> = pipelineMetrics.snapshot
+
+    private var pipelineReportJob: Job? = null
+
+    // /proc 差值取樣：系統負載 + 各執行緒 CPU 時間
+    private val cpuSampler = CpuSampler(clockTicksPerSecond = clockTicksPerSecond())
+    private var cpuSampleJob: Job? = null
+
+    private val _cpuSample = MutableStateFlow<CpuSampler.Sample?>(null)
+    val cpuSample: StateFlow<CpuSampler.Sample?> = _cpuSample
 
     /**
      * 初始化性能監控
@@ -74,26 +101,33 @@ class PerformanceMonitor private constructor(private val context: Context) {
 
     /**
      * 記錄性能指標
+     * 只放進寫入器的有界佇列，不在呼叫端格式化時間或開檔；佇列滿時丟棄並計數
      */
     fun logPerformance(
         message: String,
         data: Map<String, Any>? = null,
     ) {
-        scope.launch {
-            val timestamp = dateFormat.format(Date())
-            val logEntry =
-                buildString {
-                    append("[$timestamp] $message")
-                    data?.forEach { (key, value) ->
-                        append(" | $key: $value")
-                    }
-                }
-
-            Log.d(TAG, logEntry)
-            writeToFile(logEntry)
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, if (data.isNullOrEmpty()) message else "$message | $data")
         }
+        logWriter.log(message, data)
     }
 
+    /**
+     * 等待佇列中的日誌寫入檔案（例如匯出前）
+     */
+    fun flushLogs(timeoutMs: Long = 1000L): Boolean = logWriter.flush(timeoutMs)
+
+    /**
+     * 日誌寫入統計（已寫入、丟棄、位元組數、分段數）
+     */
+    fun getLogStats(): PerfLogWriter.Stats = logWriter.getStats()
+
+    /**
+     * 目前的日誌分段，由舊到新
+     */
+    fun getLogFiles(): List<File> = logWriter.segmentFiles()
+
     /**
      * 記錄內存使用情況
      */
@@ -115,6 +149,36 @@ class PerformanceMonitor private constructor(private val context: Context) {
         }
     }
 
+    /**
+     * 定期計算管線延遲百分位並更新 [pipelineLatency]（百分位計算不放在幀處理執行緒上）
+     */
+    @Synchronized
+    fun startPipelineReporting(intervalMs: Long = DEFAULT_PIPELINE_REPORT_INTERVAL_MS) {
+        if (pipelineReportJob?.isActive == true) return
+        pipelineReportJob =
+            scope.launch(Dispatchers.Default) {
+                while (isActive) {
+                    delay(intervalMs)
+                    pipelineMetrics.publish()
+                }
+            }
+    }
+
+    @Synchronized
+    fun stopPipelineReporting() {
+        pipelineReportJob?.cancel()
+        pipelineReportJob = null
+    }
+
+    /**
+     * 輸出目前的管線延遲表（毫秒），同時寫入效能日誌
+     */
+    fun dumpPipelineLatency(): String {
+        val table = pipelineMetrics.dump()
+        logPerformance("Pipeline latency\n$table")
+        return table
+    }
+
     /**
      * 記錄方法執行時間
      */
@@ -122,10 +186,10 @@ class PerformanceMonitor private constructor(private val context: Context) {
         operationName: String,
         operation: suspend () -> T,
     ): T {
-        val startTime = System.currentTimeMillis()
+        val startNanos = System.nanoTime()
         return try {
             val result = operation()
-            val executionTime = System.currentTimeMillis() - startTime
+            val executionTime = (System.nanoTime() - startNanos) / 1_000_000L
             logPerformance(
                 "Operation completed",
                 mapOf(
@@ -135,7 +199,7 @@ class PerformanceMonitor private constructor(private val context: Context) {
             )
             result
         } catch (e: Exception) {
-            val executionTime = System.currentTimeMillis() - startTime
+            val executionTime = (System.nanoTime() - startNanos) / 1_000_000L
             logPerformance(
                 "Operation failed",
                 mapOf(
@@ -149,78 +213,77 @@ class PerformanceMonitor private constructor(private val context: Context) {
     }
 
     /**
-     * 記錄 CPU 使用情況
+     * 記錄 CPU 使用情況（與上一次取樣之間的負載；第一次呼叫只建立基準）
      */
     fun logCpuUsage() {
         scope.launch {
-            val cpuUsage = getCpuUsage()
-            logPerformance(
-                "CPU Usage",
-                mapOf("usage" to "${"%.1f".format(cpuUsage)}%"),
-            )
+            val sample = cpuSampler.sample() ?: return@launch
+            _cpuSample.value = sample
+            logCpuSample(sample)
         }
     }
 
     /**
-     * 獲取 CPU 使用率
+     * 定期取樣 CPU（系統負載與各執行緒），結果更新到 [cpuSample] 並寫入效能日誌
      */
-    private fun getCpuUsage(): Float {
-        return try {
-            val reader = File("/proc/stat").readText()
-            val lines = reader.split("\n")
-            if (lines.isNotEmpty()) {
-                val cpuLine = lines[0]
-                val values = cpuLine.split("\\s+".toRegex())
-                if (values.size >= 5) {
-                    val user = values[1].toLong()
-                    val nice = values[2].toLong()
-                    val system = values[3].toLong()
-                    val idle = values[4].toLong()
-
-                    val total = user + nice + system + idle
-                    val usage = (user + nice + system).toFloat() / total.toFloat() * 100
-                    usage
-                } else {
-                    0f
+    @Synchronized
+    fun startCpuSampling(intervalMs: Long = DEFAULT_CPU_SAMPLE_INTERVAL_MS) {
+        if (cpuSampleJob?.isActive == true) return
+        cpuSampleJob =
+            scope.launch {
+                cpuSampler.sample()
+                while (isActive) {
+                    delay(intervalMs)
+                    val sample = cpuSampler.sample() ?: continue
+                    _cpuSample.value = sample
+                    logCpuSample(sample)
                 }
-            } else {
-                0f
             }
-        } catch (e: Exception) {
-            Log.w(TAG, "Failed to get CPU usage", e)
-            0f
-        }
+    }
+
+    @Synchronized
+    fun stopCpuSampling() {
+        cpuSampleJob?.cancel()
+        cpuSampleJob = null
     }
 
     /**
-     * 寫入日誌文件
+     * 最近取樣視窗內各類執行緒（UI / 相機 / 推論 / DB …）的平均單核百分比
      */
-    private suspend fun writeToFile(logEntry: String) {
-        withContext(Dispatchers.IO) {
-            try {
-                val logFile = File(context.filesDir, LOG_FILE_NAME)
-                FileWriter(logFile, true).use { writer ->
-                    PrintWriter(writer).use { printer ->
-                        printer.println(logEntry)
-                    }
-                }
-            } catch (e: Exception) {
-                Log.e(TAG, "Failed to write to log file", e)
-            }
-        }
+    fun getThreadCpuWindowAverage(): Map<ThreadCategory, Float> = cpuSampler.windowAverageByCategory()
+
+    /**
+     * 開始取樣以來各類執行緒累計的 CPU 時間（毫秒）
+     */
+    fun getThreadCpuTotals(): Map<ThreadCategory, Long> = cpuSampler.cumulativeCpuMsByCategory()
+
+    private fun logCpuSample(sample: CpuSampler.Sample) {
+        val data = LinkedHashMap<String, Any>()
+        sample.systemUsage?.let { data["system"] = "%.1f".format(it) }
+        sample.iowaitPercent?.let { data["iowait"] = "%.1f".format(it) }
+        sample.irqPercent?.let { data["irq"] = "%.1f".format(it) }
+        data["process"] = "%.1f".format(sample.processCorePercent)
+        sample.byCategory.forEach { (category, percent) -> data[category.name.lowercase()] = "%.1f".format(percent) }
+        logPerformance("CPU Usage", data)
     }
 
+    private fun clockTicksPerSecond(): Long =
+        try {
+            Os.sysconf(OsConstants._SC_CLK_TCK).takeIf { it > 0 } ?: CpuSampler.DEFAULT_CLOCK_TICKS_PER_SECOND
+        } catch (e: Exception) {
+            CpuSampler.DEFAULT_CLOCK_TICKS_PER_SECOND
+        }
+
     /**
      * 清理舊的日誌文件
+     * 分段數量由寫入器輪替時維持，這裡只移除舊版的單一日誌檔
      */
     fun cleanupOldLogs() {
         scope.launch {
             try {
-                val logFile = File(context.filesDir, LOG_FILE_NAME)
-                if (logFile.exists() && logFile.length() > MAX_LOG_SIZE) {
-                    val lines = logFile.readLines()
-                    val recentLines = lines.takeLast(MAX_LOG_LINES)
-                    logFile.writeText(recentLines.joinToString("\n"))
+                val legacyFile = File(context.filesDir, LEGACY_LOG_FILE_NAME)
+                if (legacyFile.exists() && !legacyFile.delete()) {
+                    Log.w(TAG, "Failed to delete legacy log file")
                 }
             } catch (e: Exception) {
                 Log.e(TAG, "Failed to cleanup old logs", e)
@@ -0,0 +1,110 @@
+package com.patrick.core
+
+/**
+ * /proc/stat 第一行（所有 CPU 合計）的累計 tick
+ */
+data class CpuTimes(
+    val user: Long,
+    val nice: Long,
+    val system: Long,
+    val idle: Long,
+    val iowait: Long,
+    val irq: Long,
+    val softirq: Long,
+    val steal: Long,
+) {
+    val idleAll: Long get() = idle + iowait
+    val busy: Long get() = user + nice + system + irq + softirq + steal
+    val total: Long get() = idleAll + busy
+}
+
+/**
+ * /proc/<pid>/task/<tid>/stat 中的執行緒名稱與累計 CPU tick（utime + stime）
+ */
+data class ThreadCpuTime(
+    val tid: Int,
+    val name: String,
+    val utimeTicks: Long,
+    val stimeTicks: Long,
+) {
+    val totalTicks: Long get() = utimeTicks + stimeTicks
+}
+
+/**
+ * 執行緒分類，依名稱（核心只保留前 15 個字元）判斷
+ */
+enum class ThreadCategory {
+    UI,
+    CAMERA,
+    INFERENCE,
+    DATABASE,
+    LOGGING,
+    OTHER,
+    ;
+
+    companion object {
+        fun of(
+            tid: Int,
+            name: String,
+            pid: Int,
+        ): ThreadCategory =
+            when {
+                // 主執行緒 tid == pid，名稱為被截斷的套件名
+                tid == pid || name == "RenderThread" -> UI
+                // CameraX-* 與分析執行緒 CameraAnalyzer
+                name.startsWith("Camera") -> CAMERA
+                name.startsWith("FaceInference") || name.startsWith("mediapipe") -> INFERENCE
+                name.startsWith("arch_disk_io") || name.startsWith("FatigueDb") -> DATABASE
+                name.startsWith("PerfLogWriter") -> LOGGING
+                else -> OTHER
+            }
+    }
+}
+
+/**
+ * /proc 文字解析（純函式，可用 fixture 測試）
+ */
+object ProcStatParser {
+    private const val UTIME_FIELD = 14
+    private const val STIME_FIELD = 15
+    private val WHITESPACE = "\\s+".toRegex()
+
+    /**
+     * 解析 /proc/stat 的 "cpu " 合計行；舊核心缺少的欄位視為 0
+     */
+    fun parseCpuTimes(statText: String): CpuTimes? {
+        val line = statText.lineSequence().firstOrNull { it.startsWith("cpu ") } ?: return null
+        val fields = line.trim().split(WHITESPACE)
+        if (fields.size < 5) return null
+
+        fun field(index: Int): Long = fields.getOrNull(index)?.toLongOrNull() ?: 0L
+        return CpuTimes(
+            user = field(1),
+            nice = field(2),
+            system = field(3),
+            idle = field(4),
+            iowait = field(5),
+            irq = field(6),
+            softirq = field(7),
+            steal = field(8),
+        )
+    }
+
+    /**
+     * 解析單一執行緒的 stat：`tid (comm) state ppid ... utime stime ...`
+     * comm 可能含空白與括號，以最後一個 ')' 為界；utime / stime 為第 14、15 欄
+     */
+    fun parseThreadStat(statText: String): ThreadCpuTime? {
+        val open = statText.indexOf('(')
+        val close = statText.lastIndexOf(')')
+        if (open <= 0 || close < open) return null
+
+        val tid = statText.substring(0, open).trim().toIntOrNull() ?: return null
+        val name = statText.substring(open + 1, close)
+        // 由 state（第 3 欄）開始
+        val rest = statText.substring(close + 1).trim().split(WHITESPACE)
+        val utime = rest.getOrNull(UTIME_FIELD - 3)?.toLongOrNull() ?: return null
+        val stime = rest.getOrNull(STIME_FIELD - 3)?.toLongOrNull() ?: return null
+        return ThreadCpuTime(tid, name, utime, stime)
+    }
+}
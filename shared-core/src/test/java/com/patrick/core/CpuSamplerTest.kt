@@ -0,0 +1,88 @@
+package com.patrick.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class CpuSamplerTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private var root = fixture("t0")
+    private var nowNanos = 0L
+    private val sampler = CpuSampler(procRoot = { root }, pid = PID, nanoTime = { nowNanos })
+
+    @Test
+    fun `parses cpu line and thread stat with odd comm`() {
+        val cpu = ProcStatParser.parseCpuTimes(File(fixture("t0"), "stat").readText())!!
+        assertEquals(CpuTimes(1000, 100, 500, 8000, 200, 50, 50, 0), cpu)
+        assertEquals(8200L, cpu.idleAll)
+        assertEquals(1700L, cpu.busy)
+
+        val odd = ProcStatParser.parseThreadStat(File(fixture("t0"), "self/task/4350/stat").readText())!!
+        assertEquals(4350, odd.tid)
+        assertEquals("my (odd) thr", odd.name)
+        assertEquals(40L, odd.totalTicks)
+
+        assertNull(ProcStatParser.parseThreadStat("garbage"))
+        // 舊核心只有四欄
+        assertEquals(0L, ProcStatParser.parseCpuTimes("cpu  1 2 3 4\n")!!.iowait)
+    }
+
+    @Test
+    fun `computes deltas between reads`() {
+        assertNull(sampler.sample()) // 基準
+
+        root = fixture("t1")
+        nowNanos = 5_000_000_000L // 5 秒 = 500 tick
+        val sample = sampler.sample()!!
+
+        assertEquals(5000L, sample.intervalMs)
+        // busy 500 / total 1300
+        assertEquals(38.46f, sample.systemUsage!!, 0.01f)
+        assertEquals(7.69f, sample.iowaitPercent!!, 0.01f)
+        assertEquals(3.85f, sample.irqPercent!!, 0.01f)
+        // 60 + 330 + 30 + 10 = 430 tick
+        assertEquals(86f, sample.processCorePercent, 0.01f)
+
+        val top = sample.threads.first()
+        assertEquals("FaceInference", top.name)
+        assertEquals(ThreadCategory.INFERENCE, top.category)
+        assertEquals(66f, top.corePercent, 0.01f)
+
+        val byCategory = sample.byCategory
+        assertEquals(12f, byCategory[ThreadCategory.UI]!!, 0.01f)
+        assertEquals(6f, byCategory[ThreadCategory.CAMERA]!!, 0.01f)
+        // 區間內新啟動的執行緒：全部 tick 都算
+        assertEquals(2f, byCategory[ThreadCategory.DATABASE]!!, 0.01f)
+
+        assertEquals(3300L, sampler.cumulativeCpuMsByCategory()[ThreadCategory.INFERENCE])
+        assertEquals(1, sampler.window().size)
+    }
+
+    @Test
+    fun `missing proc stat keeps thread accounting`() {
+        // 只有 self/task、沒有 stat（Android 8+ 的權限限制）
+        val restricted = folder.newFolder("proc")
+        File(fixture("t0"), "self").copyRecursively(File(restricted, "self"))
+        root = restricted
+        assertNull(sampler.sample())
+
+        File(restricted, "self").deleteRecursively()
+        File(fixture("t1"), "self").copyRecursively(File(restricted, "self"))
+        nowNanos = 5_000_000_000L
+        val sample = sampler.sample()!!
+        assertNull(sample.systemUsage)
+        assertNull(sample.iowaitPercent)
+        assertEquals(86f, sample.processCorePercent, 0.01f)
+    }
+
+    private fun fixture(name: String): File = File(javaClass.classLoader!!.getResource("proc/$name")!!.toURI())
+
+    companion object {
+        private const val PID = 4321
+    }
+}
@@ -0,0 +1,77 @@
+package com.patrick.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LatencyHistogramTest {
+    @Test
+    fun `percentiles stay within bucket precision`() {
+        val histogram = LatencyHistogram()
+        // 1..1000 ms 均勻分布
+        for (ms in 1..1000) histogram.record(ms * 1_000_000L)
+
+        val snapshot = histogram.snapshot()
+        assertEquals(1000L, snapshot.count)
+        assertEquals(500.5, snapshot.meanNanos / 1e6, 0.01)
+        assertWithin(500_000_000L, snapshot.p50Nanos)
+        assertWithin(950_000_000L, snapshot.p95Nanos)
+        assertWithin(990_000_000L, snapshot.p99Nanos)
+        assertEquals(1_000_000_000L, snapshot.maxNanos)
+    }
+
+    @Test
+    fun `small values are exact and reset clears`() {
+        val histogram = LatencyHistogram()
+        listOf(3L, 7L, 7L, 20L).forEach { histogram.record(it) }
+        assertEquals(7L, histogram.valueAtPercentile(50.0))
+        assertEquals(20L, histogram.valueAtPercentile(100.0))
+
+        histogram.reset()
+        assertEquals(LatencyHistogram.Snapshot.EMPTY, histogram.snapshot())
+    }
+
+    @Test
+    fun `values above trackable range keep real max`() {
+        val histogram = LatencyHistogram(highestTrackableNanos = 1_000_000L)
+        histogram.record(5_000_000_000L)
+        assertEquals(5_000_000_000L, histogram.snapshot().maxNanos)
+        assertTrue(histogram.valueAtPercentile(50.0) >= 1_000_000L)
+    }
+
+    @Test
+    fun `pipeline metrics measure end to end from frame start`() {
+        val metrics = FramePipelineMetrics()
+        metrics.beginFrame(1_000L)
+        metrics.record(PipelineStage.INFERENCE, 400L)
+        metrics.endFrame(endNanos = 1_900L)
+        // 沒有 beginFrame 的結果（例如重播）不算端到端
+        metrics.endFrame(endNanos = 5_000L)
+
+        val snapshot = metrics.publish()
+        assertEquals(snapshot, metrics.snapshot.value)
+        assertEquals(1L, snapshot[PipelineStage.END_TO_END].count)
+        assertEquals(900L, snapshot[PipelineStage.END_TO_END].maxNanos)
+        assertEquals(400L, snapshot[PipelineStage.INFERENCE].maxNanos)
+        assertEquals(0L, snapshot[PipelineStage.UI_EMISSION].count)
+        assertTrue(metrics.dump(snapshot).contains("end to end"))
+    }
+
+    @Test
+    fun `capture age picks plausible timebase`() {
+        // uptime 時基
+        assertEquals(30_000_000L, FramePipelineMetrics.captureAgeNanos(970_000_000L, 1_000_000_000L, 9_000_000_000L))
+        // elapsedRealtime 時基
+        assertEquals(20_000_000L, FramePipelineMetrics.captureAgeNanos(8_980_000_000L, 1_000_000_000L, 9_000_000_000L))
+        // 都不符
+        assertEquals(-1L, FramePipelineMetrics.captureAgeNanos(50_000_000_000L, 1_000_000_000L, 9_000_000_000L))
+    }
+
+    private fun assertWithin(
+        expected: Long,
+        actual: Long,
+    ) {
+        val error = Math.abs(actual - expected).toDouble() / expected
+        assertTrue("expected≈$expected actual=$actual", error <= 0.04)
+    }
+}
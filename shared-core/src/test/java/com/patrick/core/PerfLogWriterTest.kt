@@ -0,0 +1,65 @@
+package com.patrick.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.concurrent.CountDownLatch
+
+class PerfLogWriterTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun `writes escaped line protocol`() {
+        val dir = folder.newFolder("logs")
+        val writer = PerfLogWriter(directory = { dir }, wallClockMs = { 1234L })
+        writer.log("Operation completed", mapOf("operation" to "load db", "duration" to "5ms"))
+        writer.log("PerformanceMonitor initialized")
+        assertTrue(writer.flush())
+
+        val lines = writer.segmentFiles().single().readLines()
+        assertEquals("Operation\\ completed operation=load\\ db,duration=5ms 1234", lines[0])
+        assertEquals("PerformanceMonitor\\ initialized 1234", lines[1])
+        assertEquals(2L, writer.getStats().written)
+        writer.close()
+        assertFalse(writer.log("after close"))
+    }
+
+    @Test
+    fun `rotates segments and keeps newest`() {
+        val dir = folder.newFolder("logs")
+        val writer = PerfLogWriter(directory = { dir }, segmentBytes = 100L, maxSegments = 2, wallClockMs = { 0L })
+        repeat(20) { writer.log("sample_$it", mapOf("v" to it)) }
+        assertTrue(writer.flush())
+
+        val segments = writer.segmentFiles()
+        assertEquals(2, segments.size)
+        segments.forEach { assertTrue(it.length() <= 100L) }
+        assertTrue(segments.last().readText().contains("sample_19 v=19 0"))
+        assertFalse(segments.first().readText().contains("sample_0 "))
+        writer.close()
+    }
+
+    @Test
+    fun `full queue drops and reports count`() {
+        val dir = folder.newFolder("logs")
+        val gate = CountDownLatch(1)
+        // 消費者第一次開檔時卡住，佇列很快就滿
+        val writer = PerfLogWriter(directory = { gate.await(); dir }, queueCapacity = 2, wallClockMs = { 0L })
+        repeat(10) { writer.log("frame", mapOf("i" to it)) }
+        gate.countDown()
+        assertTrue(writer.flush())
+        writer.log("after")
+        assertTrue(writer.flush())
+
+        val stats = writer.getStats()
+        assertTrue("dropped=${stats.dropped}", stats.dropped >= 6)
+        assertEquals(11L, stats.written + stats.dropped)
+        val text = writer.segmentFiles().single().readText()
+        assertTrue(text.contains("perf_log_dropped count=${stats.dropped} 0"))
+        writer.close()
+    }
+}
@@ -1,15 +1,20 @@
 package com.patrick.ui.fatigue
 
 import android.util.Log
+import com.patrick.core.DetectionClock
 import com.patrick.core.FatigueLevel
+import com.patrick.core.SystemDetectionClock
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 
 /**
  * 疲勞 UI 狀態管理器
  * 負責處理 UI 相關的狀態管理，包括重置保護期和冷卻期
+ * 時間取自與偵測相同的 [DetectionClock]（通常是 FrameClock）
  */
-class FatigueUiStateManager : com.patrick.core.FatigueUiCallback {
+class FatigueUiStateManager(
+    private val clock: DetectionClock = SystemDetectionClock,
+) : com.patrick.core.FatigueUiCallback {
     companion object {
         private const val TAG = "FatigueUiStateManager"
     }
@@ -43,7 +48,7 @@ class FatigueUiStateManager : com.patrick.core.FatigueUiCallback {
     fun processFatigueResult(
         rawFatigueLevel: FatigueLevel,
         fatigueEventCount: Int,
-        currentTime: Long = System.currentTimeMillis(),
+        currentTime: Long = clock.nowMs(),
     ): FatigueLevel {
         Log.d(
             TAG,
@@ -104,11 +109,11 @@ class FatigueUiStateManager : com.patrick.core.FatigueUiCallback {
 
         // 啟動重置保護期
         isInResetProtection = true
-        resetProtectionStartTime = System.currentTimeMillis()
+        resetProtectionStartTime = clock.nowMs()
 
         // 啟動冷卻期
         isInCooldownPeriod = true
-        cooldownStartTime = System.currentTimeMillis()
+        cooldownStartTime = clock.nowMs()
 
         // 重置對話框狀態
         hasActiveWarningDialog = false
@@ -127,11 +132,11 @@ class FatigueUiStateManager : com.patrick.core.FatigueUiCallback {
 
         // 啟動重置保護期
         isInResetProtection = true
-        resetProtectionStartTime = System.currentTimeMillis()
+        resetProtectionStartTime = clock.nowMs()
 
         // 啟動冷卻期
         isInCooldownPeriod = true
-        cooldownStartTime = System.currentTimeMillis()
+        cooldownStartTime = clock.nowMs()
 
         // 重置對話框狀態
         hasActiveWarningDialog = false
@@ -166,7 +171,7 @@ class FatigueUiStateManager : com.patrick.core.FatigueUiCallback {
      * 獲取重置狀態信息（用於調試）
      */
     fun getResetStatusInfo(): String {
-        val currentTime = System.currentTimeMillis()
+        val currentTime = clock.nowMs()
         val protectionElapsed = if (isInResetProtection) currentTime - resetProtectionStartTime else 0L
         val cooldownElapsed = if (isInCooldownPeriod) currentTime - cooldownStartTime else 0L
 
@@ -7,7 +7,11 @@ import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult
 import com.patrick.core.FatigueDetectionDebugger
 import com.patrick.core.FatigueLevel
 import com.patrick.core.FatigueUiCallback
+import com.patrick.core.FrameClock
+import com.patrick.core.FramePipelineMetrics
+import com.patrick.core.PerformanceMonitor
 import com.patrick.detection.FatigueDetectionManager
+import com.patrick.detection.FrameRateGovernor
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
@@ -38,10 +42,20 @@ class FatigueViewModel(
     private val _uiEvent = MutableSharedFlow<FatigueUiEvent>()
     val uiEvent = _uiEvent.asSharedFlow()
 
-    private val fatigueDetectionManager = FatigueDetectionManager(application, this)
-    private val fatigueUiStateManager   = FatigueUiStateManager()
+    /** 偵測時鐘：交給相機端（CameraViewModel.setFrameClock）以幀時間戳推進 */
+    val frameClock = FrameClock()
+
+    private val fatigueDetectionManager = FatigueDetectionManager(application, this, frameClock)
+    private val fatigueUiStateManager   = FatigueUiStateManager(frameClock)
     private val debugger                = FatigueDetectionDebugger(application)
 
+    /** 分析幀率調節器：交給相機端（CameraViewModel.setFrameRateGovernor）依此節流 */
+    val frameRateGovernor: FrameRateGovernor
+        get() = fatigueDetectionManager.frameRateGovernor
+
+    /** 幀處理管線各階段延遲（偵測期間每秒更新） */
+    val pipelineLatency: StateFlow<FramePipelineMetrics.Snapshot> = FramePipelineMetrics.shared.snapshot
+
     private val _fatigueLevel = MutableStateFlow(FatigueLevel.NORMAL)
     val fatigueLevel: StateFlow<FatigueLevel> = _fatigueLevel
 
@@ -82,7 +96,6 @@ class FatigueViewModel(
     private var pauseScoreDecay: Boolean = false
 
     init {
-        fatigueDetectionManager.setProcessingRateFps(12)
         if (AUTO_ENABLE_DEBUG) debugger.enableQuickDebugMode()
 
         // 背景遞減協程（放慢版）
@@ -106,11 +119,19 @@ class FatigueViewModel(
 
     fun startDetection() {
         fatigueDetectionManager.startDetection()
+        PerformanceMonitor.getInstance(getApplication()).apply {
+            startPipelineReporting()
+            startCpuSampling()
+        }
         Log.d(TAG, "疲勞檢測已啟動")
     }
 
     fun stopDetection() {
         fatigueDetectionManager.stopDetection()
+        PerformanceMonitor.getInstance(getApplication()).apply {
+            stopPipelineReporting()
+            stopCpuSampling()
+        }
         Log.d(TAG, "疲勞檢測已停止")
     }
 
@@ -1,6 +1,7 @@
 package com.patrick.ui.fatigue
 
 import com.patrick.core.FatigueLevel
+import com.patrick.core.ManualDetectionClock
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
@@ -64,6 +65,22 @@ class FatigueUiStateManagerTest {
         assertEquals(FatigueLevel.NORMAL, result)
     }
 
+    @Test
+    fun `test reset protection and cooldown expire by injected clock`() {
+        val clock = ManualDetectionClock(startMs = 1_000L)
+        val manager = FatigueUiStateManager(clock)
+        manager.onUserAcknowledged()
+
+        // 保護期（10 秒）內回傳 NORMAL
+        assertEquals(FatigueLevel.NORMAL, manager.processFatigueResult(FatigueLevel.WARNING, 5))
+
+        // 保護期與冷卻期（8 秒）都結束後恢復正常警告，不需實際等待
+        clock.advance(10_000L)
+        assertEquals(FatigueLevel.WARNING, manager.processFatigueResult(FatigueLevel.WARNING, 5))
+        assertFalse(manager.isInResetProtection())
+        assertFalse(manager.isInCooldownPeriod())
+    }
+
     @Test
     fun `test reset clears all states`() {
         val manager = FatigueUiStateManager()